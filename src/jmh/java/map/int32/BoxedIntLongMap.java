@@ -0,0 +1,65 @@
+package map.int32;
+
+import java.util.HashMap;
+
+
+/**
+ * A baseline {@link IntLongMap} backed by a {@code java.util.HashMap}, which
+ * boxes every key and value and allocates a node object per entry. This is
+ * only used to compare time and space costs against the primitive maps.
+ *
+ * @author tdbaker
+ */
+public class BoxedIntLongMap implements IntLongMap {
+    public static final String NAME = "map.int32.BoxedIntLongMap";
+
+    private final HashMap<Integer, Long> map;
+
+    public BoxedIntLongMap(int maxEntries, double loadFactor) {
+        this.map = new HashMap<>((int) (maxEntries / loadFactor), (float) loadFactor);
+    }
+
+    public BoxedIntLongMap(BoxedIntLongMap other) {
+        this.map = new HashMap<>(other.map);
+    }
+
+    public IntLongMap cloneMap() throws CloneNotSupportedException {
+        return new BoxedIntLongMap(this);
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public boolean containsKey(int key) {
+        return this.map.containsKey(key);
+    }
+
+    public long get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    public long getOrDefault(int key, long defaultValue) {
+        Long value = this.map.get(key);
+        return (value == null) ? defaultValue : value;
+    }
+
+    public long put(int key, long value) {
+        Long oldValue = this.map.put(key, value);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public long putIfAbsent(int key, long value) {
+        Long oldValue = this.map.putIfAbsent(key, value);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public long remove(int key) {
+        Long oldValue = this.map.remove(key);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public void clear() {
+        this.map.clear();
+    }
+}
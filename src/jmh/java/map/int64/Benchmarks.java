@@ -0,0 +1,178 @@
+package map.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.lang.reflect.InvocationTargetException;
+
+import org.openjdk.jmh.annotations.*;
+
+public class Benchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int SINGLE_SHOT_MULTIPLIER = 1;
+    private static final int BATCH_SIZE = 1000;
+
+    // implements Fisher–Yates shuffle over range of array, inexplicably missing
+    // from java.util.Arrays
+    private static void shuffleArray(long[] arr, int start, int end) {
+        Random rnd = ThreadLocalRandom.current();
+        for (int i = end - start - 1; i > 0; i--) {
+            int index = rnd.nextInt(i + 1);
+            int randomIndex = start + index;
+            int currentIndex = start + i;
+            assert start <= randomIndex && randomIndex < end;
+            assert start <= currentIndex && currentIndex < end;
+            // Simple swap
+            long a = arr[randomIndex];
+            arr[randomIndex] = arr[currentIndex];
+            arr[currentIndex] = a;
+        }
+    }
+
+    // any cheap bijection will do, so that values are distinct from keys
+    private static long valueFor(long key) {
+        return ~key;
+    }
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPLongLongHashMap.NAME,
+        })
+        private String mapClassName;
+
+        @Param({
+            "10000",
+            "100000",
+            "1000000",
+            "10000000",
+            "100000000",
+        })
+        private int mapSize;
+
+        @Param({
+            "0.5",
+            "0.75",
+            "0.9",
+            "0.95",
+            "0.99",
+            // "1.0",
+        })
+        private double loadFactor;
+
+        public LongLongMap hashMapTemplate;
+        public long[] newTestData;
+        public long[] oldTestData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            // generate array of random ints, using random permutation rather than RNG
+            // to avoid duplicates.
+            long[] testData = LongStream.rangeClosed(1, mapSize).map(hasher::hash).toArray();
+            // populate hash map under test with all test data except the last BATCH_SIZE elements,
+            // to leave some data free for testing deletions and unsuccessful lookups.
+            int templateSize = testData.length - BATCH_SIZE;
+            this.hashMapTemplate = (LongLongMap) Class.forName(mapClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(mapSize, loadFactor);
+            for (int i = 0; i < templateSize; ++i) {
+                this.hashMapTemplate.put(testData[i], valueFor(testData[i]));
+            }
+            // now generate a random sample of BATCH_SIZE test data that are not present in the hash map
+            this.newTestData = Arrays.copyOfRange(testData, testData.length - BATCH_SIZE, testData.length);
+            shuffleArray(testData, 0, templateSize);
+            this.oldTestData = Arrays.copyOfRange(testData, 0, BATCH_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public LongLongMap hashMap;
+        public int testDataIndex;
+
+        public int getDataIndex() {
+            int ret;
+            if (this.testDataIndex == BATCH_SIZE) {
+                ret = 0;
+            } else {
+                ret = this.testDataIndex;
+                ++this.testDataIndex;
+            }
+            assert this.testDataIndex <= BATCH_SIZE;
+            return ret;
+        }
+
+        @Setup(Level.Iteration)
+        public void initIterationState(BenchmarkState bs) throws CloneNotSupportedException {
+            this.hashMap = bs.hashMapTemplate.cloneMap();
+            this.testDataIndex = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void destroyIterationState() {
+            this.hashMap.clear();
+            assert this.testDataIndex <= BATCH_SIZE;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long measurePut(BenchmarkState bs, IterationState is) {
+        long key = bs.newTestData[is.getDataIndex()];
+        long oldValue = is.hashMap.put(key, valueFor(key));
+        assert oldValue == 0;
+        return oldValue;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long measureRemove(BenchmarkState bs, IterationState is) {
+        long key = bs.oldTestData[is.getDataIndex()];
+        long oldValue = is.hashMap.remove(key);
+        assert oldValue == valueFor(key);
+        return oldValue;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long measureSuccessfulGet(BenchmarkState bs, IterationState is) {
+        long key = bs.oldTestData[is.getDataIndex()];
+        long value = is.hashMap.get(key);
+        assert value == valueFor(key);
+        return value;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long measureUnsuccessfulGet(BenchmarkState bs, IterationState is) {
+        long value = is.hashMap.getOrDefault(bs.newTestData[is.getDataIndex()], -1L);
+        assert value == -1L;
+        return value;
+    }
+}
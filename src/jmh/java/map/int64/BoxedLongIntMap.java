@@ -0,0 +1,65 @@
+package map.int64;
+
+import java.util.HashMap;
+
+
+/**
+ * A baseline {@link LongIntMap} backed by a {@code java.util.HashMap}, which
+ * boxes every key and value and allocates a node object per entry. This is
+ * only used to compare time and space costs against the primitive maps.
+ *
+ * @author tdbaker
+ */
+public class BoxedLongIntMap implements LongIntMap {
+    public static final String NAME = "map.int64.BoxedLongIntMap";
+
+    private final HashMap<Long, Integer> map;
+
+    public BoxedLongIntMap(int maxEntries, double loadFactor) {
+        this.map = new HashMap<>((int) (maxEntries / loadFactor), (float) loadFactor);
+    }
+
+    public BoxedLongIntMap(BoxedLongIntMap other) {
+        this.map = new HashMap<>(other.map);
+    }
+
+    public LongIntMap cloneMap() throws CloneNotSupportedException {
+        return new BoxedLongIntMap(this);
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public boolean containsKey(long key) {
+        return this.map.containsKey(key);
+    }
+
+    public int get(long key) {
+        return getOrDefault(key, 0);
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        Integer value = this.map.get(key);
+        return (value == null) ? defaultValue : value;
+    }
+
+    public int put(long key, int value) {
+        Integer oldValue = this.map.put(key, value);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public int putIfAbsent(long key, int value) {
+        Integer oldValue = this.map.putIfAbsent(key, value);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public int remove(long key) {
+        Integer oldValue = this.map.remove(key);
+        return (oldValue == null) ? 0 : oldValue;
+    }
+
+    public void clear() {
+        this.map.clear();
+    }
+}
@@ -0,0 +1,214 @@
+package map.object;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares {@link BLPObjectHashMap} against {@code java.util.HashMap}, with
+ * boxed 64-bit integer keys and values (boxed once up front, so boxing is not
+ * measured). The lookup benchmarks also sample latency, since GC pressure
+ * mostly shows up in the tail. {@code measureBuild} builds a whole map from
+ * scratch: run it with {@code -prof gc}, and the normalized allocation rate
+ * ({@code gc.alloc.rate.norm}) divided by {@code mapSize} is the number of
+ * bytes allocated per entry, excluding the keys and values themselves.
+ */
+public class Benchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int SINGLE_SHOT_MULTIPLIER = 1;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String HASH_MAP_NAME = "java.util.HashMap";
+
+    // implements Fisher–Yates shuffle over range of array, inexplicably missing
+    // from java.util.Arrays
+    private static void shuffleArray(Long[] arr, int start, int end) {
+        Random rnd = ThreadLocalRandom.current();
+        for (int i = end - start - 1; i > 0; i--) {
+            int index = rnd.nextInt(i + 1);
+            int randomIndex = start + index;
+            int currentIndex = start + i;
+            assert start <= randomIndex && randomIndex < end;
+            assert start <= currentIndex && currentIndex < end;
+            // Simple swap
+            Long a = arr[randomIndex];
+            arr[randomIndex] = arr[currentIndex];
+            arr[currentIndex] = a;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPObjectHashMap.NAME,
+            HASH_MAP_NAME,
+        })
+        private String mapClassName;
+
+        @Param({
+            "10000",
+            "100000",
+            "1000000",
+            "10000000",
+        })
+        private int mapSize;
+
+        @Param({
+            "0.5",
+            "0.75",
+            "0.9",
+            "0.95",
+            "0.99",
+            // "1.0",
+        })
+        private double loadFactor;
+
+        public Map<Long, Long> hashMapTemplate;
+        public Long[] allTestData;
+        public Long[] newTestData;
+        public Long[] oldTestData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        // Neither map should resize during a trial: BLPObjectHashMap is sized
+        // for mapSize entries, and HashMap's initial capacity is chosen so that
+        // mapSize entries stay under its resize threshold.
+        public Map<Long, Long> newMap() {
+            switch (mapClassName) {
+                case BLPObjectHashMap.NAME:
+                    return new BLPObjectHashMap<>(mapSize, loadFactor);
+                case HASH_MAP_NAME:
+                    return new HashMap<>((int) (mapSize / loadFactor) + 1, (float) loadFactor);
+                default:
+                    throw new IllegalArgumentException(mapClassName);
+            }
+        }
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            // generate array of random longs, using random permutation rather than RNG
+            // to avoid duplicates.
+            Long[] testData = LongStream.rangeClosed(1, mapSize).map(hasher::hash).boxed().toArray(Long[]::new);
+            // populate hash map under test with all test data except the last BATCH_SIZE elements,
+            // to leave some data free for testing deletions and unsuccessful lookups.
+            int templateSize = testData.length - BATCH_SIZE;
+            this.allTestData = testData.clone();
+            this.hashMapTemplate = newMap();
+            for (int i = 0; i < templateSize; ++i) {
+                this.hashMapTemplate.put(testData[i], testData[i]);
+            }
+            // now generate a random sample of BATCH_SIZE test data that are not present in the hash map
+            this.newTestData = Arrays.copyOfRange(testData, testData.length - BATCH_SIZE, testData.length);
+            shuffleArray(testData, 0, templateSize);
+            this.oldTestData = Arrays.copyOfRange(testData, 0, BATCH_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public Map<Long, Long> hashMap;
+        public int testDataIndex;
+
+        public int getDataIndex() {
+            int ret;
+            if (this.testDataIndex == BATCH_SIZE) {
+                ret = 0;
+            } else {
+                ret = this.testDataIndex;
+                ++this.testDataIndex;
+            }
+            assert this.testDataIndex <= BATCH_SIZE;
+            return ret;
+        }
+
+        @Setup(Level.Iteration)
+        public void initIterationState(BenchmarkState bs) {
+            this.hashMap = bs.newMap();
+            this.hashMap.putAll(bs.hashMapTemplate);
+            this.testDataIndex = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void destroyIterationState() {
+            this.hashMap.clear();
+            assert this.testDataIndex <= BATCH_SIZE;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Long measurePut(BenchmarkState bs, IterationState is) {
+        Long key = bs.newTestData[is.getDataIndex()];
+        Long oldValue = is.hashMap.put(key, key);
+        assert oldValue == null;
+        return oldValue;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS * SINGLE_SHOT_MULTIPLIER, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Long measureRemove(BenchmarkState bs, IterationState is) {
+        Long key = bs.oldTestData[is.getDataIndex()];
+        Long oldValue = is.hashMap.remove(key);
+        assert key.equals(oldValue);
+        return oldValue;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Long measureSuccessfulGet(BenchmarkState bs, IterationState is) {
+        Long key = bs.oldTestData[is.getDataIndex()];
+        Long value = is.hashMap.get(key);
+        assert key.equals(value);
+        return value;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Long measureUnsuccessfulGet(BenchmarkState bs, IterationState is) {
+        Long value = is.hashMap.get(bs.newTestData[is.getDataIndex()]);
+        assert value == null;
+        return value;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Long, Long> measureBuild(BenchmarkState bs) {
+        Map<Long, Long> map = bs.newMap();
+        for (Long key : bs.allTestData) {
+            map.put(key, key);
+        }
+        return map;
+    }
+}
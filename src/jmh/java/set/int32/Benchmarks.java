@@ -9,6 +9,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 import org.openjdk.jmh.annotations.*;
 
@@ -43,6 +44,12 @@ public class Benchmarks {
             LCFSIntHashSet.NAME,
             RHIntHashSet.NAME,
             BLPIntHashSet.NAME,
+            BucketizedBLPIntHashSet.NAME,
+            SwissIntHashSet.NAME,
+            CuckooIntHashSet.NAME,
+            HopscotchIntHashSet.NAME,
+            GraveyardIntHashSet.NAME,
+            OrderedLPIntHashSet.NAME,
         })
         private String setClassName;
 
@@ -83,9 +90,25 @@ public class Benchmarks {
             int templateSize = testData.length - BATCH_SIZE;
             this.hashSetTemplate = (IntSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
                     .newInstance(setSize, loadFactor);
+            Method capacity = this.hashSetTemplate.getClass().getMethod("capacity");
+            int initialCapacity = (int) capacity.invoke(this.hashSetTemplate);
             for (int i = 0; i < templateSize; ++i) {
                 this.hashSetTemplate.add(testData[i]);
             }
+            // Not every table can hold every load factor: a hopscotch table
+            // can't keep every element within 32 buckets of its preferred bucket
+            // at high load factors (from 0.9, for 100K elements or more), and a
+            // cuckoo table runs out of room at 0.99, so they double while the
+            // template is built, and would be measured at about half the load
+            // of the other tables. JMH can't exclude combinations of parameters,
+            // so we reject those here, reporting the load factor the table
+            // actually reached, and JMH goes on to the next combination.
+            int finalCapacity = (int) capacity.invoke(this.hashSetTemplate);
+            if (finalCapacity != initialCapacity) {
+                throw new IllegalStateException(String.format(
+                        "%s grew while it was built, to load factor %.3f rather than %s",
+                        setClassName, (double) templateSize / finalCapacity, loadFactor));
+            }
             // now generate a random sample of BATCH_SIZE test data that are not present in the hash map
             this.newTestData = Arrays.copyOfRange(testData, testData.length - BATCH_SIZE, testData.length);
             shuffleArray(testData, 0, templateSize);
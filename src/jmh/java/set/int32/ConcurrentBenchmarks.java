@@ -0,0 +1,174 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.PhiIntHasher;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the scaling of {@link ConcurrentBLPIntHashSet} with the number of
+ * threads, against a {@link BLPIntHashSet} guarded by a single lock. Each
+ * operation picks a random element from a universe of twice the initial size
+ * of the table, and then adds or removes it (with equal probability) {@code
+ * writePercent} percent of the time, and looks it up otherwise. Adds and
+ * removes pull the size toward its initial value, so the load factor stays
+ * roughly constant. JMH reports the total throughput of all threads.
+ */
+public class ConcurrentBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    private static class SynchronizedIntSet implements IntSet {
+        private final IntSet set;
+
+        SynchronizedIntSet(IntSet set) {
+            this.set = set;
+        }
+
+        public synchronized int size() {
+            return this.set.size();
+        }
+
+        public synchronized boolean contains(int value) {
+            return this.set.contains(value);
+        }
+
+        public synchronized boolean add(int element) {
+            return this.set.add(element);
+        }
+
+        public synchronized boolean remove(int value) {
+            return this.set.remove(value);
+        }
+
+        public synchronized void clear() {
+            this.set.clear();
+        }
+
+        public synchronized IntSet cloneSet() throws CloneNotSupportedException {
+            return new SynchronizedIntSet(this.set.cloneSet());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            ConcurrentBLPIntHashSet.NAME,
+            "synchronized " + BLPIntHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        @Param({
+            "0",
+            "10",
+            "50",
+        })
+        private int writePercent;
+
+        public IntSet hashSet;
+        public int[] testData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final IntHasher hasher = new PhiIntHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            this.testData = IntStream.rangeClosed(1, 2 * setSize).map(hasher::hash).toArray();
+            // leave some headroom for the size to fluctuate, so the concurrent
+            // table never fills up and the BLPIntHashSet never grows
+            int maxEntries = setSize + setSize / 16;
+            if (setClassName.equals(ConcurrentBLPIntHashSet.NAME)) {
+                this.hashSet = new ConcurrentBLPIntHashSet(maxEntries, loadFactor);
+            } else {
+                this.hashSet = new SynchronizedIntSet(new BLPIntHashSet(maxEntries, loadFactor));
+            }
+            for (int i = 0; i < setSize; ++i) {
+                this.hashSet.add(this.testData[2 * i]);
+            }
+        }
+    }
+
+    private static boolean operate(BenchmarkState bs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int element = bs.testData[random.nextInt(bs.testData.length)];
+        int choice = random.nextInt(200);
+        if (choice < bs.writePercent) {
+            return bs.hashSet.add(element);
+        } else if (choice < 2 * bs.writePercent) {
+            return bs.hashSet.remove(element);
+        }
+        return bs.hashSet.contains(element);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public boolean measureThreads01(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(2)
+    public boolean measureThreads02(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(4)
+    public boolean measureThreads04(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(8)
+    public boolean measureThreads08(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public boolean measureThreads16(BenchmarkState bs) {
+        return operate(bs);
+    }
+}
@@ -0,0 +1,107 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.PhiIntHasher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.lang.reflect.InvocationTargetException;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of individual insertions into a table which grows
+ * from {@code INITIAL_SIZE} to {@code setSize} elements, using {@link
+ * IncrementalIntHashSet} either with its default (minimal) number of
+ * buckets migrated per operation, or migrating the whole table at once (as
+ * a conventional resize would). The {@code p1.00} percentile reported for
+ * {@code measureAdd} is the maximum latency of a single insertion.
+ */
+public class GrowthBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int INITIAL_SIZE = 1024;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPIntHashSet.NAME,
+            LCFSIntHashSet.NAME,
+            LPIntHashSet.NAME,
+            RHIntHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "incremental",
+            "blocking",
+        })
+        private String resizeMode;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.75",
+            "0.9",
+        })
+        private double loadFactor;
+
+        public int[] testData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final IntHasher hasher = new PhiIntHasher();
+
+        public IncrementalIntHashSet newSet() throws ClassNotFoundException, InstantiationException,
+                IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+            LPIntHashSet table = (LPIntHashSet) Class.forName(setClassName)
+                    .getDeclaredConstructor(int.class, double.class)
+                    .newInstance(INITIAL_SIZE, loadFactor);
+            if (resizeMode.equals("blocking")) {
+                return new IncrementalIntHashSet(table, Integer.MAX_VALUE);
+            }
+            return new IncrementalIntHashSet(table);
+        }
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            this.testData = IntStream.rangeClosed(1, setSize).map(hasher::hash).toArray();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public IncrementalIntHashSet hashSet;
+        public int testDataIndex;
+
+        @Setup(Level.Iteration)
+        public void initIterationState(BenchmarkState bs) throws ClassNotFoundException, InstantiationException,
+                IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+            this.hashSet = bs.newSet();
+            this.testDataIndex = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureAdd(BenchmarkState bs, IterationState is) throws ClassNotFoundException,
+            InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        if (is.testDataIndex == bs.testData.length) {
+            // start over with a small table, so that every sample is taken during growth
+            is.hashSet = bs.newSet();
+            is.testDataIndex = 0;
+        }
+        boolean added = is.hashSet.add(bs.testData[is.testDataIndex++]);
+        assert added;
+        return added;
+    }
+}
@@ -0,0 +1,149 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.lang.reflect.InvocationTargetException;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares one-at-a-time lookups with the batched {@code contains(long[],
+ * int, int, long[])} lookups, which overlap the cache misses of several
+ * lookups. Each invocation queries the next {@code QUERY_COUNT} keys from a
+ * pool of {@code POOL_SIZE} keys (half present and half absent, in random
+ * order), in batches of {@code batchSize}, and the pool is large enough that
+ * the buckets it touches don't stay in cache. Results are reported per key
+ * (so {@code measureContains}, which ignores {@code batchSize}, should report
+ * the same result for every batch size).
+ */
+public class BatchBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int QUERY_COUNT = 4096;
+    private static final int POOL_SIZE = 1 << 20;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+            OffHeapBLPLongHashSet.NAME,
+            SwissLongHashSet.NAME,
+            CuckooLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+            "100000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        @Param({
+            "1",
+            "16",
+            "256",
+            "4096",
+        })
+        private int batchSize;
+
+        public LongSet hashSet;
+        public long[] queries;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            long[] testData = LongStream.rangeClosed(1, setSize + POOL_SIZE / 2).map(hasher::hash).toArray();
+            this.hashSet = (LongSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            for (int i = 0; i < setSize; ++i) {
+                this.hashSet.add(testData[i]);
+            }
+            // the elements are a random permutation, so alternating between a
+            // prefix of the elements and the elements never added gives a random
+            // sample of present and absent keys, in no particular order
+            this.queries = new long[POOL_SIZE];
+            for (int i = 0; i < POOL_SIZE / 2; ++i) {
+                this.queries[2 * i] = testData[i % setSize];
+                this.queries[2 * i + 1] = testData[setSize + i];
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void destroyBenchmarkState() throws Exception {
+            if (this.hashSet instanceof AutoCloseable) {
+                ((AutoCloseable) this.hashSet).close();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public int queryIndex;
+        public long[] resultBits = new long[QUERY_COUNT / 64];
+
+        // return the start of the next QUERY_COUNT queries in the pool
+        public int nextQueries() {
+            int ret = this.queryIndex;
+            this.queryIndex = (this.queryIndex + QUERY_COUNT) % POOL_SIZE;
+            return ret;
+        }
+
+        @Setup(Level.Iteration)
+        public void initIterationState() {
+            this.queryIndex = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int measureContains(BenchmarkState bs, IterationState is) {
+        int start = is.nextQueries();
+        int found = 0;
+        for (int i = start; i < start + QUERY_COUNT; ++i) {
+            if (bs.hashSet.contains(bs.queries[i])) {
+                ++found;
+            }
+        }
+        assert found == QUERY_COUNT / 2;
+        return found;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(QUERY_COUNT)
+    public int measureBatchContains(BenchmarkState bs, IterationState is) {
+        int start = is.nextQueries();
+        int found = 0;
+        for (int i = start; i < start + QUERY_COUNT; i += bs.batchSize) {
+            // every batch stores its results at the start of the same bitmap
+            found += bs.hashSet.contains(bs.queries, i, i + bs.batchSize, is.resultBits);
+        }
+        assert found == QUERY_COUNT / 2;
+        return found;
+    }
+}
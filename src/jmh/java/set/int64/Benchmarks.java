@@ -9,6 +9,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.LongStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 import org.openjdk.jmh.annotations.*;
 
@@ -43,6 +44,16 @@ public class Benchmarks {
             LCFSLongHashSet.NAME,
             RHLongHashSet.NAME,
             BLPLongHashSet.NAME,
+            BucketizedBLPLongHashSet.NAME,
+            OffHeapLPLongHashSet.NAME,
+            OffHeapRHLongHashSet.NAME,
+            OffHeapBLPLongHashSet.NAME,
+            QuotientedBLPLongHashSet.NAME,
+            SwissLongHashSet.NAME,
+            CuckooLongHashSet.NAME,
+            HopscotchLongHashSet.NAME,
+            GraveyardLongHashSet.NAME,
+            OrderedLPLongHashSet.NAME,
         })
         private String setClassName;
 
@@ -83,14 +94,37 @@ public class Benchmarks {
             int templateSize = testData.length - BATCH_SIZE;
             this.hashSetTemplate = (LongSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
                     .newInstance(setSize, loadFactor);
+            Method capacity = this.hashSetTemplate.getClass().getMethod("capacity");
+            int initialCapacity = (int) capacity.invoke(this.hashSetTemplate);
             for (int i = 0; i < templateSize; ++i) {
                 this.hashSetTemplate.add(testData[i]);
             }
+            // Not every table can hold every load factor: a hopscotch table
+            // can't keep every element within 32 buckets of its preferred bucket
+            // at high load factors (from 0.9, for 100K elements or more), and a
+            // cuckoo table runs out of room at 0.99, so they double while the
+            // template is built, and would be measured at about half the load
+            // of the other tables. JMH can't exclude combinations of parameters,
+            // so we reject those here, reporting the load factor the table
+            // actually reached, and JMH goes on to the next combination.
+            int finalCapacity = (int) capacity.invoke(this.hashSetTemplate);
+            if (finalCapacity != initialCapacity) {
+                throw new IllegalStateException(String.format(
+                        "%s grew while it was built, to load factor %.3f rather than %s",
+                        setClassName, (double) templateSize / finalCapacity, loadFactor));
+            }
             // now generate a random sample of BATCH_SIZE test data that are not present in the hash map
             this.newTestData = Arrays.copyOfRange(testData, testData.length - BATCH_SIZE, testData.length);
             shuffleArray(testData, 0, templateSize);
             this.oldTestData = Arrays.copyOfRange(testData, 0, BATCH_SIZE);
         }
+
+        @TearDown(Level.Trial)
+        public void destroyBenchmarkState() throws Exception {
+            if (this.hashSetTemplate instanceof AutoCloseable) {
+                ((AutoCloseable) this.hashSetTemplate).close();
+            }
+        }
     }
 
     @State(Scope.Thread)
@@ -117,8 +151,12 @@ public class Benchmarks {
         }
 
         @TearDown(Level.Iteration)
-        public void destroyIterationState() {
+        public void destroyIterationState() throws Exception {
             this.hashSet.clear();
+            // release off-heap memory now, rather than waiting for the GC
+            if (this.hashSet instanceof AutoCloseable) {
+                ((AutoCloseable) this.hashSet).close();
+            }
             assert this.testDataIndex <= BATCH_SIZE;
         }
     }
@@ -0,0 +1,75 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares building a {@link BLPLongHashSet} from an array of keys with
+ * {@link BLPLongHashSet#bulkLoad(long[], double)} against adding the keys one
+ * at a time (in random order, as in the setup of {@link Benchmarks}), to a
+ * table presized for all of them.
+ */
+public class BulkLoadBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            "1000000",
+            "10000000",
+            "100000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+            "0.99",
+        })
+        private double loadFactor;
+
+        public long[] keys;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            this.keys = LongStream.rangeClosed(1, setSize).map(hasher::hash).toArray();
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureBulkLoad(BenchmarkState bs) {
+        LongSet set = BLPLongHashSet.bulkLoad(bs.keys, bs.loadFactor);
+        assert set.size() == bs.setSize;
+        return set;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureAddLoop(BenchmarkState bs) {
+        LongSet set = new BLPLongHashSet(bs.setSize, bs.loadFactor);
+        for (long key : bs.keys) {
+            set.add(key);
+        }
+        assert set.size() == bs.setSize;
+        return set;
+    }
+}
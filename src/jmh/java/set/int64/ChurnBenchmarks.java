@@ -0,0 +1,88 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the steady-state throughput of the graveyard table, which deletes
+ * by leaving tombstones and rebuilds itself periodically, with the
+ * tombstone-free linear probing tables, which shift clusters left on every
+ * deletion, under an endless stream of deletions and insertions at a fixed
+ * size. Each operation deletes the oldest element and inserts a new one, so
+ * the table keeps exactly {@code setSize} elements, and since the keys are
+ * hashed, the deletions are spread uniformly over the table. The table is
+ * built once per trial and churned through all the iterations, so the
+ * warmup iterations also bring the graveyard table to its steady state.
+ */
+public class ChurnBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+            GraveyardLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.9",
+            "0.95",
+            "0.99",
+        })
+        private double loadFactor;
+
+        public LongSet hashSet;
+        // the key to delete next is hasher.hash(next - setSize)
+        public long next;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            this.hashSet = (LongSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            for (long key = 1; key <= setSize; ++key) {
+                this.hashSet.add(hasher.hash(key));
+            }
+            this.next = setSize + 1;
+        }
+
+        public boolean churn() {
+            boolean removed = this.hashSet.remove(hasher.hash(this.next - setSize));
+            boolean added = this.hashSet.add(hasher.hash(this.next));
+            ++this.next;
+            return removed & added;
+        }
+    }
+
+    // each invocation deletes one element and inserts another
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public boolean measureChurn(BenchmarkState bs) {
+        boolean churned = bs.churn();
+        assert churned;
+        return churned;
+    }
+}
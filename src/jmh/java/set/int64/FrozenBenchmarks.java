@@ -0,0 +1,134 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares lookups in a {@link BLPLongHashSet} with lookups in a {@link
+ * FrozenLongSet} snapshot of it. The mutable table is built at {@code
+ * loadFactor}, and the snapshot is packed to {@code frozenLoadFactor} (which
+ * has no effect on the mutable table). The {@code bytesPerKey} counter is the size of the backing array of the table
+ * being queried divided by its number of elements (the rest of either object
+ * is negligible), so it is reported unchanged by every iteration.
+ */
+public class FrozenBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int BATCH_SIZE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPLongHashSet.NAME,
+            FrozenLongSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "100000",
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.75",
+            "0.9",
+            "0.99",
+        })
+        private double loadFactor;
+
+        @Param({
+            "0.99",
+            "1.0",
+        })
+        private double frozenLoadFactor;
+
+        public LongSet hashSet;
+        public int capacity;
+        public long[] newTestData;
+        public long[] oldTestData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            long[] testData = LongStream.rangeClosed(1, setSize + BATCH_SIZE).map(hasher::hash).toArray();
+            BLPLongHashSet set = new BLPLongHashSet(setSize, loadFactor);
+            for (int i = 0; i < setSize; ++i) {
+                set.add(testData[i]);
+            }
+            if (setClassName.equals(FrozenLongSet.NAME)) {
+                FrozenLongSet frozen = set.freeze(frozenLoadFactor);
+                this.hashSet = frozen;
+                this.capacity = frozen.capacity();
+            } else {
+                this.hashSet = set;
+                this.capacity = set.capacity();
+            }
+            // the elements are a random permutation, so any BATCH_SIZE of them are a random sample
+            this.oldTestData = Arrays.copyOfRange(testData, 0, BATCH_SIZE);
+            this.newTestData = Arrays.copyOfRange(testData, setSize, setSize + BATCH_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public int testDataIndex;
+
+        public int getDataIndex() {
+            int ret = this.testDataIndex;
+            this.testDataIndex = (this.testDataIndex + 1) % BATCH_SIZE;
+            return ret;
+        }
+
+        @Setup(Level.Iteration)
+        public void initIterationState() {
+            this.testDataIndex = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MemoryCounter {
+        public double bytesPerKey;
+
+        @Setup(Level.Iteration)
+        public void initMemoryCounter(BenchmarkState bs) {
+            this.bytesPerKey = (double) Long.BYTES * bs.capacity / bs.setSize;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureSuccessfulContains(BenchmarkState bs, IterationState is, MemoryCounter counter) {
+        boolean present = bs.hashSet.contains(bs.oldTestData[is.getDataIndex()]);
+        assert present;
+        return present;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureUnsuccessfulContains(BenchmarkState bs, IterationState is, MemoryCounter counter) {
+        boolean present = bs.hashSet.contains(bs.newTestData[is.getDataIndex()]);
+        assert !present;
+        return present;
+    }
+}
@@ -0,0 +1,152 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the throughput of scanning every element of a table, in keys per
+ * second: sequentially with {@code forEach()} and with a {@link LongCursor},
+ * and in parallel with a {@code parallelStream()} running in a pool of
+ * {@code threads} threads, which splits the bucket array between them.
+ */
+public class IterationBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+            OffHeapBLPLongHashSet.NAME,
+            QuotientedBLPLongHashSet.NAME,
+            SwissLongHashSet.NAME,
+            CuckooLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+            "100000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        public LongSet hashSet;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            this.hashSet = (LongSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            for (int i = 1; i <= setSize; ++i) {
+                this.hashSet.add(hasher.hash(i));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void destroyBenchmarkState() throws Exception {
+            if (this.hashSet instanceof AutoCloseable) {
+                ((AutoCloseable) this.hashSet).close();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PoolState {
+        @Param({
+            "1",
+            "2",
+            "4",
+            "8",
+            "16",
+        })
+        private int threads;
+
+        public ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void initPoolState() {
+            this.pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void destroyPoolState() {
+            this.pool.shutdown();
+        }
+    }
+
+    // reported by JMH as a rate, in keys per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class KeyCounter {
+        public long keys;
+
+        @Setup(Level.Iteration)
+        public void initKeyCounter() {
+            this.keys = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long measureForEach(BenchmarkState bs, KeyCounter counter) {
+        long[] sum = new long[1];
+        bs.hashSet.forEach(x -> sum[0] += x);
+        counter.keys += bs.setSize;
+        return sum[0];
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long measureCursor(BenchmarkState bs, KeyCounter counter) {
+        long sum = 0;
+        LongCursor cursor = bs.hashSet.cursor();
+        while (cursor.advance()) {
+            sum += cursor.key();
+        }
+        counter.keys += bs.setSize;
+        return sum;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long measureParallelStream(BenchmarkState bs, PoolState ps, KeyCounter counter)
+            throws InterruptedException, ExecutionException {
+        // a parallel stream runs in the pool of the task which starts it
+        long sum = ps.pool.submit(() -> bs.hashSet.parallelStream().sum()).get();
+        counter.keys += bs.setSize;
+        return sum;
+    }
+}
@@ -0,0 +1,118 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of getting from a stored table to the answers of
+ * {@code lookupCount} queries, either by opening a {@link
+ * MappedBLPLongHashSet} file (which doesn't touch any buckets until they are
+ * probed), or by rebuilding an {@link OffHeapBLPLongHashSet} from an array of
+ * its elements. Each invocation opens the file afresh, so the JVM has no
+ * mapping of it, but its pages may still be in the OS page cache; to measure
+ * opening from disk, drop the page cache between iterations (e.g., by writing
+ * to {@code /proc/sys/vm/drop_caches} on Linux).
+ */
+public class MappedBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 20;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            "100000",
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+            "0.99",
+        })
+        private double loadFactor;
+
+        @Param({
+            "1",
+            "1000",
+        })
+        private int lookupCount;
+
+        public Path path;
+        public long[] keys;
+        public long[] lookupKeys;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws IOException {
+            this.keys = LongStream.rangeClosed(1, setSize).map(hasher::hash).toArray();
+            // keys are a random permutation, so a prefix is a random sample
+            this.lookupKeys = Arrays.copyOf(this.keys, lookupCount);
+            this.path = Files.createTempFile("blp", ".set");
+            try (MappedBLPLongHashSet set = MappedBLPLongHashSet.create(this.path, setSize, loadFactor)) {
+                for (long key : this.keys) {
+                    set.add(key);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void destroyBenchmarkState() throws IOException {
+            Files.delete(this.path);
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int measureOpenAndLookup(BenchmarkState bs) throws IOException {
+        int found = 0;
+        try (MappedBLPLongHashSet set = MappedBLPLongHashSet.open(bs.path)) {
+            for (long key : bs.lookupKeys) {
+                if (set.contains(key)) {
+                    ++found;
+                }
+            }
+        }
+        assert found == bs.lookupCount;
+        return found;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int measureRebuildAndLookup(BenchmarkState bs) {
+        int found = 0;
+        try (OffHeapBLPLongHashSet set = new OffHeapBLPLongHashSet(bs.setSize, bs.loadFactor)) {
+            for (long key : bs.keys) {
+                set.add(key);
+            }
+            for (long key : bs.lookupKeys) {
+                if (set.contains(key)) {
+                    ++found;
+                }
+            }
+        }
+        assert found == bs.lookupCount;
+        return found;
+    }
+}
@@ -0,0 +1,144 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the linear probing tables with and without an occupancy bitmap.
+ * The bitmap should speed up inserts at high load factors (0.95 and 0.99),
+ * where the tables which search for an empty bucket scan long clusters, and
+ * iteration and {@code clear()} at lower load factors (0.5), where they can
+ * skip runs of empty buckets. Inserts build a table presized for {@code
+ * setSize} elements from scratch. A hopscotch table can't hold 0.95 or 0.99
+ * with a million elements or more, and doubles during the build, so at those
+ * load factors its time includes the doubling, and it ends up at about half
+ * the load of the other tables.
+ */
+public class OccupancyBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            LCFSLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+            HopscotchLongHashSet.NAME,
+            OrderedLPLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.95",
+            "0.99",
+        })
+        private double loadFactor;
+
+        @Param({
+            "false",
+            "true",
+        })
+        private boolean occupancyBitmap;
+
+        public long[] keys;
+        public LPLongHashSet hashSetTemplate;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        public LPLongHashSet newSet() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            return (LPLongHashSet) Class.forName(setClassName)
+                .getDeclaredConstructor(int.class, double.class, LongHasher.class, boolean.class)
+                .newInstance(setSize, loadFactor, new Murmur3LongHasher(), occupancyBitmap);
+        }
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            this.keys = LongStream.rangeClosed(1, setSize).map(hasher::hash).toArray();
+            this.hashSetTemplate = newSet();
+            for (long key : this.keys) {
+                this.hashSetTemplate.add(key);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClearState {
+        public LongSet hashSet;
+
+        @Setup(Level.Invocation)
+        public void initClearState(BenchmarkState bs) throws CloneNotSupportedException {
+            this.hashSet = bs.hashSetTemplate.cloneSet();
+        }
+    }
+
+    // reported by JMH as a rate, in keys per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class KeyCounter {
+        public long keys;
+
+        @Setup(Level.Iteration)
+        public void initKeyCounter() {
+            this.keys = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureInsert(BenchmarkState bs) throws ClassNotFoundException, InstantiationException,
+            IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        LongSet set = bs.newSet();
+        for (long key : bs.keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long measureForEach(BenchmarkState bs, KeyCounter counter) {
+        long[] sum = new long[1];
+        bs.hashSetTemplate.forEach(x -> sum[0] += x);
+        counter.keys += bs.setSize;
+        return sum[0];
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureClear(ClearState cs) {
+        cs.hashSet.clear();
+        return cs.hashSet;
+    }
+}
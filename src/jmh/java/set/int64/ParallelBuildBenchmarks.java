@@ -0,0 +1,90 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the time to build a table from an array of keys with {@link
+ * ParallelBulkLoader}, using a pool of {@code threads} threads. (With one
+ * thread, this is a sequential bulk load, for comparison.)
+ */
+public class ParallelBuildBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "10000000",
+            "100000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        @Param({
+            "1",
+            "2",
+            "4",
+            "8",
+            "16",
+        })
+        private int threads;
+
+        public long[] keys;
+        public ForkJoinPool pool;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            this.keys = LongStream.rangeClosed(1, setSize).map(hasher::hash).toArray();
+            this.pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void destroyBenchmarkState() {
+            this.pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureBuild(BenchmarkState bs) {
+        LongSet set;
+        LongHasher hasher = new Murmur3LongHasher();
+        if (bs.setClassName.equals(LPLongHashSet.NAME)) {
+            set = ParallelBulkLoader.loadLP(bs.keys, bs.loadFactor, hasher, bs.pool);
+        } else if (bs.setClassName.equals(RHLongHashSet.NAME)) {
+            set = ParallelBulkLoader.loadRH(bs.keys, bs.loadFactor, hasher, bs.pool);
+        } else {
+            set = ParallelBulkLoader.loadBLP(bs.keys, bs.loadFactor, hasher, bs.pool);
+        }
+        assert set.size() == bs.setSize;
+        return set;
+    }
+}
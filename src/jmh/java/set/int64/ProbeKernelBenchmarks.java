@@ -0,0 +1,111 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the scalar and blocked probe kernels of the linear probing tables
+ * at high load factors, where clusters are long. Each invocation looks up
+ * {@code LOOKUPS} keys which are present in the table, or {@code LOOKUPS}
+ * keys which are absent.
+ */
+public class ProbeKernelBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int LOOKUPS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.9",
+            "0.95",
+            "0.99",
+        })
+        private double loadFactor;
+
+        @Param({
+            "SCALAR",
+            "BLOCKED",
+        })
+        private ProbeKernel probeKernel;
+
+        public LPLongHashSet hashSet;
+        public long[] presentKeys;
+        public long[] absentKeys;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            long[] testData = LongStream.rangeClosed(1, setSize + LOOKUPS).map(hasher::hash).toArray();
+            this.hashSet = (LPLongHashSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            this.hashSet.setProbeKernel(probeKernel);
+            for (int i = 0; i < setSize; ++i) {
+                this.hashSet.add(testData[i]);
+            }
+            // the test data are already in random order
+            this.presentKeys = Arrays.copyOfRange(testData, 0, LOOKUPS);
+            this.absentKeys = Arrays.copyOfRange(testData, setSize, setSize + LOOKUPS);
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(LOOKUPS)
+    public int measureSuccessfulContains(BenchmarkState bs) {
+        int count = 0;
+        for (long key : bs.presentKeys) {
+            if (bs.hashSet.contains(key)) {
+                count += 1;
+            }
+        }
+        assert count == LOOKUPS;
+        return count;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(LOOKUPS)
+    public int measureUnsuccessfulContains(BenchmarkState bs) {
+        int count = 0;
+        for (long key : bs.absentKeys) {
+            if (bs.hashSet.contains(key)) {
+                count += 1;
+            }
+        }
+        assert count == 0;
+        return count;
+    }
+}
@@ -0,0 +1,156 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares a {@link QuotientedBLPLongHashSet} with a {@link BLPLongHashSet}
+ * holding the same elements at the same load factor, to weigh the memory
+ * saved by packing the slots against the cost of decoding them. The {@code
+ * bytesPerKey} counter is the size of the table's slots divided by its number
+ * of elements (the overflow array of the quotiented table holds a fraction of
+ * a percent of the elements at these load factors, so it is left out). It is
+ * reported unchanged by every iteration of the lookup benchmarks (JMH only
+ * reports counters in the averaged modes).
+ */
+public class QuotientedBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    private static final int BATCH_SIZE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPLongHashSet.NAME,
+            QuotientedBLPLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+            "100000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.75",
+            "0.9",
+            "0.95",
+        })
+        private double loadFactor;
+
+        public LongSet hashSetTemplate;
+        public double bytesPerKey;
+        public long[] newTestData;
+        public long[] oldTestData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            long[] testData = LongStream.rangeClosed(1, setSize + BATCH_SIZE).map(hasher::hash).toArray();
+            if (setClassName.equals(QuotientedBLPLongHashSet.NAME)) {
+                QuotientedBLPLongHashSet set = new QuotientedBLPLongHashSet(setSize, loadFactor);
+                this.hashSetTemplate = set;
+                this.bytesPerKey = (double) set.slotBits() * set.capacity() / Byte.SIZE / setSize;
+            } else {
+                BLPLongHashSet set = new BLPLongHashSet(setSize, loadFactor);
+                this.hashSetTemplate = set;
+                this.bytesPerKey = (double) Long.BYTES * set.capacity() / setSize;
+            }
+            // leave room for BATCH_SIZE additions without resizing
+            for (int i = 0; i < setSize - BATCH_SIZE; ++i) {
+                this.hashSetTemplate.add(testData[i]);
+            }
+            // the elements are a random permutation, so any BATCH_SIZE of them are a random sample
+            this.oldTestData = Arrays.copyOfRange(testData, 0, BATCH_SIZE);
+            this.newTestData = Arrays.copyOfRange(testData, setSize, setSize + BATCH_SIZE);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IterationState {
+        public LongSet hashSet;
+        public int testDataIndex;
+
+        public int getDataIndex() {
+            int ret = this.testDataIndex;
+            this.testDataIndex = (this.testDataIndex + 1) % BATCH_SIZE;
+            return ret;
+        }
+
+        @Setup(Level.Iteration)
+        public void initIterationState(BenchmarkState bs) throws CloneNotSupportedException {
+            this.hashSet = bs.hashSetTemplate.cloneSet();
+            this.testDataIndex = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MemoryCounter {
+        public double bytesPerKey;
+
+        @Setup(Level.Iteration)
+        public void initMemoryCounter(BenchmarkState bs) {
+            this.bytesPerKey = bs.bytesPerKey;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean measureAdd(BenchmarkState bs, IterationState is) {
+        boolean notPresent = is.hashSet.add(bs.newTestData[is.getDataIndex()]);
+        assert notPresent;
+        return notPresent;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS, batchSize = BATCH_SIZE)
+    @Measurement(iterations = ITERATIONS, batchSize = BATCH_SIZE)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean measureRemove(BenchmarkState bs, IterationState is) {
+        boolean present = is.hashSet.remove(bs.oldTestData[is.getDataIndex()]);
+        assert present;
+        return present;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureSuccessfulContains(BenchmarkState bs, IterationState is, MemoryCounter counter) {
+        boolean present = is.hashSet.contains(bs.oldTestData[is.getDataIndex()]);
+        assert present;
+        return present;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureUnsuccessfulContains(BenchmarkState bs, IterationState is, MemoryCounter counter) {
+        boolean present = is.hashSet.contains(bs.newTestData[is.getDataIndex()]);
+        assert !present;
+        return present;
+    }
+}
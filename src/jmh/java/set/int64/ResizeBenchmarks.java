@@ -0,0 +1,115 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.TimeUnit;
+import java.lang.reflect.InvocationTargetException;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the throughput of doubling a full table, either with the table's
+ * own {@code resize()} (a single sequential pass for BLP, reinsertion for the
+ * other variants), or by naively reinserting every element into a new table.
+ * The {@code bytes} counter is the number of bytes of backing array read and
+ * written per second, so dividing it by 10^9 gives the throughput in GB/s.
+ */
+public class ResizeBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPLongHashSet.NAME,
+            LCFSLongHashSet.NAME,
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "resize",
+            "reinsert",
+        })
+        private String resizeMethod;
+
+        @Param({
+            "100000",
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.75",
+            "0.9",
+            "0.99",
+        })
+        private double loadFactor;
+
+        public LPLongHashSet hashSetTemplate;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            this.hashSetTemplate = (LPLongHashSet) Class.forName(setClassName)
+                    .getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            for (long i = 1; i <= setSize; ++i) {
+                this.hashSetTemplate.add(hasher.hash(i));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InvocationState {
+        public LPLongHashSet hashSet;
+
+        @Setup(Level.Invocation)
+        public void initInvocationState(BenchmarkState bs) throws CloneNotSupportedException {
+            this.hashSet = (LPLongHashSet) bs.hashSetTemplate.cloneSet();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ByteCounter {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public LPLongHashSet measureGrow(BenchmarkState bs, InvocationState is, ByteCounter counter) {
+        LPLongHashSet set = is.hashSet;
+        int oldCapacity = set.capacity();
+        if (bs.resizeMethod.equals("resize")) {
+            set.resize(2 * set.maxEntries);
+        } else {
+            LPLongHashSet newSet = set.newEmptySet(2 * set.maxEntries);
+            for (long hash : set.arr) {
+                if (hash != 0) {
+                    newSet.addHash(hash);
+                }
+            }
+            set = newSet;
+        }
+        counter.bytes += Long.BYTES * ((long) oldCapacity + set.capacity());
+        return set;
+    }
+}
@@ -0,0 +1,166 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the merge-based set operations of {@link BLPLongHashSet} with the
+ * usual approach of iterating over the buckets of one table and probing the
+ * other for each element. The two tables have {@code setSize} elements each,
+ * and share {@code overlapPercent} percent of them.
+ */
+public class SetAlgebraBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            "100000",
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        @Param({
+            "10",
+            "50",
+            "90",
+        })
+        private int overlapPercent;
+
+        public BLPLongHashSet left;
+        public BLPLongHashSet right;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() {
+            int offset = (int) ((long) setSize * (100 - overlapPercent) / 100);
+            long[] testData = LongStream.rangeClosed(1, offset + setSize).map(hasher::hash).toArray();
+            this.left = new BLPLongHashSet(setSize, loadFactor);
+            this.right = new BLPLongHashSet(setSize, loadFactor);
+            for (int i = 0; i < setSize; ++i) {
+                this.left.add(testData[i]);
+                this.right.add(testData[offset + i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int measureIntersectionSizeMerge(BenchmarkState bs) {
+        return bs.left.intersectionSize(bs.right);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int measureIntersectionSizeProbe(BenchmarkState bs) {
+        int count = 0;
+        for (long hash : bs.left.arr) {
+            if (hash != 0 && bs.right.containsHash(hash)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureIntersectMerge(BenchmarkState bs) {
+        return bs.left.intersect(bs.right);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureIntersectProbe(BenchmarkState bs) {
+        BLPLongHashSet result = new BLPLongHashSet(bs.setSize, bs.loadFactor);
+        for (long hash : bs.left.arr) {
+            if (hash != 0 && bs.right.containsHash(hash)) {
+                result.add(bs.left.unhash(hash));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureUnionMerge(BenchmarkState bs) {
+        return bs.left.union(bs.right);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureUnionProbe(BenchmarkState bs) throws CloneNotSupportedException {
+        LongSet result = bs.left.cloneSet();
+        for (long hash : bs.right.arr) {
+            if (hash != 0) {
+                result.add(bs.right.unhash(hash));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureSubtractMerge(BenchmarkState bs) {
+        return bs.left.subtract(bs.right);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LongSet measureSubtractProbe(BenchmarkState bs) {
+        BLPLongHashSet result = new BLPLongHashSet(bs.setSize, bs.loadFactor);
+        for (long hash : bs.left.arr) {
+            if (hash != 0 && !bs.right.containsHash(hash)) {
+                result.add(bs.left.unhash(hash));
+            }
+        }
+        return result;
+    }
+}
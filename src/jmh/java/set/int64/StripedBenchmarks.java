@@ -0,0 +1,171 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.lang.reflect.InvocationTargetException;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the scaling of {@link StripedLongSet} with the number of threads,
+ * wrapping each of the linear probing tables. The workload is the same as in
+ * {@link ConcurrentBenchmarks}: each operation picks a random element from a
+ * universe of twice the initial size of the table, and then adds or removes
+ * it (with equal probability) {@code writePercent} percent of the time, and
+ * looks it up otherwise, so {@code writePercent} selects a read-mostly or a
+ * write-heavy mix. JMH reports the total throughput of all threads.
+ */
+public class StripedBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            BLPLongHashSet.NAME,
+            LCFSLongHashSet.NAME,
+            LPLongHashSet.NAME,
+            RHLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.5",
+            "0.9",
+        })
+        private double loadFactor;
+
+        @Param({
+            "5",
+            "50",
+        })
+        private int writePercent;
+
+        @Param({
+            "64",
+            "1024",
+        })
+        private int stripeCount;
+
+        public StripedLongSet hashSet;
+        public long[] testData;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException,
+                IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+            this.testData = LongStream.rangeClosed(1, 2 * setSize).map(hasher::hash).toArray();
+            // leave some headroom for the size to fluctuate, so the table never grows
+            int maxEntries = setSize + setSize / 16;
+            LPLongHashSet table = (LPLongHashSet) Class.forName(setClassName)
+                    .getDeclaredConstructor(int.class, double.class)
+                    .newInstance(maxEntries, loadFactor);
+            this.hashSet = new StripedLongSet(table, stripeCount);
+            for (int i = 0; i < setSize; ++i) {
+                this.hashSet.add(this.testData[2 * i]);
+            }
+        }
+    }
+
+    private static boolean operate(BenchmarkState bs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long element = bs.testData[random.nextInt(bs.testData.length)];
+        int choice = random.nextInt(200);
+        if (choice < bs.writePercent) {
+            return bs.hashSet.add(element);
+        } else if (choice < 2 * bs.writePercent) {
+            return bs.hashSet.remove(element);
+        }
+        return bs.hashSet.contains(element);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(1)
+    public boolean measureThreads01(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(2)
+    public boolean measureThreads02(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(4)
+    public boolean measureThreads04(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(8)
+    public boolean measureThreads08(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(16)
+    public boolean measureThreads16(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(32)
+    public boolean measureThreads32(BenchmarkState bs) {
+        return operate(bs);
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(64)
+    public boolean measureThreads64(BenchmarkState bs) {
+        return operate(bs);
+    }
+}
@@ -0,0 +1,104 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.PhiLongHasher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the latency distribution of lookups in the cuckoo table, which
+ * reads at most two buckets, with the linear probing tables, whose probe
+ * lengths grow without bound as the load factor approaches 1. JMH samples
+ * the time of individual lookups and reports percentiles, so the tail (p99,
+ * p99.9 and the maximum) is visible as well as the mean.
+ */
+public class TailLatencyBenchmarks {
+
+    private static final int FORKS = 1;
+    private static final int ITERATIONS = 5;
+    // a power of 2, so the lookup index can wrap around with a mask
+    private static final int LOOKUPS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class BenchmarkState {
+        @Param({
+            RHLongHashSet.NAME,
+            BLPLongHashSet.NAME,
+            CuckooLongHashSet.NAME,
+        })
+        private String setClassName;
+
+        @Param({
+            "1000000",
+            "10000000",
+        })
+        private int setSize;
+
+        @Param({
+            "0.9",
+            "0.95",
+            "0.99",
+        })
+        private double loadFactor;
+
+        public LongSet hashSet;
+        public long[] presentKeys;
+        public long[] absentKeys;
+        // we want a random permutation on test data, not an RNG, to avoid duplicate
+        // keys, and the Phi hash has quasi-uniform behavior on sequential integers
+        private final LongHasher hasher = new PhiLongHasher();
+
+        @Setup(Level.Trial)
+        public void initBenchmarkState() throws ClassNotFoundException, InstantiationException, IllegalAccessException,
+                NoSuchMethodException, InvocationTargetException {
+            long[] testData = LongStream.rangeClosed(1, setSize + LOOKUPS).map(hasher::hash).toArray();
+            this.hashSet = (LongSet) Class.forName(setClassName).getDeclaredConstructor(int.class, double.class)
+                    .newInstance(setSize, loadFactor);
+            for (int i = 0; i < setSize; ++i) {
+                this.hashSet.add(testData[i]);
+            }
+            // the test data are already in random order
+            this.presentKeys = Arrays.copyOfRange(testData, 0, LOOKUPS);
+            this.absentKeys = Arrays.copyOfRange(testData, setSize, setSize + LOOKUPS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IndexState {
+        public int index;
+
+        public int nextIndex() {
+            this.index = (this.index + 1) & (LOOKUPS - 1);
+            return this.index;
+        }
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureSuccessfulContains(BenchmarkState bs, IndexState is) {
+        boolean present = bs.hashSet.contains(bs.presentKeys[is.nextIndex()]);
+        assert present;
+        return present;
+    }
+
+    @Benchmark
+    @Fork(FORKS)
+    @Warmup(iterations = ITERATIONS)
+    @Measurement(iterations = ITERATIONS)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean measureUnsuccessfulContains(BenchmarkState bs, IndexState is) {
+        boolean present = bs.hashSet.contains(bs.absentKeys[is.nextIndex()]);
+        assert !present;
+        return present;
+    }
+}
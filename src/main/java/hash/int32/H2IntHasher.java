@@ -38,4 +38,15 @@ public class H2IntHasher implements IntHasher {
         // stateless
         return new H2IntHasher();
     }
+
+    // stateless, so any two instances compute the same function
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
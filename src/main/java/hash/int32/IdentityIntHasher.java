@@ -23,4 +23,15 @@ public class IdentityIntHasher implements IntHasher {
         // stateless
         return new IdentityIntHasher();
     }
+
+    // stateless, so any two instances compute the same function
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
@@ -1,7 +1,8 @@
 package hash.int32;
 
 /**
- * A 32-bit hash function.
+ * A 32-bit hash function. Hashers which compute the same function should be
+ * {@code equals()}, so that tables can check that they share one.
  *
  * @author tdbaker
  */
@@ -38,4 +38,15 @@ public class DegskiLongHasher implements LongHasher {
         // stateless
         return new DegskiLongHasher();
     }
-}
\ No newline at end of file
+
+    // stateless, so any two instances compute the same function
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+}
@@ -23,4 +23,15 @@ public class IdentityLongHasher implements LongHasher {
         // stateless
         return new IdentityLongHasher();
     }
+
+    // stateless, so any two instances compute the same function
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
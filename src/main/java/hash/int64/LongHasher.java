@@ -1,7 +1,8 @@
 package hash.int64;
 
 /**
- * A 64-bit hash function.
+ * A 64-bit hash function. Hashers which compute the same function should be
+ * {@code equals()}, so that tables can check that they share one.
  *
  * @author tdbaker
  */
@@ -68,4 +68,15 @@ public class WangLongHasher implements LongHasher {
         // stateless
         return new WangLongHasher();
     }
+
+    // stateless, so any two instances compute the same function
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
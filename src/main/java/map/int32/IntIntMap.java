@@ -0,0 +1,84 @@
+package map.int32;
+
+/**
+ * A map from 32-bit integer keys to 32-bit integer values. Since values
+ * are primitive, there is no "null" value to signal an absent key: methods
+ * which return a value return 0 for an absent key, so use {@link
+ * #containsKey(int)} or {@link #getOrDefault(int, int)} when 0 is a
+ * legitimate value.
+ *
+ * @author tdbaker
+ */
+public interface IntIntMap {
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size();
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(int key);
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public int get(int key);
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public int getOrDefault(int key, int defaultValue);
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int put(int key, int value);
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int putIfAbsent(int key, int value);
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 32-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int remove(int key);
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear();
+
+    /**
+     * Return deep copy of the table.
+     * @return the cloned table
+     */
+    public IntIntMap cloneMap() throws CloneNotSupportedException;
+
+}
@@ -0,0 +1,77 @@
+package map.int32;
+
+import hash.int32.IntHasher;
+
+
+/**
+ * A map version of {@link set.int32.LCFSIntHashSet}: a simple linear
+ * probing hash table, with a tombstone-free deletion algorithm taken from
+ * _Algorithm Design and Applications_, Section 6.3.3, and the <a
+ * href="https://doi.org/10.1016/0196-6774(89)90014-X">Last-Come-First-Served
+ * insertion heuristic</a>. Keys and values are packed into a single 64-bit
+ * bucket, as described in {@link LPIntIntHashMap}.
+ *
+ * @author tdbaker
+ */
+public class LCFSIntIntHashMap extends LPIntIntHashMap {
+    public static final String NAME = "map.int32.LCFSIntIntHashMap";
+
+    public LCFSIntIntHashMap(int maxEntries, double loadFactor, IntHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public LCFSIntIntHashMap(int maxEntries, double loadFactor) {
+        super(maxEntries, loadFactor);
+    }
+
+    public LCFSIntIntHashMap(LCFSIntIntHashMap other) {
+        super(other);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public IntIntMap cloneMap() throws CloneNotSupportedException {
+        return new LCFSIntIntHashMap(this);
+    }
+
+    @Override
+    protected void insert(long entry, int bucket) {
+        if (bucket == -1) {
+            // table full
+            throw new RuntimeException("Couldn't insert into table");
+        }
+        int preferredBucket = findPreferredBucket(hashOf(entry));
+        int emptyBucket = findFirstEmptyBucket(preferredBucket);
+        // This is the "Last-Come-First-Served" heuristic: we always insert the
+        // entry in its preferred bucket and shift the chain starting at that
+        // bucket one space to the right.
+        moveEmptyBucketToInsertionPoint(emptyBucket, preferredBucket);
+        this.arr[preferredBucket] = entry;
+    }
+
+    private int findFirstEmptyBucket(int startBucket) {
+        assert startBucket >= 0 && startBucket < this.arr.length;
+        int bucket = startBucket;
+        int probeLength = 0;
+        while (!isEmpty(bucket)) {
+            if (probeLength == this.arr.length) {
+                return -1;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+        }
+        return bucket;
+    }
+
+    private void moveEmptyBucketToInsertionPoint(int startBucket, int endBucket) {
+        assert startBucket >= 0 && startBucket < this.arr.length;
+        assert isEmpty(startBucket);
+        int bucket = startBucket;
+        while (bucket != endBucket) {
+            this.arr[bucket] = this.arr[wrap(bucket - 1)];
+            bucket = wrap(bucket - 1);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package map.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.util.Arrays;
+
+
+/**
+ * A map version of {@link set.int32.LPIntHashSet}: a simple linear probing
+ * hash table, with a tombstone-free deletion algorithm taken from
+ * _Algorithm Design and Applications_, Section 6.3.3. The keys must be
+ * 32-bit integers, which are permuted to form the hash codes (i.e., the
+ * "hash function" is reversible), so only the hash codes are stored. Each
+ * hash code is packed together with its value into a single 64-bit
+ * bucket (hash code in the high 32 bits, value in the low 32 bits), so a
+ * probe touches only one array, and every move of an entry carries its
+ * value along with it. Since hash codes are nonzero, a packed entry is
+ * nonzero whatever its value, and an empty bucket is still represented by
+ * 0. Placing the hash code in the high bits also means that unsigned
+ * comparison of packed entries orders them by hash code.
+ *
+ * @author tdbaker
+ */
+public class LPIntIntHashMap implements IntIntMap {
+    public static final String NAME = "map.int32.LPIntIntHashMap";
+
+    protected final long[] arr;
+    protected int size = 0;
+    protected final IntHasher hasher;
+
+    public LPIntIntHashMap(int maxEntries, double loadFactor, IntHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        int arrSize = (int) (maxEntries / loadFactor);
+        this.arr = new long[arrSize];
+        this.hasher = hasher;
+    }
+
+    public LPIntIntHashMap(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public LPIntIntHashMap(LPIntIntHashMap other) {
+        this.arr = other.arr.clone();
+        this.size = other.size;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public IntIntMap cloneMap() throws CloneNotSupportedException {
+        return new LPIntIntHashMap(this);
+    }
+
+    /**
+     * Query the size of the table's backing array.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(int key) {
+        int bucket = lookupByHash(hash(key));
+        if (bucket == -1 || isEmpty(bucket)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        int bucket = lookupByHash(hash(key));
+        if (bucket == -1 || isEmpty(bucket)) {
+            return defaultValue;
+        }
+        return valueAt(bucket);
+    }
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int put(int key, int value) {
+        int hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket != -1 && !isEmpty(bucket)) {
+            int oldValue = valueAt(bucket);
+            this.arr[bucket] = entry(hash, value);
+            return oldValue;
+        }
+        insert(entry(hash, value), bucket);
+        ++this.size;
+        return 0;
+    }
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int putIfAbsent(int key, int value) {
+        int hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket != -1 && !isEmpty(bucket)) {
+            return valueAt(bucket);
+        }
+        insert(entry(hash, value), bucket);
+        ++this.size;
+        return 0;
+    }
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 32-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int remove(int key) {
+        int hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket == -1 || isEmpty(bucket)) {
+            return 0;
+        }
+        int oldValue = valueAt(bucket);
+        removeBucket(bucket);
+        --this.size;
+        return oldValue;
+    }
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear() {
+        Arrays.fill(this.arr, 0);
+        this.size = 0;
+    }
+
+    protected static long entry(int hash, int value) {
+        return ((long) hash << 32) | Integer.toUnsignedLong(value);
+    }
+
+    protected static int hashOf(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    protected static int valueOf(long entry) {
+        return (int) entry;
+    }
+
+    protected boolean isEmpty(int bucket) {
+        return (this.arr[bucket] == 0);
+    }
+
+    protected int hashAt(int bucket) {
+        return hashOf(this.arr[bucket]);
+    }
+
+    protected int valueAt(int bucket) {
+        return valueOf(this.arr[bucket]);
+    }
+
+    protected int contents(int bucket) {
+        return isEmpty(bucket) ? 0 : unhash(hashAt(bucket));
+    }
+
+    // https://github.com/lemire/fastrange
+    protected int findPreferredBucket(int hash) {
+        if (hash == 0) {
+            return -1;
+        }
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(this.arr.length)) >>> 32);
+    }
+
+    protected int wrap(int pos) {
+        if (pos < 0) {
+            return this.arr.length + pos;
+        }
+        if (pos > this.arr.length - 1) {
+            return pos - this.arr.length;
+        }
+        return pos;
+    }
+
+    protected int hash(int x) {
+        return this.hasher.hash(x);
+    }
+
+    protected int unhash(int x) {
+        return this.hasher.unhash(x);
+    }
+
+    protected int lookupByHash(int hash) {
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (!isEmpty(bucket) && hashAt(bucket) != hash) {
+            if (probeLength == this.arr.length) {
+                return -1;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+        }
+        return bucket;
+    }
+
+    // Insert an entry whose key is known to be absent. The bucket argument
+    // is the result of lookupByHash(), which for plain linear probing is the
+    // empty bucket that terminated the probe (or -1 if the table is full).
+    protected void insert(long entry, int bucket) {
+        if (bucket == -1) {
+            // table full
+            throw new RuntimeException("Couldn't insert into table");
+        }
+        this.arr[bucket] = entry;
+    }
+
+    // Remove the entry in an occupied bucket, restoring the table invariants.
+    protected void removeBucket(int bucket) {
+        this.arr[bucket] = 0;
+        shift(bucket);
+    }
+
+    // uses pseudocode from _Algorithm Design and Applications_, Section 6.3.3
+    protected void shift(int startBucket) {
+        int dst = startBucket;
+        int shift = 1;
+        int src = wrap(dst + shift);
+        while (!isEmpty(src)) {
+             int preferredBucket = findPreferredBucket(hashAt(src));
+             // we can only move a key if its destination can be reached from its preferred bucket
+             boolean reachable;
+             if (src <= dst) {
+                reachable = (preferredBucket <= dst && preferredBucket > src);
+             } else {
+                reachable = (preferredBucket <= dst || preferredBucket > src);
+             }
+             if (reachable) {
+                this.arr[dst] = this.arr[src];  // fill the hole
+                this.arr[src] = 0;  // move the hole
+                dst = wrap(dst + shift);
+                shift = 1;
+             } else {
+                ++shift;
+             }
+             src = wrap(dst + shift);
+        }
+    }
+
+    protected void dump() {
+        for (int i = 0; i < this.arr.length; ++i) {
+            System.out.format("%d\t%d\t%d\t%s\t%d\n", i, contents(i), valueAt(i), Integer.toUnsignedString(hashAt(i)), findPreferredBucket(hashAt(i)));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package map.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+import set.int32.LPIntHashSet;
+
+import java.util.Arrays;
+
+
+/**
+ * A map from 32-bit integer keys to 64-bit integer values, built on {@link
+ * LPIntHashSet}. The permuted keys live in the set's probe array, exactly as
+ * they do in the set, while the values live in a separate array indexed by
+ * the same bucket. A probe therefore scans only the (narrower) keys, and a
+ * value is only touched once its key has been found. (Packing each key with
+ * its value, as {@link LPIntIntHashMap} does, would waste 32 bits of padding
+ * per bucket, since the value is wider than the key.) The set's
+ * tombstone-free deletion algorithm moves each value along with its key,
+ * through the set's {@code moveBucket()} hook.
+ *
+ * @author tdbaker
+ */
+public class LPIntLongHashMap implements IntLongMap {
+    public static final String NAME = "map.int32.LPIntLongHashMap";
+
+    private final KeyTable keys;
+
+    public LPIntLongHashMap(int maxEntries, double loadFactor, IntHasher hasher) {
+        this.keys = new KeyTable(maxEntries, loadFactor, hasher);
+    }
+
+    public LPIntLongHashMap(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public LPIntLongHashMap(LPIntLongHashMap other) {
+        this.keys = new KeyTable(other.keys);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public IntLongMap cloneMap() throws CloneNotSupportedException {
+        return new LPIntLongHashMap(this);
+    }
+
+    /**
+     * Query the size of the table's backing arrays.
+     *
+     * @return the size of the backing arrays
+     */
+    public int capacity() {
+        return this.keys.capacity();
+    }
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size() {
+        return this.keys.size();
+    }
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(int key) {
+        return this.keys.contains(key);
+    }
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public long get(int key) {
+        return this.keys.getOrDefault(key, 0);
+    }
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 32-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public long getOrDefault(int key, long defaultValue) {
+        return this.keys.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 64-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long put(int key, long value) {
+        return this.keys.put(key, value, false);
+    }
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 32-bit integer key
+     * @param value the 64-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long putIfAbsent(int key, long value) {
+        return this.keys.put(key, value, true);
+    }
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 32-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long remove(int key) {
+        return this.keys.removeKey(key);
+    }
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear() {
+        this.keys.clear();
+    }
+
+    // The set's probe array holds the keys; we only add a parallel value
+    // array, and make sure every move of a key carries its value with it.
+    // (The map can't simply extend the set, since IntSet.remove() and
+    // IntLongMap.remove() have incompatible return types.)
+    private static final class KeyTable extends LPIntHashSet {
+        private long[] values;
+
+        KeyTable(int maxEntries, double loadFactor, IntHasher hasher) {
+            super(maxEntries, loadFactor, hasher);
+            this.values = new long[capacity()];
+        }
+
+        KeyTable(KeyTable other) {
+            super(other);
+            this.values = other.values.clone();
+        }
+
+        long getOrDefault(int key, long defaultValue) {
+            int bucket = lookupByHash(hash(key));
+            if (bucket == -1 || isEmpty(bucket)) {
+                return defaultValue;
+            }
+            return this.values[bucket];
+        }
+
+        long put(int key, long value, boolean onlyIfAbsent) {
+            int hash = hash(key);
+            int bucket = lookupByHash(hash);
+            if (bucket != -1 && !isEmpty(bucket)) {
+                long oldValue = this.values[bucket];
+                if (!onlyIfAbsent) {
+                    this.values[bucket] = value;
+                }
+                return oldValue;
+            }
+            // double the table before it would exceed its load factor
+            if (this.size >= this.maxEntries) {
+                resize(2 * this.maxEntries);
+                bucket = lookupByHash(hash);
+            }
+            if (bucket == -1) {
+                // table full
+                throw new RuntimeException("Couldn't insert into table");
+            }
+            this.arr[bucket] = hash;
+            this.values[bucket] = value;
+            ++this.size;
+            return 0;
+        }
+
+        long removeKey(int key) {
+            int bucket = lookupByHash(hash(key));
+            if (bucket == -1 || isEmpty(bucket)) {
+                return 0;
+            }
+            long oldValue = this.values[bucket];
+            this.arr[bucket] = 0;
+            this.values[bucket] = 0;
+            shift(bucket);
+            --this.size;
+            shrinkIfSparse();
+            return oldValue;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            Arrays.fill(this.values, 0);
+            this.size = 0;
+        }
+
+        // the set rehashes the keys, and then we look up each key's new bucket
+        // to carry its value over
+        @Override
+        protected void resize(int maxEntries) {
+            int[] oldArr = this.arr;
+            long[] oldValues = this.values;
+            super.resize(maxEntries);
+            this.values = new long[capacity()];
+            for (int i = 0; i < oldArr.length; ++i) {
+                if (oldArr[i] != 0) {
+                    this.values[lookupByHash(oldArr[i])] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        protected void moveBucket(int src, int dst) {
+            super.moveBucket(src, dst);
+            this.values[dst] = this.values[src];
+            this.values[src] = 0;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package map.int32;
+
+import hash.int32.IntHasher;
+
+
+/**
+ * A map version of {@link set.int32.RHIntHashSet}: a simple linear probing
+ * hash table, with the <a href="https://doi.org/10.1109/SFCS.1985.48">"Robin
+ * Hood" insertion heuristic</a>, and a <a
+ * href="http://codecapsule.com/2013/11/17/robin-hood-hashing-backward-shift-deletion/">tombstone-free
+ * deletion algorithm</a>. Keys and values are packed into a single 64-bit
+ * bucket, as described in {@link LPIntIntHashMap}, so the entries swapped
+ * by the Robin Hood heuristic carry their values with them.
+ *
+ * @author tdbaker
+ */
+public class RHIntIntHashMap extends LPIntIntHashMap {
+    public static final String NAME = "map.int32.RHIntIntHashMap";
+
+    public RHIntIntHashMap(int maxEntries, double loadFactor, IntHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public RHIntIntHashMap(int maxEntries, double loadFactor) {
+        super(maxEntries, loadFactor);
+    }
+
+    public RHIntIntHashMap(RHIntIntHashMap other) {
+        super(other);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public IntIntMap cloneMap() throws CloneNotSupportedException {
+        return new RHIntIntHashMap(this);
+    }
+
+    @Override
+    protected void insert(long entry, int lookupBucket) {
+        // If the current entry is closer to its preferred bucket than
+        // the entry we're trying to insert is to its preferred bucket,
+        // swap the inserted entry into the current entry's bucket and
+        // continue probing with the swapped entry, swapping it with the
+        // next such entry, and so on, until we hit an empty bucket.
+        int bucket = findPreferredBucket(hashOf(entry));
+        int insertElemProbeDist = 0;
+        int totalProbeLen = 0;
+        while (!isEmpty(bucket)) {
+            int currElemProbeDist = probeDistance(hashAt(bucket), bucket);
+            if (currElemProbeDist < insertElemProbeDist) {
+                long currElem = this.arr[bucket];
+                this.arr[bucket] = entry;
+                entry = currElem;
+                insertElemProbeDist = currElemProbeDist;
+            }
+            bucket = wrap(bucket + 1);
+            ++insertElemProbeDist;
+            ++totalProbeLen;
+            if (totalProbeLen == this.arr.length) {
+                 throw new RuntimeException("Couldn't insert into table");
+            }
+        }
+        this.arr[bucket] = entry;
+    }
+
+    @Override
+    protected void removeBucket(int bucket) {
+        // find the chain from the deleted bucket to the nearest empty bucket
+        // or entry in its preferred bucket and shift it one space to the left
+        int endBucket = findMoveBoundary(wrap(bucket + 1));
+        int currBucket = bucket;
+        while (endBucket != wrap(currBucket + 1)) {
+            this.arr[currBucket] = this.arr[wrap(currBucket + 1)];
+            currBucket = wrap(currBucket + 1);
+        }
+        this.arr[currBucket] = 0;
+    }
+
+    @Override
+    protected int lookupByHash(int hash) {
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (!isEmpty(bucket)) {
+            if (hashAt(bucket) == hash) {
+                return bucket;
+            }
+            // If we're further from our entry's preferred bucket than the
+            // current entry's distance from its preferred bucket, we know
+            // the entry is absent, since it would have been swapped with
+            // the current entry otherwise.
+            if (probeLength == this.arr.length ||
+                probeLength > probeDistance(hashAt(bucket), bucket)) {
+                break;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+        }
+        return -1;
+    }
+
+    private int probeDistance(int hash, int bucket) {
+        int preferredBucket = findPreferredBucket(hash);
+        int distance;
+        if (preferredBucket > bucket) {  // wraparound
+            distance = this.arr.length - preferredBucket + bucket;
+        } else {
+            distance = bucket - preferredBucket;
+        }
+        return distance;
+    }
+
+    // Any bucket to the right of its preferred bucket can be shifted left,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private int findMoveBoundary(int startBucket) {
+        int bucket = startBucket;
+        assert startBucket < this.arr.length;
+        while (!isEmpty(bucket) &&
+               bucket != findPreferredBucket(hashAt(bucket))) {
+            bucket = wrap(bucket + 1);
+        }
+        return bucket;
+    }
+}
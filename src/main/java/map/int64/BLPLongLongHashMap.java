@@ -0,0 +1,458 @@
+package map.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.util.Arrays;
+
+
+/**
+ * A map version of {@link set.int64.BLPLongHashSet}, using <a
+ * href="https://doi.org/10.1093/comjnl/17.2.135"> Amble and Knuth's
+ * bidirectional linear probing table</a>, with the same simplified insert
+ * algorithm from <a
+ * href="https://pdfs.semanticscholar.org/6d6c/ca94c57d408c0b1164d6ff7faea25635fedb.pdf">
+ * A Concurrent Bidirectional Linear Probing Algorithm</a>, and the same
+ * tombstone-free deletion algorithm. The keys must be 64-bit integers,
+ * which are permuted to form the hash codes (i.e., the "hash function" is
+ * reversible), so only the hash codes are stored. Values are stored in a
+ * parallel array, and every entry moved by an insert or delete shift carries
+ * its value along with it, so the two arrays are always indexed by the same
+ * bucket.
+ *
+ * @author tdbaker
+ */
+public class BLPLongLongHashMap implements LongLongMap {
+    public static final String NAME = "map.int64.BLPLongLongHashMap";
+
+    protected final long[] arr;
+    protected final long[] values;
+    protected int size = 0;
+    protected final LongHasher hasher;
+
+    public BLPLongLongHashMap(int maxEntries, double loadFactor, LongHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        int arrSize = (int) (maxEntries / loadFactor);
+        this.arr = new long[arrSize];
+        this.values = new long[arrSize];
+        this.hasher = hasher;
+    }
+
+    public BLPLongLongHashMap(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    public BLPLongLongHashMap(BLPLongLongHashMap other) {
+        this.arr = other.arr.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongLongMap cloneMap() throws CloneNotSupportedException {
+        return new BLPLongLongHashMap(this);
+    }
+
+    /**
+     * Query the size of the table's backing arrays.
+     *
+     * @return the size of the backing arrays
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(long key) {
+        return lookupByHash(hash(key)) != -1;
+    }
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public long get(long key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        int bucket = lookupByHash(hash(key));
+        if (bucket == -1) {
+            return defaultValue;
+        }
+        return this.values[bucket];
+    }
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 64-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long put(long key, long value) {
+        long hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket != -1) {
+            long oldValue = this.values[bucket];
+            this.values[bucket] = value;
+            return oldValue;
+        }
+        bucket = insertHash(hash);
+        this.values[bucket] = value;
+        return 0;
+    }
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 64-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long putIfAbsent(long key, long value) {
+        long hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket != -1) {
+            return this.values[bucket];
+        }
+        bucket = insertHash(hash);
+        this.values[bucket] = value;
+        return 0;
+    }
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 64-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public long remove(long key) {
+        long hash = hash(key);
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return 0;
+        }
+        long oldValue = this.values[bucket];
+        MOVE_DIRECTION moveDirection;
+        if (bucket == 0) {
+            moveDirection = MOVE_DIRECTION.LEFT;
+        } else if (bucket == this.arr.length - 1) {
+            moveDirection = MOVE_DIRECTION.RIGHT;
+        } else {
+            moveDirection = getMoveDirection(bucket);
+        }
+        int endBucket;
+        int currBucket = bucket;
+        switch (moveDirection) {
+            case NONE:
+                // if the deleted key is the only entry with its preferred bucket, it can be zeroed out
+                clearBucket(bucket);
+                break;
+            case LEFT:
+                // any chain of buckets residing to the right of their preferred buckets can be moved left
+                endBucket = findMoveBoundaryToRight(bucket);
+                while (currBucket < endBucket) {
+                    moveBucket(currBucket + 1, currBucket);
+                    currBucket += 1;
+                }
+                // only necessary when endBucket == this.arr.length - 1
+                clearBucket(endBucket);
+                break;
+            case RIGHT:
+                // any chain of buckets residing to the left of their preferred buckets can be moved right
+                endBucket = findMoveBoundaryToLeft(bucket);
+                while (currBucket > endBucket) {
+                    moveBucket(currBucket - 1, currBucket);
+                    currBucket -= 1;
+                }
+                // only necessary when endBucket == 0
+                clearBucket(endBucket);
+                break;
+        }
+        --this.size;
+        return oldValue;
+    }
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear() {
+        Arrays.fill(this.arr, 0);
+        Arrays.fill(this.values, 0);
+        this.size = 0;
+    }
+
+    protected boolean isEmpty(int bucket) {
+        return (this.arr[bucket] == 0);
+    }
+
+    protected long contents(int bucket) {
+        return isEmpty(bucket) ? 0 : unhash(this.arr[bucket]);
+    }
+
+    // https://github.com/lemire/fastrange
+    // for this 64-bit version, we just use the high 32 bits of the hash
+    // to calculate the bucket index. as long as we're using good hash
+    // functions, this should be fine.
+    protected int findPreferredBucket(long hash) {
+        if (hash == 0) {
+            return -1;
+        }
+        return (int) (((hash >>> 32) * Integer.toUnsignedLong(this.arr.length)) >>> 32);
+    }
+
+    protected long hash(long x) {
+        return this.hasher.hash(x);
+    }
+
+    protected long unhash(long x) {
+        return this.hasher.unhash(x);
+    }
+
+    // keys and values always move together
+    private void moveBucket(int src, int dst) {
+        this.arr[dst] = this.arr[src];
+        this.values[dst] = this.values[src];
+    }
+
+    private void clearBucket(int bucket) {
+        this.arr[bucket] = 0;
+        this.values[bucket] = 0;
+    }
+
+    private static boolean isHashGreater(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) > 0);
+    }
+
+    private static boolean isHashLesser(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) < 0);
+    }
+
+    private static boolean isHashGreaterOrEqual(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) >= 0);
+    }
+
+    private static boolean isHashLesserOrEqual(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) <= 0);
+    }
+
+    protected int lookupByHash(long hash) {
+        int bucket = findPreferredBucket(hash);
+        if (isHashLesser(this.arr[bucket], hash)) {
+            while (bucket < this.arr.length - 1 &&
+                   !isEmpty(bucket + 1) &&
+                   isHashLesserOrEqual(this.arr[bucket + 1], hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(this.arr[bucket], hash)) {
+            while (bucket > 0 &&
+                   !isEmpty(bucket - 1) &&
+                   isHashGreaterOrEqual(this.arr[bucket - 1], hash)) {
+                bucket -= 1;
+            }
+        }
+        if (this.arr[bucket] == hash) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    // Insert a hash known to be absent, and return the bucket it was placed
+    // in, so the caller can store its value there.
+    private int insertHash(long hash) {
+        int bucket = findPreferredBucket(hash);
+        if (!isEmpty(bucket)) {
+            // See BLPLongHashSet.add() for an explanation of the probe direction.
+            boolean probeLeft = (bucket > 0 &&
+                    isHashLesser(this.arr[bucket], hash)) ||
+                bucket == this.arr.length - 1;
+            bucket = getEmptyBucketForInsert(hash, bucket, probeLeft, false);
+        }
+        this.arr[bucket] = hash;
+        ++this.size;
+        return bucket;
+    }
+
+    // Any bucket to the left of its preferred bucket can be shifted right,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private int findMoveBoundaryToLeft(int startBucket) {
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket) &&
+               bucket - 1 < findPreferredBucket(this.arr[bucket - 1])) {
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    // Any bucket to the right of its preferred bucket can be shifted left,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private int findMoveBoundaryToRight(int startBucket) {
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 &&
+               !isEmpty(bucket) &&
+               bucket + 1 > findPreferredBucket(this.arr[bucket + 1])) {
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private static enum MOVE_DIRECTION {
+        LEFT,
+        RIGHT,
+        NONE,
+    }
+
+    private MOVE_DIRECTION getMoveDirection(int bucket) {
+        assert bucket > 0 && bucket < this.arr.length - 1;
+        int prevBucket = bucket - 1;
+        int nextBucket = bucket + 1;
+        int preferredBucket = findPreferredBucket(this.arr[bucket]);
+        int leftPreferredBucket = !isEmpty(prevBucket) ? findPreferredBucket(this.arr[prevBucket]) : -1;
+        int rightPreferredBucket = !isEmpty(nextBucket) ? findPreferredBucket(this.arr[nextBucket]) : -1;
+        if (bucket == preferredBucket) {
+            // if this is the only entry in the deleted entry's chain, just zero out the deleted entry
+            if (leftPreferredBucket != preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.NONE;
+            // if the deleted entry's chain extends only to the left, move the chain to the right
+            } else if (leftPreferredBucket == preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.RIGHT;
+            // if the deleted entry's chain extends only to the right, move the chain to the left
+            } else if (leftPreferredBucket != preferredBucket && rightPreferredBucket == preferredBucket) {
+                return MOVE_DIRECTION.LEFT;
+            // if the deleted entry's chain extends in both directions,
+            // move the "closer" neighboring hash value into the deleted bucket
+            } else {
+                long prevHashDiff = unsignedAbsDiff(this.arr[bucket], this.arr[prevBucket]);
+                long nextHashDiff = unsignedAbsDiff(this.arr[bucket], this.arr[nextBucket]);
+                assert isHashGreater(prevHashDiff, 0) && isHashGreater(nextHashDiff, 0);
+                return isHashGreater(prevHashDiff, nextHashDiff) ? MOVE_DIRECTION.LEFT : MOVE_DIRECTION.RIGHT;
+            }
+        } else if (bucket < preferredBucket) {
+            return MOVE_DIRECTION.RIGHT;
+        } else {  // bucket > preferredBucket
+            return MOVE_DIRECTION.LEFT;
+        }
+    }
+
+    private static long unsignedAbsDiff(long a, long b) {
+        if (isHashGreater(a, b)) {
+            return a - b;
+        } else {
+            return b - a;
+        }
+    }
+
+    private int findFirstEmptyBucketToLeft(int startBucket) {
+        assert startBucket > 0;
+        int bucket = startBucket;
+        while (bucket > 0 && !isEmpty(bucket)) {
+            bucket -= 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int findFirstEmptyBucketToRight(int startBucket) {
+        assert startBucket < this.arr.length - 1;
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 && !isEmpty(bucket)) {
+            bucket += 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int moveEmptyBucketLeftToInsertionPoint(int startBucket, long hash) {
+        assert startBucket > 0;
+        assert isEmpty(startBucket);
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket - 1) &&
+               isHashGreater(this.arr[bucket - 1], hash)) {
+            moveBucket(bucket - 1, bucket);
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    private int moveEmptyBucketRightToInsertionPoint(int startBucket, long hash) {
+        assert startBucket < this.arr.length - 1;
+        assert isEmpty(startBucket);
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 &&
+               !isEmpty(bucket + 1) &&
+               isHashLesser(this.arr[bucket + 1], hash)) {
+            moveBucket(bucket + 1, bucket);
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private int getEmptyBucketForInsert(long hash, int startBucket, boolean probeLeft, boolean prevProbeFailed) {
+        int bucket = startBucket;
+        int emptyBucket;
+        if (probeLeft) {
+            emptyBucket = findFirstEmptyBucketToLeft(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, false, true);
+            }
+            bucket = moveEmptyBucketRightToInsertionPoint(emptyBucket, hash);
+        } else {
+            emptyBucket = findFirstEmptyBucketToRight(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, true, true);
+            }
+            bucket = moveEmptyBucketLeftToInsertionPoint(emptyBucket, hash);
+        }
+        return bucket;
+    }
+
+    protected void dump() {
+        for (int i = 0; i < this.arr.length; ++i) {
+            System.out.format("%d\t%d\t%d\t%s\t%d\n", i, contents(i), this.values[i], Long.toUnsignedString(this.arr[i]), findPreferredBucket(this.arr[i]));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package map.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+import set.int64.LPLongHashSet;
+
+import java.util.Arrays;
+
+
+/**
+ * A map from 64-bit integer keys to 32-bit integer values, built on {@link
+ * LPLongHashSet}. The permuted keys live in the set's probe array, exactly
+ * as they do in the set, while the values live in a separate array indexed
+ * by the same bucket. A probe therefore scans only the keys, and a value is
+ * only touched once its key has been found. (Packing each key with its value
+ * into a single array would pad every bucket to 128 bits, and halve the
+ * number of keys per cache line seen by a probe.) The set's tombstone-free
+ * deletion algorithm moves each value along with its key, through the set's
+ * {@code moveBucket()} hook.
+ *
+ * @author tdbaker
+ */
+public class LPLongIntHashMap implements LongIntMap {
+    public static final String NAME = "map.int64.LPLongIntHashMap";
+
+    private final KeyTable keys;
+
+    public LPLongIntHashMap(int maxEntries, double loadFactor, LongHasher hasher) {
+        this.keys = new KeyTable(maxEntries, loadFactor, hasher);
+    }
+
+    public LPLongIntHashMap(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    public LPLongIntHashMap(LPLongIntHashMap other) {
+        this.keys = new KeyTable(other.keys);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongIntMap cloneMap() throws CloneNotSupportedException {
+        return new LPLongIntHashMap(this);
+    }
+
+    /**
+     * Query the size of the table's backing arrays.
+     *
+     * @return the size of the backing arrays
+     */
+    public int capacity() {
+        return this.keys.capacity();
+    }
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size() {
+        return this.keys.size();
+    }
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(long key) {
+        return this.keys.contains(key);
+    }
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public int get(long key) {
+        return this.keys.getOrDefault(key, 0);
+    }
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public int getOrDefault(long key, int defaultValue) {
+        return this.keys.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int put(long key, int value) {
+        return this.keys.put(key, value, false);
+    }
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int putIfAbsent(long key, int value) {
+        return this.keys.put(key, value, true);
+    }
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 64-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int remove(long key) {
+        return this.keys.removeKey(key);
+    }
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear() {
+        this.keys.clear();
+    }
+
+    // The set's probe array holds the keys; we only add a parallel value
+    // array, and make sure every move of a key carries its value with it.
+    // (The map can't simply extend the set, since LongSet.remove() and
+    // LongIntMap.remove() have incompatible return types.)
+    private static final class KeyTable extends LPLongHashSet {
+        private int[] values;
+
+        KeyTable(int maxEntries, double loadFactor, LongHasher hasher) {
+            super(maxEntries, loadFactor, hasher);
+            this.values = new int[capacity()];
+        }
+
+        KeyTable(KeyTable other) {
+            super(other);
+            this.values = other.values.clone();
+        }
+
+        int getOrDefault(long key, int defaultValue) {
+            int bucket = lookupByHash(hash(key));
+            if (bucket == -1 || isEmpty(bucket)) {
+                return defaultValue;
+            }
+            return this.values[bucket];
+        }
+
+        int put(long key, int value, boolean onlyIfAbsent) {
+            long hash = hash(key);
+            int bucket = lookupByHash(hash);
+            if (bucket != -1 && !isEmpty(bucket)) {
+                int oldValue = this.values[bucket];
+                if (!onlyIfAbsent) {
+                    this.values[bucket] = value;
+                }
+                return oldValue;
+            }
+            // double the table before it would exceed its load factor
+            if (this.size >= this.maxEntries) {
+                resize(2 * this.maxEntries);
+                bucket = lookupByHash(hash);
+            }
+            if (bucket == -1) {
+                // table full
+                throw new RuntimeException("Couldn't insert into table");
+            }
+            this.arr[bucket] = hash;
+            this.values[bucket] = value;
+            ++this.size;
+            return 0;
+        }
+
+        int removeKey(long key) {
+            int bucket = lookupByHash(hash(key));
+            if (bucket == -1 || isEmpty(bucket)) {
+                return 0;
+            }
+            int oldValue = this.values[bucket];
+            this.arr[bucket] = 0;
+            this.values[bucket] = 0;
+            shift(bucket);
+            --this.size;
+            shrinkIfSparse();
+            return oldValue;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            Arrays.fill(this.values, 0);
+            this.size = 0;
+        }
+
+        // the set rehashes the keys, and then we look up each key's new bucket
+        // to carry its value over
+        @Override
+        protected void resize(int maxEntries) {
+            long[] oldArr = this.arr;
+            int[] oldValues = this.values;
+            super.resize(maxEntries);
+            this.values = new int[capacity()];
+            for (int i = 0; i < oldArr.length; ++i) {
+                if (oldArr[i] != 0) {
+                    this.values[lookupByHash(oldArr[i])] = oldValues[i];
+                }
+            }
+        }
+
+        @Override
+        protected void moveBucket(int src, int dst) {
+            super.moveBucket(src, dst);
+            this.values[dst] = this.values[src];
+            this.values[src] = 0;
+        }
+    }
+}
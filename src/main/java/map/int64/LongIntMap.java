@@ -0,0 +1,84 @@
+package map.int64;
+
+/**
+ * A map from 64-bit integer keys to 32-bit integer values. Since values
+ * are primitive, there is no "null" value to signal an absent key: methods
+ * which return a value return 0 for an absent key, so use {@link
+ * #containsKey(long)} or {@link #getOrDefault(long, int)} when 0 is a
+ * legitimate value.
+ *
+ * @author tdbaker
+ */
+public interface LongIntMap {
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    public int size();
+
+    /**
+     * Query the table for a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return {@code true} if {@code key} is present in the table, {@code false} otherwise
+     */
+    public boolean containsKey(long key);
+
+    /**
+     * Look up the value associated with a key.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @return the value associated with {@code key}, or 0 if {@code key} is not present in the table
+     */
+    public int get(long key);
+
+    /**
+     * Look up the value associated with a key, returning a caller-supplied
+     * value if the key is absent.
+     *
+     * @param key the 64-bit integer to query the table for
+     * @param defaultValue the value to return if {@code key} is not present in the table
+     * @return the value associated with {@code key}, or {@code defaultValue} if {@code key} is not present in the table
+     */
+    public int getOrDefault(long key, int defaultValue);
+
+    /**
+     * Associate a value with a key, replacing any existing value.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value previously associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int put(long key, int value);
+
+    /**
+     * Associate a value with a key, only if the key is not already present.
+     *
+     * @param key the 64-bit integer key
+     * @param value the 32-bit integer value
+     * @return the value already associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int putIfAbsent(long key, int value);
+
+    /**
+     * Remove a key and its associated value from the table.
+     *
+     * @param key the 64-bit integer to remove from the table
+     * @return the value associated with {@code key}, or 0 if {@code key} was not present in the table
+     */
+    public int remove(long key);
+
+    /**
+     * Remove all entries from the table.
+     */
+    public void clear();
+
+    /**
+     * Return deep copy of the table.
+     * @return the cloned table
+     */
+    public LongIntMap cloneMap() throws CloneNotSupportedException;
+
+}
@@ -0,0 +1,628 @@
+package map.object;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * A generic hash map using <a href="https://doi.org/10.1093/comjnl/17.2.135">
+ * Amble and Knuth's bidirectional linear probing table</a> as a compact
+ * index into dense entry arrays, similar to CPython's {@code dict}
+ * implementation. Entries are appended in insertion order to parallel
+ * arrays of keys, values and (spread) 32-bit hash codes, so there is no
+ * per-entry node allocation. The index is an {@code int[]} whose buckets
+ * hold the offset of an entry plus one (0 denotes an empty bucket), and
+ * it is kept in the same hash order as {@link set.int32.BLPIntHashSet}:
+ * each cluster is sorted by the stored hash codes of the entries its
+ * buckets point to. Unlike the primitive tables, distinct keys may have
+ * equal hash codes, so lookups navigate to the run of equal hash codes
+ * and then compare keys within it.
+ * <p>
+ * Deletion is tombstone-free in the index, using the same algorithm as
+ * {@link set.int32.BLPIntHashSet}, but leaves a hole in the entry arrays
+ * (to preserve insertion order). Holes are reclaimed by compacting the
+ * entry arrays and rebuilding the index, which happens when the entry
+ * arrays fill up and more than a quarter of their slots are holes (otherwise
+ * the arrays are doubled), or on demand via {@link #compact()}.
+ * <p>
+ * Null keys are not supported; null values are.
+ *
+ * @author tdbaker
+ */
+public class BLPObjectHashMap<K, V> extends AbstractMap<K, V> {
+    public static final String NAME = "map.object.BLPObjectHashMap";
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    private final double loadFactor;
+    private int[] index;
+    private int[] hashes;
+    private Object[] keys;
+    private Object[] values;
+    // number of entry slots used so far, including holes left by deletions
+    private int used = 0;
+    private int size = 0;
+    // incremented on structural modifications, to make iterators fail-fast
+    private int modCount = 0;
+
+    public BLPObjectHashMap(int maxEntries, double loadFactor) {
+        assert maxEntries >= 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.loadFactor = loadFactor;
+        // the entry arrays must have room for at least one entry, so they can double
+        allocate(Math.max(maxEntries, 1));
+    }
+
+    public BLPObjectHashMap(int maxEntries) {
+        this(maxEntries, DEFAULT_LOAD_FACTOR);
+    }
+
+    public BLPObjectHashMap() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_LOAD_FACTOR);
+    }
+
+    public BLPObjectHashMap(BLPObjectHashMap<K, V> other) {
+        this.loadFactor = other.loadFactor;
+        this.index = other.index.clone();
+        this.hashes = other.hashes.clone();
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.used = other.used;
+        this.size = other.size;
+    }
+
+    /**
+     * Query the size of the table's index array.
+     *
+     * @return the size of the index array
+     */
+    public int capacity() {
+        return this.index.length;
+    }
+
+    /**
+     * Query the number of entries in the table.
+     *
+     * @return the number of entries in the table
+     */
+    @Override
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        return lookup(key, spread(key.hashCode())) != -1;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int bucket = lookup(key, spread(key.hashCode()));
+        if (bucket == -1) {
+            return null;
+        }
+        return valueAt(entryAt(bucket));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        int hash = spread(key.hashCode());
+        int bucket = lookup(key, hash);
+        if (bucket != -1) {
+            int entry = entryAt(bucket);
+            V oldValue = valueAt(entry);
+            this.values[entry] = value;
+            return oldValue;
+        }
+        if (this.used == this.keys.length) {
+            // compact if more than a quarter of the entry slots are holes, otherwise grow
+            if (this.size < this.used - (this.used >>> 2)) {
+                resize(this.keys.length);
+            } else {
+                resize(2 * this.keys.length);
+            }
+        }
+        int entry = this.used++;
+        this.hashes[entry] = hash;
+        this.keys[entry] = key;
+        this.values[entry] = value;
+        insertIntoIndex(entry, hash);
+        ++this.size;
+        ++this.modCount;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int bucket = lookup(key, spread(key.hashCode()));
+        if (bucket == -1) {
+            return null;
+        }
+        int entry = entryAt(bucket);
+        V oldValue = valueAt(entry);
+        removeFromIndex(bucket);
+        removeEntry(entry);
+        return oldValue;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.index, 0);
+        Arrays.fill(this.keys, 0, this.used, null);
+        Arrays.fill(this.values, 0, this.used, null);
+        this.used = 0;
+        this.size = 0;
+        ++this.modCount;
+    }
+
+    /**
+     * Remove the holes left in the entry arrays by deletions, and rebuild
+     * the index. Insertion order is preserved.
+     */
+    public void compact() {
+        resize(this.keys.length);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    // Murmur3 32-bit finalizer (https://github.com/aappleby/smhasher/wiki/MurmurHash3),
+    // since many hashCode() implementations have poor high bits, and we use
+    // the high bits to calculate the preferred bucket.
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private void allocate(int maxEntries) {
+        this.index = new int[Math.max((int) (maxEntries / this.loadFactor), 1)];
+        this.hashes = new int[maxEntries];
+        this.keys = new Object[maxEntries];
+        this.values = new Object[maxEntries];
+    }
+
+    // Copy live entries (in insertion order) into fresh arrays with room
+    // for maxEntries entries, and rebuild the index from scratch.
+    private void resize(int maxEntries) {
+        int[] oldHashes = this.hashes;
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int oldUsed = this.used;
+        allocate(maxEntries);
+        int entry = 0;
+        for (int i = 0; i < oldUsed; ++i) {
+            if (oldKeys[i] != null) {
+                this.hashes[entry] = oldHashes[i];
+                this.keys[entry] = oldKeys[i];
+                this.values[entry] = oldValues[i];
+                insertIntoIndex(entry, oldHashes[i]);
+                ++entry;
+            }
+        }
+        assert entry == this.size;
+        this.used = entry;
+        ++this.modCount;
+    }
+
+    private void removeEntry(int entry) {
+        this.keys[entry] = null;
+        this.values[entry] = null;
+        --this.size;
+        ++this.modCount;
+    }
+
+    private boolean isEmpty(int bucket) {
+        return (this.index[bucket] == 0);
+    }
+
+    private int entryAt(int bucket) {
+        return this.index[bucket] - 1;
+    }
+
+    private int hashAt(int bucket) {
+        return this.hashes[entryAt(bucket)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int entry) {
+        return (V) this.values[entry];
+    }
+
+    // https://github.com/lemire/fastrange
+    private int findPreferredBucket(int hash) {
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(this.index.length)) >>> 32);
+    }
+
+    private static boolean isHashGreater(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) > 0);
+    }
+
+    private static boolean isHashLesser(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) < 0);
+    }
+
+    private static boolean isHashGreaterOrEqual(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) >= 0);
+    }
+
+    private static boolean isHashLesserOrEqual(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) <= 0);
+    }
+
+    // Return the index bucket pointing to the entry for key, or -1 if key is absent.
+    private int lookup(Object key, int hash) {
+        int bucket = findPreferredBucket(hash);
+        if (isEmpty(bucket)) {
+            return -1;
+        }
+        // navigate to the run of entries with the same hash code, as in BLPIntHashSet
+        if (isHashLesser(hashAt(bucket), hash)) {
+            while (bucket < this.index.length - 1 &&
+                   !isEmpty(bucket + 1) &&
+                   isHashLesserOrEqual(hashAt(bucket + 1), hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(hashAt(bucket), hash)) {
+            while (bucket > 0 &&
+                   !isEmpty(bucket - 1) &&
+                   isHashGreaterOrEqual(hashAt(bucket - 1), hash)) {
+                bucket -= 1;
+            }
+        }
+        if (hashAt(bucket) != hash) {
+            return -1;
+        }
+        // the run of equal hash codes may extend in both directions
+        for (int b = bucket; b >= 0 && !isEmpty(b) && hashAt(b) == hash; --b) {
+            if (key.equals(this.keys[entryAt(b)])) {
+                return b;
+            }
+        }
+        for (int b = bucket + 1; b < this.index.length && !isEmpty(b) && hashAt(b) == hash; ++b) {
+            if (key.equals(this.keys[entryAt(b)])) {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    private void insertIntoIndex(int entry, int hash) {
+        int bucket = findPreferredBucket(hash);
+        if (!isEmpty(bucket)) {
+            // See BLPIntHashSet.add() for an explanation of the probe direction.
+            boolean probeLeft = (bucket > 0 &&
+                    isHashLesser(hashAt(bucket), hash)) ||
+                bucket == this.index.length - 1;
+            bucket = getEmptyBucketForInsert(hash, bucket, probeLeft, false);
+        }
+        this.index[bucket] = entry + 1;
+    }
+
+    private void removeFromIndex(int bucket) {
+        MOVE_DIRECTION moveDirection;
+        if (bucket == 0) {
+            moveDirection = MOVE_DIRECTION.LEFT;
+        } else if (bucket == this.index.length - 1) {
+            moveDirection = MOVE_DIRECTION.RIGHT;
+        } else {
+            moveDirection = getMoveDirection(bucket);
+        }
+        int endBucket;
+        int currBucket = bucket;
+        switch (moveDirection) {
+            case NONE:
+                // if the deleted entry is the only entry with its preferred bucket, it can be zeroed out
+                this.index[bucket] = 0;
+                break;
+            case LEFT:
+                // any chain of buckets residing to the right of their preferred buckets can be moved left
+                endBucket = findMoveBoundaryToRight(bucket);
+                while (currBucket < endBucket) {
+                    this.index[currBucket] = this.index[currBucket + 1];
+                    currBucket += 1;
+                }
+                // only necessary when endBucket == this.index.length - 1
+                this.index[endBucket] = 0;
+                break;
+            case RIGHT:
+                // any chain of buckets residing to the left of their preferred buckets can be moved right
+                endBucket = findMoveBoundaryToLeft(bucket);
+                while (currBucket > endBucket) {
+                    this.index[currBucket] = this.index[currBucket - 1];
+                    currBucket -= 1;
+                }
+                // only necessary when endBucket == 0
+                this.index[endBucket] = 0;
+                break;
+        }
+    }
+
+    // Any bucket to the left of its preferred bucket can be shifted right,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private int findMoveBoundaryToLeft(int startBucket) {
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket - 1) &&
+               bucket - 1 < findPreferredBucket(hashAt(bucket - 1))) {
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    // Any bucket to the right of its preferred bucket can be shifted left,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private int findMoveBoundaryToRight(int startBucket) {
+        int bucket = startBucket;
+        while (bucket < this.index.length - 1 &&
+               !isEmpty(bucket + 1) &&
+               bucket + 1 > findPreferredBucket(hashAt(bucket + 1))) {
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private static enum MOVE_DIRECTION {
+        LEFT,
+        RIGHT,
+        NONE,
+    }
+
+    private MOVE_DIRECTION getMoveDirection(int bucket) {
+        assert bucket > 0 && bucket < this.index.length - 1;
+        int prevBucket = bucket - 1;
+        int nextBucket = bucket + 1;
+        int preferredBucket = findPreferredBucket(hashAt(bucket));
+        int leftPreferredBucket = !isEmpty(prevBucket) ? findPreferredBucket(hashAt(prevBucket)) : -1;
+        int rightPreferredBucket = !isEmpty(nextBucket) ? findPreferredBucket(hashAt(nextBucket)) : -1;
+        if (bucket == preferredBucket) {
+            // if this is the only entry in the deleted entry's chain, just zero out the deleted entry
+            if (leftPreferredBucket != preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.NONE;
+            // if the deleted entry's chain extends only to the left, move the chain to the right
+            } else if (leftPreferredBucket == preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.RIGHT;
+            // if the deleted entry's chain extends only to the right, move the chain to the left
+            } else if (leftPreferredBucket != preferredBucket && rightPreferredBucket == preferredBucket) {
+                return MOVE_DIRECTION.LEFT;
+            // if the deleted entry's chain extends in both directions,
+            // move the "closer" neighboring hash value into the deleted bucket
+            // (unlike the primitive tables, either difference may be 0 here)
+            } else {
+                int prevHashDiff = unsignedAbsDiff(hashAt(bucket), hashAt(prevBucket));
+                int nextHashDiff = unsignedAbsDiff(hashAt(bucket), hashAt(nextBucket));
+                return isHashGreater(prevHashDiff, nextHashDiff) ? MOVE_DIRECTION.LEFT : MOVE_DIRECTION.RIGHT;
+            }
+        } else if (bucket < preferredBucket) {
+            return MOVE_DIRECTION.RIGHT;
+        } else {  // bucket > preferredBucket
+            return MOVE_DIRECTION.LEFT;
+        }
+    }
+
+    private static int unsignedAbsDiff(int a, int b) {
+        if (isHashGreater(a, b)) {
+            return a - b;
+        } else {
+            return b - a;
+        }
+    }
+
+    private int findFirstEmptyBucketToLeft(int startBucket) {
+        assert startBucket > 0;
+        int bucket = startBucket;
+        while (bucket > 0 && !isEmpty(bucket)) {
+            bucket -= 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int findFirstEmptyBucketToRight(int startBucket) {
+        assert startBucket < this.index.length - 1;
+        int bucket = startBucket;
+        while (bucket < this.index.length - 1 && !isEmpty(bucket)) {
+            bucket += 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int moveEmptyBucketLeftToInsertionPoint(int startBucket, int hash) {
+        assert startBucket > 0;
+        assert isEmpty(startBucket);
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket - 1) &&
+               isHashGreater(hashAt(bucket - 1), hash)) {
+            this.index[bucket] = this.index[bucket - 1];
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    private int moveEmptyBucketRightToInsertionPoint(int startBucket, int hash) {
+        assert startBucket < this.index.length - 1;
+        assert isEmpty(startBucket);
+        int bucket = startBucket;
+        while (bucket < this.index.length - 1 &&
+               !isEmpty(bucket + 1) &&
+               isHashLesser(hashAt(bucket + 1), hash)) {
+            this.index[bucket] = this.index[bucket + 1];
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private int getEmptyBucketForInsert(int hash, int startBucket, boolean probeLeft, boolean prevProbeFailed) {
+        int bucket = startBucket;
+        int emptyBucket;
+        if (probeLeft) {
+            emptyBucket = findFirstEmptyBucketToLeft(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, false, true);
+            }
+            bucket = moveEmptyBucketRightToInsertionPoint(emptyBucket, hash);
+        } else {
+            emptyBucket = findFirstEmptyBucketToRight(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, true, true);
+            }
+            bucket = moveEmptyBucketLeftToInsertionPoint(emptyBucket, hash);
+        }
+        return bucket;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public int size() {
+            return BLPObjectHashMap.this.size;
+        }
+
+        @Override
+        public void clear() {
+            BLPObjectHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    // iterates over the entry arrays in insertion order, skipping holes
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = BLPObjectHashMap.this.modCount;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (this.next < BLPObjectHashMap.this.used && BLPObjectHashMap.this.keys[this.next] == null) {
+                ++this.next;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < BLPObjectHashMap.this.used;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (BLPObjectHashMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next++;
+            advance();
+            return new Entry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == -1) {
+                throw new IllegalStateException();
+            }
+            if (BLPObjectHashMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Object key = BLPObjectHashMap.this.keys[this.last];
+            int bucket = lookup(key, BLPObjectHashMap.this.hashes[this.last]);
+            assert entryAt(bucket) == this.last;
+            removeFromIndex(bucket);
+            removeEntry(this.last);
+            this.last = -1;
+            this.expectedModCount = BLPObjectHashMap.this.modCount;
+        }
+    }
+
+    // a live view of an entry, so setValue() writes through to the map
+    private final class Entry implements Map.Entry<K, V> {
+        private final int entry;
+        private final K key;
+
+        @SuppressWarnings("unchecked")
+        Entry(int entry) {
+            this.entry = entry;
+            this.key = (K) BLPObjectHashMap.this.keys[entry];
+        }
+
+        @Override
+        public K getKey() {
+            return this.key;
+        }
+
+        @Override
+        public V getValue() {
+            return valueAt(this.entry);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V oldValue = valueAt(this.entry);
+            BLPObjectHashMap.this.values[this.entry] = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return this.key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + getValue();
+        }
+    }
+}
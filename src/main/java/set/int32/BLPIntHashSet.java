@@ -1,6 +1,9 @@
 package set.int32;
 
 import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.util.Arrays;
 
 
 /**
@@ -19,6 +22,8 @@ import hash.int32.IntHasher;
  */
 public class BLPIntHashSet extends LPIntHashSet {
     public static final String NAME = "set.int32.BLPIntHashSet";
+    // the number of runs sortUnsigned() distributes hash codes into
+    private static final int SORT_RADIX = 1 << 16;
 
     public BLPIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
         super(maxEntries, loadFactor, hasher);
@@ -41,47 +46,293 @@ public class BLPIntHashSet extends LPIntHashSet {
     }
 
     /**
-     * Add an element to the table.
+     * Return an immutable snapshot of the table, packed to {@link
+     * FrozenIntSet#DEFAULT_LOAD_FACTOR}.
+     *
+     * @return the snapshot
+     */
+    public FrozenIntSet freeze() {
+        return freeze(FrozenIntSet.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Return an immutable snapshot of the table, packed to the given load factor.
+     *
+     * @param loadFactor the ratio of the number of elements to the capacity of the snapshot
+     * @return the snapshot
+     */
+    public FrozenIntSet freeze(double loadFactor) {
+        return new FrozenIntSet(this.arr, this.size, loadFactor, this.hasher);
+    }
+
+    /**
+     * Return a new table containing the elements of this table and the given
+     * table, which must use the same hash function. Both tables hold their
+     * hash codes in ascending (unsigned) order, and the order doesn't depend
+     * on their capacities (since the preferred bucket of a hash code is just
+     * the hash code scaled to the capacity, as in fastrange), so we merge the
+     * two arrays in a single sequential pass, and lay out the result in
+     * another pass, as in {@link #bulkLoad(int[], double)}. The result has this
+     * table's load factor, and its maximum number of entries is its size.
+     *
+     * @param other the table to merge with this one
+     * @return the union of the two tables
+     */
+    public BLPIntHashSet union(BLPIntHashSet other) {
+        checkSameHasher(other);
+        int[] merged = new int[this.size + other.size];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Integer.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c <= 0) {
+                merged[count] = this.arr[i];
+                i = nextElement(this.arr, i + 1);
+                if (c == 0) {
+                    j = nextElement(other.arr, j + 1);
+                }
+            } else {
+                merged[count] = other.arr[j];
+                j = nextElement(other.arr, j + 1);
+            }
+            count += 1;
+        }
+        for (; i < this.arr.length; i = nextElement(this.arr, i + 1)) {
+            merged[count] = this.arr[i];
+            count += 1;
+        }
+        for (; j < other.arr.length; j = nextElement(other.arr, j + 1)) {
+            merged[count] = other.arr[j];
+            count += 1;
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Return a new table containing the elements of this table which are also
+     * in the given table, which must use the same hash function, by merging the
+     * two tables as in {@link #union(BLPIntHashSet)}.
+     *
+     * @param other the table to intersect with this one
+     * @return the intersection of the two tables
+     */
+    public BLPIntHashSet intersect(BLPIntHashSet other) {
+        checkSameHasher(other);
+        int[] merged = new int[Math.min(this.size, other.size)];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Integer.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c == 0) {
+                merged[count] = this.arr[i];
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Return a new table containing the elements of this table which are not
+     * in the given table, which must use the same hash function, by merging the
+     * two tables as in {@link #union(BLPIntHashSet)}.
      *
-     * @param element the 32-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     * @param other the table whose elements to exclude
+     * @return the difference of the two tables
      */
+    public BLPIntHashSet subtract(BLPIntHashSet other) {
+        checkSameHasher(other);
+        int[] merged = new int[this.size];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length) {
+            int c = (j < other.arr.length) ? Integer.compareUnsigned(this.arr[i], other.arr[j]) : -1;
+            if (c < 0) {
+                merged[count] = this.arr[i];
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Count the elements of this table which are also in the given table,
+     * which must use the same hash function, by merging the two tables as in
+     * {@link #union(BLPIntHashSet)}, without building a new table.
+     *
+     * @param other the table to intersect with this one
+     * @return the size of the intersection of the two tables
+     */
+    public int intersectionSize(BLPIntHashSet other) {
+        checkSameHasher(other);
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Integer.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c == 0) {
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return count;
+    }
+
+    private void checkSameHasher(BLPIntHashSet other) {
+        // hashers of the same class may still differ (by seed, say), so we
+        // rely on each hasher's equals() to tell whether they compute the same
+        // function
+        if (!this.hasher.equals(other.hasher)) {
+            throw new IllegalArgumentException("Tables must use the same hash function");
+        }
+    }
+
+    // Return the index of the first nonempty bucket at or after the given
+    // index, or the length of the array if there is none.
+    private static int nextElement(int[] arr, int index) {
+        while (index < arr.length && arr[index] == 0) {
+            index += 1;
+        }
+        return index;
+    }
+
+    // Build a table like this one (with its load factor, hasher and probe
+    // kernel) from the first count sorted hash codes in the given array (which
+    // may have trailing zeros).
+    private BLPIntHashSet fromSorted(int[] hashes, int count) {
+        BLPIntHashSet set = new BLPIntHashSet(Math.max(count, 1), this.loadFactor, this.hasher.cloneHasher());
+        set.probeKernel = this.probeKernel;
+        layoutSorted(hashes, set.arr);
+        set.size = count;
+        return set;
+    }
+
+    /**
+     * Build a table containing the given keys (ignoring duplicates), without
+     * inserting them one at a time. Since the BLP layout is just the hash codes
+     * in sorted order, each in or near its preferred bucket, we hash the keys,
+     * sort the hash codes (distributing them by their high bits first), and
+     * lay them out in a single sequential pass, exactly as when the table is
+     * resized. The table's maximum number of entries is the number of distinct
+     * keys, so it grows on the next insert of a new key. (The sort needs a
+     * scratch array as large as the hash codes, so the peak memory use is about
+     * three times the keys.)
+     *
+     * @param keys the 32-bit integers to add to the table
+     * @param loadFactor the ratio of the number of elements to the capacity of the table
+     * @param hasher the hash function for the table
+     * @return the new table
+     */
+    public static BLPIntHashSet bulkLoad(int[] keys, double loadFactor, IntHasher hasher) {
+        int[] hashes = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            hashes[i] = hasher.hash(keys[i]);
+        }
+        hashes = sortUnsigned(hashes);
+        int size = 0;
+        for (int i = 0; i < hashes.length; ++i) {
+            if (size == 0 || hashes[i] != hashes[size - 1]) {
+                hashes[size] = hashes[i];
+                size += 1;
+            }
+        }
+        // layoutSorted() skips empty buckets
+        Arrays.fill(hashes, size, hashes.length, 0);
+        BLPIntHashSet set = new BLPIntHashSet(Math.max(size, 1), loadFactor, hasher);
+        layoutSorted(hashes, set.arr);
+        set.size = size;
+        return set;
+    }
+
+    public static BLPIntHashSet bulkLoad(int[] keys, double loadFactor) {
+        return bulkLoad(keys, loadFactor, new Murmur3IntHasher());
+    }
+
+    // Return the given hash codes sorted in unsigned order. Hash codes are
+    // close to uniformly distributed, so we first distribute them by their
+    // high 16 bits in a single counting pass (one step of an MSD radix sort).
+    // That leaves short runs, which fit in cache and can be finished with a
+    // signed sort, since all the hash codes in a run have the same sign bit.
+    static int[] sortUnsigned(int[] hashes) {
+        int[] offsets = new int[SORT_RADIX + 1];
+        for (int hash : hashes) {
+            offsets[(hash >>> 16) + 1] += 1;
+        }
+        for (int digit = 0; digit < SORT_RADIX; ++digit) {
+            offsets[digit + 1] += offsets[digit];
+        }
+        int[] next = Arrays.copyOf(offsets, SORT_RADIX);
+        int[] sorted = new int[hashes.length];
+        for (int hash : hashes) {
+            int digit = (hash >>> 16);
+            sorted[next[digit]] = hash;
+            next[digit] += 1;
+        }
+        for (int digit = 0; digit < SORT_RADIX; ++digit) {
+            if (offsets[digit + 1] - offsets[digit] > 1) {
+                Arrays.sort(sorted, offsets[digit], offsets[digit + 1]);
+            }
+        }
+        return sorted;
+    }
+
+    @Override
+    protected BLPIntHashSet newEmptySet(int maxEntries) {
+        BLPIntHashSet set = new BLPIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
     @Override
-    public boolean add(int element) {
-        int hash = hash(element);
+    protected boolean addHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket != -1) {
             return false;
         }
         bucket = findPreferredBucket(hash);
         if (!isEmpty(bucket)) {
-            // If we are at the beginning of the array, then we can only probe to the
-            // right. Similarly, if we are at the end of the array, then we can only
-            // probe to the left. Otherwise, if the hash occupying the preferred bucket
-            // is smaller than our lookup hash, it means the chain is "too far to the
-            // right", so we look for an empty bucket to the left and swap it into the
-            // insertion point of our lookup hash, moving the whole chain one space
-            // to the left. Similar logic applies if the hash occupying the preferred
-            // bucket is larger than our lookup hash.
-            boolean probeLeft = (bucket > 0 &&
-                    isHashLesser(this.arr[bucket], hash)) ||
-                bucket == this.arr.length - 1;
-            bucket = getEmptyBucketForInsert(hash, bucket, probeLeft, false);
+            bucket = getEmptyBucketForInsert(hash, bucket, probeLeftForInsert(bucket, hash), false);
         }
         this.arr[bucket] = hash;
         ++this.size;
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 32-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
+    // Choose which way to look for an empty bucket, when inserting a hash code
+    // whose preferred bucket is occupied. If we are at the beginning of the
+    // array, then we can only probe to the right. Similarly, if we are at the
+    // end of the array, then we can only probe to the left. Otherwise, if the
+    // hash occupying the preferred bucket is smaller than our lookup hash, it
+    // means the chain is "too far to the right", so we look for an empty
+    // bucket to the left and swap it into the insertion point of our lookup
+    // hash, moving the whole chain one space to the left. Similar logic
+    // applies if the hash occupying the preferred bucket is larger than our
+    // lookup hash.
+    protected boolean probeLeftForInsert(int bucket, int hash) {
+        return (bucket > 0 && isHashLesser(this.arr[bucket], hash)) || bucket == this.arr.length - 1;
+    }
+
     @Override
-    public boolean remove(int value) {
-        int hash = hash(value);
+    protected boolean removeHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             return false;
@@ -126,6 +377,88 @@ public class BLPIntHashSet extends LPIntHashSet {
         return true;
     }
 
+    @Override
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] oldArr = reallocate(maxEntries);
+        layoutSorted(oldArr, this.arr);
+    }
+
+    // Copy the hash codes in src, which must be sorted (ignoring empty
+    // buckets), into the empty array dst in BLP layout. Since findPreferredBucket()
+    // is monotonic in the hash code, the new layout can be built in a single
+    // pass, with no probing: each element goes in its preferred bucket, or in
+    // the bucket after the previous element if that is further right. The
+    // elements which would run off the end of the array are packed against
+    // the end instead, shifting the last cluster left.
+    static void layoutSorted(int[] src, int[] dst) {
+        layoutSorted(src, dst, 0);
+    }
+
+    // As above, but with the preferred bucket of each hash code rounded down
+    // to a multiple of 2^groupShift, as in BucketizedBLPIntHashSet.
+    static void layoutSorted(int[] src, int[] dst, int groupShift) {
+        int groups = dst.length >>> groupShift;
+        int lastBucket = dst.length - 1;
+        int prevBucket = -1;
+        int i = 0;
+        for (; i < src.length; ++i) {
+            int hash = src[i];
+            if (hash == 0) {
+                continue;
+            }
+            // as in findPreferredBucket()
+            int preferredBucket = (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(groups)) >>> 32) << groupShift;
+            int bucket = Math.max(preferredBucket, prevBucket + 1);
+            if (bucket > lastBucket) {
+                break;
+            }
+            dst[bucket] = hash;
+            prevBucket = bucket;
+        }
+        packOverflow(src, i, dst);
+    }
+
+    // Pack the hash codes in src from index i on (ignoring empty buckets),
+    // which come after all the hash codes in dst and didn't fit before its
+    // end, against the end of dst, shifting its last cluster left.
+    static void packOverflow(int[] src, int i, int[] dst) {
+        int lastBucket = dst.length - 1;
+        int overflow = 0;
+        for (int j = i; j < src.length; ++j) {
+            if (src[j] != 0) {
+                ++overflow;
+            }
+        }
+        if (overflow == 0) {
+            return;
+        }
+        // Scanning left from the end of the array, every element at or to the
+        // right of the start of the packed run must join it.
+        int start = dst.length - overflow;
+        for (int bucket = lastBucket; bucket >= start; --bucket) {
+            if (dst[bucket] != 0) {
+                start -= 1;
+            }
+        }
+        // Shift the elements already in the packed run to its start (moving
+        // left, so we must copy from left to right), then append the overflow.
+        int next = start;
+        for (int bucket = start; bucket <= lastBucket; ++bucket) {
+            if (dst[bucket] != 0) {
+                dst[next] = dst[bucket];
+                next += 1;
+            }
+        }
+        for (int j = i; j < src.length; ++j) {
+            if (src[j] != 0) {
+                dst[next] = src[j];
+                next += 1;
+            }
+        }
+        assert next == dst.length;
+    }
+
     private static boolean isHashGreater(int hash1, int hash2) {
         return (Integer.compareUnsigned(hash1, hash2) > 0);
     }
@@ -144,6 +477,9 @@ public class BLPIntHashSet extends LPIntHashSet {
 
     @Override
     protected int lookupByHash(int hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         if (isHashLesser(this.arr[bucket], hash)) {
             while (bucket < this.arr.length - 1 &&
@@ -164,6 +500,59 @@ public class BLPIntHashSet extends LPIntHashSet {
         return -1;
     }
 
+    // As above, but scanning a block of buckets at a time in the probe
+    // direction: bit i of the mask is set if the i'th bucket of the block is
+    // empty or outside the range of hash codes up to (or down to) our hash
+    // code, so the bucket before the first such bucket is where the scan
+    // would stop. Flipping the sign bits turns the unsigned comparisons into
+    // signed ones, which compile to a single instruction.
+    private int lookupByHashBlocked(int hash) {
+        int[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        int signedHash = hash ^ Integer.MIN_VALUE;
+        if (isHashLesser(arr[bucket], hash)) {
+            while (bucket + ProbeKernel.BLOCK_SIZE < arr.length) {
+                int stop = 0;
+                for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                    int next = arr[bucket + 1 + i];
+                    stop |= ((next == 0) | ((next ^ Integer.MIN_VALUE) > signedHash) ? 1 : 0) << i;
+                }
+                if (stop != 0) {
+                    bucket += Integer.numberOfTrailingZeros(stop);
+                    return arr[bucket] == hash ? bucket : -1;
+                }
+                bucket += ProbeKernel.BLOCK_SIZE;
+            }
+            while (bucket < arr.length - 1 &&
+                   !isEmpty(bucket + 1) &&
+                   isHashLesserOrEqual(arr[bucket + 1], hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(arr[bucket], hash)) {
+            while (bucket - ProbeKernel.BLOCK_SIZE >= 0) {
+                int stop = 0;
+                for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                    int prev = arr[bucket - 1 - i];
+                    stop |= ((prev == 0) | ((prev ^ Integer.MIN_VALUE) < signedHash) ? 1 : 0) << i;
+                }
+                if (stop != 0) {
+                    bucket -= Integer.numberOfTrailingZeros(stop);
+                    return arr[bucket] == hash ? bucket : -1;
+                }
+                bucket -= ProbeKernel.BLOCK_SIZE;
+            }
+            while (bucket > 0 &&
+                   !isEmpty(bucket - 1) &&
+                   isHashGreaterOrEqual(arr[bucket - 1], hash)) {
+                bucket -= 1;
+            }
+        }
+        if (arr[bucket] == hash) {
+            return bucket;
+        }
+        return -1;
+    }
+
     // Any bucket to the left of its preferred bucket can be shifted right,
     // since its preferred bucket will be shifted along with it, ensuring
     // it is still reachable from its preferred bucket.
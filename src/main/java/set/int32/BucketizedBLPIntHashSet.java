@@ -0,0 +1,123 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+
+/**
+ * A version of {@link BLPIntHashSet} whose bucket array is divided into
+ * groups of {@code GROUP_SIZE} buckets (16 ints, the size of a cache line),
+ * and whose hash codes prefer the first bucket of a group rather than a
+ * single bucket: fastrange selects the group, and the group's elements fill
+ * it from the left, in sorted order. The layout is still a valid BLP layout
+ * (the preferred bucket is still monotonic in the hash code, so the whole
+ * array is sorted, ignoring empty buckets), so insertions and deletions use
+ * the same shifting algorithms, except that insertions always look for an
+ * empty bucket to the right first, to keep each group's elements at the start
+ * of the group rather than spilling into the group before it.
+ * <p>
+ * A lookup scans its whole group in a loop with a fixed trip count (which
+ * the JIT can unroll, with no data-dependent branches), comparing every bucket
+ * against the hash code, and counting the occupied buckets with smaller hash
+ * codes. The lookup is decided within the group unless every bucket is
+ * occupied and smaller (the group has overflowed into the next one), or the
+ * first bucket is larger (the previous group has overflowed into this one),
+ * in which case it falls back to the usual bidirectional probe. (The JVM
+ * doesn't align arrays to cache lines, so a group may straddle two adjacent
+ * lines, but it never touches a third.)
+ *
+ * @author tdbaker
+ */
+public class BucketizedBLPIntHashSet extends BLPIntHashSet {
+    public static final String NAME = "set.int32.BucketizedBLPIntHashSet";
+
+    private static final int GROUP_SHIFT = 4;
+    private static final int GROUP_SIZE = 1 << GROUP_SHIFT;
+
+    public BucketizedBLPIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public BucketizedBLPIntHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public BucketizedBLPIntHashSet(BucketizedBLPIntHashSet other) throws CloneNotSupportedException {
+        super(other);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public IntSet cloneSet() throws CloneNotSupportedException {
+        return new BucketizedBLPIntHashSet(this);
+    }
+
+    @Override
+    protected BucketizedBLPIntHashSet newEmptySet(int maxEntries) {
+        BucketizedBLPIntHashSet set = new BucketizedBLPIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    // round the capacity up to a whole number of groups
+    @Override
+    protected int capacityFor(int maxEntries) {
+        int capacity = super.capacityFor(maxEntries);
+        return Math.max(GROUP_SIZE, (capacity + GROUP_SIZE - 1) & -GROUP_SIZE);
+    }
+
+    @Override
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] oldArr = reallocate(maxEntries);
+        layoutSorted(oldArr, this.arr, GROUP_SHIFT);
+    }
+
+    // https://github.com/lemire/fastrange
+    // as in LPIntHashSet, but selecting a group rather than a bucket
+    @Override
+    protected int findPreferredBucket(int hash) {
+        if (hash == 0) {
+            return -1;
+        }
+        int groups = this.arr.length >>> GROUP_SHIFT;
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(groups)) >>> 32) << GROUP_SHIFT;
+    }
+
+    // Insertions into a group go to the right, unless the group is the last
+    // one and full, in which case the probe in that direction fails and we
+    // try the other.
+    @Override
+    protected boolean probeLeftForInsert(int bucket, int hash) {
+        return false;
+    }
+
+    @Override
+    protected int lookupByHash(int hash) {
+        int start = findPreferredBucket(hash);
+        int found = -1;
+        int smaller = 0;
+        for (int i = start; i < start + GROUP_SIZE; ++i) {
+            int current = this.arr[i];
+            found = (current == hash) ? i : found;
+            smaller += (current != 0 && Integer.compareUnsigned(current, hash) < 0) ? 1 : 0;
+        }
+        if (found != -1 || this.arr[start] == 0) {
+            // An element is always in a contiguous run of occupied buckets
+            // including its preferred bucket, so if that is empty, the group
+            // has no elements.
+            return found;
+        }
+        if (smaller == 0 || smaller == GROUP_SIZE) {
+            // The hash code would be sorted before the first bucket of the
+            // group, or after the last, so it may have been pushed out of it.
+            return super.lookupByHash(hash);
+        }
+        // The hash code would be sorted after the first bucket of the group,
+        // and if it were outside the group, every bucket of the group would
+        // be occupied and smaller, so it is absent.
+        return -1;
+    }
+}
@@ -0,0 +1,533 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A thread-safe version of {@link BLPIntHashSet}, following the
+ * synchronization scheme of <a
+ * href="https://pdfs.semanticscholar.org/6d6c/ca94c57d408c0b1164d6ff7faea25635fedb.pdf">
+ * A Concurrent Bidirectional Linear Probing Algorithm</a>. The bucket array is
+ * divided into fixed-size stripes, each with a version number which is odd
+ * while a writer holds the stripe. An insertion or deletion can only move
+ * elements within the cluster containing its preferred bucket (bounded by the
+ * empty buckets at either end), so a writer locks just the stripes spanning
+ * that range, in ascending order to avoid deadlock, and then runs the same
+ * algorithm as {@link BLPIntHashSet}. Lookups never lock: they read the
+ * version of each stripe before probing into it, and retry if any of those
+ * versions has changed by the end of the probe, so a lookup only retries if it
+ * overlaps a write to the same stripes, and never delays a writer.
+ * <p>
+ * Buckets and versions are accessed through {@link VarHandle}s, with stripe
+ * versions acquired by compare-and-set, as in {@link
+ * java.util.concurrent.locks.StampedLock}. Like the off-heap tables, the
+ * table has a fixed capacity. The size is maintained by a {@link LongAdder},
+ * so it is only exact when no writes are in progress.
+ *
+ * @author tdbaker
+ */
+public class ConcurrentBLPIntHashSet implements IntSet {
+    public static final String NAME = "set.int32.ConcurrentBLPIntHashSet";
+
+    // each stripe covers 64 buckets (4 cache lines)
+    private static final int STRIPE_SHIFT = 6;
+
+    private static final VarHandle BUCKETS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    protected final int[] arr;
+    // the version of each stripe, which is odd while a writer holds the stripe
+    protected final int[] versions;
+    protected final LongAdder size = new LongAdder();
+    protected final IntHasher hasher;
+
+    public ConcurrentBLPIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        int arrSize = (int) (maxEntries / loadFactor);
+        this.arr = new int[arrSize];
+        this.versions = new int[((arrSize - 1) >>> STRIPE_SHIFT) + 1];
+        this.hasher = hasher;
+    }
+
+    public ConcurrentBLPIntHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public ConcurrentBLPIntHashSet(ConcurrentBLPIntHashSet other) {
+        other.lockStripes(0, other.versions.length - 1);
+        try {
+            this.arr = other.arr.clone();
+            this.size.add(other.size.sum());
+        } finally {
+            other.unlockStripes(0, other.versions.length - 1);
+        }
+        this.versions = new int[other.versions.length];
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public IntSet cloneSet() throws CloneNotSupportedException {
+        return new ConcurrentBLPIntHashSet(this);
+    }
+
+    /**
+     * Query the size of the table's backing array.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        return this.size.intValue();
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 32-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(int value) {
+        return containsHash(hash(value));
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 32-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(int element) {
+        int hash = hash(element);
+        // don't lock anything if the element is already present
+        if (containsHash(hash)) {
+            return false;
+        }
+        long stripes = lockCluster(findPreferredBucket(hash));
+        try {
+            if (lookupByHash(hash) != -1) {
+                return false;
+            }
+            insertHash(hash);
+            this.size.increment();
+            return true;
+        } finally {
+            unlockStripes(stripes);
+        }
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 32-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(int value) {
+        int hash = hash(value);
+        // don't lock anything if the element is absent
+        if (!containsHash(hash)) {
+            return false;
+        }
+        long stripes = lockCluster(findPreferredBucket(hash));
+        try {
+            int bucket = lookupByHash(hash);
+            if (bucket == -1) {
+                return false;
+            }
+            removeBucket(bucket);
+            this.size.decrement();
+            return true;
+        } finally {
+            unlockStripes(stripes);
+        }
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        lockStripes(0, this.versions.length - 1);
+        try {
+            for (int i = 0; i < this.arr.length; ++i) {
+                setBucket(i, 0);
+            }
+            this.size.reset();
+        } finally {
+            unlockStripes(0, this.versions.length - 1);
+        }
+    }
+
+    // The lock-free lookup. This is the same probe as lookupByHash(), except
+    // that the version of each stripe is read before any of its buckets, and
+    // the probe is retried unless all those versions are unchanged at the end
+    // (so no writer touched any bucket we read while we were reading it).
+    protected boolean containsHash(int hash) {
+        int preferredBucket = findPreferredBucket(hash);
+        int firstStripe = preferredBucket >>> STRIPE_SHIFT;
+        while (true) {
+            int firstVersion = (int) VERSIONS.getAcquire(this.versions, firstStripe);
+            if ((firstVersion & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            // The versions of any further stripes the probe enters, in probe
+            // order. The probe only moves in one direction, so the stripes are
+            // consecutive, and it rarely leaves the first stripe.
+            int[] laterVersions = null;
+            int laterStripes = 0;
+            boolean consistent = true;
+            int bucket = preferredBucket;
+            int current = getBucket(bucket);
+            int step = isHashLesser(current, hash) ? 1 : (isHashGreater(current, hash) ? -1 : 0);
+            while (step != 0) {
+                int next = bucket + step;
+                if (next < 0 || next > this.arr.length - 1) {
+                    break;
+                }
+                if ((next >>> STRIPE_SHIFT) != (bucket >>> STRIPE_SHIFT)) {
+                    int version = (int) VERSIONS.getAcquire(this.versions, next >>> STRIPE_SHIFT);
+                    if ((version & 1) != 0) {
+                        consistent = false;
+                        break;
+                    }
+                    if (laterVersions == null) {
+                        laterVersions = new int[2];
+                    } else if (laterStripes == laterVersions.length) {
+                        laterVersions = Arrays.copyOf(laterVersions, 2 * laterStripes);
+                    }
+                    laterVersions[laterStripes++] = version;
+                }
+                int nextHash = getBucket(next);
+                if (nextHash == 0 || (step > 0 ? isHashGreater(nextHash, hash) : isHashLesser(nextHash, hash))) {
+                    break;
+                }
+                bucket = next;
+                current = nextHash;
+            }
+            if (consistent) {
+                // don't let the validating reads move before the bucket reads
+                VarHandle.acquireFence();
+                consistent = ((int) VERSIONS.getAcquire(this.versions, firstStripe) == firstVersion);
+                for (int i = 0; consistent && i < laterStripes; ++i) {
+                    int stripe = firstStripe + (i + 1) * step;
+                    consistent = ((int) VERSIONS.getAcquire(this.versions, stripe) == laterVersions[i]);
+                }
+                if (consistent) {
+                    return (current == hash);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Lock the stripes spanning the cluster containing the given bucket,
+    // along with the empty buckets (if any) at either end, which bound the
+    // buckets an insertion or deletion starting from that bucket can touch.
+    // Return the first and last locked stripes, packed into the high and low
+    // halves of a int.
+    private long lockCluster(int bucket) {
+        while (true) {
+            // this scan is unsynchronized, so we check its result once we hold the locks
+            int start = bucket;
+            while (start > 0 && !isEmpty(start)) {
+                start -= 1;
+            }
+            int end = bucket;
+            while (end < this.arr.length - 1 && !isEmpty(end)) {
+                end += 1;
+            }
+            int firstStripe = start >>> STRIPE_SHIFT;
+            int lastStripe = end >>> STRIPE_SHIFT;
+            lockStripes(firstStripe, lastStripe);
+            if ((start == 0 || isEmpty(start)) && (end == this.arr.length - 1 || isEmpty(end))) {
+                return ((long) firstStripe << 32) | lastStripe;
+            }
+            // the cluster grew in the meantime
+            unlockStripes(firstStripe, lastStripe);
+        }
+    }
+
+    private void unlockStripes(long stripes) {
+        unlockStripes((int) (stripes >>> 32), (int) stripes);
+    }
+
+    // stripes must be locked in ascending order to avoid deadlock
+    private void lockStripes(int firstStripe, int lastStripe) {
+        for (int stripe = firstStripe; stripe <= lastStripe; ++stripe) {
+            while (true) {
+                int version = (int) VERSIONS.getVolatile(this.versions, stripe);
+                if ((version & 1) == 0 && VERSIONS.compareAndSet(this.versions, stripe, version, version + 1)) {
+                    break;
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void unlockStripes(int firstStripe, int lastStripe) {
+        for (int stripe = firstStripe; stripe <= lastStripe; ++stripe) {
+            VERSIONS.setRelease(this.versions, stripe, this.versions[stripe] + 1);
+        }
+    }
+
+    private int getBucket(int bucket) {
+        return (int) BUCKETS.getOpaque(this.arr, bucket);
+    }
+
+    // Buckets are only written while their stripe is locked, but may be read
+    // concurrently by lookups, so writes must not tear.
+    private void setBucket(int bucket, int hash) {
+        BUCKETS.setOpaque(this.arr, bucket, hash);
+    }
+
+    protected boolean isEmpty(int bucket) {
+        return (getBucket(bucket) == 0);
+    }
+
+    // https://github.com/lemire/fastrange
+    protected int findPreferredBucket(int hash) {
+        if (hash == 0) {
+            return -1;
+        }
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(this.arr.length)) >>> 32);
+    }
+
+    protected int hash(int x) {
+        return this.hasher.hash(x);
+    }
+
+    protected int unhash(int x) {
+        return this.hasher.unhash(x);
+    }
+
+    // The remaining methods are the single-threaded algorithms of
+    // BLPIntHashSet, which may only be called with the cluster locked.
+
+    private void insertHash(int hash) {
+        int bucket = findPreferredBucket(hash);
+        if (!isEmpty(bucket)) {
+            // see BLPIntHashSet.addHash()
+            boolean probeLeft = (bucket > 0 &&
+                    isHashLesser(this.arr[bucket], hash)) ||
+                bucket == this.arr.length - 1;
+            bucket = getEmptyBucketForInsert(hash, bucket, probeLeft, false);
+        }
+        setBucket(bucket, hash);
+    }
+
+    private void removeBucket(int bucket) {
+        MOVE_DIRECTION moveDirection;
+        if (bucket == 0) {
+            moveDirection = MOVE_DIRECTION.LEFT;
+        } else if (bucket == this.arr.length - 1) {
+            moveDirection = MOVE_DIRECTION.RIGHT;
+        } else {
+            moveDirection = getMoveDirection(bucket);
+        }
+        int endBucket;
+        int currBucket = bucket;
+        switch (moveDirection) {
+            case NONE:
+                setBucket(bucket, 0);
+                break;
+            case LEFT:
+                endBucket = findMoveBoundaryToRight(bucket);
+                while (currBucket < endBucket) {
+                    setBucket(currBucket, this.arr[currBucket + 1]);
+                    currBucket += 1;
+                }
+                setBucket(endBucket, 0);
+                break;
+            case RIGHT:
+                endBucket = findMoveBoundaryToLeft(bucket);
+                while (currBucket > endBucket) {
+                    setBucket(currBucket, this.arr[currBucket - 1]);
+                    currBucket -= 1;
+                }
+                setBucket(endBucket, 0);
+                break;
+        }
+    }
+
+    private static boolean isHashGreater(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) > 0);
+    }
+
+    private static boolean isHashLesser(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) < 0);
+    }
+
+    private static boolean isHashGreaterOrEqual(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) >= 0);
+    }
+
+    private static boolean isHashLesserOrEqual(int hash1, int hash2) {
+        return (Integer.compareUnsigned(hash1, hash2) <= 0);
+    }
+
+    private int lookupByHash(int hash) {
+        int bucket = findPreferredBucket(hash);
+        if (isHashLesser(this.arr[bucket], hash)) {
+            while (bucket < this.arr.length - 1 &&
+                   !isEmpty(bucket + 1) &&
+                   isHashLesserOrEqual(this.arr[bucket + 1], hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(this.arr[bucket], hash)) {
+            while (bucket > 0 &&
+                   !isEmpty(bucket - 1) &&
+                   isHashGreaterOrEqual(this.arr[bucket - 1], hash)) {
+                bucket -= 1;
+            }
+        }
+        if (this.arr[bucket] == hash) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int findMoveBoundaryToLeft(int startBucket) {
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket) &&
+               bucket - 1 < findPreferredBucket(this.arr[bucket - 1])) {
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    private int findMoveBoundaryToRight(int startBucket) {
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 &&
+               !isEmpty(bucket) &&
+               bucket + 1 > findPreferredBucket(this.arr[bucket + 1])) {
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private static enum MOVE_DIRECTION {
+        LEFT,
+        RIGHT,
+        NONE,
+    }
+
+    private MOVE_DIRECTION getMoveDirection(int bucket) {
+        assert bucket > 0 && bucket < this.arr.length - 1;
+        int prevBucket = bucket - 1;
+        int nextBucket = bucket + 1;
+        int preferredBucket = findPreferredBucket(this.arr[bucket]);
+        int leftPreferredBucket = !isEmpty(prevBucket) ? findPreferredBucket(this.arr[prevBucket]) : -1;
+        int rightPreferredBucket = !isEmpty(nextBucket) ? findPreferredBucket(this.arr[nextBucket]) : -1;
+        if (bucket == preferredBucket) {
+            if (leftPreferredBucket != preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.NONE;
+            } else if (leftPreferredBucket == preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.RIGHT;
+            } else if (leftPreferredBucket != preferredBucket && rightPreferredBucket == preferredBucket) {
+                return MOVE_DIRECTION.LEFT;
+            } else {
+                int prevHashDiff = unsignedAbsDiff(this.arr[bucket], this.arr[prevBucket]);
+                int nextHashDiff = unsignedAbsDiff(this.arr[bucket], this.arr[nextBucket]);
+                return isHashGreater(prevHashDiff, nextHashDiff) ? MOVE_DIRECTION.LEFT : MOVE_DIRECTION.RIGHT;
+            }
+        } else if (bucket < preferredBucket) {
+            return MOVE_DIRECTION.RIGHT;
+        } else {  // bucket > preferredBucket
+            return MOVE_DIRECTION.LEFT;
+        }
+    }
+
+    private static int unsignedAbsDiff(int a, int b) {
+        if (isHashGreater(a, b)) {
+            return a - b;
+        } else {
+            return b - a;
+        }
+    }
+
+    private int findFirstEmptyBucketToLeft(int startBucket) {
+        int bucket = startBucket;
+        while (bucket > 0 && !isEmpty(bucket)) {
+            bucket -= 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int findFirstEmptyBucketToRight(int startBucket) {
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 && !isEmpty(bucket)) {
+            bucket += 1;
+        }
+        if (isEmpty(bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private int moveEmptyBucketLeftToInsertionPoint(int startBucket, int hash) {
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(bucket - 1) &&
+               isHashGreater(this.arr[bucket - 1], hash)) {
+            setBucket(bucket, this.arr[bucket - 1]);
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    private int moveEmptyBucketRightToInsertionPoint(int startBucket, int hash) {
+        int bucket = startBucket;
+        while (bucket < this.arr.length - 1 &&
+               !isEmpty(bucket + 1) &&
+               isHashLesser(this.arr[bucket + 1], hash)) {
+            setBucket(bucket, this.arr[bucket + 1]);
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private int getEmptyBucketForInsert(int hash, int startBucket, boolean probeLeft, boolean prevProbeFailed) {
+        int bucket = startBucket;
+        int emptyBucket;
+        if (probeLeft) {
+            emptyBucket = findFirstEmptyBucketToLeft(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, false, true);
+            }
+            bucket = moveEmptyBucketRightToInsertionPoint(emptyBucket, hash);
+        } else {
+            emptyBucket = findFirstEmptyBucketToRight(bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(hash, bucket, true, true);
+            }
+            bucket = moveEmptyBucketLeftToInsertionPoint(emptyBucket, hash);
+        }
+        return bucket;
+    }
+}
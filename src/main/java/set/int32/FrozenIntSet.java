@@ -0,0 +1,166 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+
+
+/**
+ * An immutable snapshot of a {@link BLPIntHashSet}, returned by {@link
+ * BLPIntHashSet#freeze()}. Since the BLP layout is sorted by hash code, the
+ * snapshot is built in a single sequential pass over the source table, with
+ * no probing, so it can be packed to a much higher load factor than a table
+ * which must support insertions (by default, {@code
+ * DEFAULT_LOAD_FACTOR}). Lookups are the same as {@link BLPIntHashSet}'s,
+ * which stop as soon as they pass the position of the hash code in sorted
+ * order, in either direction, so they stay short at high load factors.
+ * (A load factor of exactly 1.0 is allowed, but leaves no empty buckets to
+ * absorb the random variation in the number of hash codes preferring each
+ * part of the table, so the distance of elements from their preferred buckets
+ * grows with the square root of the size of the table.)
+ * <p>
+ * All fields are final and the bucket array is never modified after
+ * construction, so a frozen set can be shared between threads without any
+ * synchronization. The mutating operations throw {@link
+ * UnsupportedOperationException}.
+ *
+ * @author tdbaker
+ */
+public class FrozenIntSet implements IntSet {
+    public static final String NAME = "set.int32.FrozenIntSet";
+    public static final double DEFAULT_LOAD_FACTOR = 0.99;
+    // the number of lookups whose memory accesses a batched query overlaps
+    private static final int LOOKUP_GROUP_SIZE = 16;
+
+    private final int[] arr;
+    private final int size;
+    private final IntHasher hasher;
+
+    // Build a snapshot of the given hash codes, which must be sorted (ignoring
+    // empty buckets), as in the bucket array of a BLP table.
+    FrozenIntSet(int[] sortedHashes, int size, double loadFactor, IntHasher hasher) {
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.arr = new int[Math.max((int) Math.ceil(size / loadFactor), 1)];
+        BLPIntHashSet.layoutSorted(sortedHashes, this.arr);
+        this.size = size;
+        this.hasher = hasher.cloneHasher();
+    }
+
+    /**
+     * Return the same set, since it is immutable.
+     */
+    public IntSet cloneSet() {
+        return this;
+    }
+
+    /**
+     * Query the size of the table's backing array.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 32-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(int value) {
+        return containsHash(this.hasher.hash(value));
+    }
+
+    /**
+     * Query the table for a range of values at once, storing the results in
+     * {@code resultBits} as described in {@link IntSet#contains(int[], int, int, long[])}.
+     * As in {@link LPIntHashSet}, all the preferred buckets of a group of
+     * keys are loaded before any of their lookups proceed, so that the cache
+     * misses of the loads overlap.
+     *
+     * @param keys the 32-bit integers to query the table for
+     * @param from the index of the first key to query (inclusive)
+     * @param to the index of the last key to query (exclusive)
+     * @param resultBits the bitmap to store the results in
+     * @return the number of keys in the range which are present in the table
+     */
+    @Override
+    public int contains(int[] keys, int from, int to, long[] resultBits) {
+        int[] hashes = new int[LOOKUP_GROUP_SIZE];
+        int[] preferred = new int[LOOKUP_GROUP_SIZE];
+        int found = 0;
+        for (int start = from; start < to; start += LOOKUP_GROUP_SIZE) {
+            int count = Math.min(LOOKUP_GROUP_SIZE, to - start);
+            for (int i = 0; i < count; ++i) {
+                hashes[i] = this.hasher.hash(keys[start + i]);
+            }
+            for (int i = 0; i < count; ++i) {
+                preferred[i] = this.arr[findPreferredBucket(hashes[i])];
+            }
+            for (int i = 0; i < count; ++i) {
+                boolean isPresent = (preferred[i] == hashes[i] && hashes[i] != 0) || containsHash(hashes[i]);
+                long present = isPresent ? 1 : 0;
+                int bit = start + i - from;
+                resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+                found += (int) present;
+            }
+        }
+        return found;
+    }
+
+    private boolean containsHash(int hash) {
+        if (hash == 0) {
+            // 0 marks an empty bucket, so it can't be an element
+            return false;
+        }
+        int bucket = findPreferredBucket(hash);
+        if (Integer.compareUnsigned(this.arr[bucket], hash) < 0) {
+            while (bucket < this.arr.length - 1 &&
+                   this.arr[bucket + 1] != 0 &&
+                   Integer.compareUnsigned(this.arr[bucket + 1], hash) <= 0) {
+                bucket += 1;
+            }
+        } else if (Integer.compareUnsigned(this.arr[bucket], hash) > 0) {
+            while (bucket > 0 &&
+                   this.arr[bucket - 1] != 0 &&
+                   Integer.compareUnsigned(this.arr[bucket - 1], hash) >= 0) {
+                bucket -= 1;
+            }
+        }
+        return (this.arr[bucket] == hash);
+    }
+
+    /**
+     * Unsupported, since the set is immutable.
+     */
+    public boolean add(int element) {
+        throw new UnsupportedOperationException("Frozen sets are immutable");
+    }
+
+    /**
+     * Unsupported, since the set is immutable.
+     */
+    public boolean remove(int value) {
+        throw new UnsupportedOperationException("Frozen sets are immutable");
+    }
+
+    /**
+     * Unsupported, since the set is immutable.
+     */
+    public void clear() {
+        throw new UnsupportedOperationException("Frozen sets are immutable");
+    }
+
+    // https://github.com/lemire/fastrange
+    private int findPreferredBucket(int hash) {
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(this.arr.length)) >>> 32);
+    }
+}
@@ -0,0 +1,388 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.util.Arrays;
+
+
+/**
+ * An implementation of the "graveyard hashing" scheme from <a
+ * href="https://arxiv.org/abs/2107.01250">Bender, Kuszmaul and Kuszmaul's
+ * "Linear Probing Revisited"</a>, for comparison with the tombstone-free
+ * linear probing tables under heavy churn. The elements of each cluster are
+ * kept in order of their preferred buckets, and those with the same preferred
+ * bucket in order of their hash codes, so lookups stop early as in {@link
+ * RHIntHashSet}, and a little earlier still. Deletion just marks the bucket
+ * as a tombstone, which keeps its hash code, and so its place in the order.
+ * An insertion takes over a tombstone next to where the new element belongs,
+ * if there is one, and otherwise shifts the rest of the run right, as far as
+ * the nearest empty bucket or tombstone.
+ * <p>
+ * The table is rebuilt every {@code (capacity - maxEntries) / 4} insertions
+ * and deletions (or {@code maxEntries / 1024}, if that is more, so that a
+ * table with almost no free buckets isn't rebuilt on nearly every update).
+ * The rebuild discards the tombstones left by deletions, and refills the
+ * "graveyard": tombstones spaced evenly across the table, taking up half of
+ * its free buckets. These split up the long runs which would otherwise form
+ * at high load factors, so an insertion usually finds a tombstone nearby,
+ * rather than shifting everything up to the end of its cluster. The rebuild
+ * is a single sequential pass, since the elements are already in order, and
+ * its cost grows with {@code 1 / (1 - loadFactor)}.
+ * <p>
+ * A bitmap alongside the bucket array marks the tombstones.
+ *
+ * @author tdbaker
+ */
+public class GraveyardIntHashSet extends LPIntHashSet {
+    public static final String NAME = "set.int32.GraveyardIntHashSet";
+
+    // bit i is set if bucket i holds a tombstone
+    protected long[] tombstoneBits;
+    protected int tombstones = 0;
+    // the number of insertions and deletions since the table was last rebuilt
+    protected int updates = 0;
+
+    public GraveyardIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+        this.tombstoneBits = new long[(this.arr.length + 63) >>> 6];
+    }
+
+    public GraveyardIntHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public GraveyardIntHashSet(GraveyardIntHashSet other) throws CloneNotSupportedException {
+        super(other);
+        this.tombstoneBits = other.tombstoneBits.clone();
+        this.tombstones = other.tombstones;
+        this.updates = other.updates;
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public IntSet cloneSet() throws CloneNotSupportedException {
+        return new GraveyardIntHashSet(this);
+    }
+
+    @Override
+    protected GraveyardIntHashSet newEmptySet(int maxEntries) {
+        GraveyardIntHashSet set = new GraveyardIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    /**
+     * Query the number of tombstones in the table, including those placed by
+     * the last rebuild.
+     *
+     * @return the number of tombstones in the table
+     */
+    public int tombstones() {
+        return this.tombstones;
+    }
+
+    /**
+     * Query the table for a range of values at once, as in {@link
+     * LPIntHashSet#contains(int[], int, int, long[])}. A tombstone keeps
+     * its hash code, so a match in the preferred bucket only counts if the
+     * bucket isn't a tombstone.
+     */
+    @Override
+    public int contains(int[] keys, int from, int to, long[] resultBits) {
+        int found = 0;
+        for (int i = from; i < to; ++i) {
+            int hash = hash(keys[i]);
+            int bucket = findPreferredBucket(hash);
+            boolean isPresent = (this.arr[bucket] == hash && !isTombstone(bucket)) || containsHash(hash);
+            long present = isPresent ? 1 : 0;
+            int bit = i - from;
+            resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+            found += (int) present;
+        }
+        return found;
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 32-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    @Override
+    public boolean add(int element) {
+        boolean added = super.add(element);
+        if (added) {
+            rebuildIfDue();
+        }
+        return added;
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 32-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    @Override
+    public boolean remove(int value) {
+        boolean removed = super.remove(value);
+        if (removed) {
+            rebuildIfDue();
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(this.tombstoneBits, 0);
+        this.tombstones = 0;
+        this.updates = 0;
+    }
+
+    @Override
+    protected boolean addHash(int hash) {
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        // stop at the first empty bucket, or the first bucket which follows
+        // the new element in the order, which is where the new element goes
+        while (!isEmpty(bucket) && !follows(bucket, hash, probeLength)) {
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+            if (probeLength == this.arr.length) {
+                throw new RuntimeException("Couldn't insert into table: " + unhash(hash));
+            }
+        }
+        // the new element can replace a tombstone on either side of that
+        // bucket without breaking the order (but not one before its
+        // preferred bucket)
+        int tombstone = -1;
+        if (probeLength > 0 && isTombstone(wrap(bucket - 1))) {
+            tombstone = wrap(bucket - 1);
+        } else if (!isEmpty(bucket) && isTombstone(bucket)) {
+            tombstone = bucket;
+        }
+        if (tombstone != -1) {
+            clearTombstone(tombstone);
+            this.arr[tombstone] = hash;
+        } else {
+            // shift the run right by one bucket, up to the nearest empty bucket or tombstone
+            int end = bucket;
+            while (!isEmpty(end) && !isTombstone(end)) {
+                end = wrap(end + 1);
+                if (end == bucket) {
+                    throw new RuntimeException("Couldn't insert into table: " + unhash(hash));
+                }
+            }
+            if (!isEmpty(end)) {
+                clearTombstone(end);
+            }
+            while (end != bucket) {
+                int prev = wrap(end - 1);
+                this.arr[end] = this.arr[prev];
+                end = prev;
+            }
+            this.arr[bucket] = hash;
+        }
+        ++this.size;
+        return true;
+    }
+
+    @Override
+    protected boolean removeHash(int hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return false;
+        }
+        // the hash code stays in the bucket, to keep the tombstone's place in the order
+        this.tombstoneBits[bucket >>> 6] |= 1L << bucket;
+        ++this.tombstones;
+        --this.size;
+        return true;
+    }
+
+    // Lookups probe past tombstones just as past elements, and stop at the
+    // first empty bucket or the first bucket which follows the hash code in
+    // the order. (The table's probe kernel doesn't apply.) Return -1 if the
+    // hash code is absent.
+    @Override
+    protected int lookupByHash(int hash) {
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (!isEmpty(bucket)) {
+            if (this.arr[bucket] == hash && !isTombstone(bucket)) {
+                return bucket;
+            }
+            if (probeLength == this.arr.length || follows(bucket, hash, probeLength)) {
+                break;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+        }
+        return -1;
+    }
+
+    // Rebuild the table to hold maxEntries elements at its load factor, with
+    // a fresh graveyard. The elements are read off in the order of the
+    // table, so they can be laid out again in a single pass.
+    @Override
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] hashes = hashesInOrder();
+        reallocate(maxEntries);
+        this.updates = 0;
+        // fill half the free buckets with tombstones, spaced evenly
+        int graveyard = (this.arr.length - maxEntries) / 2;
+        int reserved = 0;
+        int overflow = layout(hashes, graveyard, reserved);
+        while (overflow != reserved) {
+            // The last elements ran off the end of the array, and wrapped
+            // around to the start, where they go before the elements already
+            // there, so lay those out again leaving room for them. (That can
+            // push more elements off the end, but rarely.)
+            Arrays.fill(this.arr, 0);
+            Arrays.fill(this.tombstoneBits, 0);
+            reserved = overflow;
+            overflow = layout(hashes, graveyard, reserved);
+        }
+        this.tombstones = graveyard;
+    }
+
+    @Override
+    protected int[] reallocate(int maxEntries) {
+        int[] oldArr = super.reallocate(maxEntries);
+        this.tombstoneBits = new long[(this.arr.length + 63) >>> 6];
+        this.tombstones = 0;
+        return oldArr;
+    }
+
+    private void rebuildIfDue() {
+        int interval = Math.max((this.arr.length - this.maxEntries) / 4, this.maxEntries / 1024);
+        if (++this.updates >= Math.max(1, interval)) {
+            resize(this.maxEntries);
+        }
+    }
+
+    // Return the hash codes of the elements in the order of the table (which
+    // is unsigned order, since findPreferredBucket() is monotonic in the
+    // hash code). They are in that order in the bucket array already, except
+    // that the elements which wrapped around from the end of the array to
+    // the start (those to the left of their preferred buckets) go last.
+    private int[] hashesInOrder() {
+        int[] hashes = new int[this.size];
+        int wrapped = 0;
+        while (wrapped < this.arr.length && !isEmpty(wrapped) &&
+               findPreferredBucket(this.arr[wrapped]) > wrapped) {
+            ++wrapped;
+        }
+        int count = 0;
+        for (int bucket = wrapped; bucket < this.arr.length; ++bucket) {
+            if (!isEmpty(bucket) && !isTombstone(bucket)) {
+                hashes[count++] = this.arr[bucket];
+            }
+        }
+        for (int bucket = 0; bucket < wrapped; ++bucket) {
+            if (!isTombstone(bucket)) {
+                hashes[count++] = this.arr[bucket];
+            }
+        }
+        assert count == this.size;
+        return hashes;
+    }
+
+    // Lay out the hash codes, which must be in unsigned order, in the empty
+    // bucket array, merged with graveyard tombstones spaced evenly across it.
+    // Each goes in its preferred bucket, or in the bucket after the previous
+    // one if that is further right, starting after the first reserved
+    // buckets, and those which run off the end of the array go in the
+    // reserved buckets. Return the number which ran off the end (only the
+    // first reserved of them are laid out).
+    private int layout(int[] hashes, int graveyard, int reserved) {
+        int capacity = this.arr.length;
+        int next = reserved;
+        int overflow = 0;
+        int i = 0;
+        int t = 0;
+        int tombstoneBucket = (graveyard > 0) ? 0 : capacity;
+        while (i < hashes.length || t < graveyard) {
+            int elementBucket = (i < hashes.length) ? findPreferredBucket(hashes[i]) : capacity;
+            // a graveyard tombstone's hash code is the smallest with its preferred bucket
+            boolean isTombstone = tombstoneBucket <= elementBucket;
+            int hash;
+            int preferredBucket;
+            if (isTombstone) {
+                hash = tombstoneHash(tombstoneBucket);
+                preferredBucket = tombstoneBucket;
+                ++t;
+                tombstoneBucket = (t < graveyard) ? (int) ((long) t * capacity / graveyard) : capacity;
+            } else {
+                hash = hashes[i];
+                preferredBucket = elementBucket;
+                ++i;
+            }
+            int bucket = Math.max(preferredBucket, next);
+            if (bucket >= capacity) {
+                if (overflow >= reserved) {
+                    ++overflow;
+                    continue;
+                }
+                bucket = overflow++;
+            } else {
+                next = bucket + 1;
+            }
+            this.arr[bucket] = hash;
+            if (isTombstone) {
+                this.tombstoneBits[bucket >>> 6] |= 1L << bucket;
+            }
+        }
+        return overflow;
+    }
+
+    // The smallest nonzero hash code whose preferred bucket is the given
+    // bucket, to mark a graveyard tombstone's place in the order.
+    private int tombstoneHash(int bucket) {
+        long hash = (((long) bucket << 32) + this.arr.length - 1) / this.arr.length;
+        return (int) Math.max(hash, 1);
+    }
+
+    @Override
+    protected boolean isLive(int bucket) {
+        return !isEmpty(bucket) && !isTombstone(bucket);
+    }
+
+    private boolean isTombstone(int bucket) {
+        return ((this.tombstoneBits[bucket >>> 6] >>> bucket) & 1) != 0;
+    }
+
+    private void clearTombstone(int bucket) {
+        this.tombstoneBits[bucket >>> 6] &= ~(1L << bucket);
+        --this.tombstones;
+    }
+
+    // Whether the element (or tombstone) in the bucket follows the hash code
+    // in the order of the table, where probeLength is the hash code's
+    // distance from its own preferred bucket: it does if its preferred
+    // bucket is later, or is the same and its hash code is larger (unsigned).
+    private boolean follows(int bucket, int hash, int probeLength) {
+        int distance = probeDistance(this.arr[bucket], bucket);
+        return distance < probeLength ||
+                (distance == probeLength && Integer.compareUnsigned(this.arr[bucket], hash) > 0);
+    }
+
+    private int probeDistance(int hash, int bucket) {
+        int preferredBucket = findPreferredBucket(hash);
+        if (preferredBucket > bucket) {  // wraparound
+            return this.arr.length - preferredBucket + bucket;
+        }
+        return bucket - preferredBucket;
+    }
+}
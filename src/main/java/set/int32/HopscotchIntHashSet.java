@@ -0,0 +1,232 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.util.Arrays;
+
+
+/**
+ * An implementation of <a href="https://doi.org/10.1007/978-3-540-87779-0_24">
+ * Herlihy, Shavit and Tzafrir's hopscotch hashing</a>, which keeps every
+ * element within a neighbourhood of {@code NEIGHBOURHOOD_SIZE} buckets
+ * starting at its preferred bucket. Each bucket has a "hop info" bitmap,
+ * in which bit i is set if the bucket i places to its right holds an
+ * element whose preferred bucket it is, so a lookup reads one bitmap and
+ * then only the buckets it points to, and never more than {@code
+ * NEIGHBOURHOOD_SIZE} of them. An insertion probes linearly for an empty
+ * bucket, and while that bucket is outside the new element's neighbourhood,
+ * moves an element from earlier in the cluster into it (keeping that element
+ * within its own neighbourhood), which brings the empty bucket closer. If no
+ * element can be moved, the table is doubled and the insertion retried.
+ * Deletion just empties the bucket and clears its bit, since lookups follow
+ * the bitmaps rather than stopping at empty buckets, so it needs neither
+ * tombstones nor shifting.
+ * <p>
+ * Since an insertion may need to double the table, which the raw {@code
+ * addHash} (like that of the other tables) never does, these tables can't be
+ * wrapped in an {@link IncrementalIntHashSet}.
+ *
+ * @author tdbaker
+ */
+public class HopscotchIntHashSet extends LPIntHashSet {
+    public static final String NAME = "set.int32.HopscotchIntHashSet";
+
+    // the number of bits in a hop info bitmap
+    private static final int NEIGHBOURHOOD_SIZE = 32;
+
+    // bit i of hopInfo[bucket] is set if the element in bucket + i (wrapping
+    // around the end of the array) has bucket as its preferred bucket
+    protected int[] hopInfo;
+
+    public HopscotchIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+        this.hopInfo = new int[this.arr.length];
+    }
+
+    public HopscotchIntHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public HopscotchIntHashSet(HopscotchIntHashSet other) throws CloneNotSupportedException {
+        super(other);
+        this.hopInfo = other.hopInfo.clone();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public IntSet cloneSet() throws CloneNotSupportedException {
+        return new HopscotchIntHashSet(this);
+    }
+
+    @Override
+    protected HopscotchIntHashSet newEmptySet(int maxEntries) {
+        HopscotchIntHashSet set = new HopscotchIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(this.hopInfo, 0);
+    }
+
+    @Override
+    protected int[] reallocate(int maxEntries) {
+        int[] oldArr = super.reallocate(maxEntries);
+        this.hopInfo = new int[this.arr.length];
+        return oldArr;
+    }
+
+    /**
+     * Add an element to the table. If the element can't be moved into its
+     * neighbourhood, the table is doubled until it can.
+     *
+     * @param element the 32-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    @Override
+    public boolean add(int element) {
+        int hash = hash(element);
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        // double the table before it would exceed its load factor
+        if (this.size >= this.maxEntries) {
+            resize(2 * this.maxEntries);
+        }
+        while (!insert(hash)) {
+            resize(2 * this.maxEntries);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean addHash(int hash) {
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        if (!insert(hash)) {
+            // no element can make room in the new element's neighbourhood
+            throw new RuntimeException("Couldn't insert into table");
+        }
+        return true;
+    }
+
+    // Reinsert the elements into the new array, and if one of them can't be
+    // moved into its neighbourhood, start over with an array twice the size.
+    @Override
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] oldArr = reallocate(maxEntries);
+        while (!insertAll(oldArr)) {
+            reallocate(2 * this.maxEntries);
+        }
+    }
+
+    private boolean insertAll(int[] hashes) {
+        this.size = 0;
+        for (int hash : hashes) {
+            if (hash != 0 && !insert(hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Insert a hash code which isn't in the table, and return false (leaving
+    // the table without it) if every element which could move into the empty
+    // bucket is already as far right as its neighbourhood allows.
+    private boolean insert(int hash) {
+        int preferredBucket = findPreferredBucket(hash);
+        int emptyBucket = findFirstEmptyBucket(preferredBucket);
+        if (emptyBucket == -1) {
+            // table full
+            throw new RuntimeException("Couldn't insert into table");
+        }
+        while (distance(preferredBucket, emptyBucket) >= NEIGHBOURHOOD_SIZE) {
+            int fromBucket = hopEmptyBucketLeft(emptyBucket);
+            if (fromBucket == -1) {
+                this.arr[emptyBucket] = 0;
+                return false;
+            }
+            emptyBucket = fromBucket;
+        }
+        this.arr[emptyBucket] = hash;
+        this.hopInfo[preferredBucket] |= 1 << distance(preferredBucket, emptyBucket);
+        ++this.size;
+        return true;
+    }
+
+    @Override
+    protected boolean removeHash(int hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return false;
+        }
+        int preferredBucket = findPreferredBucket(hash);
+        this.hopInfo[preferredBucket] &= ~(1 << distance(preferredBucket, bucket));
+        this.arr[bucket] = 0;
+        --this.size;
+        return true;
+    }
+
+    // Lookups only read the buckets in the hash code's hop info bitmap (so
+    // the table's probe kernel doesn't apply), and return -1 if the hash
+    // code is absent.
+    @Override
+    protected int lookupByHash(int hash) {
+        int preferredBucket = findPreferredBucket(hash);
+        for (int hops = this.hopInfo[preferredBucket]; hops != 0; hops &= hops - 1) {
+            int bucket = wrap(preferredBucket + Integer.numberOfTrailingZeros(hops));
+            if (this.arr[bucket] == hash) {
+                return bucket;
+            }
+        }
+        return -1;
+    }
+
+    // Move the element nearest the start of the buckets before emptyBucket
+    // which can move into it without leaving its neighbourhood, and return
+    // the bucket it vacated, or -1 if there is no such element. The buckets
+    // before emptyBucket are all occupied (back to the new element's
+    // preferred bucket, at least), so the earliest movable element moves
+    // the empty bucket furthest.
+    private int hopEmptyBucketLeft(int emptyBucket) {
+        for (int offset = NEIGHBOURHOOD_SIZE - 1; offset > 0; --offset) {
+            int bucket = wrap(emptyBucket - offset);
+            // the elements of bucket's neighbourhood which lie before emptyBucket
+            int hops = this.hopInfo[bucket] & ((1 << offset) - 1);
+            if (hops != 0) {
+                int hop = Integer.numberOfTrailingZeros(hops);
+                int fromBucket = wrap(bucket + hop);
+                this.arr[emptyBucket] = this.arr[fromBucket];
+                this.hopInfo[bucket] = (this.hopInfo[bucket] & ~(1 << hop)) | (1 << offset);
+                return fromBucket;
+            }
+        }
+        return -1;
+    }
+
+    private int findFirstEmptyBucket(int startBucket) {
+        int bucket = startBucket;
+        for (int probeLength = 0; probeLength < this.arr.length; ++probeLength) {
+            if (isEmpty(bucket)) {
+                return bucket;
+            }
+            bucket = wrap(bucket + 1);
+        }
+        return -1;
+    }
+
+    // the number of buckets from one bucket to another, to its right (wrapping around)
+    private int distance(int fromBucket, int toBucket) {
+        return (toBucket >= fromBucket) ? toBucket - fromBucket : toBucket + this.arr.length - fromBucket;
+    }
+}
@@ -22,6 +22,32 @@ public interface IntSet {
      */
     public boolean contains(int value);
 
+    /**
+     * Query the table for a range of values at once. Bit {@code i - from} of
+     * {@code resultBits} (that is, bit {@code (i - from) % 64} of word
+     * {@code (i - from) / 64}) is set if {@code keys[i]} is present in the
+     * table, and cleared otherwise; the other bits are unchanged.
+     * Implementations may overlap the memory accesses of several lookups,
+     * which is much faster than querying one value at a time when the table
+     * doesn't fit in cache.
+     *
+     * @param keys the 32-bit integers to query the table for
+     * @param from the index of the first key to query (inclusive)
+     * @param to the index of the last key to query (exclusive)
+     * @param resultBits the bitmap to store the results in, of at least {@code (to - from + 63) / 64} words
+     * @return the number of keys in the range which are present in the table
+     */
+    public default int contains(int[] keys, int from, int to, long[] resultBits) {
+        int found = 0;
+        for (int i = from; i < to; ++i) {
+            int bit = i - from;
+            long present = contains(keys[i]) ? 1 : 0;
+            resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+            found += (int) present;
+        }
+        return found;
+    }
+
     /**
      * Add an element to the table.
      *
@@ -43,15 +43,15 @@ public class LCFSIntHashSet extends LPIntHashSet {
         return new LCFSIntHashSet(this);
     }
 
-    /**
-     * Add an element to the table.
-     *
-     * @param element the 32-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean add(int element) {
-        int hash = hash(element);
+    protected LCFSIntHashSet newEmptySet(int maxEntries) {
+        LCFSIntHashSet set = new LCFSIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             // table full
@@ -21,15 +21,26 @@ import java.util.Arrays;
 public class LPIntHashSet implements IntSet {
     public static final String NAME = "set.int32.LPIntHashSet";
 
-    protected final int[] arr;
+    // the number of lookups whose memory accesses a batched query overlaps
+    private static final int LOOKUP_GROUP_SIZE = 16;
+
+    protected int[] arr;
     protected int size = 0;
+    // the number of elements the table is currently sized for, which grows
+    // and shrinks with the table, but never below its initial value
+    protected int maxEntries;
+    protected final int minEntries;
+    protected final double loadFactor;
     protected final IntHasher hasher;
+    protected ProbeKernel probeKernel = ProbeKernel.SCALAR;
 
     public LPIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
         assert maxEntries > 0;
         assert loadFactor > 0 && loadFactor <= 1.0;
-        int arrSize = (int) (maxEntries / loadFactor);
-        this.arr = new int[arrSize];
+        this.loadFactor = loadFactor;
+        this.arr = new int[capacityFor(maxEntries)];
+        this.maxEntries = maxEntries;
+        this.minEntries = maxEntries;
         this.hasher = hasher;
     }
 
@@ -40,7 +51,11 @@ public class LPIntHashSet implements IntSet {
     public LPIntHashSet(LPIntHashSet other) {
         this.arr = other.arr.clone();
         this.size = other.size;
+        this.maxEntries = other.maxEntries;
+        this.minEntries = other.minEntries;
+        this.loadFactor = other.loadFactor;
         this.hasher = other.hasher.cloneHasher();
+        this.probeKernel = other.probeKernel;
     }
 
     /**
@@ -50,6 +65,33 @@ public class LPIntHashSet implements IntSet {
         return new LPIntHashSet(this);
     }
 
+    // Return an empty table of the same class, sized for maxEntries elements
+    // at the same load factor, and sharing this table's hash function (so
+    // hash codes can be moved between the two tables without unhashing them).
+    protected LPIntHashSet newEmptySet(int maxEntries) {
+        LPIntHashSet set = new LPIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    /**
+     * Select the loop the table uses to look up hash codes.
+     *
+     * @param probeKernel the kernel to use for subsequent lookups
+     */
+    public void setProbeKernel(ProbeKernel probeKernel) {
+        this.probeKernel = probeKernel;
+    }
+
+    /**
+     * Query the loop the table uses to look up hash codes.
+     *
+     * @return the table's probe kernel
+     */
+    public ProbeKernel probeKernel() {
+        return this.probeKernel;
+    }
+
     /**
      * Query the size of the table's backing array.
      *
@@ -76,12 +118,48 @@ public class LPIntHashSet implements IntSet {
      * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
      */
     public boolean contains(int value) {
-        int hash = hash(value);
-        int bucket = lookupByHash(hash);
-        if (bucket == -1 || isEmpty(bucket)) {
-            return false;
+        return containsHash(hash(value));
+    }
+
+    /**
+     * Query the table for a range of values at once, storing the results in
+     * {@code resultBits} as described in {@link IntSet#contains(int[], int, int, long[])}.
+     * Keys are processed in groups: all of a group's keys are hashed, and
+     * then all of their preferred buckets are loaded, before any of the
+     * lookups proceed, so the cache misses of the loads overlap instead of
+     * each waiting for the previous lookup to finish. The rest of each
+     * lookup then usually hits in cache.
+     *
+     * @param keys the 32-bit integers to query the table for
+     * @param from the index of the first key to query (inclusive)
+     * @param to the index of the last key to query (exclusive)
+     * @param resultBits the bitmap to store the results in
+     * @return the number of keys in the range which are present in the table
+     */
+    @Override
+    public int contains(int[] keys, int from, int to, long[] resultBits) {
+        int[] hashes = new int[LOOKUP_GROUP_SIZE];
+        int[] preferred = new int[LOOKUP_GROUP_SIZE];
+        int found = 0;
+        for (int start = from; start < to; start += LOOKUP_GROUP_SIZE) {
+            int count = Math.min(LOOKUP_GROUP_SIZE, to - start);
+            for (int i = 0; i < count; ++i) {
+                hashes[i] = hash(keys[start + i]);
+            }
+            // these loads are independent, so the CPU can issue them all at once
+            for (int i = 0; i < count; ++i) {
+                preferred[i] = this.arr[findPreferredBucket(hashes[i])];
+            }
+            for (int i = 0; i < count; ++i) {
+                // most present keys are found in their preferred buckets
+                boolean isPresent = (preferred[i] == hashes[i]) || containsHash(hashes[i]);
+                long present = isPresent ? 1 : 0;
+                int bit = start + i - from;
+                resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+                found += (int) present;
+            }
         }
-        return true;
+        return found;
     }
 
     /**
@@ -92,6 +170,41 @@ public class LPIntHashSet implements IntSet {
      */
     public boolean add(int element) {
         int hash = hash(element);
+        // double the table before it would exceed its load factor
+        if (this.size >= this.maxEntries && !containsHash(hash)) {
+            resize(2 * this.maxEntries);
+        }
+        return addHash(hash);
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 32-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(int value) {
+        boolean removed = removeHash(hash(value));
+        if (removed) {
+            shrinkIfSparse();
+        }
+        return removed;
+    }
+
+    // The operations below take hash codes rather than keys, and never
+    // resize the table. Subclasses override these rather than the public
+    // methods, so that a hash code can be moved from one table to another
+    // without unhashing it.
+
+    protected boolean containsHash(int hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1 || isEmpty(bucket)) {
+            return false;
+        }
+        return true;
+    }
+
+    protected boolean addHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             // table full
@@ -105,14 +218,7 @@ public class LPIntHashSet implements IntSet {
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 32-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
-    public boolean remove(int value) {
-        int hash = hash(value);
+    protected boolean removeHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1 || isEmpty(bucket)) {
             return false;
@@ -123,17 +229,70 @@ public class LPIntHashSet implements IntSet {
         return true;
     }
 
+    // Halve the table once it is less than a quarter full (relative to its
+    // load factor), unless that would take it below its initial size. The gap
+    // between the grow and shrink thresholds keeps a sequence of alternating
+    // insertions and deletions from resizing the table every time. (The loop
+    // only matters for tiny tables, where rounding can leave the table
+    // sparse enough to halve again.)
+    protected void shrinkIfSparse() {
+        int newMaxEntries = this.maxEntries;
+        while (this.size < newMaxEntries / 4.0 && newMaxEntries / 2 >= this.minEntries) {
+            newMaxEntries /= 2;
+        }
+        if (newMaxEntries != this.maxEntries) {
+            resize(newMaxEntries);
+        }
+    }
+
+    // Resize the table to hold maxEntries elements at its load factor, by
+    // reinserting every element (without unhashing it) into the new array.
+    // Subclasses whose layout can be rebuilt more cheaply override this.
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] oldArr = reallocate(maxEntries);
+        this.size = 0;
+        for (int hash : oldArr) {
+            if (hash != 0) {
+                addHash(hash);
+            }
+        }
+    }
+
+    // The size of the backing array for maxEntries elements at the table's
+    // load factor. (This is called from the constructor, so overrides can
+    // only depend on the load factor.)
+    protected int capacityFor(int maxEntries) {
+        return (int) (maxEntries / this.loadFactor);
+    }
+
+    // Replace the backing array with an empty one sized for maxEntries
+    // elements, and return the old array. The size is left unchanged.
+    protected int[] reallocate(int maxEntries) {
+        int[] oldArr = this.arr;
+        this.maxEntries = maxEntries;
+        this.arr = new int[capacityFor(maxEntries)];
+        return oldArr;
+    }
+
     /**
      * Remove all elements from the table.
      */
     public void clear() {
         Arrays.fill(this.arr, 0);
+        this.size = 0;
     }
 
     protected boolean isEmpty(int bucket) {
         return (this.arr[bucket] == 0);
     }
 
+    // Whether the bucket holds an element of the set. Subclasses which leave
+    // hash codes of deleted elements in place override this to exclude them.
+    protected boolean isLive(int bucket) {
+        return !isEmpty(bucket);
+    }
+
     protected int contents(int bucket) {
         return isEmpty(bucket) ? 0 : unhash(this.arr[bucket]);
     }
@@ -165,6 +324,9 @@ public class LPIntHashSet implements IntSet {
     }
 
     protected int lookupByHash(int hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         int probeLength = 0;
         while (!isEmpty(bucket) && this.arr[bucket] != hash) {
@@ -177,6 +339,39 @@ public class LPIntHashSet implements IntSet {
         return bucket;
     }
 
+    // As above, but testing a block of buckets at a time: bit i of the mask
+    // is set if the i'th bucket of the block ends the probe (it is empty or
+    // holds the hash code), and the lowest set bit is the bucket we want. The
+    // last few buckets of the array don't make a whole block, so we step
+    // through them one at a time until the probe wraps around.
+    private int lookupByHashBlocked(int hash) {
+        int[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (probeLength <= arr.length) {
+            if (bucket > arr.length - ProbeKernel.BLOCK_SIZE) {
+                int current = arr[bucket];
+                if (current == 0 || current == hash) {
+                    return bucket;
+                }
+                bucket = wrap(bucket + 1);
+                ++probeLength;
+                continue;
+            }
+            int stop = 0;
+            for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                int current = arr[bucket + i];
+                stop |= ((current == 0) | (current == hash) ? 1 : 0) << i;
+            }
+            if (stop != 0) {
+                return bucket + Integer.numberOfTrailingZeros(stop);
+            }
+            bucket = wrap(bucket + ProbeKernel.BLOCK_SIZE);
+            probeLength += ProbeKernel.BLOCK_SIZE;
+        }
+        return -1;
+    }
+
     // uses pseudocode from _Algorithm Design and Applications_, Section 6.3.3
     protected void shift(int startBucket) {
         int dst = startBucket;
@@ -192,8 +387,7 @@ public class LPIntHashSet implements IntSet {
                 reachable = (preferredBucket <= dst || preferredBucket > src);
              }
              if (reachable) {
-                this.arr[dst] = this.arr[src];  // fill the hole
-                this.arr[src] = 0;  // move the hole
+                moveBucket(src, dst);
                 dst = wrap(dst + shift);
                 shift = 1;
              } else {
@@ -203,6 +397,12 @@ public class LPIntHashSet implements IntSet {
         }
     }
 
+    // fill the hole at dst with the contents of src, and move the hole to src
+    protected void moveBucket(int src, int dst) {
+        this.arr[dst] = this.arr[src];
+        this.arr[src] = 0;
+    }
+
     protected void dump() {
         for (int i = 0; i < this.arr.length; ++i) {
             System.out.format("%d\t%d\t%s\t%d\n", i, contents(i), Integer.toUnsignedString(this.arr[i]), findPreferredBucket(this.arr[i]));
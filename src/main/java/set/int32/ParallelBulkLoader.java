@@ -0,0 +1,248 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+
+/**
+ * Builds {@link LPIntHashSet}, {@link RHIntHashSet} and {@link
+ * BLPIntHashSet} tables from arrays of keys, using all the threads of a
+ * {@link ForkJoinPool}. Inserting hash codes in sorted order into any of
+ * these tables places each one in its preferred bucket, or in the bucket
+ * after the previous one if that is further right (wrapping around the end of
+ * the array, except for BLP), which is a valid layout for all of them. Since
+ * {@code findPreferredBucket()} is monotonic in the hash code, the hash space
+ * can be range-partitioned by its high bits, so that each partition fills a
+ * contiguous slice of the bucket array:
+ * <ol>
+ * <li>Each thread hashes a segment of the keys, counting the hash codes
+ * falling in each partition. (There are many more partitions than threads,
+ * so that each partition can be sorted in cache.)</li>
+ * <li>Each thread scatters its hash codes into their partitions, at offsets
+ * computed from the counts.</li>
+ * <li>Each partition is sorted and deduplicated.</li>
+ * <li>Each partition computes the position of its last element, as if it
+ * started from an empty table. Clusters may straddle partitions, but the
+ * recurrence for the position of an element is {@code max(preferred bucket,
+ * previous position + 1)}, so the true position of the last element of a
+ * partition is just the maximum of that and the true position of the last
+ * element of the previous partition plus its number of elements. A
+ * sequential pass over the partitions (not the elements) computes these,
+ * repeating once or twice if the last cluster wraps around into the first
+ * partition.</li>
+ * <li>Each partition writes its elements into the table, starting after the
+ * true position of the previous partition's last element, so the writes of
+ * different partitions never overlap.</li>
+ * </ol>
+ * The elements of a BLP table which would run off the end of the array are
+ * then packed against its end, as in {@code BLPIntHashSet.bulkLoad()}. The
+ * maximum number of entries of the new table is the number of distinct keys,
+ * so it grows on the next insert of a new key.
+ *
+ * @author tdbaker
+ */
+public final class ParallelBulkLoader {
+    // the number of tasks per thread for work on partitions, so that threads
+    // which finish early can take over the work of others
+    private static final int TASKS_PER_THREAD = 8;
+    // the average number of hash codes per partition, small enough that
+    // each partition is sorted in cache
+    private static final int PARTITION_SIZE = 128;
+    private static final int MAX_PARTITION_BITS = 16;
+
+    private ParallelBulkLoader() {}
+
+    public static LPIntHashSet loadLP(int[] keys, double loadFactor, IntHasher hasher, ForkJoinPool pool) {
+        return load(keys, hasher, pool, true, maxEntries -> new LPIntHashSet(maxEntries, loadFactor, hasher));
+    }
+
+    public static LPIntHashSet loadLP(int[] keys, double loadFactor) {
+        return loadLP(keys, loadFactor, new Murmur3IntHasher(), ForkJoinPool.commonPool());
+    }
+
+    public static RHIntHashSet loadRH(int[] keys, double loadFactor, IntHasher hasher, ForkJoinPool pool) {
+        return load(keys, hasher, pool, true, maxEntries -> new RHIntHashSet(maxEntries, loadFactor, hasher));
+    }
+
+    public static RHIntHashSet loadRH(int[] keys, double loadFactor) {
+        return loadRH(keys, loadFactor, new Murmur3IntHasher(), ForkJoinPool.commonPool());
+    }
+
+    public static BLPIntHashSet loadBLP(int[] keys, double loadFactor, IntHasher hasher, ForkJoinPool pool) {
+        return load(keys, hasher, pool, false, maxEntries -> new BLPIntHashSet(maxEntries, loadFactor, hasher));
+    }
+
+    public static BLPIntHashSet loadBLP(int[] keys, double loadFactor) {
+        return loadBLP(keys, loadFactor, new Murmur3IntHasher(), ForkJoinPool.commonPool());
+    }
+
+    private static <T extends LPIntHashSet> T load(int[] keys, IntHasher hasher, ForkJoinPool pool,
+            boolean wrap, IntFunction<T> newSet) {
+        int threads = pool.getParallelism();
+        int tasks = threads * TASKS_PER_THREAD;
+        int partitionBits = 32 - Integer.numberOfLeadingZeros(Math.max(tasks, keys.length / PARTITION_SIZE) - 1);
+        partitionBits = Math.max(1, Math.min(partitionBits, MAX_PARTITION_BITS));
+        int partitions = 1 << partitionBits;
+        int shift = Integer.SIZE - partitionBits;
+        // each thread hashes and scatters one segment of the keys
+        int segments = Math.max(1, Math.min(keys.length, threads));
+
+        // hash the keys, counting the hash codes of each segment in each partition
+        int[] hashes = new int[keys.length];
+        int[][] offsets = new int[segments][partitions];
+        forEach(pool, segments, segment -> {
+            IntHasher segmentHasher = hasher.cloneHasher();
+            int[] counts = offsets[segment];
+            for (int i = segmentStart(keys.length, segments, segment);
+                    i < segmentStart(keys.length, segments, segment + 1); ++i) {
+                int hash = segmentHasher.hash(keys[i]);
+                hashes[i] = hash;
+                counts[hash >>> shift] += 1;
+            }
+        });
+        // convert the counts to offsets, partition by partition
+        int[] partitionStart = new int[partitions + 1];
+        int offset = 0;
+        for (int partition = 0; partition < partitions; ++partition) {
+            partitionStart[partition] = offset;
+            for (int segment = 0; segment < segments; ++segment) {
+                int count = offsets[segment][partition];
+                offsets[segment][partition] = offset;
+                offset += count;
+            }
+        }
+        partitionStart[partitions] = offset;
+        int[] sorted = new int[keys.length];
+        forEach(pool, segments, segment -> {
+            int[] next = offsets[segment];
+            for (int i = segmentStart(keys.length, segments, segment);
+                    i < segmentStart(keys.length, segments, segment + 1); ++i) {
+                int partition = hashes[i] >>> shift;
+                sorted[next[partition]] = hashes[i];
+                next[partition] += 1;
+            }
+        });
+        // All the hash codes in a partition have the same high bits, including
+        // the sign bit, so a signed sort puts them in unsigned order. Duplicate
+        // keys are always in the same partition, so we can remove them here,
+        // leaving each partition's elements at the start of its range.
+        int[] partitionSize = new int[partitions];
+        forEachPartition(pool, tasks, partitions, partition -> {
+            int from = partitionStart[partition];
+            int to = partitionStart[partition + 1];
+            Arrays.sort(sorted, from, to);
+            int size = 0;
+            for (int i = from; i < to; ++i) {
+                if (size == 0 || sorted[i] != sorted[from + size - 1]) {
+                    sorted[from + size] = sorted[i];
+                    size += 1;
+                }
+            }
+            partitionSize[partition] = size;
+        });
+        int size = 0;
+        for (int partition = 0; partition < partitions; ++partition) {
+            size += partitionSize[partition];
+        }
+
+        T set = newSet.apply(Math.max(size, 1));
+        int[] arr = set.arr;
+        int capacity = arr.length;
+        // the position of the last element of each partition, laid out by itself
+        // (positions may run past the end of the array, so we use longs)
+        long[] lastPosition = new long[partitions];
+        forEachPartition(pool, tasks, partitions, partition -> {
+            long prev = -1;
+            for (int i = partitionStart[partition]; i < partitionStart[partition] + partitionSize[partition]; ++i) {
+                prev = Math.max(preferredBucket(sorted[i], capacity), prev + 1);
+            }
+            lastPosition[partition] = prev;
+        });
+        // the true position of the element before the first element of each
+        // partition, and of the last element of the table
+        long[] carry = new long[partitions];
+        long first = -1;
+        long last;
+        while (true) {
+            last = first;
+            for (int partition = 0; partition < partitions; ++partition) {
+                carry[partition] = last;
+                if (partitionSize[partition] > 0) {
+                    last = Math.max(lastPosition[partition], last + partitionSize[partition]);
+                }
+            }
+            // the elements which wrap around take up the buckets at the start of
+            // the array, so the first partition must start after them
+            if (!wrap || last - capacity <= first) {
+                break;
+            }
+            first = last - capacity;
+        }
+        forEachPartition(pool, tasks, partitions, partition -> {
+            long prev = carry[partition];
+            for (int i = partitionStart[partition]; i < partitionStart[partition] + partitionSize[partition]; ++i) {
+                prev = Math.max(preferredBucket(sorted[i], capacity), prev + 1);
+                if (prev < capacity) {
+                    arr[(int) prev] = sorted[i];
+                } else if (wrap) {
+                    arr[(int) (prev - capacity)] = sorted[i];
+                }
+            }
+        });
+        if (!wrap && last >= capacity) {
+            // Every element past the end of the array is in the run which ends
+            // there, so they are the last (last - capacity + 1) elements.
+            int[] overflow = new int[(int) (last - capacity + 1)];
+            int next = overflow.length;
+            for (int partition = partitions - 1; next > 0; --partition) {
+                int count = Math.min(next, partitionSize[partition]);
+                int end = partitionStart[partition] + partitionSize[partition];
+                System.arraycopy(sorted, end - count, overflow, next - count, count);
+                next -= count;
+            }
+            BLPIntHashSet.packOverflow(overflow, 0, arr);
+        }
+        set.size = size;
+        return set;
+    }
+
+    // as in LPIntHashSet.findPreferredBucket()
+    private static int preferredBucket(int hash, int capacity) {
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(capacity)) >>> 32);
+    }
+
+    private static int segmentStart(int length, int segments, int segment) {
+        return (int) ((long) length * segment / segments);
+    }
+
+    // Process the given number of partitions in the given number of tasks in
+    // the pool, each handling a contiguous range of partitions.
+    private static void forEachPartition(ForkJoinPool pool, int tasks, int partitions, IntConsumer action) {
+        int count = Math.min(tasks, partitions);
+        forEach(pool, count, task -> {
+            for (int partition = segmentStart(partitions, count, task);
+                    partition < segmentStart(partitions, count, task + 1); ++partition) {
+                action.accept(partition);
+            }
+        });
+    }
+
+    // Run a task for each index from 0 to count - 1 in the pool, and wait for
+    // them all to finish.
+    private static void forEach(ForkJoinPool pool, int count, IntConsumer task) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[count];
+        for (int i = 0; i < count; ++i) {
+            int index = i;
+            tasks[i] = pool.submit(() -> task.accept(index));
+        }
+        for (ForkJoinTask<?> t : tasks) {
+            t.join();
+        }
+    }
+}
@@ -44,15 +44,15 @@ public class RHIntHashSet extends LPIntHashSet {
         return new RHIntHashSet(this);
     }
 
-    /**
-     * Add an element to the table.
-     *
-     * @param element the 32-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean add(int element) {
-        int hash = hash(element);
+    protected RHIntHashSet newEmptySet(int maxEntries) {
+        RHIntHashSet set = new RHIntHashSet(maxEntries, this.loadFactor, this.hasher);
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(int hash) {
         if (lookupByHash(hash) != -1) {
             return false;
         }
@@ -76,7 +76,7 @@ public class RHIntHashSet extends LPIntHashSet {
             ++insertElemProbeDist;
             ++totalProbeLen;
             if (totalProbeLen == this.arr.length) {
-                 throw new RuntimeException("Couldn't insert into table: " + element);
+                 throw new RuntimeException("Couldn't insert into table: " + unhash(hash));
             }
         }
         this.arr[bucket] = hash;
@@ -84,15 +84,8 @@ public class RHIntHashSet extends LPIntHashSet {
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 32-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean remove(int value) {
-        int hash = hash(value);
+    protected boolean removeHash(int hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             return false;
@@ -112,6 +105,9 @@ public class RHIntHashSet extends LPIntHashSet {
 
     @Override
     protected int lookupByHash(int hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         int probeLength = 0;
         while (!isEmpty(bucket)) {
@@ -132,6 +128,51 @@ public class RHIntHashSet extends LPIntHashSet {
         return -1;
     }
 
+    // As above, but testing a block of buckets at a time for the hash code or
+    // an empty bucket, as in LPIntHashSet. If neither is in the block, then
+    // every bucket in it holds another element, and it suffices to compare
+    // our probe length with the probe distance of the last of them: if the
+    // hash code were further along, it would have been swapped into any
+    // bucket whose element is closer to its own preferred bucket.
+    private int lookupByHashBlocked(int hash) {
+        int[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (probeLength <= arr.length) {
+            if (bucket > arr.length - ProbeKernel.BLOCK_SIZE) {
+                int current = arr[bucket];
+                if (current == hash) {
+                    return bucket;
+                }
+                if (current == 0 || probeLength > probeDistance(current, bucket)) {
+                    return -1;
+                }
+                bucket = wrap(bucket + 1);
+                ++probeLength;
+                continue;
+            }
+            int found = 0;
+            int empty = 0;
+            for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                int current = arr[bucket + i];
+                found |= (current == hash ? 1 : 0) << i;
+                empty |= (current == 0 ? 1 : 0) << i;
+            }
+            int stop = found | empty;
+            if (stop != 0) {
+                int first = Integer.numberOfTrailingZeros(stop);
+                return (found & (1 << first)) != 0 ? bucket + first : -1;
+            }
+            int last = bucket + ProbeKernel.BLOCK_SIZE - 1;
+            if (probeLength + ProbeKernel.BLOCK_SIZE - 1 > probeDistance(arr[last], last)) {
+                return -1;
+            }
+            bucket = wrap(bucket + ProbeKernel.BLOCK_SIZE);
+            probeLength += ProbeKernel.BLOCK_SIZE;
+        }
+        return -1;
+    }
+
     private int probeDistance(int hash, int bucket) {
         int preferredBucket = findPreferredBucket(hash);
         int distance;
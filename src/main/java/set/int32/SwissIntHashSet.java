@@ -0,0 +1,316 @@
+package set.int32;
+
+import hash.int32.IntHasher;
+import hash.int32.Murmur3IntHasher;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+/**
+ * An implementation of a "Swiss table" in the style of <a
+ * href="https://abseil.io/about/design/swisstables">Abseil's
+ * flat_hash_set</a>, for comparison with the linear probing tables. Alongside
+ * the bucket array is an array of control bytes, one per bucket, which holds
+ * either a marker for an empty or deleted bucket, or a 7-bit fingerprint of
+ * the hash code in the bucket. The buckets are divided into groups of
+ * {@code GROUP_SIZE}, and a hash code is mapped to a group (using fastrange, as
+ * in {@link LPIntHashSet}) rather than a bucket; the
+ * fingerprint is its low 7 bits, which are nearly independent of the group.
+ * A lookup reads the 8 control bytes of a group as a single {@code long} and
+ * compares them all against the fingerprint at once with SWAR ("SIMD within
+ * a register") arithmetic, so it only reads the buckets whose fingerprints
+ * match, and probes linearly from group to group until it finds the hash
+ * code or a group with an empty bucket. The keys (there are no stored values)
+ * must be 32-bit integers, which are permuted to form the hash codes, as in
+ * the other tables.
+ * <p>
+ * Deletion needs tombstones (a lookup can't stop at a group which was full
+ * when a later element probed past it), but only when the bucket's group has
+ * no empty bucket: if it has one, every lookup which reaches the group stops
+ * there anyway, so the deleted bucket can be marked empty instead. Tombstones
+ * count towards the load factor, and once they would push the table past it,
+ * the table is rebuilt without them (or doubled, if it is nearly full of live
+ * elements anyway).
+ *
+ * @author tdbaker
+ */
+public class SwissIntHashSet implements IntSet {
+    public static final String NAME = "set.int32.SwissIntHashSet";
+
+    private static final int GROUP_SHIFT = 3;
+    private static final int GROUP_SIZE = 1 << GROUP_SHIFT;
+    // An empty bucket's control byte has only its high bit set, a deleted
+    // bucket's has every bit but its low bit set, and a full bucket's has its
+    // high bit clear, with the fingerprint in the low 7 bits.
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    // reads the control bytes of a group as a long, with the first bucket's in the low byte
+    private static final VarHandle CTRL_WORD = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    protected int[] arr;
+    protected byte[] ctrl;
+    protected int size = 0;
+    // the number of deleted buckets, which lookups must probe past like full ones
+    protected int tombstones = 0;
+    // the number of elements the table is currently sized for, which grows
+    // and shrinks with the table, but never below its initial value
+    protected int maxEntries;
+    protected final int minEntries;
+    protected final double loadFactor;
+    protected final IntHasher hasher;
+
+    public SwissIntHashSet(int maxEntries, double loadFactor, IntHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.loadFactor = loadFactor;
+        this.arr = new int[capacityFor(maxEntries)];
+        this.ctrl = new byte[this.arr.length];
+        Arrays.fill(this.ctrl, EMPTY);
+        this.maxEntries = maxEntries;
+        this.minEntries = maxEntries;
+        this.hasher = hasher;
+    }
+
+    public SwissIntHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3IntHasher());
+    }
+
+    public SwissIntHashSet(SwissIntHashSet other) {
+        this.arr = other.arr.clone();
+        this.ctrl = other.ctrl.clone();
+        this.size = other.size;
+        this.tombstones = other.tombstones;
+        this.maxEntries = other.maxEntries;
+        this.minEntries = other.minEntries;
+        this.loadFactor = other.loadFactor;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public IntSet cloneSet() throws CloneNotSupportedException {
+        return new SwissIntHashSet(this);
+    }
+
+    /**
+     * Query the size of the table's backing array.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 32-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(int value) {
+        return lookupByHash(hash(value)) != -1;
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 32-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(int element) {
+        int hash = hash(element);
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        if (this.size + this.tombstones >= this.maxEntries) {
+            // Purging the tombstones leaves room for at least maxEntries / 8
+            // more elements before we purge again, which amortizes the cost
+            // of the rebuild; otherwise we double the table, as usual.
+            if (this.size >= this.maxEntries - this.maxEntries / 8) {
+                resize(2 * this.maxEntries);
+            } else {
+                resize(this.maxEntries);
+            }
+        }
+        insertHash(hash);
+        return true;
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 32-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(int value) {
+        int bucket = lookupByHash(hash(value));
+        if (bucket == -1) {
+            return false;
+        }
+        if (matchEmpty(ctrlWord(bucket & -GROUP_SIZE)) != 0) {
+            this.ctrl[bucket] = EMPTY;
+        } else {
+            this.ctrl[bucket] = DELETED;
+            ++this.tombstones;
+        }
+            this.arr[bucket] = 0;
+        --this.size;
+        shrinkIfSparse();
+        return true;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        Arrays.fill(this.arr, 0);
+        Arrays.fill(this.ctrl, EMPTY);
+        this.size = 0;
+        this.tombstones = 0;
+    }
+
+    // Return the bucket holding the hash code, or -1 if it is absent.
+    protected int lookupByHash(int hash) {
+        int groups = this.arr.length >>> GROUP_SHIFT;
+        int group = findPreferredGroup(hash);
+        long pattern = LSBS * fingerprint(hash);
+        for (int probed = 0; probed < groups; ++probed) {
+            int start = group << GROUP_SHIFT;
+            long word = ctrlWord(start);
+            for (long matches = matchByte(word, pattern); matches != 0; matches &= matches - 1) {
+                int bucket = start + (Long.numberOfTrailingZeros(matches) >>> 3);
+                if (this.arr[bucket] == hash) {
+                    return bucket;
+                }
+            }
+            if (matchEmpty(word) != 0) {
+                return -1;
+            }
+            group = (group == groups - 1) ? 0 : group + 1;
+        }
+        return -1;
+    }
+
+    // Put a hash code which is known to be absent in the first empty or
+    // deleted bucket of its probe sequence.
+    protected void insertHash(int hash) {
+        int groups = this.arr.length >>> GROUP_SHIFT;
+        int group = findPreferredGroup(hash);
+        for (int probed = 0; probed < groups; ++probed) {
+            int start = group << GROUP_SHIFT;
+            long free = matchEmptyOrDeleted(ctrlWord(start));
+            if (free != 0) {
+                int bucket = start + (Long.numberOfTrailingZeros(free) >>> 3);
+                if (this.ctrl[bucket] == DELETED) {
+                    --this.tombstones;
+                }
+                this.ctrl[bucket] = fingerprint(hash);
+                this.arr[bucket] = hash;
+                ++this.size;
+                return;
+            }
+            group = (group == groups - 1) ? 0 : group + 1;
+        }
+        // table full
+        throw new RuntimeException("Couldn't insert into table");
+    }
+
+    // Halve the table once it is less than a quarter full, as in LPIntHashSet.
+    protected void shrinkIfSparse() {
+        int newMaxEntries = this.maxEntries;
+        while (this.size < newMaxEntries / 4.0 && newMaxEntries / 2 >= this.minEntries) {
+            newMaxEntries /= 2;
+        }
+        if (newMaxEntries != this.maxEntries) {
+            resize(newMaxEntries);
+        }
+    }
+
+    // Rebuild the table to hold maxEntries elements at its load factor, by
+    // reinserting every element (without unhashing it), which also discards
+    // the tombstones.
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        int[] oldArr = this.arr;
+        this.maxEntries = maxEntries;
+        this.arr = new int[capacityFor(maxEntries)];
+        this.ctrl = new byte[this.arr.length];
+        Arrays.fill(this.ctrl, EMPTY);
+        this.size = 0;
+        this.tombstones = 0;
+        for (int hash : oldArr) {
+            if (hash != 0) {
+                insertHash(hash);
+            }
+        }
+    }
+
+    // round the capacity up to a whole number of groups
+    protected int capacityFor(int maxEntries) {
+        int capacity = (int) (maxEntries / this.loadFactor);
+        return Math.max(GROUP_SIZE, (capacity + GROUP_SIZE - 1) & -GROUP_SIZE);
+    }
+
+    // https://github.com/lemire/fastrange
+    protected int findPreferredGroup(int hash) {
+        int groups = this.arr.length >>> GROUP_SHIFT;
+        return (int) ((Integer.toUnsignedLong(hash) * Integer.toUnsignedLong(groups)) >>> 32);
+    }
+
+    private static byte fingerprint(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    private long ctrlWord(int start) {
+        return (long) CTRL_WORD.get(this.ctrl, start);
+    }
+
+    // The SWAR matchers below return a word with the high bit of each byte set
+    // if the corresponding control byte matches, from
+    // https://github.com/abseil/abseil-cpp/blob/master/absl/container/internal/raw_hash_set.h.
+
+    // A byte equal to the fingerprint has its XOR with the pattern equal to 0,
+    // which is the only value whose high bit is set after subtracting 1 and
+    // clear before. The borrow from a matching byte can make the byte above it
+    // match spuriously, but lookups check the bucket anyway.
+    private static long matchByte(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    // Only EMPTY has its high bit set and its second-lowest bit clear.
+    private static long matchEmpty(long word) {
+        return (word & ~(word << 6)) & MSBS;
+    }
+
+    // Only EMPTY and DELETED have their high bit set and their lowest bit clear.
+    private static long matchEmptyOrDeleted(long word) {
+        return (word & ~(word << 7)) & MSBS;
+    }
+
+    protected int hash(int x) {
+        return this.hasher.hash(x);
+    }
+
+    protected int unhash(int x) {
+        return this.hasher.unhash(x);
+    }
+
+}
@@ -1,6 +1,9 @@
 package set.int64;
 
 import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.util.Arrays;
 
 
 /**
@@ -19,6 +22,12 @@ import hash.int64.LongHasher;
  */
 public class BLPLongHashSet extends LPLongHashSet {
     public static final String NAME = "set.int64.BLPLongHashSet";
+    // the number of runs sortUnsigned() distributes hash codes into
+    private static final int SORT_RADIX = 1 << 16;
+
+    public BLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher, boolean useOccupancyBitmap) {
+        super(maxEntries, loadFactor, hasher, useOccupancyBitmap);
+    }
 
     public BLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
         super(maxEntries, loadFactor, hasher);
@@ -41,47 +50,296 @@ public class BLPLongHashSet extends LPLongHashSet {
     }
 
     /**
-     * Add an element to the table.
+     * Return an immutable snapshot of the table, packed to {@link
+     * FrozenLongSet#DEFAULT_LOAD_FACTOR}.
+     *
+     * @return the snapshot
+     */
+    public FrozenLongSet freeze() {
+        return freeze(FrozenLongSet.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Return an immutable snapshot of the table, packed to the given load factor.
+     *
+     * @param loadFactor the ratio of the number of elements to the capacity of the snapshot
+     * @return the snapshot
+     */
+    public FrozenLongSet freeze(double loadFactor) {
+        return new FrozenLongSet(this.arr, this.size, loadFactor, this.hasher);
+    }
+
+    /**
+     * Return a new table containing the elements of this table and the given
+     * table, which must use the same hash function. Both tables hold their
+     * hash codes in ascending (unsigned) order, and the order doesn't depend
+     * on their capacities (since the preferred bucket of a hash code is just
+     * the hash code scaled to the capacity, as in fastrange), so we merge the
+     * two arrays in a single sequential pass, and lay out the result in
+     * another pass, as in {@link #bulkLoad(long[], double)}. The result has this
+     * table's load factor, and its maximum number of entries is its size.
+     *
+     * @param other the table to merge with this one
+     * @return the union of the two tables
+     */
+    public BLPLongHashSet union(BLPLongHashSet other) {
+        checkSameHasher(other);
+        long[] merged = new long[this.size + other.size];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Long.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c <= 0) {
+                merged[count] = this.arr[i];
+                i = nextElement(this.arr, i + 1);
+                if (c == 0) {
+                    j = nextElement(other.arr, j + 1);
+                }
+            } else {
+                merged[count] = other.arr[j];
+                j = nextElement(other.arr, j + 1);
+            }
+            count += 1;
+        }
+        for (; i < this.arr.length; i = nextElement(this.arr, i + 1)) {
+            merged[count] = this.arr[i];
+            count += 1;
+        }
+        for (; j < other.arr.length; j = nextElement(other.arr, j + 1)) {
+            merged[count] = other.arr[j];
+            count += 1;
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Return a new table containing the elements of this table which are also
+     * in the given table, which must use the same hash function, by merging the
+     * two tables as in {@link #union(BLPLongHashSet)}.
+     *
+     * @param other the table to intersect with this one
+     * @return the intersection of the two tables
+     */
+    public BLPLongHashSet intersect(BLPLongHashSet other) {
+        checkSameHasher(other);
+        long[] merged = new long[Math.min(this.size, other.size)];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Long.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c == 0) {
+                merged[count] = this.arr[i];
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Return a new table containing the elements of this table which are not
+     * in the given table, which must use the same hash function, by merging the
+     * two tables as in {@link #union(BLPLongHashSet)}.
+     *
+     * @param other the table whose elements to exclude
+     * @return the difference of the two tables
+     */
+    public BLPLongHashSet subtract(BLPLongHashSet other) {
+        checkSameHasher(other);
+        long[] merged = new long[this.size];
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length) {
+            int c = (j < other.arr.length) ? Long.compareUnsigned(this.arr[i], other.arr[j]) : -1;
+            if (c < 0) {
+                merged[count] = this.arr[i];
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return fromSorted(merged, count);
+    }
+
+    /**
+     * Count the elements of this table which are also in the given table,
+     * which must use the same hash function, by merging the two tables as in
+     * {@link #union(BLPLongHashSet)}, without building a new table.
+     *
+     * @param other the table to intersect with this one
+     * @return the size of the intersection of the two tables
+     */
+    public int intersectionSize(BLPLongHashSet other) {
+        checkSameHasher(other);
+        int count = 0;
+        int i = nextElement(this.arr, 0);
+        int j = nextElement(other.arr, 0);
+        while (i < this.arr.length && j < other.arr.length) {
+            int c = Long.compareUnsigned(this.arr[i], other.arr[j]);
+            if (c == 0) {
+                count += 1;
+            }
+            if (c <= 0) {
+                i = nextElement(this.arr, i + 1);
+            }
+            if (c >= 0) {
+                j = nextElement(other.arr, j + 1);
+            }
+        }
+        return count;
+    }
+
+    private void checkSameHasher(BLPLongHashSet other) {
+        // hashers of the same class may still differ (by seed, say), so we
+        // rely on each hasher's equals() to tell whether they compute the same
+        // function
+        if (!this.hasher.equals(other.hasher)) {
+            throw new IllegalArgumentException("Tables must use the same hash function");
+        }
+    }
+
+    // Return the index of the first nonempty bucket at or after the given
+    // index, or the length of the array if there is none.
+    private static int nextElement(long[] arr, int index) {
+        while (index < arr.length && arr[index] == 0) {
+            index += 1;
+        }
+        return index;
+    }
+
+    // Build a table like this one (with its load factor, hasher, occupancy
+    // bitmap if it has one, and probe kernel) from the first count sorted hash
+    // codes in the given array (which may have trailing zeros).
+    private BLPLongHashSet fromSorted(long[] hashes, int count) {
+        BLPLongHashSet set = new BLPLongHashSet(Math.max(count, 1), this.loadFactor, this.hasher.cloneHasher(),
+                hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        layoutSorted(hashes, set.arr);
+        set.rebuildOccupancyBitmap();
+        set.size = count;
+        return set;
+    }
+
+    /**
+     * Build a table containing the given keys (ignoring duplicates), without
+     * inserting them one at a time. Since the BLP layout is just the hash codes
+     * in sorted order, each in or near its preferred bucket, we hash the keys,
+     * sort the hash codes (distributing them by their high bits first), and
+     * lay them out in a single sequential pass, exactly as when the table is
+     * resized. The table's maximum number of entries is the number of distinct
+     * keys, so it grows on the next insert of a new key. (The sort needs a
+     * scratch array as large as the hash codes, so the peak memory use is about
+     * three times the keys.)
      *
-     * @param element the 64-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     * @param keys the 64-bit integers to add to the table
+     * @param loadFactor the ratio of the number of elements to the capacity of the table
+     * @param hasher the hash function for the table
+     * @return the new table
      */
+    public static BLPLongHashSet bulkLoad(long[] keys, double loadFactor, LongHasher hasher) {
+        long[] hashes = new long[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            hashes[i] = hasher.hash(keys[i]);
+        }
+        hashes = sortUnsigned(hashes);
+        int size = 0;
+        for (int i = 0; i < hashes.length; ++i) {
+            if (size == 0 || hashes[i] != hashes[size - 1]) {
+                hashes[size] = hashes[i];
+                size += 1;
+            }
+        }
+        // layoutSorted() skips empty buckets
+        Arrays.fill(hashes, size, hashes.length, 0);
+        BLPLongHashSet set = new BLPLongHashSet(Math.max(size, 1), loadFactor, hasher);
+        layoutSorted(hashes, set.arr);
+        set.size = size;
+        return set;
+    }
+
+    public static BLPLongHashSet bulkLoad(long[] keys, double loadFactor) {
+        return bulkLoad(keys, loadFactor, new Murmur3LongHasher());
+    }
+
+    // Return the given hash codes sorted in unsigned order. Hash codes are
+    // close to uniformly distributed, so we first distribute them by their
+    // high 16 bits in a single counting pass (one step of an MSD radix sort).
+    // That leaves short runs, which fit in cache and can be finished with a
+    // signed sort, since all the hash codes in a run have the same sign bit.
+    static long[] sortUnsigned(long[] hashes) {
+        int[] offsets = new int[SORT_RADIX + 1];
+        for (long hash : hashes) {
+            offsets[(int) (hash >>> 48) + 1] += 1;
+        }
+        for (int digit = 0; digit < SORT_RADIX; ++digit) {
+            offsets[digit + 1] += offsets[digit];
+        }
+        int[] next = Arrays.copyOf(offsets, SORT_RADIX);
+        long[] sorted = new long[hashes.length];
+        for (long hash : hashes) {
+            int digit = (int) (hash >>> 48);
+            sorted[next[digit]] = hash;
+            next[digit] += 1;
+        }
+        for (int digit = 0; digit < SORT_RADIX; ++digit) {
+            if (offsets[digit + 1] - offsets[digit] > 1) {
+                Arrays.sort(sorted, offsets[digit], offsets[digit + 1]);
+            }
+        }
+        return sorted;
+    }
+
     @Override
-    public boolean add(long element) {
-        long hash = hash(element);
+    protected BLPLongHashSet newEmptySet(int maxEntries) {
+        BLPLongHashSet set = new BLPLongHashSet(maxEntries, this.loadFactor, this.hasher, hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket != -1) {
             return false;
         }
         bucket = findPreferredBucket(hash);
         if (!isEmpty(bucket)) {
-            // If we are at the beginning of the array, then we can only probe to the
-            // right. Similarly, if we are at the end of the array, then we can only
-            // probe to the left. Otherwise, if the hash occupying the preferred bucket
-            // is smaller than our lookup hash, it means the chain is "too far to the
-            // right", so we look for an empty bucket to the left and swap it into the
-            // insertion point of our lookup hash, moving the whole chain one space
-            // to the left. Similar logic applies if the hash occupying the preferred
-            // bucket is larger than our lookup hash.
-            boolean probeLeft = (bucket > 0 &&
-                    isHashLesser(this.arr[bucket], hash)) ||
-                bucket == this.arr.length - 1;
-            bucket = getEmptyBucketForInsert(hash, bucket, probeLeft, false);
+            bucket = getEmptyBucketForInsert(hash, bucket, probeLeftForInsert(bucket, hash), false);
         }
         this.arr[bucket] = hash;
+        markOccupied(bucket);
         ++this.size;
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 64-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
+    // Choose which way to look for an empty bucket, when inserting a hash code
+    // whose preferred bucket is occupied. If we are at the beginning of the
+    // array, then we can only probe to the right. Similarly, if we are at the
+    // end of the array, then we can only probe to the left. Otherwise, if the
+    // hash occupying the preferred bucket is smaller than our lookup hash, it
+    // means the chain is "too far to the right", so we look for an empty
+    // bucket to the left and swap it into the insertion point of our lookup
+    // hash, moving the whole chain one space to the left. Similar logic
+    // applies if the hash occupying the preferred bucket is larger than our
+    // lookup hash.
+    protected boolean probeLeftForInsert(int bucket, long hash) {
+        return (bucket > 0 && isHashLesser(this.arr[bucket], hash)) || bucket == this.arr.length - 1;
+    }
+
     @Override
-    public boolean remove(long value) {
-        long hash = hash(value);
+    protected boolean removeHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             return false;
@@ -100,10 +358,14 @@ public class BLPLongHashSet extends LPLongHashSet {
             case NONE:
                 // if the deleted value is the only entry with its preferred bucket, it can be zeroed out
                 this.arr[bucket] = 0;
+                markEmpty(bucket);
                 break;
             case LEFT:
                 // any chain of buckets residing to the right of their preferred buckets can be moved left
                 endBucket = findMoveBoundaryToRight(bucket);
+                // the boundary is usually the empty bucket after the chain,
+                // in which case the last bucket of the chain is emptied
+                markEmpty(isEmpty(endBucket) ? endBucket - 1 : endBucket);
                 while (currBucket < endBucket) {
                     this.arr[currBucket] = this.arr[currBucket + 1];
                     currBucket += 1;
@@ -120,12 +382,96 @@ public class BLPLongHashSet extends LPLongHashSet {
                 }
                 // only necessary when endBucket == 0
                 this.arr[endBucket] = 0;
+                markEmpty(endBucket);
                 break;
         }
         --this.size;
         return true;
     }
 
+    @Override
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        long[] oldArr = reallocate(maxEntries);
+        layoutSorted(oldArr, this.arr);
+        rebuildOccupancyBitmap();
+    }
+
+    // Copy the hash codes in src, which must be sorted (ignoring empty
+    // buckets), into the empty array dst in BLP layout. Since findPreferredBucket()
+    // is monotonic in the hash code, the new layout can be built in a single
+    // pass, with no probing: each element goes in its preferred bucket, or in
+    // the bucket after the previous element if that is further right. The
+    // elements which would run off the end of the array are packed against
+    // the end instead, shifting the last cluster left.
+    static void layoutSorted(long[] src, long[] dst) {
+        layoutSorted(src, dst, 0);
+    }
+
+    // As above, but with the preferred bucket of each hash code rounded down
+    // to a multiple of 2^groupShift, as in BucketizedBLPLongHashSet.
+    static void layoutSorted(long[] src, long[] dst, int groupShift) {
+        int groups = dst.length >>> groupShift;
+        int lastBucket = dst.length - 1;
+        int prevBucket = -1;
+        int i = 0;
+        for (; i < src.length; ++i) {
+            long hash = src[i];
+            if (hash == 0) {
+                continue;
+            }
+            // as in findPreferredBucket()
+            int preferredBucket = (int) (((hash >>> 32) * Integer.toUnsignedLong(groups)) >>> 32) << groupShift;
+            int bucket = Math.max(preferredBucket, prevBucket + 1);
+            if (bucket > lastBucket) {
+                break;
+            }
+            dst[bucket] = hash;
+            prevBucket = bucket;
+        }
+        packOverflow(src, i, dst);
+    }
+
+    // Pack the hash codes in src from index i on (ignoring empty buckets),
+    // which come after all the hash codes in dst and didn't fit before its
+    // end, against the end of dst, shifting its last cluster left.
+    static void packOverflow(long[] src, int i, long[] dst) {
+        int lastBucket = dst.length - 1;
+        int overflow = 0;
+        for (int j = i; j < src.length; ++j) {
+            if (src[j] != 0) {
+                ++overflow;
+            }
+        }
+        if (overflow == 0) {
+            return;
+        }
+        // Scanning left from the end of the array, every element at or to the
+        // right of the start of the packed run must join it.
+        int start = dst.length - overflow;
+        for (int bucket = lastBucket; bucket >= start; --bucket) {
+            if (dst[bucket] != 0) {
+                start -= 1;
+            }
+        }
+        // Shift the elements already in the packed run to its start (moving
+        // left, so we must copy from left to right), then append the overflow.
+        int next = start;
+        for (int bucket = start; bucket <= lastBucket; ++bucket) {
+            if (dst[bucket] != 0) {
+                dst[next] = dst[bucket];
+                next += 1;
+            }
+        }
+        for (int j = i; j < src.length; ++j) {
+            if (src[j] != 0) {
+                dst[next] = src[j];
+                next += 1;
+            }
+        }
+        assert next == dst.length;
+    }
+
     private static boolean isHashGreater(long hash1, long hash2) {
         return (Long.compareUnsigned(hash1, hash2) > 0);
     }
@@ -144,6 +490,9 @@ public class BLPLongHashSet extends LPLongHashSet {
 
     @Override
     protected int lookupByHash(long hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         if (isHashLesser(this.arr[bucket], hash)) {
             while (bucket < this.arr.length - 1 &&
@@ -164,6 +513,59 @@ public class BLPLongHashSet extends LPLongHashSet {
         return -1;
     }
 
+    // As above, but scanning a block of buckets at a time in the probe
+    // direction: bit i of the mask is set if the i'th bucket of the block is
+    // empty or outside the range of hash codes up to (or down to) our hash
+    // code, so the bucket before the first such bucket is where the scan
+    // would stop. Flipping the sign bits turns the unsigned comparisons into
+    // signed ones, which compile to a single instruction.
+    private int lookupByHashBlocked(long hash) {
+        long[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        long signedHash = hash ^ Long.MIN_VALUE;
+        if (isHashLesser(arr[bucket], hash)) {
+            while (bucket + ProbeKernel.BLOCK_SIZE < arr.length) {
+                int stop = 0;
+                for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                    long next = arr[bucket + 1 + i];
+                    stop |= ((next == 0) | ((next ^ Long.MIN_VALUE) > signedHash) ? 1 : 0) << i;
+                }
+                if (stop != 0) {
+                    bucket += Integer.numberOfTrailingZeros(stop);
+                    return arr[bucket] == hash ? bucket : -1;
+                }
+                bucket += ProbeKernel.BLOCK_SIZE;
+            }
+            while (bucket < arr.length - 1 &&
+                   !isEmpty(bucket + 1) &&
+                   isHashLesserOrEqual(arr[bucket + 1], hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(arr[bucket], hash)) {
+            while (bucket - ProbeKernel.BLOCK_SIZE >= 0) {
+                int stop = 0;
+                for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                    long prev = arr[bucket - 1 - i];
+                    stop |= ((prev == 0) | ((prev ^ Long.MIN_VALUE) < signedHash) ? 1 : 0) << i;
+                }
+                if (stop != 0) {
+                    bucket -= Integer.numberOfTrailingZeros(stop);
+                    return arr[bucket] == hash ? bucket : -1;
+                }
+                bucket -= ProbeKernel.BLOCK_SIZE;
+            }
+            while (bucket > 0 &&
+                   !isEmpty(bucket - 1) &&
+                   isHashGreaterOrEqual(arr[bucket - 1], hash)) {
+                bucket -= 1;
+            }
+        }
+        if (arr[bucket] == hash) {
+            return bucket;
+        }
+        return -1;
+    }
+
     // Any bucket to the left of its preferred bucket can be shifted right,
     // since its preferred bucket will be shifted along with it, ensuring
     // it is still reachable from its preferred bucket.
@@ -238,26 +640,12 @@ public class BLPLongHashSet extends LPLongHashSet {
 
     private int findFirstEmptyBucketToLeft(int startBucket) {
         assert startBucket > 0;
-        int bucket = startBucket;
-        while (bucket > 0 && !isEmpty(bucket)) {
-            bucket -= 1;
-        }
-        if (isEmpty(bucket)) {
-            return bucket;
-        }
-        return -1;
+        return findEmptyBucketToLeft(startBucket);
     }
 
     private int findFirstEmptyBucketToRight(int startBucket) {
         assert startBucket < this.arr.length - 1;
-        int bucket = startBucket;
-        while (bucket < this.arr.length - 1 && !isEmpty(bucket)) {
-            bucket += 1;
-        }
-        if (isEmpty(bucket)) {
-            return bucket;
-        }
-        return -1;
+        return findEmptyBucketToRight(startBucket);
     }
 
     private int moveEmptyBucketLeftToInsertionPoint(int startBucket, long hash) {
@@ -297,6 +685,8 @@ public class BLPLongHashSet extends LPLongHashSet {
                 }
                 return getEmptyBucketForInsert(hash, bucket, false, true);
             }
+            // the shift fills the empty bucket, unless it is the insertion point
+            markOccupied(emptyBucket);
             bucket = moveEmptyBucketRightToInsertionPoint(emptyBucket, hash);
         } else {
             emptyBucket = findFirstEmptyBucketToRight(bucket);
@@ -306,6 +696,7 @@ public class BLPLongHashSet extends LPLongHashSet {
                 }
                 return getEmptyBucketForInsert(hash, bucket, true, true);
             }
+            markOccupied(emptyBucket);
             bucket = moveEmptyBucketLeftToInsertionPoint(emptyBucket, hash);
         }
         return bucket;
@@ -0,0 +1,278 @@
+package set.int64;
+
+
+/**
+ * The bidirectional linear probing algorithms of {@link BLPLongHashSet},
+ * written against {@link LongBuckets} rather than a {@code long[]}, for the
+ * tables which store their buckets some other way ({@link
+ * OffHeapBLPLongHashSet}, and through it {@link MappedBLPLongHashSet}, and
+ * {@link QuotientedBLPLongHashSet}). The heap table keeps its own copies,
+ * as described in {@link LPProbing}.
+ *
+ * @author tdbaker
+ */
+final class BLPProbing {
+    private BLPProbing() {
+    }
+
+    // Return the bucket holding the hash code, or -1 if it is absent.
+    static int lookup(LongBuckets buckets, long hash) {
+        int capacity = buckets.length();
+        int bucket = LPProbing.findPreferredBucket(hash, capacity);
+        if (isHashLesser(buckets.get(bucket), hash)) {
+            while (bucket < capacity - 1 &&
+                   !isEmpty(buckets, bucket + 1) &&
+                   isHashLesserOrEqual(buckets.get(bucket + 1), hash)) {
+                bucket += 1;
+            }
+        } else if (isHashGreater(buckets.get(bucket), hash)) {
+            while (bucket > 0 &&
+                   !isEmpty(buckets, bucket - 1) &&
+                   isHashGreaterOrEqual(buckets.get(bucket - 1), hash)) {
+                bucket -= 1;
+            }
+        }
+        if (buckets.get(bucket) == hash) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    // Insert a hash code which is absent from the table.
+    static void insert(LongBuckets buckets, long hash) {
+        int capacity = buckets.length();
+        int bucket = LPProbing.findPreferredBucket(hash, capacity);
+        if (!isEmpty(buckets, bucket)) {
+            // If we are at the beginning of the array, then we can only probe to the
+            // right. Similarly, if we are at the end of the array, then we can only
+            // probe to the left. Otherwise, if the hash occupying the preferred bucket
+            // is smaller than our lookup hash, it means the chain is "too far to the
+            // right", so we look for an empty bucket to the left and swap it into the
+            // insertion point of our lookup hash, moving the whole chain one space
+            // to the left. Similar logic applies if the hash occupying the preferred
+            // bucket is larger than our lookup hash.
+            boolean probeLeft = (bucket > 0 &&
+                    isHashLesser(buckets.get(bucket), hash)) ||
+                bucket == capacity - 1;
+            bucket = getEmptyBucketForInsert(buckets, hash, bucket, probeLeft, false);
+        }
+        buckets.set(bucket, hash);
+    }
+
+    // Delete the hash code in the given bucket.
+    static void delete(LongBuckets buckets, int bucket) {
+        int capacity = buckets.length();
+        MOVE_DIRECTION moveDirection;
+        if (bucket == 0) {
+            moveDirection = MOVE_DIRECTION.LEFT;
+        } else if (bucket == capacity - 1) {
+            moveDirection = MOVE_DIRECTION.RIGHT;
+        } else {
+            moveDirection = getMoveDirection(buckets, bucket);
+        }
+        int endBucket;
+        int currBucket = bucket;
+        switch (moveDirection) {
+            case NONE:
+                // if the deleted value is the only entry with its preferred bucket, it can be zeroed out
+                buckets.set(bucket, 0);
+                break;
+            case LEFT:
+                // any chain of buckets residing to the right of their preferred buckets can be moved left
+                endBucket = findMoveBoundaryToRight(buckets, bucket);
+                while (currBucket < endBucket) {
+                    buckets.set(currBucket, buckets.get(currBucket + 1));
+                    currBucket += 1;
+                }
+                // only necessary when endBucket == capacity - 1
+                buckets.set(endBucket, 0);
+                break;
+            case RIGHT:
+                // any chain of buckets residing to the left of their preferred buckets can be moved right
+                endBucket = findMoveBoundaryToLeft(buckets, bucket);
+                while (currBucket > endBucket) {
+                    buckets.set(currBucket, buckets.get(currBucket - 1));
+                    currBucket -= 1;
+                }
+                // only necessary when endBucket == 0
+                buckets.set(endBucket, 0);
+                break;
+        }
+    }
+
+    private static boolean isEmpty(LongBuckets buckets, int bucket) {
+        return (buckets.get(bucket) == 0);
+    }
+
+    private static boolean isHashGreater(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) > 0);
+    }
+
+    private static boolean isHashLesser(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) < 0);
+    }
+
+    private static boolean isHashGreaterOrEqual(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) >= 0);
+    }
+
+    private static boolean isHashLesserOrEqual(long hash1, long hash2) {
+        return (Long.compareUnsigned(hash1, hash2) <= 0);
+    }
+
+    // Any bucket to the left of its preferred bucket can be shifted right,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private static int findMoveBoundaryToLeft(LongBuckets buckets, int startBucket) {
+        int capacity = buckets.length();
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(buckets, bucket) &&
+               bucket - 1 < LPProbing.findPreferredBucket(buckets.get(bucket - 1), capacity)) {
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    // Any bucket to the right of its preferred bucket can be shifted left,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private static int findMoveBoundaryToRight(LongBuckets buckets, int startBucket) {
+        int capacity = buckets.length();
+        int bucket = startBucket;
+        while (bucket < capacity - 1 &&
+               !isEmpty(buckets, bucket) &&
+               bucket + 1 > LPProbing.findPreferredBucket(buckets.get(bucket + 1), capacity)) {
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private static enum MOVE_DIRECTION {
+        LEFT,
+        RIGHT,
+        NONE,
+    }
+
+    private static MOVE_DIRECTION getMoveDirection(LongBuckets buckets, int bucket) {
+        int capacity = buckets.length();
+        assert bucket > 0 && bucket < capacity - 1;
+        int prevBucket = bucket - 1;
+        int nextBucket = bucket + 1;
+        long hash = buckets.get(bucket);
+        long prevHash = buckets.get(prevBucket);
+        long nextHash = buckets.get(nextBucket);
+        int preferredBucket = LPProbing.findPreferredBucket(hash, capacity);
+        int leftPreferredBucket = LPProbing.findPreferredBucket(prevHash, capacity);
+        int rightPreferredBucket = LPProbing.findPreferredBucket(nextHash, capacity);
+        if (bucket == preferredBucket) {
+            // if this is the only entry in the deleted entry's chain, just zero out the deleted entry
+            if (leftPreferredBucket != preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.NONE;
+            // if the deleted entry's chain extends only to the left, move the chain to the right
+            } else if (leftPreferredBucket == preferredBucket && rightPreferredBucket != preferredBucket) {
+                return MOVE_DIRECTION.RIGHT;
+            // if the deleted entry's chain extends only to the right, move the chain to the left
+            } else if (leftPreferredBucket != preferredBucket && rightPreferredBucket == preferredBucket) {
+                return MOVE_DIRECTION.LEFT;
+            // if the deleted entry's chain extends in both directions,
+            // move the "closer" neighboring hash value into the deleted bucket
+            } else {
+                long prevHashDiff = unsignedAbsDiff(hash, prevHash);
+                long nextHashDiff = unsignedAbsDiff(hash, nextHash);
+                assert isHashGreater(prevHashDiff, 0) && isHashGreater(nextHashDiff, 0);
+                return isHashGreater(prevHashDiff, nextHashDiff) ? MOVE_DIRECTION.LEFT : MOVE_DIRECTION.RIGHT;
+            }
+        } else if (bucket < preferredBucket) {
+            return MOVE_DIRECTION.RIGHT;
+        } else {  // bucket > preferredBucket
+            return MOVE_DIRECTION.LEFT;
+        }
+    }
+
+    private static long unsignedAbsDiff(long a, long b) {
+        if (isHashGreater(a, b)) {
+            return a - b;
+        } else {
+            return b - a;
+        }
+    }
+
+    private static int findFirstEmptyBucketToLeft(LongBuckets buckets, int startBucket) {
+        assert startBucket > 0;
+        int bucket = startBucket;
+        while (bucket > 0 && !isEmpty(buckets, bucket)) {
+            bucket -= 1;
+        }
+        if (isEmpty(buckets, bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private static int findFirstEmptyBucketToRight(LongBuckets buckets, int startBucket) {
+        int capacity = buckets.length();
+        assert startBucket < capacity - 1;
+        int bucket = startBucket;
+        while (bucket < capacity - 1 && !isEmpty(buckets, bucket)) {
+            bucket += 1;
+        }
+        if (isEmpty(buckets, bucket)) {
+            return bucket;
+        }
+        return -1;
+    }
+
+    private static int moveEmptyBucketLeftToInsertionPoint(LongBuckets buckets, int startBucket, long hash) {
+        assert startBucket > 0;
+        assert isEmpty(buckets, startBucket);
+        int bucket = startBucket;
+        while (bucket > 0 &&
+               !isEmpty(buckets, bucket - 1) &&
+               isHashGreater(buckets.get(bucket - 1), hash)) {
+            buckets.set(bucket, buckets.get(bucket - 1));
+            bucket -= 1;
+        }
+        return bucket;
+    }
+
+    private static int moveEmptyBucketRightToInsertionPoint(LongBuckets buckets, int startBucket, long hash) {
+        int capacity = buckets.length();
+        assert startBucket < capacity - 1;
+        assert isEmpty(buckets, startBucket);
+        int bucket = startBucket;
+        while (bucket < capacity - 1 &&
+               !isEmpty(buckets, bucket + 1) &&
+               isHashLesser(buckets.get(bucket + 1), hash)) {
+            buckets.set(bucket, buckets.get(bucket + 1));
+            bucket += 1;
+        }
+        return bucket;
+    }
+
+    private static int getEmptyBucketForInsert(LongBuckets buckets, long hash, int startBucket, boolean probeLeft,
+            boolean prevProbeFailed) {
+        int bucket = startBucket;
+        int emptyBucket;
+        if (probeLeft) {
+            emptyBucket = findFirstEmptyBucketToLeft(buckets, bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(buckets, hash, bucket, false, true);
+            }
+            bucket = moveEmptyBucketRightToInsertionPoint(buckets, emptyBucket, hash);
+        } else {
+            emptyBucket = findFirstEmptyBucketToRight(buckets, bucket);
+            if (emptyBucket == -1) {
+                if (prevProbeFailed) {
+                    throw new RuntimeException("Couldn't insert into table");
+                }
+                return getEmptyBucketForInsert(buckets, hash, bucket, true, true);
+            }
+            bucket = moveEmptyBucketLeftToInsertionPoint(buckets, emptyBucket, hash);
+        }
+        return bucket;
+    }
+}
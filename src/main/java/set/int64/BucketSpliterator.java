@@ -0,0 +1,248 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+
+import java.util.Spliterator;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongConsumer;
+
+
+/**
+ * Iterates over the elements of a table stored as hash codes in a range of
+ * buckets, skipping empty buckets and unhashing each element as it is
+ * visited. It serves both as a {@link LongCursor} and as a {@link
+ * Spliterator.OfLong}: {@code trySplit()} hands the first half of the
+ * remaining buckets to a new spliterator, so a parallel {@link
+ * java.util.stream.LongStream} divides the bucket array between its threads
+ * without copying or boxing any elements. Since hash codes are spread
+ * uniformly over the buckets, each half holds about half the elements, so the
+ * estimated size is split in proportion to the number of buckets (and is no
+ * longer exact once the spliterator has been split).
+ *
+ * @author tdbaker
+ */
+abstract class BucketSpliterator implements LongCursor, Spliterator.OfLong {
+    // ranges smaller than this aren't worth handing to another thread
+    private static final int MIN_SPLIT_BUCKETS = 1024;
+
+    protected final LongHasher hasher;
+    // the next bucket to visit
+    protected int bucket;
+    protected final int end;
+    protected long key;
+    private long estimate;
+    private boolean isExact;
+
+    protected BucketSpliterator(int from, int to, long estimate, boolean isExact, LongHasher hasher) {
+        this.bucket = from;
+        this.end = to;
+        this.estimate = estimate;
+        this.isExact = isExact;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Iterate over the buckets {@code from} (inclusive) to {@code to}
+     * (exclusive) of an array of hash codes, which hold {@code size} elements.
+     */
+    static BucketSpliterator of(long[] arr, int from, int to, int size, LongHasher hasher) {
+        return new OfArray(arr, from, to, size, true, hasher);
+    }
+
+    /**
+     * Iterate over the buckets {@code from} (inclusive) to {@code to}
+     * (exclusive) of an array of hash codes, which hold {@code size} elements,
+     * skipping the buckets which are clear in its occupancy bitmap.
+     */
+    static BucketSpliterator of(long[] arr, long[] occupied, int from, int to, int size, LongHasher hasher) {
+        return new OfOccupiedArray(arr, occupied, from, to, size, true, hasher);
+    }
+
+    /**
+     * Iterate over the buckets {@code from} (inclusive) to {@code to}
+     * (exclusive) of a table whose hash codes are read by {@code get}, which
+     * hold {@code size} elements.
+     */
+    static BucketSpliterator of(IntToLongFunction get, int from, int to, int size, LongHasher hasher) {
+        return new OfBuckets(get, from, to, size, true, hasher);
+    }
+
+    // read the hash code in a bucket, or 0 if it is empty
+    protected abstract long get(int bucket);
+
+    // iterate over a range of the same buckets
+    protected abstract BucketSpliterator split(int from, int to, long estimate, LongHasher hasher);
+
+    @Override
+    public boolean advance() {
+        while (this.bucket < this.end) {
+            long hash = get(this.bucket);
+            this.bucket += 1;
+            if (hash != 0) {
+                this.key = this.hasher.unhash(hash);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long key() {
+        return this.key;
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+        if (!advance()) {
+            return false;
+        }
+        action.accept(this.key);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+        for (int i = this.bucket; i < this.end; ++i) {
+            long hash = get(i);
+            if (hash != 0) {
+                action.accept(this.hasher.unhash(hash));
+            }
+        }
+        this.bucket = this.end;
+    }
+
+    @Override
+    public Spliterator.OfLong trySplit() {
+        int remaining = this.end - this.bucket;
+        if (remaining < MIN_SPLIT_BUCKETS) {
+            return null;
+        }
+        int mid = this.bucket + remaining / 2;
+        long prefixEstimate = this.estimate * (mid - this.bucket) / remaining;
+        // hashers may not be thread-safe, so each part gets its own
+        BucketSpliterator prefix = split(this.bucket, mid, prefixEstimate, this.hasher.cloneHasher());
+        this.bucket = mid;
+        this.estimate -= prefixEstimate;
+        this.isExact = false;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.DISTINCT | Spliterator.NONNULL | (this.isExact ? Spliterator.SIZED : 0);
+    }
+
+    private static final class OfArray extends BucketSpliterator {
+        private final long[] arr;
+
+        OfArray(long[] arr, int from, int to, long estimate, boolean isExact, LongHasher hasher) {
+            super(from, to, estimate, isExact, hasher);
+            this.arr = arr;
+        }
+
+        @Override
+        protected long get(int bucket) {
+            return this.arr[bucket];
+        }
+
+        @Override
+        protected BucketSpliterator split(int from, int to, long estimate, LongHasher hasher) {
+            return new OfArray(this.arr, from, to, estimate, false, hasher);
+        }
+    }
+
+    // skips empty buckets 64 at a time, using an occupancy bitmap
+    private static final class OfOccupiedArray extends BucketSpliterator {
+        private final long[] arr;
+        private final long[] occupied;
+
+        OfOccupiedArray(long[] arr, long[] occupied, int from, int to, long estimate, boolean isExact,
+                LongHasher hasher) {
+            super(from, to, estimate, isExact, hasher);
+            this.arr = arr;
+            this.occupied = occupied;
+        }
+
+        @Override
+        protected long get(int bucket) {
+            return this.arr[bucket];
+        }
+
+        @Override
+        protected BucketSpliterator split(int from, int to, long estimate, LongHasher hasher) {
+            return new OfOccupiedArray(this.arr, this.occupied, from, to, estimate, false, hasher);
+        }
+
+        @Override
+        public boolean advance() {
+            if (this.bucket >= this.end) {
+                return false;
+            }
+            int lastWord = (this.end - 1) >>> 6;
+            int i = this.bucket >>> 6;
+            long word = this.occupied[i] & (-1L << this.bucket);
+            while (word == 0) {
+                if (++i > lastWord) {
+                    this.bucket = this.end;
+                    return false;
+                }
+                word = this.occupied[i];
+            }
+            int next = (i << 6) + Long.numberOfTrailingZeros(word);
+            if (next >= this.end) {
+                this.bucket = this.end;
+                return false;
+            }
+            this.key = this.hasher.unhash(this.arr[next]);
+            this.bucket = next + 1;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            if (this.bucket >= this.end) {
+                return;
+            }
+            int firstWord = this.bucket >>> 6;
+            int lastWord = (this.end - 1) >>> 6;
+            for (int i = firstWord; i <= lastWord; ++i) {
+                long word = this.occupied[i];
+                // the range may start and end partway through a word
+                if (i == firstWord) {
+                    word &= -1L << this.bucket;
+                }
+                if (i == lastWord) {
+                    word &= -1L >>> (63 - ((this.end - 1) & 63));
+                }
+                for (; word != 0; word &= word - 1) {
+                    action.accept(this.hasher.unhash(this.arr[(i << 6) + Long.numberOfTrailingZeros(word)]));
+                }
+            }
+            this.bucket = this.end;
+        }
+    }
+
+    private static final class OfBuckets extends BucketSpliterator {
+        private final IntToLongFunction get;
+
+        OfBuckets(IntToLongFunction get, int from, int to, long estimate, boolean isExact, LongHasher hasher) {
+            super(from, to, estimate, isExact, hasher);
+            this.get = get;
+        }
+
+        @Override
+        protected long get(int bucket) {
+            return this.get.applyAsLong(bucket);
+        }
+
+        @Override
+        protected BucketSpliterator split(int from, int to, long estimate, LongHasher hasher) {
+            return new OfBuckets(this.get, from, to, estimate, false, hasher);
+        }
+    }
+}
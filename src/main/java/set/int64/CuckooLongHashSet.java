@@ -0,0 +1,422 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+
+/**
+ * An implementation of a bucketized cuckoo hash table, with 2 choices of
+ * bucket per hash code and {@code SLOTS_PER_BUCKET} slots per bucket, as in <a
+ * href="https://doi.org/10.1016/j.tcs.2007.02.054">Dietzfelbinger and
+ * Weidling's balanced allocation</a>. Both choices are derived from the same
+ * invertible hash code, from its high and low 32 bits respectively (using
+ * fastrange, as in {@link LPLongHashSet}), so a hash code can be moved to its
+ * other bucket without unhashing or rehashing it. A lookup reads at most two
+ * buckets (and the stash, which is almost always empty), so unlike the linear
+ * probing tables, its worst case doesn't depend on the load factor.
+ * <p>
+ * When both of a new hash code's buckets are full, we search breadth-first
+ * (as in <a href="https://doi.org/10.1145/2592798.2592820">libcuckoo</a>) for
+ * the shortest path of elements, each of which can be moved to its other
+ * bucket to make room for the one before it, ending in a bucket with an empty
+ * slot, and then move the elements along the path from its far end. The
+ * search visits at most {@code MAX_SEARCH_BUCKETS} buckets; if it fails, the
+ * hash code goes in a small stash at the end of the bucket array, and only
+ * once the stash is full is the table doubled (whatever its load factor).
+ * Deletion just empties the slot, and then tries to move the stashed elements
+ * back into their buckets.
+ *
+ * @author tdbaker
+ */
+public class CuckooLongHashSet implements LongSet {
+    public static final String NAME = "set.int64.CuckooLongHashSet";
+
+    private static final int SLOT_SHIFT = 2;
+    private static final int SLOTS_PER_BUCKET = 1 << SLOT_SHIFT;
+    private static final int STASH_SIZE = 4;
+    private static final int MAX_SEARCH_BUCKETS = 256;
+
+    // the buckets, followed by the stash, with 0 in the empty slots
+    protected long[] arr;
+    protected int buckets;
+    protected int size = 0;
+    // the number of elements in the stash
+    protected int stashSize = 0;
+    // the number of elements the table is currently sized for, which grows
+    // and shrinks with the table, but never below its initial value
+    protected int maxEntries;
+    protected final int minEntries;
+    protected final double loadFactor;
+    protected final LongHasher hasher;
+    // the state of the eviction path search, indexed by the order in which
+    // buckets are visited, and kept between searches to avoid reallocating it
+    private final int[] searchBuckets = new int[MAX_SEARCH_BUCKETS];
+    private final int[] searchParents = new int[MAX_SEARCH_BUCKETS];
+    private final int[] searchSlots = new int[MAX_SEARCH_BUCKETS];
+
+    public CuckooLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.loadFactor = loadFactor;
+        allocate(maxEntries);
+        this.minEntries = maxEntries;
+        this.hasher = hasher;
+    }
+
+    public CuckooLongHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    public CuckooLongHashSet(CuckooLongHashSet other) {
+        this.arr = other.arr.clone();
+        this.buckets = other.buckets;
+        this.size = other.size;
+        this.stashSize = other.stashSize;
+        this.maxEntries = other.maxEntries;
+        this.minEntries = other.minEntries;
+        this.loadFactor = other.loadFactor;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new CuckooLongHashSet(this);
+    }
+
+    /**
+     * Query the size of the table's backing array, including the stash.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        return this.arr.length;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 64-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        return lookupByHash(hash(value)) != -1;
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 64-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(long element) {
+        long hash = hash(element);
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        // double the table before it would exceed its load factor
+        if (this.size >= this.maxEntries) {
+            resize(2 * this.maxEntries);
+        }
+        while (!insertHash(hash)) {
+            resize(2 * this.maxEntries);
+        }
+        return true;
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        int slot = lookupByHash(hash(value));
+        if (slot == -1) {
+            return false;
+        }
+        this.arr[slot] = 0;
+        --this.size;
+        if (slot >= stashStart()) {
+            --this.stashSize;
+        }
+        if (this.stashSize > 0) {
+            unstash();
+        }
+        shrinkIfSparse();
+        return true;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        Arrays.fill(this.arr, 0);
+        this.size = 0;
+        this.stashSize = 0;
+    }
+
+    /**
+     * Return a cursor over the elements of the table, which scans the bucket
+     * array and then the stash, unhashing each element as it is reached.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        return BucketSpliterator.of(this.arr, 0, this.arr.length, this.size, this.hasher);
+    }
+
+    /**
+     * Apply an action to each element of the table, in slot order.
+     *
+     * @param action the action to apply to each element
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        for (long hash : this.arr) {
+            if (hash != 0) {
+                action.accept(unhash(hash));
+            }
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table, which splits the
+     * bucket array in halves.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return BucketSpliterator.of(this.arr, 0, this.arr.length, this.size, this.hasher);
+    }
+
+    // Return the slot holding the hash code, or -1 if it is absent.
+    protected int lookupByHash(long hash) {
+        int first = firstBucket(hash) << SLOT_SHIFT;
+        int second = secondBucket(hash) << SLOT_SHIFT;
+        for (int i = 0; i < SLOTS_PER_BUCKET; ++i) {
+            if (this.arr[first + i] == hash) {
+                return first + i;
+            }
+            if (this.arr[second + i] == hash) {
+                return second + i;
+            }
+        }
+        if (this.stashSize > 0) {
+            for (int slot = stashStart(); slot < this.arr.length; ++slot) {
+                if (this.arr[slot] == hash) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Put a hash code which is known to be absent in one of its buckets,
+    // evicting other elements to their other buckets if necessary, or in the
+    // stash. Return false if there is no room for it anywhere.
+    protected boolean insertHash(long hash) {
+        int first = firstBucket(hash);
+        int second = secondBucket(hash);
+        int slot = findEmptySlot(first);
+        if (slot == -1) {
+            slot = findEmptySlot(second);
+        }
+        if (slot == -1) {
+            slot = makeRoom(first, second);
+        }
+        if (slot == -1) {
+            if (this.stashSize == STASH_SIZE) {
+                return false;
+            }
+            slot = findEmptySlot(stashStart(), this.arr.length);
+            ++this.stashSize;
+        }
+        this.arr[slot] = hash;
+        ++this.size;
+        return true;
+    }
+
+    // Search breadth-first from the two (full) buckets for an element which
+    // can be moved to its other bucket, either because that bucket has an
+    // empty slot, or because one of its own elements can be moved in turn.
+    // If we find one, move the elements along the path, and return the slot
+    // this frees in one of the two buckets; otherwise, return -1. The
+    // buckets on the path are all full, so the bucket at its end is not on
+    // it, and since we never visit a bucket twice, each move frees the slot
+    // the next one needs.
+    private int makeRoom(int first, int second) {
+        int visited = 0;
+        this.searchBuckets[visited] = first;
+        this.searchParents[visited] = -1;
+        ++visited;
+        if (second != first) {
+            this.searchBuckets[visited] = second;
+            this.searchParents[visited] = -1;
+            ++visited;
+        }
+        for (int node = 0; node < visited; ++node) {
+            int bucket = this.searchBuckets[node];
+            for (int i = 0; i < SLOTS_PER_BUCKET; ++i) {
+                int slot = (bucket << SLOT_SHIFT) + i;
+                int other = otherBucket(this.arr[slot], bucket);
+                if (other == bucket) {
+                    continue;
+                }
+                int emptySlot = findEmptySlot(other);
+                if (emptySlot != -1) {
+                    return moveAlongPath(node, slot, emptySlot);
+                }
+                if (visited < MAX_SEARCH_BUCKETS && !isVisited(other, visited)) {
+                    this.searchBuckets[visited] = other;
+                    this.searchParents[visited] = node;
+                    this.searchSlots[visited] = slot;
+                    ++visited;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Move the element in slot (of the bucket visited as node) to the empty
+    // slot, and then each element on the path to the slot vacated after it,
+    // and return the slot vacated in the bucket the search started from.
+    private int moveAlongPath(int node, int slot, int emptySlot) {
+        this.arr[emptySlot] = this.arr[slot];
+        while (this.searchParents[node] != -1) {
+            int parentSlot = this.searchSlots[node];
+            this.arr[slot] = this.arr[parentSlot];
+            slot = parentSlot;
+            node = this.searchParents[node];
+        }
+        this.arr[slot] = 0;
+        return slot;
+    }
+
+    private boolean isVisited(int bucket, int visited) {
+        for (int i = 0; i < visited; ++i) {
+            if (this.searchBuckets[i] == bucket) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Move as many stashed elements as possible back into their buckets,
+    // without evicting anything.
+    private void unstash() {
+        for (int slot = stashStart(); slot < this.arr.length; ++slot) {
+            long hash = this.arr[slot];
+            if (hash == 0) {
+                continue;
+            }
+            int emptySlot = findEmptySlot(firstBucket(hash));
+            if (emptySlot == -1) {
+                emptySlot = findEmptySlot(secondBucket(hash));
+            }
+            if (emptySlot != -1) {
+                this.arr[emptySlot] = hash;
+                this.arr[slot] = 0;
+                --this.stashSize;
+            }
+        }
+    }
+
+    // Halve the table once it is less than a quarter full, as in LPLongHashSet.
+    protected void shrinkIfSparse() {
+        int newMaxEntries = this.maxEntries;
+        while (this.size < newMaxEntries / 4.0 && newMaxEntries / 2 >= this.minEntries) {
+            newMaxEntries /= 2;
+        }
+        if (newMaxEntries != this.maxEntries) {
+            resize(newMaxEntries);
+        }
+    }
+
+    // Rebuild the table to hold maxEntries elements at its load factor, by
+    // reinserting every element (without unhashing it), doubling it again
+    // for as long as the elements don't all fit.
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        long[] oldArr = this.arr;
+        rebuild:
+        while (true) {
+            allocate(maxEntries);
+            this.size = 0;
+            this.stashSize = 0;
+            for (long hash : oldArr) {
+                if (hash != 0 && !insertHash(hash)) {
+                    maxEntries *= 2;
+                    continue rebuild;
+                }
+            }
+            return;
+        }
+    }
+
+    private void allocate(int maxEntries) {
+        this.maxEntries = maxEntries;
+        int capacity = (int) (maxEntries / this.loadFactor);
+        this.buckets = Math.max(1, (capacity + SLOTS_PER_BUCKET - 1) >>> SLOT_SHIFT);
+        this.arr = new long[(this.buckets << SLOT_SHIFT) + STASH_SIZE];
+    }
+
+    private int stashStart() {
+        return this.buckets << SLOT_SHIFT;
+    }
+
+    // https://github.com/lemire/fastrange
+    // The two choices of bucket use the high and low 32 bits of the hash.
+    protected int firstBucket(long hash) {
+        return (int) (((hash >>> 32) * Integer.toUnsignedLong(this.buckets)) >>> 32);
+    }
+
+    protected int secondBucket(long hash) {
+        return (int) (((hash & 0xFFFFFFFFL) * Integer.toUnsignedLong(this.buckets)) >>> 32);
+    }
+
+    // the bucket the hash code in the given bucket could be moved to
+    private int otherBucket(long hash, int bucket) {
+        int first = firstBucket(hash);
+        return (first == bucket) ? secondBucket(hash) : first;
+    }
+
+    private int findEmptySlot(int bucket) {
+        int start = bucket << SLOT_SHIFT;
+        return findEmptySlot(start, start + SLOTS_PER_BUCKET);
+    }
+
+    private int findEmptySlot(int from, int to) {
+        for (int slot = from; slot < to; ++slot) {
+            if (this.arr[slot] == 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    protected long hash(long x) {
+        return this.hasher.hash(x);
+    }
+
+    protected long unhash(long x) {
+        return this.hasher.unhash(x);
+    }
+
+}
@@ -0,0 +1,61 @@
+package set.int64;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Allocation and explicit release of the direct buffers backing the off-heap
+ * tables. Java 11 has no public API to free a direct buffer before it is
+ * garbage-collected, so we use {@code sun.misc.Unsafe.invokeCleaner()} when
+ * it is available, and otherwise leave the memory to the buffer's cleaner.
+ *
+ * @author tdbaker
+ */
+final class DirectMemory {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private DirectMemory() {}
+
+    // Allocate a zeroed direct buffer of the given number of 64-bit words, in
+    // native byte order (so reads and writes need no byte swapping).
+    static ByteBuffer allocateWords(int words) {
+        if (words > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException("Table too large for a direct buffer: " + words + " buckets");
+        }
+        return ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    // Release the memory of a direct (or mapped) buffer immediately. The
+    // buffer must not be accessed afterward.
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            // views and duplicates can't be cleaned directly; leave them to the GC
+        }
+    }
+}
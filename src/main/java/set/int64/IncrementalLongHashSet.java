@@ -0,0 +1,263 @@
+package set.int64;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * A wrapper which grows any of the linear probing tables in this package
+ * incrementally, rather than all at once. When the wrapped table reaches its
+ * maximum number of entries, a table of the same class sized for twice as
+ * many elements is allocated, and from then on every {@code add} or {@code
+ * remove} migrates a bounded number of buckets from the old table to the new
+ * one, until the old table is empty and can be discarded. Each migration step
+ * either skips an empty bucket or moves one hash code (the two tables share a
+ * hash function, so elements are never unhashed and rehashed), so no single
+ * operation pays for rehashing the whole table. While a migration is in
+ * progress, lookups must check both tables, and new elements are always added
+ * to the new table. (The hopscotch tables can't be wrapped, since inserting
+ * into one may need to double it, and the migration has no way to do that.)
+ * <p>
+ * Elements are migrated by scanning the old table's buckets in order, and
+ * removing each element found using the table's own deletion algorithm. The
+ * tombstone-free algorithms only ever move elements into the bucket being
+ * emptied or buckets after it, so the buckets behind the scan stay empty; the
+ * graveyard table leaves a tombstone instead, which the scan skips along with
+ * the empty buckets.
+ * <p>
+ * If a migration starts when the old table holds {@code n} elements at load
+ * factor {@code a}, it visits at most {@code n/a} buckets and moves at most
+ * {@code n} elements, so migrating {@code ceil(1 + 1/a) + 1} buckets per
+ * operation finishes the migration in fewer than {@code n} operations, before
+ * the new table (sized for {@code 2n} elements) can fill up. A larger number
+ * of buckets per operation may be passed to the constructor (passing {@code
+ * Integer.MAX_VALUE} migrates the whole table in the operation which starts
+ * the migration, like a conventional resize).
+ *
+ * @author tdbaker
+ */
+public class IncrementalLongHashSet implements LongSet {
+    public static final String NAME = "set.int64.IncrementalLongHashSet";
+
+    // the table that new elements are added to
+    private LPLongHashSet table;
+    // the table being migrated to this.table, or null if there is no migration in progress
+    private LPLongHashSet oldTable = null;
+    // the next bucket of this.oldTable to migrate
+    private int cursor = 0;
+    // the number of buckets to migrate per operation
+    private final int migrationSteps;
+
+    public IncrementalLongHashSet(LPLongHashSet table, int migrationSteps) {
+        if (table instanceof HopscotchLongHashSet) {
+            throw new IllegalArgumentException("Hopscotch tables can't grow during an insertion into a migration");
+        }
+        assert migrationSteps >= minMigrationSteps(table.loadFactor);
+        this.table = table;
+        this.migrationSteps = migrationSteps;
+    }
+
+    public IncrementalLongHashSet(LPLongHashSet table) {
+        this(table, minMigrationSteps(table.loadFactor));
+    }
+
+    public IncrementalLongHashSet(IncrementalLongHashSet other) throws CloneNotSupportedException {
+        this.table = (LPLongHashSet) other.table.cloneSet();
+        if (other.oldTable != null) {
+            this.oldTable = (LPLongHashSet) other.oldTable.cloneSet();
+        }
+        this.cursor = other.cursor;
+        this.migrationSteps = other.migrationSteps;
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new IncrementalLongHashSet(this);
+    }
+
+    /**
+     * Query the combined size of the backing arrays of the old and new tables.
+     *
+     * @return the size of the backing arrays
+     */
+    public int capacity() {
+        return this.table.capacity() + (this.oldTable != null ? this.oldTable.capacity() : 0);
+    }
+
+    /**
+     * Query whether elements are being migrated from an old table to a new one.
+     *
+     * @return {@code true} if a migration is in progress, {@code false} otherwise
+     */
+    public boolean isMigrating() {
+        return this.oldTable != null;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        return this.table.size() + (this.oldTable != null ? this.oldTable.size() : 0);
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 64-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        long hash = this.table.hash(value);
+        return this.table.containsHash(hash) ||
+            (this.oldTable != null && this.oldTable.containsHash(hash));
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 64-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(long element) {
+        long hash = this.table.hash(element);
+        if (this.oldTable == null && this.table.size() >= this.table.maxEntries) {
+            if (this.table.containsHash(hash)) {
+                return false;
+            }
+            startMigration();
+        }
+        boolean added;
+        if (this.oldTable != null && this.oldTable.containsHash(hash)) {
+            added = false;
+        } else {
+            added = this.table.addHash(hash);
+        }
+        migrate();
+        return added;
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        long hash = this.table.hash(value);
+        boolean removed = this.table.removeHash(hash) ||
+            (this.oldTable != null && this.oldTable.removeHash(hash));
+        migrate();
+        return removed;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        this.table.clear();
+        this.oldTable = null;
+        this.cursor = 0;
+    }
+
+    /**
+     * Return a cursor over the elements of the table, which visits the
+     * elements of the new table and then those of the old table.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        if (this.oldTable == null) {
+            return this.table.cursor();
+        }
+        LongCursor first = this.table.cursor();
+        LongCursor second = this.oldTable.cursor();
+        return new LongCursor() {
+            private LongCursor current = first;
+
+            @Override
+            public boolean advance() {
+                if (this.current.advance()) {
+                    return true;
+                }
+                this.current = second;
+                return second.advance();
+            }
+
+            @Override
+            public long key() {
+                return this.current.key();
+            }
+        };
+    }
+
+    /**
+     * Apply an action to each element of the table, visiting the elements of
+     * the new table and then those of the old table.
+     *
+     * @param action the action to apply to each element
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        this.table.forEach(action);
+        if (this.oldTable != null) {
+            this.oldTable.forEach(action);
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table. While a migration
+     * is in progress, its first split separates the two tables.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        if (this.oldTable == null) {
+            return this.table.spliterator();
+        }
+        return LongStream.concat(this.table.stream(), this.oldTable.stream()).spliterator();
+    }
+
+    // the smallest number of buckets to migrate per operation which guarantees
+    // that the migration finishes before the new table fills up
+    private static int minMigrationSteps(double loadFactor) {
+        return (int) Math.ceil(1 + 1 / loadFactor) + 1;
+    }
+
+    private void startMigration() {
+        assert this.oldTable == null;
+        this.oldTable = this.table;
+        this.table = this.oldTable.newEmptySet(2 * this.oldTable.size());
+        this.cursor = 0;
+    }
+
+    private void migrate() {
+        if (this.oldTable == null) {
+            return;
+        }
+        for (int i = 0; i < this.migrationSteps && this.oldTable.size() > 0; ++i) {
+            if (this.cursor == this.oldTable.capacity()) {
+                // deletions never move elements behind the cursor, so this is just a safeguard
+                this.cursor = 0;
+            }
+            if (!this.oldTable.isLive(this.cursor)) {
+                // an empty bucket, or a deleted element the table hasn't cleared yet
+                ++this.cursor;
+            } else {
+                // leave the cursor in place, since the deletion may shift another element into its bucket
+                long hash = this.oldTable.arr[this.cursor];
+                boolean removed = this.oldTable.removeHash(hash);
+                assert removed;
+                boolean added = this.table.addHash(hash);
+                assert added;
+            }
+        }
+        if (this.oldTable.size() == 0) {
+            this.oldTable = null;
+        }
+    }
+}
@@ -23,6 +23,10 @@ import hash.int64.LongHasher;
 public class LCFSLongHashSet extends LPLongHashSet {
     public static final String NAME = "set.int64.LCFSLongHashSet";
 
+    public LCFSLongHashSet(int maxEntries, double loadFactor, LongHasher hasher, boolean useOccupancyBitmap) {
+        super(maxEntries, loadFactor, hasher, useOccupancyBitmap);
+    }
+
     public LCFSLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
         super(maxEntries, loadFactor, hasher);
     }
@@ -43,15 +47,15 @@ public class LCFSLongHashSet extends LPLongHashSet {
         return new LCFSLongHashSet(this);
     }
 
-    /**
-     * Add an element to the table.
-     *
-     * @param element the 64-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean add(long element) {
-        long hash = hash(element);
+    protected LCFSLongHashSet newEmptySet(int maxEntries) {
+        LCFSLongHashSet set = new LCFSLongHashSet(maxEntries, this.loadFactor, this.hasher, hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             // table full
@@ -67,20 +71,18 @@ public class LCFSLongHashSet extends LPLongHashSet {
         // bucket one space to the right.
         moveEmptyBucketToInsertionPoint(emptyBucket, preferredBucket);
         this.arr[preferredBucket] = hash;
+        // the shift filled the empty bucket, or the new element did
+        markOccupied(emptyBucket);
         ++this.size;
         return true;
     }
 
     private int findFirstEmptyBucket(int startBucket) {
         assert startBucket >= 0 && startBucket < this.arr.length;
-        int bucket = startBucket;
-        int probeLength = 0;
-        while (!isEmpty(bucket)) {
-            if (probeLength == this.arr.length) {
-                return -1;
-            }
-            bucket = wrap(bucket + 1);
-            ++probeLength;
+        int bucket = findEmptyBucketToRight(startBucket);
+        if (bucket == -1) {
+            // wrap around to the start of the array
+            bucket = findEmptyBucketToRight(0);
         }
         return bucket;
     }
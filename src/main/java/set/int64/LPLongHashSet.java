@@ -4,6 +4,8 @@ import hash.int64.LongHasher;
 import hash.int64.Murmur3LongHasher;
 
 import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
 
 
 /**
@@ -15,32 +17,65 @@ import java.util.Arrays;
  * 64-bit integers, which are permuted to form the hash codes (i.e., the
  * "hash function" is reversible). This obviates the need to separately store
  * hash codes or rehash the keys to perform operations which use hash codes.
+ * <p>
+ * Tables may optionally maintain an occupancy bitmap alongside the bucket
+ * array, with one bit per bucket, set if the bucket is occupied. It costs
+ * 1/64 of the size of the bucket array, and a little work on every insertion
+ * and deletion, but the subclasses whose insertions search for an empty
+ * bucket find it by testing 64 buckets at a time, and iteration and {@link
+ * #clear()} skip empty runs of 64 buckets at a time, which pays off for
+ * very full and very sparse tables respectively.
  *
  * @author tdbaker
  */
 public class LPLongHashSet implements LongSet {
     public static final String NAME = "set.int64.LPLongHashSet";
 
-    protected final long[] arr;
+    // the number of lookups whose memory accesses a batched query overlaps
+    private static final int LOOKUP_GROUP_SIZE = 16;
+
+    protected long[] arr;
     protected int size = 0;
+    // the number of elements the table is currently sized for, which grows
+    // and shrinks with the table, but never below its initial value
+    protected int maxEntries;
+    protected final int minEntries;
+    protected final double loadFactor;
     protected final LongHasher hasher;
+    // bit i of the bitmap is set if bucket i is occupied, or null if the
+    // table doesn't maintain an occupancy bitmap
+    protected long[] occupied;
+    protected ProbeKernel probeKernel = ProbeKernel.SCALAR;
 
-    public LPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+    public LPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher, boolean useOccupancyBitmap) {
         assert maxEntries > 0;
         assert loadFactor > 0 && loadFactor <= 1.0;
-        int arrSize = (int) (maxEntries / loadFactor);
+        this.loadFactor = loadFactor;
+        int arrSize = capacityFor(maxEntries);
         this.arr = new long[arrSize];
+        this.occupied = useOccupancyBitmap ? new long[bitmapLength(arrSize)] : null;
+        this.maxEntries = maxEntries;
+        this.minEntries = maxEntries;
         this.hasher = hasher;
     }
 
+    public LPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        this(maxEntries, loadFactor, hasher, false);
+    }
+
     public LPLongHashSet(int maxEntries, double loadFactor) {
         this(maxEntries, loadFactor, new Murmur3LongHasher());
     }
 
     public LPLongHashSet(LPLongHashSet other) {
         this.arr = other.arr.clone();
+        this.occupied = other.occupied != null ? other.occupied.clone() : null;
         this.size = other.size;
+        this.maxEntries = other.maxEntries;
+        this.minEntries = other.minEntries;
+        this.loadFactor = other.loadFactor;
         this.hasher = other.hasher.cloneHasher();
+        this.probeKernel = other.probeKernel;
     }
 
     /**
@@ -50,6 +85,42 @@ public class LPLongHashSet implements LongSet {
         return new LPLongHashSet(this);
     }
 
+    // Return an empty table of the same class, sized for maxEntries elements
+    // at the same load factor, and sharing this table's hash function (so
+    // hash codes can be moved between the two tables without unhashing them).
+    protected LPLongHashSet newEmptySet(int maxEntries) {
+        LPLongHashSet set = new LPLongHashSet(maxEntries, this.loadFactor, this.hasher, hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    /**
+     * Select the loop the table uses to look up hash codes.
+     *
+     * @param probeKernel the kernel to use for subsequent lookups
+     */
+    public void setProbeKernel(ProbeKernel probeKernel) {
+        this.probeKernel = probeKernel;
+    }
+
+    /**
+     * Query the loop the table uses to look up hash codes.
+     *
+     * @return the table's probe kernel
+     */
+    public ProbeKernel probeKernel() {
+        return this.probeKernel;
+    }
+
+    /**
+     * Query whether the table maintains an occupancy bitmap.
+     *
+     * @return {@code true} if the table maintains an occupancy bitmap, {@code false} otherwise
+     */
+    public boolean hasOccupancyBitmap() {
+        return this.occupied != null;
+    }
+
     /**
      * Query the size of the table's backing array.
      *
@@ -76,12 +147,48 @@ public class LPLongHashSet implements LongSet {
      * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
      */
     public boolean contains(long value) {
-        long hash = hash(value);
-        int bucket = lookupByHash(hash);
-        if (bucket == -1 || isEmpty(bucket)) {
-            return false;
+        return containsHash(hash(value));
+    }
+
+    /**
+     * Query the table for a range of values at once, storing the results in
+     * {@code resultBits} as described in {@link LongSet#contains(long[], int, int, long[])}.
+     * Keys are processed in groups: all of a group's keys are hashed, and
+     * then all of their preferred buckets are loaded, before any of the
+     * lookups proceed, so the cache misses of the loads overlap instead of
+     * each waiting for the previous lookup to finish. The rest of each
+     * lookup then usually hits in cache.
+     *
+     * @param keys the 64-bit integers to query the table for
+     * @param from the index of the first key to query (inclusive)
+     * @param to the index of the last key to query (exclusive)
+     * @param resultBits the bitmap to store the results in
+     * @return the number of keys in the range which are present in the table
+     */
+    @Override
+    public int contains(long[] keys, int from, int to, long[] resultBits) {
+        long[] hashes = new long[LOOKUP_GROUP_SIZE];
+        long[] preferred = new long[LOOKUP_GROUP_SIZE];
+        int found = 0;
+        for (int start = from; start < to; start += LOOKUP_GROUP_SIZE) {
+            int count = Math.min(LOOKUP_GROUP_SIZE, to - start);
+            for (int i = 0; i < count; ++i) {
+                hashes[i] = hash(keys[start + i]);
+            }
+            // these loads are independent, so the CPU can issue them all at once
+            for (int i = 0; i < count; ++i) {
+                preferred[i] = this.arr[findPreferredBucket(hashes[i])];
+            }
+            for (int i = 0; i < count; ++i) {
+                // most present keys are found in their preferred buckets
+                boolean isPresent = (preferred[i] == hashes[i]) || containsHash(hashes[i]);
+                long present = isPresent ? 1 : 0;
+                int bit = start + i - from;
+                resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+                found += (int) present;
+            }
         }
-        return true;
+        return found;
     }
 
     /**
@@ -92,6 +199,91 @@ public class LPLongHashSet implements LongSet {
      */
     public boolean add(long element) {
         long hash = hash(element);
+        // double the table before it would exceed its load factor
+        if (this.size >= this.maxEntries && !containsHash(hash)) {
+            resize(2 * this.maxEntries);
+        }
+        return addHash(hash);
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        boolean removed = removeHash(hash(value));
+        if (removed) {
+            shrinkIfSparse();
+        }
+        return removed;
+    }
+
+    /**
+     * Return a cursor over the elements of the table, which scans the bucket
+     * array in order, unhashing each element as it is reached.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        return buckets();
+    }
+
+    /**
+     * Apply an action to each element of the table, in bucket order.
+     *
+     * @param action the action to apply to each element
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        if (this.occupied != null) {
+            for (int i = 0; i < this.occupied.length; ++i) {
+                for (long word = this.occupied[i]; word != 0; word &= word - 1) {
+                    action.accept(unhash(this.arr[(i << 6) + Long.numberOfTrailingZeros(word)]));
+                }
+            }
+            return;
+        }
+        for (long hash : this.arr) {
+            if (hash != 0) {
+                action.accept(unhash(hash));
+            }
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table, which splits by
+     * dividing the bucket array into halves.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return buckets();
+    }
+
+    private BucketSpliterator buckets() {
+        if (this.occupied != null) {
+            return BucketSpliterator.of(this.arr, this.occupied, 0, this.arr.length, this.size, this.hasher);
+        }
+        return BucketSpliterator.of(this.arr, 0, this.arr.length, this.size, this.hasher);
+    }
+
+    // The operations below take hash codes rather than keys, and never
+    // resize the table. Subclasses override these rather than the public
+    // methods, so that a hash code can be moved from one table to another
+    // without unhashing it.
+
+    protected boolean containsHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1 || isEmpty(bucket)) {
+            return false;
+        }
+        return true;
+    }
+
+    protected boolean addHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             // table full
@@ -101,39 +293,179 @@ public class LPLongHashSet implements LongSet {
             return false;
         }
         this.arr[bucket] = hash;
+        markOccupied(bucket);
         ++this.size;
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 64-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
-    public boolean remove(long value) {
-        long hash = hash(value);
+    protected boolean removeHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1 || isEmpty(bucket)) {
             return false;
         }
         this.arr[bucket] = 0;
+        markEmpty(bucket);
         shift(bucket);
         --this.size;
         return true;
     }
 
+    // Halve the table once it is less than a quarter full (relative to its
+    // load factor), unless that would take it below its initial size. The gap
+    // between the grow and shrink thresholds keeps a sequence of alternating
+    // insertions and deletions from resizing the table every time. (The loop
+    // only matters for tiny tables, where rounding can leave the table
+    // sparse enough to halve again.)
+    protected void shrinkIfSparse() {
+        int newMaxEntries = this.maxEntries;
+        while (this.size < newMaxEntries / 4.0 && newMaxEntries / 2 >= this.minEntries) {
+            newMaxEntries /= 2;
+        }
+        if (newMaxEntries != this.maxEntries) {
+            resize(newMaxEntries);
+        }
+    }
+
+    // Resize the table to hold maxEntries elements at its load factor, by
+    // reinserting every element (without unhashing it) into the new array.
+    // Subclasses whose layout can be rebuilt more cheaply override this.
+    protected void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        long[] oldArr = reallocate(maxEntries);
+        this.size = 0;
+        for (long hash : oldArr) {
+            if (hash != 0) {
+                addHash(hash);
+            }
+        }
+    }
+
+    // The size of the backing array for maxEntries elements at the table's
+    // load factor. (This is called from the constructor, so overrides can
+    // only depend on the load factor.)
+    protected int capacityFor(int maxEntries) {
+        return (int) (maxEntries / this.loadFactor);
+    }
+
+    // Replace the backing array with an empty one sized for maxEntries
+    // elements, and return the old array. The size is left unchanged.
+    protected long[] reallocate(int maxEntries) {
+        long[] oldArr = this.arr;
+        this.maxEntries = maxEntries;
+        this.arr = new long[capacityFor(maxEntries)];
+        if (this.occupied != null) {
+            this.occupied = new long[bitmapLength(this.arr.length)];
+        }
+        return oldArr;
+    }
+
     /**
-     * Remove all elements from the table.
+     * Remove all elements from the table. With an occupancy bitmap, only the
+     * occupied buckets are written.
      */
     public void clear() {
-        Arrays.fill(this.arr, 0);
+        if (this.occupied != null) {
+            for (int i = 0; i < this.occupied.length; ++i) {
+                for (long word = this.occupied[i]; word != 0; word &= word - 1) {
+                    this.arr[(i << 6) + Long.numberOfTrailingZeros(word)] = 0;
+                }
+                this.occupied[i] = 0;
+            }
+        } else {
+            Arrays.fill(this.arr, 0);
+        }
+        this.size = 0;
+    }
+
+    private static int bitmapLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    // Subclasses call these whenever a bucket becomes occupied or empty. They
+    // needn't be called for buckets whose contents are only moved, which is
+    // all the buckets of a shifted run except the ones at its ends.
+    protected void markOccupied(int bucket) {
+        if (this.occupied != null) {
+            this.occupied[bucket >>> 6] |= 1L << bucket;
+        }
+    }
+
+    protected void markEmpty(int bucket) {
+        if (this.occupied != null) {
+            this.occupied[bucket >>> 6] &= ~(1L << bucket);
+        }
+    }
+
+    // Recompute the occupancy bitmap from the bucket array, after it has been
+    // filled without marking the occupied buckets.
+    protected void rebuildOccupancyBitmap() {
+        if (this.occupied == null) {
+            return;
+        }
+        Arrays.fill(this.occupied, 0);
+        for (int i = 0; i < this.arr.length; ++i) {
+            if (this.arr[i] != 0) {
+                this.occupied[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    // Return the first empty bucket at or after startBucket, without wrapping
+    // around the end of the array, or -1 if there is none.
+    protected int findEmptyBucketToRight(int startBucket) {
+        if (this.occupied == null) {
+            for (int bucket = startBucket; bucket < this.arr.length; ++bucket) {
+                if (isEmpty(bucket)) {
+                    return bucket;
+                }
+            }
+            return -1;
+        }
+        int i = startBucket >>> 6;
+        // the bits past the end of the array are clear, so they look empty
+        long empty = ~this.occupied[i] & (-1L << startBucket);
+        while (empty == 0) {
+            if (++i == this.occupied.length) {
+                return -1;
+            }
+            empty = ~this.occupied[i];
+        }
+        int bucket = (i << 6) + Long.numberOfTrailingZeros(empty);
+        return bucket < this.arr.length ? bucket : -1;
+    }
+
+    // Return the last empty bucket at or before startBucket, without wrapping
+    // around the start of the array, or -1 if there is none.
+    protected int findEmptyBucketToLeft(int startBucket) {
+        if (this.occupied == null) {
+            for (int bucket = startBucket; bucket >= 0; --bucket) {
+                if (isEmpty(bucket)) {
+                    return bucket;
+                }
+            }
+            return -1;
+        }
+        int i = startBucket >>> 6;
+        long empty = ~this.occupied[i] & (-1L >>> (63 - (startBucket & 63)));
+        while (empty == 0) {
+            if (--i < 0) {
+                return -1;
+            }
+            empty = ~this.occupied[i];
+        }
+        return (i << 6) + 63 - Long.numberOfLeadingZeros(empty);
     }
 
     protected boolean isEmpty(int bucket) {
         return (this.arr[bucket] == 0);
     }
 
+    // Whether the bucket holds an element of the set. Subclasses which leave
+    // hash codes of deleted elements in place override this to exclude them.
+    protected boolean isLive(int bucket) {
+        return !isEmpty(bucket);
+    }
+
     protected long contents(int bucket) {
         return isEmpty(bucket) ? 0 : unhash(this.arr[bucket]);
     }
@@ -168,6 +500,9 @@ public class LPLongHashSet implements LongSet {
     }
 
     protected int lookupByHash(long hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         int probeLength = 0;
         while (!isEmpty(bucket) && this.arr[bucket] != hash) {
@@ -180,6 +515,39 @@ public class LPLongHashSet implements LongSet {
         return bucket;
     }
 
+    // As above, but testing a block of buckets at a time: bit i of the mask
+    // is set if the i'th bucket of the block ends the probe (it is empty or
+    // holds the hash code), and the lowest set bit is the bucket we want. The
+    // last few buckets of the array don't make a whole block, so we step
+    // through them one at a time until the probe wraps around.
+    private int lookupByHashBlocked(long hash) {
+        long[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (probeLength <= arr.length) {
+            if (bucket > arr.length - ProbeKernel.BLOCK_SIZE) {
+                long current = arr[bucket];
+                if (current == 0 || current == hash) {
+                    return bucket;
+                }
+                bucket = wrap(bucket + 1);
+                ++probeLength;
+                continue;
+            }
+            int stop = 0;
+            for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                long current = arr[bucket + i];
+                stop |= ((current == 0) | (current == hash) ? 1 : 0) << i;
+            }
+            if (stop != 0) {
+                return bucket + Integer.numberOfTrailingZeros(stop);
+            }
+            bucket = wrap(bucket + ProbeKernel.BLOCK_SIZE);
+            probeLength += ProbeKernel.BLOCK_SIZE;
+        }
+        return -1;
+    }
+
     // uses pseudocode from _Algorithm Design and Applications_, Section 6.3.3
     protected void shift(int startBucket) {
         int dst = startBucket;
@@ -195,8 +563,7 @@ public class LPLongHashSet implements LongSet {
                 reachable = (preferredBucket <= dst || preferredBucket > src);
              }
              if (reachable) {
-                this.arr[dst] = this.arr[src];  // fill the hole
-                this.arr[src] = 0;  // move the hole
+                moveBucket(src, dst);
                 dst = wrap(dst + shift);
                 shift = 1;
              } else {
@@ -206,6 +573,14 @@ public class LPLongHashSet implements LongSet {
         }
     }
 
+    // fill the hole at dst with the contents of src, and move the hole to src
+    protected void moveBucket(int src, int dst) {
+        this.arr[dst] = this.arr[src];
+        this.arr[src] = 0;
+        markOccupied(dst);
+        markEmpty(src);
+    }
+
     protected void dump() {
         for (int i = 0; i < this.arr.length; ++i) {
             System.out.format("%d\t%d\t%s\t%d\n", i, contents(i), Long.toUnsignedString(this.arr[i]), findPreferredBucket(this.arr[i]));
@@ -0,0 +1,81 @@
+package set.int64;
+
+
+/**
+ * The linear probing algorithms of {@link LPLongHashSet}, written against
+ * {@link LongBuckets} rather than a {@code long[]}, for the tables which
+ * store their buckets some other way ({@link OffHeapLPLongHashSet}), along
+ * with the bucket arithmetic shared by {@link RHProbing} and {@link
+ * BLPProbing}. The heap table keeps its own copies, which index its array
+ * directly, maintain its occupancy bitmap, and move map values through its
+ * {@code moveBucket()} hook.
+ *
+ * @author tdbaker
+ */
+final class LPProbing {
+    private LPProbing() {
+    }
+
+    // https://github.com/lemire/fastrange
+    // as in LPLongHashSet, we just use the high 32 bits of the hash
+    static int findPreferredBucket(long hash, int capacity) {
+        if (hash == 0) {
+            return -1;
+        }
+        return (int) (((hash >>> 32) * Integer.toUnsignedLong(capacity)) >>> 32);
+    }
+
+    static int wrap(int pos, int capacity) {
+        if (pos < 0) {
+            return capacity + pos;
+        }
+        if (pos > capacity - 1) {
+            return pos - capacity;
+        }
+        return pos;
+    }
+
+    // Return the bucket holding the hash code, or the empty bucket where it
+    // would be inserted, or -1 if it is absent and the table is full.
+    static int lookup(LongBuckets buckets, long hash) {
+        int capacity = buckets.length();
+        int bucket = findPreferredBucket(hash, capacity);
+        int probeLength = 0;
+        while (buckets.get(bucket) != 0 && buckets.get(bucket) != hash) {
+            if (probeLength == capacity) {
+                return -1;
+            }
+            bucket = wrap(bucket + 1, capacity);
+            ++probeLength;
+        }
+        return bucket;
+    }
+
+    // Fill the hole left by emptying the given bucket.
+    // uses pseudocode from _Algorithm Design and Applications_, Section 6.3.3
+    static void shift(LongBuckets buckets, int startBucket) {
+        int capacity = buckets.length();
+        int dst = startBucket;
+        int shift = 1;
+        int src = wrap(dst + shift, capacity);
+        while (buckets.get(src) != 0) {
+            int preferredBucket = findPreferredBucket(buckets.get(src), capacity);
+            // we can only move a key if its destination can be reached from its preferred bucket
+            boolean reachable;
+            if (src <= dst) {
+                reachable = (preferredBucket <= dst && preferredBucket > src);
+            } else {
+                reachable = (preferredBucket <= dst || preferredBucket > src);
+            }
+            if (reachable) {
+                buckets.set(dst, buckets.get(src));
+                buckets.set(src, 0);
+                dst = wrap(dst + shift, capacity);
+                shift = 1;
+            } else {
+                ++shift;
+            }
+            src = wrap(dst + shift, capacity);
+        }
+    }
+}
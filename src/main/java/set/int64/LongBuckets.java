@@ -0,0 +1,19 @@
+package set.int64;
+
+
+/**
+ * Indexed access to the buckets of a table which doesn't keep them in a
+ * {@code long[]}, such as an off-heap buffer or an array of packed slots, so
+ * that such tables can share the probing algorithms written against it (see
+ * {@link BLPProbing}). Each bucket holds a hash code, or 0 if it is empty.
+ *
+ * @author tdbaker
+ */
+interface LongBuckets {
+    long get(int bucket);
+
+    void set(int bucket, long hash);
+
+    // the number of buckets
+    int length();
+}
@@ -0,0 +1,34 @@
+package set.int64;
+
+/**
+ * A cursor over the elements of a {@link LongSet}. Unlike an iterator, it
+ * returns elements as primitive {@code long}s and a single cursor object is
+ * reused for the whole traversal, so iterating allocates nothing per element:
+ * <pre>{@code
+ * LongCursor cursor = set.cursor();
+ * while (cursor.advance()) {
+ *     process(cursor.key());
+ * }
+ * }</pre>
+ * The results are undefined if the set is modified while a cursor is in use
+ * (except for the thread-safe sets, whose cursors iterate over a snapshot).
+ *
+ * @author tdbaker
+ */
+public interface LongCursor {
+
+    /**
+     * Move the cursor to the next element.
+     *
+     * @return {@code true} if the cursor is now at an element, {@code false} if there are no more elements
+     */
+    public boolean advance();
+
+    /**
+     * Query the element the cursor is at, after {@link #advance()} has returned {@code true}.
+     *
+     * @return the 64-bit integer the cursor is at
+     */
+    public long key();
+
+}
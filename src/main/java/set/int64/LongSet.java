@@ -1,5 +1,11 @@
 package set.int64;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
 /**
  * A 64-bit hash set.
  *
@@ -22,6 +28,32 @@ public interface LongSet {
      */
     public boolean contains(long value);
 
+    /**
+     * Query the table for a range of values at once. Bit {@code i - from} of
+     * {@code resultBits} (that is, bit {@code (i - from) % 64} of word
+     * {@code (i - from) / 64}) is set if {@code keys[i]} is present in the
+     * table, and cleared otherwise; the other bits are unchanged.
+     * Implementations may overlap the memory accesses of several lookups,
+     * which is much faster than querying one value at a time when the table
+     * doesn't fit in cache.
+     *
+     * @param keys the 64-bit integers to query the table for
+     * @param from the index of the first key to query (inclusive)
+     * @param to the index of the last key to query (exclusive)
+     * @param resultBits the bitmap to store the results in, of at least {@code (to - from + 63) / 64} words
+     * @return the number of keys in the range which are present in the table
+     */
+    public default int contains(long[] keys, int from, int to, long[] resultBits) {
+        int found = 0;
+        for (int i = from; i < to; ++i) {
+            int bit = i - from;
+            long present = contains(keys[i]) ? 1 : 0;
+            resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+            found += (int) present;
+        }
+        return found;
+    }
+
     /**
      * Add an element to the table.
      *
@@ -43,6 +75,66 @@ public interface LongSet {
      */
     public void clear();
 
+    /**
+     * Return a cursor over the elements of the table, in no particular order.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor();
+
+    /**
+     * Apply an action to each element of the table, in no particular order.
+     *
+     * @param action the action to apply to each element
+     */
+    public default void forEach(LongConsumer action) {
+        LongCursor cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key());
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table. This default
+     * implementation can only split by copying batches of elements out of a
+     * cursor; the tables in this package override it to split their bucket
+     * arrays instead.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    public default Spliterator.OfLong spliterator() {
+        LongCursor cursor = cursor();
+        return new Spliterators.AbstractLongSpliterator(size(), Spliterator.DISTINCT | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(LongConsumer action) {
+                if (!cursor.advance()) {
+                    return false;
+                }
+                action.accept(cursor.key());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Return a sequential stream of the elements of the table.
+     *
+     * @return a stream of the elements of the table
+     */
+    public default LongStream stream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    /**
+     * Return a parallel stream of the elements of the table, which (for the
+     * tables in this package) divides the bucket array between threads.
+     *
+     * @return a parallel stream of the elements of the table
+     */
+    public default LongStream parallelStream() {
+        return StreamSupport.longStream(spliterator(), true);
+    }
+
     /**
      * Return deep copy of the table.
      * @return the cloned table
@@ -0,0 +1,225 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * A version of {@link OffHeapBLPLongHashSet} whose buckets live in a
+ * memory-mapped file, so that a table can be built once and reopened later
+ * (or by another process) without rehashing its elements. Since BLP tables
+ * are sorted by hash code, and the hash codes are stored rather than the
+ * elements, the bucket array is a complete and position-independent image of
+ * the table: opening a file just maps it and validates its header, which takes
+ * constant time regardless of the size of the table, and its pages are read
+ * from disk on demand as they are probed.
+ * <p>
+ * The file starts with a header of {@code HEADER_BYTES} bytes (a multiple of
+ * the page size, so the bucket array is page-aligned), holding a magic number,
+ * the format version, the capacity, the number of elements, and the class name
+ * of the hash function, which must have a public no-argument constructor so it
+ * can be instantiated when the file is opened. The header and buckets are
+ * stored in native byte order, so a file can only be opened on a platform with
+ * the same byte order as the one that created it.
+ * <p>
+ * Writes go directly to the mapping, and the size in the header is updated by
+ * every modification, so the file is consistent whenever no operation is in
+ * progress, even if the process exits without closing the table. Use {@link
+ * #force()} to write changes through to the storage device. As with the other
+ * off-heap tables, the capacity is fixed; {@link #close()} unmaps the file,
+ * and {@link #cloneSet()} returns a copy in anonymous (not file-backed) memory.
+ *
+ * @author tdbaker
+ */
+public class MappedBLPLongHashSet extends OffHeapBLPLongHashSet {
+    public static final String NAME = "set.int64.MappedBLPLongHashSet";
+
+    // "BLPLONGS" in ASCII
+    private static final long MAGIC = 0x424c504c4f4e4753L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    // header layout
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int SIZE_OFFSET = 16;
+    private static final int HASHER_LENGTH_OFFSET = 24;
+    private static final int HASHER_OFFSET = 28;
+
+    private MappedBLPLongHashSet(MappedByteBuffer mapping, int size, LongHasher hasher) {
+        super(mapping, bucketView(mapping), size, hasher);
+    }
+
+    /**
+     * Create a table in a new file, replacing any existing file at the same path.
+     *
+     * @param path the file to create
+     * @param maxEntries the maximum number of elements the table can hold
+     * @param loadFactor the ratio of {@code maxEntries} to the capacity of the table
+     * @param hasher the hash function, which must have a public no-argument constructor
+     * @return an empty table backed by the file
+     */
+    public static MappedBLPLongHashSet create(Path path, int maxEntries, double loadFactor, LongHasher hasher)
+            throws IOException {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        int capacity = (int) (maxEntries / loadFactor);
+        byte[] hasherName = hasher.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        try {
+            hasher.getClass().getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Hasher must have a public no-argument constructor: " +
+                    hasher.getClass().getName());
+        }
+        if (HASHER_OFFSET + hasherName.length > HEADER_BYTES) {
+            throw new IllegalArgumentException("Hasher class name too long: " + hasher.getClass().getName());
+        }
+        MappedByteBuffer mapping;
+        // truncating and then mapping past the end of the file extends it with zeros
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength(capacity));
+        }
+        mapping.order(ByteOrder.nativeOrder());
+        mapping.putLong(MAGIC_OFFSET, MAGIC);
+        mapping.putInt(VERSION_OFFSET, VERSION);
+        mapping.putInt(CAPACITY_OFFSET, capacity);
+        mapping.putLong(SIZE_OFFSET, 0);
+        mapping.putInt(HASHER_LENGTH_OFFSET, hasherName.length);
+        mapping.duplicate().position(HASHER_OFFSET).put(hasherName);
+        return new MappedBLPLongHashSet(mapping, 0, hasher);
+    }
+
+    public static MappedBLPLongHashSet create(Path path, int maxEntries, double loadFactor) throws IOException {
+        return create(path, maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    /**
+     * Open a table previously created by {@link #create}. No elements are read
+     * or rehashed.
+     *
+     * @param path the file to open
+     * @return the table backed by the file
+     */
+    public static MappedBLPLongHashSet open(Path path) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileLength = channel.size();
+            if (fileLength < HEADER_BYTES || fileLength > Integer.MAX_VALUE) {
+                throw new IOException("Not a mapped hash set file: " + path);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileLength);
+        }
+        mapping.order(ByteOrder.nativeOrder());
+        try {
+            long magic = mapping.getLong(MAGIC_OFFSET);
+            if (magic == Long.reverseBytes(MAGIC)) {
+                throw new IOException("Mapped hash set file has the wrong byte order: " + path);
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not a mapped hash set file: " + path);
+            }
+            int version = mapping.getInt(VERSION_OFFSET);
+            if (version != VERSION) {
+                throw new IOException("Unsupported mapped hash set version " + version + ": " + path);
+            }
+            int capacity = mapping.getInt(CAPACITY_OFFSET);
+            long size = mapping.getLong(SIZE_OFFSET);
+            int hasherLength = mapping.getInt(HASHER_LENGTH_OFFSET);
+            if (capacity <= 0 || HEADER_BYTES + (long) capacity * Long.BYTES != mapping.capacity() ||
+                    size < 0 || size > capacity ||
+                    hasherLength <= 0 || HASHER_OFFSET + hasherLength > HEADER_BYTES) {
+                throw new IOException("Corrupt mapped hash set header: " + path);
+            }
+            byte[] hasherName = new byte[hasherLength];
+            mapping.duplicate().position(HASHER_OFFSET).get(hasherName);
+            LongHasher hasher = newHasher(new String(hasherName, StandardCharsets.UTF_8));
+            return new MappedBLPLongHashSet(mapping, (int) size, hasher);
+        } catch (IOException | RuntimeException e) {
+            DirectMemory.free(mapping);
+            throw e;
+        }
+    }
+
+    /**
+     * Write any changes to the table through to the storage device holding the file.
+     */
+    public void force() {
+        checkOpen();
+        ((MappedByteBuffer) this.memory).force();
+    }
+
+    /**
+     * Write any changes to the table through to the storage device, and unmap
+     * the file. The table must not be used afterward.
+     */
+    @Override
+    public void close() {
+        if (this.memory != null) {
+            force();
+            super.close();
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        writeSize();
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
+        boolean added = super.addHash(hash);
+        if (added) {
+            writeSize();
+        }
+        return added;
+    }
+
+    @Override
+    protected boolean removeHash(long hash) {
+        boolean removed = super.removeHash(hash);
+        if (removed) {
+            writeSize();
+        }
+        return removed;
+    }
+
+    private void writeSize() {
+        this.memory.putLong(SIZE_OFFSET, this.size);
+    }
+
+    private static long fileLength(int capacity) {
+        long length = HEADER_BYTES + (long) capacity * Long.BYTES;
+        // a single mapping is limited to 2GB
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Table too large for a mapped buffer: " + capacity + " buckets");
+        }
+        return length;
+    }
+
+    // a view of the bucket array following the header (slices don't inherit byte order)
+    private static LongBuffer bucketView(ByteBuffer mapping) {
+        ByteBuffer buckets = mapping.duplicate();
+        buckets.position(HEADER_BYTES);
+        return buckets.slice().order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private static LongHasher newHasher(String className) throws IOException {
+        try {
+            return (LongHasher) Class.forName(className).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IOException("Can't instantiate hasher " + className, e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+
+/**
+ * An off-heap version of {@link BLPLongHashSet}, with the same algorithms
+ * operating on a direct buffer as described in {@link OffHeapLPLongHashSet}.
+ *
+ * @author tdbaker
+ */
+public class OffHeapBLPLongHashSet extends OffHeapLPLongHashSet {
+    public static final String NAME = "set.int64.OffHeapBLPLongHashSet";
+
+    public OffHeapBLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public OffHeapBLPLongHashSet(int maxEntries, double loadFactor) {
+        super(maxEntries, loadFactor);
+    }
+
+    public OffHeapBLPLongHashSet(OffHeapBLPLongHashSet other) {
+        super(other);
+    }
+
+    protected OffHeapBLPLongHashSet(ByteBuffer memory, LongBuffer arr, int size, LongHasher hasher) {
+        super(memory, arr, size, hasher);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new OffHeapBLPLongHashSet(this);
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        BLPProbing.insert(this.buckets, hash);
+        ++this.size;
+        return true;
+    }
+
+    @Override
+    protected boolean removeHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return false;
+        }
+        BLPProbing.delete(this.buckets, bucket);
+        --this.size;
+        return true;
+    }
+
+    @Override
+    protected int lookupByHash(long hash) {
+        return BLPProbing.lookup(this.buckets, hash);
+    }
+}
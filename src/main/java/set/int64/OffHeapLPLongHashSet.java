@@ -0,0 +1,320 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+
+/**
+ * An off-heap version of {@link LPLongHashSet}, whose buckets live in a
+ * direct {@link ByteBuffer} rather than a {@code long[]}, so that a large
+ * table adds nothing to the heap for the garbage collector to size or scan.
+ * The algorithms are identical to the heap version's, with array accesses
+ * replaced by absolute reads and writes of a {@link LongBuffer} view in native
+ * byte order, made through the {@code get()} and {@code set()} accessors, and
+ * are shared with the other tables built on such accessors, in {@link
+ * LPProbing}, {@link RHProbing} and {@link BLPProbing}. (The Foreign Function
+ * &amp; Memory API would lift the 2GB limit on a single buffer, but isn't
+ * available in the Java version we target.)
+ * <p>
+ * Unlike the heap tables, off-heap tables have a fixed capacity. The memory
+ * is released by {@link #close()}, after which the table must not be used;
+ * if a table is never closed, its memory is released when the buffer is
+ * garbage-collected.
+ *
+ * @author tdbaker
+ */
+public class OffHeapLPLongHashSet implements LongSet, AutoCloseable {
+    public static final String NAME = "set.int64.OffHeapLPLongHashSet";
+
+    // the number of lookups whose memory accesses a batched query overlaps
+    private static final int LOOKUP_GROUP_SIZE = 16;
+
+    // the buffer owning the table's memory, which is freed on close
+    protected ByteBuffer memory;
+    protected LongBuffer arr;
+    protected final int capacity;
+    protected int size = 0;
+    protected final LongHasher hasher;
+    // the buckets, read and written through get() and set(), for the probing
+    // algorithms shared with other tables which don't use a long[]
+    final LongBuckets buckets = new LongBuckets() {
+        @Override
+        public long get(int bucket) {
+            return OffHeapLPLongHashSet.this.get(bucket);
+        }
+
+        @Override
+        public void set(int bucket, long hash) {
+            OffHeapLPLongHashSet.this.set(bucket, hash);
+        }
+
+        @Override
+        public int length() {
+            return OffHeapLPLongHashSet.this.capacity;
+        }
+    };
+
+    public OffHeapLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.capacity = (int) (maxEntries / loadFactor);
+        this.memory = DirectMemory.allocateWords(this.capacity);
+        this.arr = this.memory.asLongBuffer();
+        this.hasher = hasher;
+    }
+
+    public OffHeapLPLongHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    public OffHeapLPLongHashSet(OffHeapLPLongHashSet other) {
+        other.checkOpen();
+        this.capacity = other.capacity;
+        this.memory = DirectMemory.allocateWords(this.capacity);
+        this.arr = this.memory.asLongBuffer();
+        this.arr.put(other.arr.duplicate());
+        this.arr.clear();
+        this.size = other.size;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    // Wrap existing memory holding a table image (for subclasses which
+    // manage their own memory, such as memory-mapped tables).
+    protected OffHeapLPLongHashSet(ByteBuffer memory, LongBuffer arr, int size, LongHasher hasher) {
+        this.memory = memory;
+        this.arr = arr;
+        this.capacity = arr.capacity();
+        this.size = size;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new OffHeapLPLongHashSet(this);
+    }
+
+    /**
+     * Release the table's memory. The table must not be used afterward.
+     */
+    @Override
+    public void close() {
+        if (this.memory != null) {
+            ByteBuffer memory = this.memory;
+            this.memory = null;
+            this.arr = null;
+            DirectMemory.free(memory);
+        }
+    }
+
+    /**
+     * Query the size of the table's backing buffer.
+     *
+     * @return the number of buckets in the backing buffer
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 64-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        checkOpen();
+        return containsHash(hash(value));
+    }
+
+    /**
+     * Query the table for a range of values at once, as described in {@link
+     * LongSet#contains(long[], int, int, long[])}, overlapping the loads of
+     * each group's preferred buckets as in {@link LPLongHashSet}.
+     */
+    @Override
+    public int contains(long[] keys, int from, int to, long[] resultBits) {
+        checkOpen();
+        long[] hashes = new long[LOOKUP_GROUP_SIZE];
+        long[] preferred = new long[LOOKUP_GROUP_SIZE];
+        int found = 0;
+        for (int start = from; start < to; start += LOOKUP_GROUP_SIZE) {
+            int count = Math.min(LOOKUP_GROUP_SIZE, to - start);
+            for (int i = 0; i < count; ++i) {
+                hashes[i] = hash(keys[start + i]);
+            }
+            // these loads are independent, so the CPU can issue them all at once
+            for (int i = 0; i < count; ++i) {
+                preferred[i] = get(findPreferredBucket(hashes[i]));
+            }
+            for (int i = 0; i < count; ++i) {
+                // most present keys are found in their preferred buckets
+                boolean isPresent = (preferred[i] == hashes[i]) || containsHash(hashes[i]);
+                long present = isPresent ? 1 : 0;
+                int bit = start + i - from;
+                resultBits[bit >>> 6] = (resultBits[bit >>> 6] & ~(1L << bit)) | (present << bit);
+                found += (int) present;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 64-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(long element) {
+        checkOpen();
+        return addHash(hash(element));
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        checkOpen();
+        return removeHash(hash(value));
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        checkOpen();
+        for (int i = 0; i < this.capacity; ++i) {
+            set(i, 0);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Return a cursor over the elements of the table, which scans the buffer
+     * in order, unhashing each element as it is reached.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        checkOpen();
+        return BucketSpliterator.of(this::get, 0, this.capacity, this.size, this.hasher);
+    }
+
+    /**
+     * Apply an action to each element of the table, in bucket order.
+     *
+     * @param action the action to apply to each element
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        checkOpen();
+        for (int i = 0; i < this.capacity; ++i) {
+            long hash = get(i);
+            if (hash != 0) {
+                action.accept(unhash(hash));
+            }
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table, which splits by
+     * dividing the buffer into halves.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        checkOpen();
+        return BucketSpliterator.of(this::get, 0, this.capacity, this.size, this.hasher);
+    }
+
+    protected boolean containsHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1 || isEmpty(bucket)) {
+            return false;
+        }
+        return true;
+    }
+
+    protected boolean addHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            // table full
+            throw new RuntimeException("Couldn't insert into table");
+        }
+        if (!isEmpty(bucket)) {
+            return false;
+        }
+        set(bucket, hash);
+        ++this.size;
+        return true;
+    }
+
+    protected boolean removeHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1 || isEmpty(bucket)) {
+            return false;
+        }
+        set(bucket, 0);
+        shift(bucket);
+        --this.size;
+        return true;
+    }
+
+    protected void checkOpen() {
+        if (this.arr == null) {
+            throw new IllegalStateException("Table is closed");
+        }
+    }
+
+    protected long get(int bucket) {
+        return this.arr.get(bucket);
+    }
+
+    protected void set(int bucket, long hash) {
+        this.arr.put(bucket, hash);
+    }
+
+    protected boolean isEmpty(int bucket) {
+        return (get(bucket) == 0);
+    }
+
+    protected int findPreferredBucket(long hash) {
+        return LPProbing.findPreferredBucket(hash, this.capacity);
+    }
+
+    protected long hash(long x) {
+        return this.hasher.hash(x);
+    }
+
+    protected long unhash(long x) {
+        return this.hasher.unhash(x);
+    }
+
+    protected int lookupByHash(long hash) {
+        return LPProbing.lookup(this.buckets, hash);
+    }
+
+    protected void shift(int startBucket) {
+        LPProbing.shift(this.buckets, startBucket);
+    }
+}
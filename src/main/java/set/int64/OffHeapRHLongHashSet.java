@@ -0,0 +1,60 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+
+
+/**
+ * An off-heap version of {@link RHLongHashSet}, with the same algorithms
+ * operating on a direct buffer as described in {@link OffHeapLPLongHashSet}.
+ *
+ * @author tdbaker
+ */
+public class OffHeapRHLongHashSet extends OffHeapLPLongHashSet {
+    public static final String NAME = "set.int64.OffHeapRHLongHashSet";
+
+    public OffHeapRHLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public OffHeapRHLongHashSet(int maxEntries, double loadFactor) {
+        super(maxEntries, loadFactor);
+    }
+
+    public OffHeapRHLongHashSet(OffHeapRHLongHashSet other) {
+        super(other);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new OffHeapRHLongHashSet(this);
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        RHProbing.insert(this.buckets, hash);
+        ++this.size;
+        return true;
+    }
+
+    @Override
+    protected boolean removeHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return false;
+        }
+        RHProbing.delete(this.buckets, bucket);
+        --this.size;
+        return true;
+    }
+
+    @Override
+    protected int lookupByHash(long hash) {
+        return RHProbing.lookup(this.buckets, hash);
+    }
+}
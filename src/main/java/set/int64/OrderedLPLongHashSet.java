@@ -0,0 +1,161 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+
+
+/**
+ * An implementation of <a href="https://doi.org/10.1093/comjnl/17.2.135">Amble
+ * and Knuth's ordered hash table</a> with linear probing, which keeps the
+ * elements of each cluster sorted by hash code (in the table's order, where
+ * an element with a later preferred bucket comes later, and elements with the
+ * same preferred bucket are in unsigned order). A lookup can then stop as soon
+ * as it reaches an element which would follow its hash code, so unsuccessful
+ * lookups read only about as many buckets as successful ones, rather than
+ * the rest of the cluster. Unlike {@link BLPLongHashSet}, the order only
+ * runs one way, so an insertion just shifts the rest of the run one bucket
+ * to the right, up to the nearest empty bucket. Deletion shifts the
+ * following elements left, as in {@link LPLongHashSet}, but it can stop at
+ * the first element in its preferred bucket, since the order guarantees that
+ * none of the elements after it can move either. The keys (there are no
+ * stored values) must be 64-bit integers, which are permuted to form the
+ * hash codes (i.e., the "hash function" is reversible). This obviates the
+ * need to separately store hash codes or rehash the keys to perform
+ * operations which use hash codes.
+ *
+ * @author tdbaker
+ */
+public class OrderedLPLongHashSet extends LPLongHashSet {
+    public static final String NAME = "set.int64.OrderedLPLongHashSet";
+
+    public OrderedLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher, boolean useOccupancyBitmap) {
+        super(maxEntries, loadFactor, hasher, useOccupancyBitmap);
+    }
+
+    public OrderedLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        super(maxEntries, loadFactor, hasher);
+    }
+
+    public OrderedLPLongHashSet(int maxEntries, double loadFactor) {
+        super(maxEntries, loadFactor);
+    }
+
+    public OrderedLPLongHashSet(OrderedLPLongHashSet other) throws CloneNotSupportedException {
+        super(other);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    @Override
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new OrderedLPLongHashSet(this);
+    }
+
+    @Override
+    protected OrderedLPLongHashSet newEmptySet(int maxEntries) {
+        OrderedLPLongHashSet set = new OrderedLPLongHashSet(maxEntries, this.loadFactor, this.hasher,
+                hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        // the new element goes in the first bucket which is empty or holds an
+        // element which follows it
+        while (!isEmpty(bucket)) {
+            if (this.arr[bucket] == hash) {
+                return false;
+            }
+            if (follows(bucket, hash, probeLength)) {
+                break;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+            if (probeLength == this.arr.length) {
+                // table full
+                throw new RuntimeException("Couldn't insert into table");
+            }
+        }
+        if (!isEmpty(bucket)) {
+            int emptyBucket = findFirstEmptyBucket(bucket);
+            markOccupied(emptyBucket);
+            // shift the rest of the run one bucket to the right
+            while (emptyBucket != bucket) {
+                int prev = wrap(emptyBucket - 1);
+                this.arr[emptyBucket] = this.arr[prev];
+                emptyBucket = prev;
+            }
+        } else {
+            markOccupied(bucket);
+        }
+        this.arr[bucket] = hash;
+        ++this.size;
+        return true;
+    }
+
+    // Lookups stop at the first empty bucket, or the first bucket holding an
+    // element which follows the hash code, and return -1 if the hash code is
+    // absent. (The table's probe kernel doesn't apply.)
+    @Override
+    protected int lookupByHash(long hash) {
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (!isEmpty(bucket)) {
+            if (this.arr[bucket] == hash) {
+                return bucket;
+            }
+            if (probeLength == this.arr.length || follows(bucket, hash, probeLength)) {
+                break;
+            }
+            bucket = wrap(bucket + 1);
+            ++probeLength;
+        }
+        return -1;
+    }
+
+    // Fill the hole left by a deletion by shifting the following elements
+    // left, up to the first empty bucket or element in its preferred bucket.
+    // (LPLongHashSet's shift() would move the same elements, since any element
+    // after one which can't move has a preferred bucket at least as late,
+    // but would then scan the rest of the cluster for more.)
+    @Override
+    protected void shift(int startBucket) {
+        int dst = startBucket;
+        int src = wrap(dst + 1);
+        while (!isEmpty(src) && findPreferredBucket(this.arr[src]) != src) {
+            moveBucket(src, dst);
+            dst = src;
+            src = wrap(src + 1);
+        }
+    }
+
+    // Whether the element in the bucket follows the hash code in the order of
+    // the table, where probeLength is the hash code's distance from its own
+    // preferred bucket: it does if its preferred bucket is later, or is the
+    // same and its hash code is larger (unsigned).
+    private boolean follows(int bucket, long hash, int probeLength) {
+        int distance = probeDistance(this.arr[bucket], bucket);
+        return distance < probeLength ||
+                (distance == probeLength && Long.compareUnsigned(this.arr[bucket], hash) > 0);
+    }
+
+    private int probeDistance(long hash, int bucket) {
+        int preferredBucket = findPreferredBucket(hash);
+        if (preferredBucket > bucket) {  // wraparound
+            return this.arr.length - preferredBucket + bucket;
+        }
+        return bucket - preferredBucket;
+    }
+
+    private int findFirstEmptyBucket(int startBucket) {
+        int bucket = findEmptyBucketToRight(startBucket);
+        if (bucket == -1) {
+            // wrap around to the start of the array
+            bucket = findEmptyBucketToRight(0);
+        }
+        return bucket;
+    }
+}
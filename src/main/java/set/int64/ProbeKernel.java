@@ -0,0 +1,39 @@
+package set.int64;
+
+/**
+ * The loop a linear probing table uses to look up a hash code, selected per
+ * table with {@link LPLongHashSet#setProbeKernel(ProbeKernel)}.
+ * <p>
+ * At high load factors, clusters are long and a lookup spends most of its
+ * time stepping from one bucket to the next, comparing each bucket against
+ * the hash code and testing it for emptiness (or, for BLP, against the range
+ * of the hash codes it is looking for) before deciding whether to load the
+ * next. The blocked kernel instead loads a block of neighbouring buckets and
+ * combines the results of all their comparisons into a bitmask, with no
+ * branches within the block, and then finds the first bucket which ends the
+ * probe with {@link Integer#numberOfTrailingZeros(int)}. The comparisons within
+ * a block are independent, so they overlap in the pipeline (and the JIT may
+ * compile them to conditional moves or SIMD compares), and the loop takes one
+ * branch per block rather than two or three per bucket.
+ * <p>
+ * Both kernels find the same bucket, so a table's kernel can be changed at
+ * any time without affecting its contents.
+ *
+ * @author tdbaker
+ */
+public enum ProbeKernel {
+    /**
+     * Test one bucket per loop iteration.
+     */
+    SCALAR,
+    /**
+     * Test a block of {@link #BLOCK_SIZE} buckets per loop iteration.
+     */
+    BLOCKED;
+
+    /**
+     * The number of buckets the blocked kernel tests per step (4 longs, or
+     * 32 bytes, the width of an AVX2 register).
+     */
+    public static final int BLOCK_SIZE = 4;
+}
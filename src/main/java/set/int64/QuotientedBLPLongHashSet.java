@@ -0,0 +1,463 @@
+package set.int64;
+
+import hash.int64.LongHasher;
+import hash.int64.Murmur3LongHasher;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+
+/**
+ * A version of {@link BLPLongHashSet} which stores only part of each hash
+ * code, packed into slots of fewer than 64 bits. The preferred bucket of a
+ * hash code is computed from its high 32 bits, so those bits can be
+ * recovered, up to a small offset, from the element's bucket and its
+ * displacement from its preferred bucket (which is small, since BLP keeps
+ * elements close to their preferred buckets in both directions). Each slot
+ * therefore holds the low 32 bits of the hash code, the offset of the high 32
+ * bits from the smallest value mapping to the preferred bucket (which takes
+ * about {@code log2(2^32 / capacity)} bits), and the displacement (biased so
+ * that an empty slot is all zeros). The full hash code is reconstructed
+ * whenever a bucket is read, so the BLP algorithms are exactly those of
+ * {@link OffHeapBLPLongHashSet} (both use {@link BLPProbing}, through {@code
+ * get()} and {@code set()} accessors), and elements can be recovered with
+ * {@code unhash()} as usual.
+ * <p>
+ * The rare elements displaced too far to encode are stored in full in a small
+ * overflow array, sorted by bucket, and marked by a reserved displacement
+ * value in their slots, so the displacement field only needs to be wide
+ * enough for nearly all of them: 5 bits up to load factor 0.9, 6 bits up to
+ * 0.95, and 8 bits beyond that, where BLP displacements grow quickly. For a
+ * table of 100M elements at load factor 0.9, each slot takes 43 bits, a
+ * saving of 33% over {@link BLPLongHashSet}, and the savings grow with the
+ * size of the table. So that the offset and displacement always fit in a
+ * 64-bit slot, tables have at least {@code MIN_CAPACITY} buckets. Like the
+ * other linear probing tables, the table doubles when it reaches its maximum
+ * number of entries, and halves when it falls below a quarter of it;
+ * resizing decodes the elements (which are in sorted order) and lays them out
+ * with {@link BLPLongHashSet}'s single sequential pass.
+ *
+ * @author tdbaker
+ */
+public class QuotientedBLPLongHashSet implements LongSet {
+    public static final String NAME = "set.int64.QuotientedBLPLongHashSet";
+
+    private static final int MIN_CAPACITY = 512;
+    private static final int REMAINDER_BITS = 32;
+
+    private final int displacementBits;
+    // displacements from 1 - bias to bias - 2 are stored biased, in 1 to 2 * bias - 2
+    private final int displacementBias;
+    // the biased displacement marking a slot whose hash code is in the overflow array
+    private final long overflow;
+
+    // the slots, packed end to end
+    private long[] words;
+    private int capacity;
+    private int slotBits;
+    private long slotMask;
+    private long offsetMask;
+    // floor((2^64 - 1) / capacity), for computing the smallest high 32 bits
+    // of a hash code mapping to a given preferred bucket
+    private long reciprocal;
+    // hash codes which are too far from their preferred buckets to encode,
+    // and their buckets, sorted by bucket
+    private int[] overflowBuckets = new int[0];
+    private long[] overflowHashes = new long[0];
+    private int overflowCount = 0;
+    private final LongBuckets buckets = new LongBuckets() {
+        @Override
+        public long get(int bucket) {
+            return QuotientedBLPLongHashSet.this.get(bucket);
+        }
+
+        @Override
+        public void set(int bucket, long hash) {
+            QuotientedBLPLongHashSet.this.set(bucket, hash);
+        }
+
+        @Override
+        public int length() {
+            return QuotientedBLPLongHashSet.this.capacity;
+        }
+    };
+    private int size = 0;
+    private int maxEntries;
+    private final int minEntries;
+    private final double loadFactor;
+    private final LongHasher hasher;
+
+    public QuotientedBLPLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
+        this(maxEntries, maxEntries, loadFactor, hasher);
+    }
+
+    public QuotientedBLPLongHashSet(int maxEntries, double loadFactor) {
+        this(maxEntries, loadFactor, new Murmur3LongHasher());
+    }
+
+    public QuotientedBLPLongHashSet(QuotientedBLPLongHashSet other) {
+        this.displacementBits = other.displacementBits;
+        this.displacementBias = other.displacementBias;
+        this.overflow = other.overflow;
+        this.words = other.words.clone();
+        this.capacity = other.capacity;
+        this.slotBits = other.slotBits;
+        this.slotMask = other.slotMask;
+        this.offsetMask = other.offsetMask;
+        this.reciprocal = other.reciprocal;
+        this.overflowBuckets = other.overflowBuckets.clone();
+        this.overflowHashes = other.overflowHashes.clone();
+        this.overflowCount = other.overflowCount;
+        this.size = other.size;
+        this.maxEntries = other.maxEntries;
+        this.minEntries = other.minEntries;
+        this.loadFactor = other.loadFactor;
+        this.hasher = other.hasher.cloneHasher();
+    }
+
+    private QuotientedBLPLongHashSet(int maxEntries, int minEntries, double loadFactor, LongHasher hasher) {
+        assert maxEntries > 0;
+        assert loadFactor > 0 && loadFactor <= 1.0;
+        this.displacementBits = displacementBits(loadFactor);
+        this.displacementBias = 1 << (this.displacementBits - 1);
+        this.overflow = (1L << this.displacementBits) - 1;
+        this.capacity = Math.max((int) (maxEntries / loadFactor), MIN_CAPACITY);
+        // the offset is less than 2^32 / capacity + 2
+        long maxOffset = Long.divideUnsigned(1L << 32, this.capacity) + 2;
+        int offsetBits = 64 - Long.numberOfLeadingZeros(maxOffset);
+        this.slotBits = REMAINDER_BITS + offsetBits + this.displacementBits;
+        assert this.slotBits <= Long.SIZE;
+        this.slotMask = (this.slotBits == Long.SIZE) ? -1L : (1L << this.slotBits) - 1;
+        this.offsetMask = (1L << offsetBits) - 1;
+        this.reciprocal = Long.divideUnsigned(-1L, this.capacity);
+        this.words = new long[(int) (((long) this.capacity * this.slotBits + Long.SIZE - 1) / Long.SIZE)];
+        this.maxEntries = maxEntries;
+        this.minEntries = minEntries;
+        this.loadFactor = loadFactor;
+        this.hasher = hasher;
+    }
+
+    // The narrowest displacement field which few elements overflow at the
+    // given load factor: about 0.2% of BLP displacements at load factor 0.9
+    // are too large for 5 bits, and about 0.15% at 0.95 for 6 bits. At 0.99,
+    // even 8 bits overflow for over 1% of elements.
+    private static int displacementBits(double loadFactor) {
+        if (loadFactor <= 0.9) {
+            return 5;
+        }
+        if (loadFactor <= 0.95) {
+            return 6;
+        }
+        return 8;
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new QuotientedBLPLongHashSet(this);
+    }
+
+    /**
+     * Query the number of buckets in the table.
+     *
+     * @return the number of buckets
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Query the number of bits in each bucket.
+     *
+     * @return the number of bits per bucket
+     */
+    public int slotBits() {
+        return this.slotBits;
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        assert this.size >= 0;
+        return this.size;
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 64-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        return containsHash(hash(value));
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 64-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(long element) {
+        long hash = hash(element);
+        // double the table before it would exceed its load factor
+        if (this.size >= this.maxEntries && !containsHash(hash)) {
+            resize(2 * this.maxEntries);
+        }
+        return addHash(hash);
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        boolean removed = removeHash(hash(value));
+        if (removed) {
+            shrinkIfSparse();
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        Arrays.fill(this.words, 0);
+        this.overflowCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Return a cursor over the elements of the table, which decodes the
+     * slots in order, unhashing each element as it is reached.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        return BucketSpliterator.of(this::get, 0, this.capacity, this.size, this.hasher);
+    }
+
+    /**
+     * Apply an action to each element of the table, in bucket order.
+     *
+     * @param action the action to apply to each element
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i < this.capacity; ++i) {
+            long hash = get(i);
+            if (hash != 0) {
+                action.accept(unhash(hash));
+            }
+        }
+    }
+
+    /**
+     * Return a spliterator over the elements of the table, which splits by
+     * dividing the slots into halves.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return BucketSpliterator.of(this::get, 0, this.capacity, this.size, this.hasher);
+    }
+
+    protected boolean containsHash(long hash) {
+        return (lookupByHash(hash) != -1);
+    }
+
+    // as in LPLongHashSet
+    private void shrinkIfSparse() {
+        int newMaxEntries = this.maxEntries;
+        while (this.size < newMaxEntries / 4.0 && newMaxEntries / 2 >= this.minEntries) {
+            newMaxEntries /= 2;
+        }
+        if (newMaxEntries != this.maxEntries) {
+            resize(newMaxEntries);
+        }
+    }
+
+    // Rebuild the table for maxEntries elements. The elements are already in
+    // sorted order, so the new layout is built in a single pass by
+    // BLPLongHashSet.layoutSorted(), and then encoded into the new slots.
+    private void resize(int maxEntries) {
+        assert maxEntries >= this.size;
+        long[] hashes = new long[this.size];
+        int count = 0;
+        for (int i = 0; i < this.capacity; ++i) {
+            long hash = get(i);
+            if (hash != 0) {
+                hashes[count++] = hash;
+            }
+        }
+        QuotientedBLPLongHashSet next = new QuotientedBLPLongHashSet(maxEntries, this.minEntries,
+                this.loadFactor, this.hasher);
+        long[] layout = new long[next.capacity];
+        BLPLongHashSet.layoutSorted(hashes, layout);
+        for (int bucket = 0; bucket < next.capacity; ++bucket) {
+            if (layout[bucket] != 0) {
+                next.set(bucket, layout[bucket]);
+            }
+        }
+        this.words = next.words;
+        this.capacity = next.capacity;
+        this.slotBits = next.slotBits;
+        this.slotMask = next.slotMask;
+        this.offsetMask = next.offsetMask;
+        this.reciprocal = next.reciprocal;
+        this.overflowBuckets = next.overflowBuckets;
+        this.overflowHashes = next.overflowHashes;
+        this.overflowCount = next.overflowCount;
+        this.maxEntries = maxEntries;
+    }
+
+    // Read the packed slot of a bucket, which may straddle two words.
+    private long readSlot(int bucket) {
+        long bitIndex = (long) bucket * this.slotBits;
+        int word = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        long slot = this.words[word] >>> shift;
+        if (shift + this.slotBits > Long.SIZE) {
+            slot |= this.words[word + 1] << (Long.SIZE - shift);
+        }
+        return slot & this.slotMask;
+    }
+
+    private void writeSlot(int bucket, long slot) {
+        long bitIndex = (long) bucket * this.slotBits;
+        int word = (int) (bitIndex >>> 6);
+        int shift = (int) (bitIndex & 63);
+        this.words[word] = (this.words[word] & ~(this.slotMask << shift)) | (slot << shift);
+        if (shift + this.slotBits > Long.SIZE) {
+            long highMask = this.slotMask >>> (Long.SIZE - shift);
+            this.words[word + 1] = (this.words[word + 1] & ~highMask) | (slot >>> (Long.SIZE - shift));
+        }
+    }
+
+    // the smallest high 32 bits of a hash code mapping to the given preferred
+    // bucket, give or take 1 (but never greater)
+    private long quotientBase(int preferredBucket) {
+        return (preferredBucket * this.reciprocal) >>> 32;
+    }
+
+    // Reconstruct the full hash code stored in a bucket.
+    protected long get(int bucket) {
+        long slot = readSlot(bucket);
+        if (slot == 0) {
+            return 0;
+        }
+        long biasedDisplacement = slot >>> (this.slotBits - this.displacementBits);
+        if (biasedDisplacement == this.overflow) {
+            return this.overflowHashes[findOverflow(bucket)];
+        }
+        int preferredBucket = bucket - (int) (biasedDisplacement - this.displacementBias);
+        long high = quotientBase(preferredBucket) + ((slot >>> REMAINDER_BITS) & this.offsetMask);
+        return (high << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    // Encode a hash code (or 0 for empty) relative to the bucket it is stored in.
+    protected void set(int bucket, long hash) {
+        int displacementShift = this.slotBits - this.displacementBits;
+        // only a slot marked as overflowing has an entry in the overflow array,
+        // so the array is only searched when the old or new hash code needs it
+        boolean overflowed = (readSlot(bucket) >>> displacementShift == this.overflow);
+        if (hash == 0) {
+            if (overflowed) {
+                removeOverflow(findOverflow(bucket));
+            }
+            writeSlot(bucket, 0);
+            return;
+        }
+        int preferredBucket = findPreferredBucket(hash);
+        long biasedDisplacement = bucket - preferredBucket + this.displacementBias;
+        if (biasedDisplacement <= 0 || biasedDisplacement >= this.overflow) {
+            int index = findOverflow(bucket);
+            if (overflowed) {
+                this.overflowHashes[index] = hash;
+            } else {
+                insertOverflow(-index - 1, bucket, hash);
+            }
+            writeSlot(bucket, this.overflow << displacementShift);
+            return;
+        }
+        if (overflowed) {
+            removeOverflow(findOverflow(bucket));
+        }
+        long offset = (hash >>> 32) - quotientBase(preferredBucket);
+        assert offset >= 0 && offset <= this.offsetMask;
+        writeSlot(bucket, (biasedDisplacement << displacementShift) |
+                (offset << REMAINDER_BITS) | (hash & 0xFFFFFFFFL));
+    }
+
+    // the index of the bucket in the overflow array, or (-(insertion point) - 1)
+    private int findOverflow(int bucket) {
+        return Arrays.binarySearch(this.overflowBuckets, 0, this.overflowCount, bucket);
+    }
+
+    private void insertOverflow(int index, int bucket, long hash) {
+        if (this.overflowCount == this.overflowBuckets.length) {
+            int length = Math.max(2 * this.overflowCount, 8);
+            this.overflowBuckets = Arrays.copyOf(this.overflowBuckets, length);
+            this.overflowHashes = Arrays.copyOf(this.overflowHashes, length);
+        }
+        System.arraycopy(this.overflowBuckets, index, this.overflowBuckets, index + 1, this.overflowCount - index);
+        System.arraycopy(this.overflowHashes, index, this.overflowHashes, index + 1, this.overflowCount - index);
+        this.overflowBuckets[index] = bucket;
+        this.overflowHashes[index] = hash;
+        ++this.overflowCount;
+    }
+
+    private void removeOverflow(int index) {
+        --this.overflowCount;
+        System.arraycopy(this.overflowBuckets, index + 1, this.overflowBuckets, index, this.overflowCount - index);
+        System.arraycopy(this.overflowHashes, index + 1, this.overflowHashes, index, this.overflowCount - index);
+    }
+
+    protected boolean isEmpty(int bucket) {
+        return (readSlot(bucket) == 0);
+    }
+
+    protected int findPreferredBucket(long hash) {
+        return LPProbing.findPreferredBucket(hash, this.capacity);
+    }
+
+    protected long hash(long x) {
+        return this.hasher.hash(x);
+    }
+
+    protected long unhash(long x) {
+        return this.hasher.unhash(x);
+    }
+
+    protected boolean addHash(long hash) {
+        if (lookupByHash(hash) != -1) {
+            return false;
+        }
+        BLPProbing.insert(this.buckets, hash);
+        ++this.size;
+        return true;
+    }
+
+    protected boolean removeHash(long hash) {
+        int bucket = lookupByHash(hash);
+        if (bucket == -1) {
+            return false;
+        }
+        BLPProbing.delete(this.buckets, bucket);
+        --this.size;
+        return true;
+    }
+
+    protected int lookupByHash(long hash) {
+        return BLPProbing.lookup(this.buckets, hash);
+    }
+}
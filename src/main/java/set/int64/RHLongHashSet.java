@@ -24,6 +24,10 @@ import hash.int64.LongHasher;
 public class RHLongHashSet extends LPLongHashSet {
     public static final String NAME = "set.int64.RHLongHashSet";
 
+    public RHLongHashSet(int maxEntries, double loadFactor, LongHasher hasher, boolean useOccupancyBitmap) {
+        super(maxEntries, loadFactor, hasher, useOccupancyBitmap);
+    }
+
     public RHLongHashSet(int maxEntries, double loadFactor, LongHasher hasher) {
         super(maxEntries, loadFactor, hasher);
     }
@@ -44,15 +48,15 @@ public class RHLongHashSet extends LPLongHashSet {
         return new RHLongHashSet(this);
     }
 
-    /**
-     * Add an element to the table.
-     *
-     * @param element the 64-bit integer to add to the table
-     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean add(long element) {
-        long hash = hash(element);
+    protected RHLongHashSet newEmptySet(int maxEntries) {
+        RHLongHashSet set = new RHLongHashSet(maxEntries, this.loadFactor, this.hasher, hasOccupancyBitmap());
+        set.probeKernel = this.probeKernel;
+        return set;
+    }
+
+    @Override
+    protected boolean addHash(long hash) {
         if (lookupByHash(hash) != -1) {
             return false;
         }
@@ -76,23 +80,17 @@ public class RHLongHashSet extends LPLongHashSet {
             ++insertElemProbeDist;
             ++totalProbeLen;
             if (totalProbeLen == this.arr.length) {
-                 throw new RuntimeException("Couldn't insert into table: " + element);
+                 throw new RuntimeException("Couldn't insert into table: " + unhash(hash));
             }
         }
         this.arr[bucket] = hash;
+        markOccupied(bucket);
         ++this.size;
         return true;
     }
 
-    /**
-     * Remove an element from the table.
-     *
-     * @param value the 64-bit integer to remove from the table
-     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
-     */
     @Override
-    public boolean remove(long value) {
-        long hash = hash(value);
+    protected boolean removeHash(long hash) {
         int bucket = lookupByHash(hash);
         if (bucket == -1) {
             return false;
@@ -106,12 +104,16 @@ public class RHLongHashSet extends LPLongHashSet {
             currBucket = wrap(currBucket + 1);
         }
         this.arr[currBucket] = 0;
+        markEmpty(currBucket);
         --this.size;
         return true;
     }
 
     @Override
     protected int lookupByHash(long hash) {
+        if (this.probeKernel == ProbeKernel.BLOCKED) {
+            return lookupByHashBlocked(hash);
+        }
         int bucket = findPreferredBucket(hash);
         int probeLength = 0;
         while (!isEmpty(bucket)) {
@@ -132,6 +134,51 @@ public class RHLongHashSet extends LPLongHashSet {
         return -1;
     }
 
+    // As above, but testing a block of buckets at a time for the hash code or
+    // an empty bucket, as in LPLongHashSet. If neither is in the block, then
+    // every bucket in it holds another element, and it suffices to compare
+    // our probe length with the probe distance of the last of them: if the
+    // hash code were further along, it would have been swapped into any
+    // bucket whose element is closer to its own preferred bucket.
+    private int lookupByHashBlocked(long hash) {
+        long[] arr = this.arr;
+        int bucket = findPreferredBucket(hash);
+        int probeLength = 0;
+        while (probeLength <= arr.length) {
+            if (bucket > arr.length - ProbeKernel.BLOCK_SIZE) {
+                long current = arr[bucket];
+                if (current == hash) {
+                    return bucket;
+                }
+                if (current == 0 || probeLength > probeDistance(current, bucket)) {
+                    return -1;
+                }
+                bucket = wrap(bucket + 1);
+                ++probeLength;
+                continue;
+            }
+            int found = 0;
+            int empty = 0;
+            for (int i = 0; i < ProbeKernel.BLOCK_SIZE; ++i) {
+                long current = arr[bucket + i];
+                found |= (current == hash ? 1 : 0) << i;
+                empty |= (current == 0 ? 1 : 0) << i;
+            }
+            int stop = found | empty;
+            if (stop != 0) {
+                int first = Integer.numberOfTrailingZeros(stop);
+                return (found & (1 << first)) != 0 ? bucket + first : -1;
+            }
+            int last = bucket + ProbeKernel.BLOCK_SIZE - 1;
+            if (probeLength + ProbeKernel.BLOCK_SIZE - 1 > probeDistance(arr[last], last)) {
+                return -1;
+            }
+            bucket = wrap(bucket + ProbeKernel.BLOCK_SIZE);
+            probeLength += ProbeKernel.BLOCK_SIZE;
+        }
+        return -1;
+    }
+
     private int probeDistance(long hash, int bucket) {
         int preferredBucket = findPreferredBucket(hash);
         int distance;
@@ -0,0 +1,106 @@
+package set.int64;
+
+
+/**
+ * The Robin Hood algorithms of {@link RHLongHashSet}, written against {@link
+ * LongBuckets} rather than a {@code long[]}, for the tables which store their
+ * buckets some other way ({@link OffHeapRHLongHashSet}). The heap table keeps
+ * its own copies, as described in {@link LPProbing}.
+ *
+ * @author tdbaker
+ */
+final class RHProbing {
+    private RHProbing() {
+    }
+
+    // Return the bucket holding the hash code, or -1 if it is absent.
+    static int lookup(LongBuckets buckets, long hash) {
+        int capacity = buckets.length();
+        int bucket = LPProbing.findPreferredBucket(hash, capacity);
+        int probeLength = 0;
+        while (buckets.get(bucket) != 0) {
+            if (buckets.get(bucket) == hash) {
+                return bucket;
+            }
+            // If we're further from our element's preferred bucket than the
+            // current element's distance from its preferred bucket, we know
+            // the element is absent, since it would have been swapped with
+            // the current element otherwise.
+            if (probeLength == capacity ||
+                probeLength > probeDistance(buckets.get(bucket), bucket, capacity)) {
+                break;
+            }
+            bucket = LPProbing.wrap(bucket + 1, capacity);
+            ++probeLength;
+        }
+        return -1;
+    }
+
+    // Insert a hash code which is absent from the table.
+    static void insert(LongBuckets buckets, long hash) {
+        int capacity = buckets.length();
+        // If the current element is closer to its preferred bucket than
+        // the element we're trying to insert is to its preferred bucket,
+        // swap the inserted element into the current element's bucket and
+        // continue probing with the swapped element, swapping it with the
+        // next such element, and so on, until we hit an empty bucket.
+        int bucket = LPProbing.findPreferredBucket(hash, capacity);
+        int insertElemProbeDist = 0;
+        int totalProbeLen = 0;
+        while (buckets.get(bucket) != 0) {
+            int currElemProbeDist = probeDistance(buckets.get(bucket), bucket, capacity);
+            if (currElemProbeDist < insertElemProbeDist) {
+                long currElemHash = buckets.get(bucket);
+                buckets.set(bucket, hash);
+                hash = currElemHash;
+                insertElemProbeDist = currElemProbeDist;
+            }
+            bucket = LPProbing.wrap(bucket + 1, capacity);
+            ++insertElemProbeDist;
+            ++totalProbeLen;
+            if (totalProbeLen == capacity) {
+                throw new RuntimeException("Couldn't insert into table");
+            }
+        }
+        buckets.set(bucket, hash);
+    }
+
+    // Delete the hash code in the given bucket.
+    static void delete(LongBuckets buckets, int bucket) {
+        int capacity = buckets.length();
+        // find the chain from the deleted bucket to the nearest empty bucket
+        // or entry in its preferred bucket and shift it one space to the left
+        int endBucket = findMoveBoundary(buckets, LPProbing.wrap(bucket + 1, capacity));
+        int currBucket = bucket;
+        while (endBucket != LPProbing.wrap(currBucket + 1, capacity)) {
+            buckets.set(currBucket, buckets.get(LPProbing.wrap(currBucket + 1, capacity)));
+            currBucket = LPProbing.wrap(currBucket + 1, capacity);
+        }
+        buckets.set(currBucket, 0);
+    }
+
+    private static int probeDistance(long hash, int bucket, int capacity) {
+        int preferredBucket = LPProbing.findPreferredBucket(hash, capacity);
+        int distance;
+        if (preferredBucket > bucket) {  // wraparound
+            distance = capacity - preferredBucket + bucket;
+        } else {
+            distance = bucket - preferredBucket;
+        }
+        return distance;
+    }
+
+    // Any bucket to the right of its preferred bucket can be shifted left,
+    // since its preferred bucket will be shifted along with it, ensuring
+    // it is still reachable from its preferred bucket.
+    private static int findMoveBoundary(LongBuckets buckets, int startBucket) {
+        int capacity = buckets.length();
+        int bucket = startBucket;
+        assert startBucket < capacity;
+        while (buckets.get(bucket) != 0 &&
+               bucket != LPProbing.findPreferredBucket(buckets.get(bucket), capacity)) {
+            bucket = LPProbing.wrap(bucket + 1, capacity);
+        }
+        return bucket;
+    }
+}
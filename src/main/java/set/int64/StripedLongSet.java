@@ -0,0 +1,413 @@
+package set.int64;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+
+/**
+ * A thread-safe wrapper for any of the linear probing tables in this package,
+ * which divides the table's bucket array into a fixed number of contiguous
+ * stripes (on 64-bucket boundaries, to match the words of the occupancy
+ * bitmap), each protected by its own {@link StampedLock}. Every operation
+ * on an element only reads or writes buckets in the cluster containing the
+ * element's preferred bucket (bounded by the empty buckets at either end),
+ * so an operation locks just the stripes spanning that cluster, always in
+ * ascending order so that there can be no deadlock. Since {@code
+ * findPreferredBucket()} is monotonic in the hash code, neighboring hash codes
+ * fall in the same stripe, and operations on different parts of the hash
+ * space proceed in parallel; an operation only needs more than one stripe
+ * when its cluster crosses a stripe boundary (including clusters which wrap
+ * around the end of the array, for the tables which wrap). Hopscotch tables
+ * are rejected, since their elements needn't be in the same cluster as their
+ * preferred buckets, and so are graveyard tables, which rebuild the whole
+ * array outside of resizes.
+ * <p>
+ * Lookups whose cluster lies within a single stripe first try an optimistic
+ * read, which takes no lock and is validated afterward, and only lock the
+ * stripe for reading if a writer intervened. Inserts and deletions lock their
+ * stripes for writing, and resizing (which uses the table's own {@code
+ * resize()}, at the same thresholds as the unwrapped table) locks them all.
+ * Since updates in different stripes run concurrently, the wrapper maintains
+ * the size in a {@link LongAdder} rather than relying on the table's own size,
+ * and updates may overshoot the table's maximum number of entries by at most
+ * the number of concurrent writers before it grows.
+ *
+ * @author tdbaker
+ */
+public class StripedLongSet implements LongSet {
+    public static final String NAME = "set.int64.StripedLongSet";
+
+    private static final int DEFAULT_STRIPES = 256;
+    // the result of findCluster() for a table with no empty buckets
+    private static final long WHOLE_TABLE = -1L;
+
+    private final LPLongHashSet table;
+    // package-private, so the tests can hold a stripe
+    final StampedLock[] locks;
+    private final LongAdder size = new LongAdder();
+
+    public StripedLongSet(LPLongHashSet table, int stripeCount) {
+        if (table instanceof HopscotchLongHashSet) {
+            throw new IllegalArgumentException("Hopscotch elements may lie outside the cluster of their preferred bucket");
+        }
+        if (table instanceof GraveyardLongHashSet) {
+            throw new IllegalArgumentException("Graveyard tables rebuild themselves outside of resizes");
+        }
+        assert stripeCount > 0;
+        this.table = table;
+        this.locks = new StampedLock[stripeCount];
+        for (int i = 0; i < stripeCount; ++i) {
+            this.locks[i] = new StampedLock();
+        }
+        this.size.add(table.size());
+    }
+
+    public StripedLongSet(LPLongHashSet table) {
+        this(table, DEFAULT_STRIPES);
+    }
+
+    public StripedLongSet(StripedLongSet other) throws CloneNotSupportedException {
+        this(other.cloneTable(), other.locks.length);
+    }
+
+    /**
+     * Return deep copy of the table.
+     */
+    public LongSet cloneSet() throws CloneNotSupportedException {
+        return new StripedLongSet(this);
+    }
+
+    /**
+     * Query the size of the wrapped table's backing array.
+     *
+     * @return the size of the backing array
+     */
+    public int capacity() {
+        long stripes = allStripes();
+        lockStripes(stripes, false);
+        try {
+            return this.table.capacity();
+        } finally {
+            unlockStripes(stripes, false);
+        }
+    }
+
+    /**
+     * Query the number of elements in the table.
+     *
+     * @return the number of elements in the table
+     */
+    public int size() {
+        return this.size.intValue();
+    }
+
+    /**
+     * Query the table for a value.
+     *
+     * @param value the 64-bit integer to query the table for
+     * @return {@code true} if {@code value} is present in the table, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        long hash = this.table.hash(value);
+        // Try an optimistic read first, if the cluster lies in a single stripe.
+        // Nothing we read before validating the stamp can be trusted, and the
+        // table may even have been resized, so we check that the cluster still
+        // has the bounds we locked, and treat any exception as a failed read.
+        long[] arr = this.table.arr;
+        int bucket = this.table.findPreferredBucket(hash);
+        if (bucket < arr.length) {
+            long cluster = findCluster(arr, bucket);
+            long stripes = stripesOf(cluster, arr.length);
+            int stripe = (int) (stripes >>> 32);
+            if (stripe == (int) stripes) {
+                StampedLock lock = this.locks[stripe];
+                long stamp = lock.tryOptimisticRead();
+                if (stamp != 0 && isLockedCluster(arr, bucket, cluster, hash)) {
+                    try {
+                        boolean found = this.table.containsHash(hash);
+                        if (lock.validate(stamp)) {
+                            return found;
+                        }
+                    } catch (RuntimeException e) {
+                        if (lock.validate(stamp)) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+        }
+        long stripes = lockCluster(hash, false);
+        try {
+            return this.table.containsHash(hash);
+        } finally {
+            unlockStripes(stripes, false);
+        }
+    }
+
+    /**
+     * Add an element to the table.
+     *
+     * @param element the 64-bit integer to add to the table
+     * @return {@code false} if {@code element} was already present in the table, {@code true} otherwise
+     */
+    public boolean add(long element) {
+        long hash = this.table.hash(element);
+        while (true) {
+            long stripes = lockCluster(hash, true);
+            try {
+                if (this.size.sum() < this.table.maxEntries || this.table.containsHash(hash)) {
+                    boolean added = this.table.addHash(hash);
+                    if (added) {
+                        this.size.increment();
+                    }
+                    return added;
+                }
+            } finally {
+                unlockStripes(stripes, true);
+            }
+            // the table is full, and resizing it requires all the stripes
+            resize(true);
+        }
+    }
+
+    /**
+     * Remove an element from the table.
+     *
+     * @param value the 64-bit integer to remove from the table
+     * @return {@code false} if {@code value} was not present in the table, {@code true} otherwise
+     */
+    public boolean remove(long value) {
+        long hash = this.table.hash(value);
+        boolean removed;
+        long stripes = lockCluster(hash, true);
+        try {
+            removed = this.table.removeHash(hash);
+            if (removed) {
+                this.size.decrement();
+            }
+        } finally {
+            unlockStripes(stripes, true);
+        }
+        // these reads of maxEntries are unsynchronized, but resize() checks
+        // again; a table at its minimum size can't shrink, so there's no point
+        // in taking every stripe just to find that out
+        if (removed && this.size.sum() < this.table.maxEntries / 4.0 &&
+                this.table.maxEntries / 2 >= this.table.minEntries) {
+            resize(false);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all elements from the table.
+     */
+    public void clear() {
+        long stripes = allStripes();
+        lockStripes(stripes, true);
+        try {
+            this.table.clear();
+            this.size.reset();
+        } finally {
+            unlockStripes(stripes, true);
+        }
+    }
+
+    /**
+     * Return a cursor over a snapshot of the elements of the table, taken
+     * with all the stripes locked for reading, so it sees every update which
+     * completed before the call and none which started after it.
+     *
+     * @return a cursor positioned before the first element
+     */
+    public LongCursor cursor() {
+        return snapshot();
+    }
+
+    /**
+     * Return a spliterator over a snapshot of the elements of the table, as
+     * in {@link #cursor()}, which splits by dividing the snapshot's bucket
+     * array into halves.
+     *
+     * @return a spliterator over the elements of the table
+     */
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return snapshot();
+    }
+
+    private BucketSpliterator snapshot() {
+        long stripes = allStripes();
+        lockStripes(stripes, false);
+        try {
+            long[] arr = this.table.arr.clone();
+            return BucketSpliterator.of(arr, 0, arr.length, this.size.intValue(), this.table.hasher.cloneHasher());
+        } finally {
+            unlockStripes(stripes, false);
+        }
+    }
+
+    private LPLongHashSet cloneTable() throws CloneNotSupportedException {
+        long stripes = allStripes();
+        lockStripes(stripes, false);
+        try {
+            this.table.size = this.size.intValue();
+            return (LPLongHashSet) this.table.cloneSet();
+        } finally {
+            unlockStripes(stripes, false);
+        }
+    }
+
+    private void resize(boolean grow) {
+        long stripes = allStripes();
+        lockStripes(stripes, true);
+        try {
+            // the table's own size isn't maintained under concurrent updates
+            this.table.size = this.size.intValue();
+            if (grow) {
+                if (this.table.size >= this.table.maxEntries) {
+                    this.table.resize(2 * this.table.maxEntries);
+                }
+            } else if (this.table.size < this.table.maxEntries / 4.0 &&
+                    this.table.maxEntries / 2 >= this.table.minEntries) {
+                this.table.shrinkIfSparse();
+            }
+        } finally {
+            unlockStripes(stripes, true);
+        }
+    }
+
+    // Lock the stripes spanning the cluster containing the preferred bucket
+    // of the given hash code, for reading or writing, and return them.
+    private long lockCluster(long hash, boolean exclusive) {
+        while (true) {
+            // this scan is unsynchronized, so we check its result once we hold the locks
+            long[] arr = this.table.arr;
+            // (if the table was resized after we read arr, the bucket may be out of
+            // its range, but then the check below fails and we try again)
+            int bucket = Math.min(this.table.findPreferredBucket(hash), arr.length - 1);
+            long cluster = findCluster(arr, bucket);
+            long stripes = stripesOf(cluster, arr.length);
+            lockStripes(stripes, exclusive);
+            if (isLockedCluster(arr, bucket, cluster, hash)) {
+                return stripes;
+            }
+            // the table was resized or the cluster grew in the meantime
+            unlockStripes(stripes, exclusive);
+        }
+    }
+
+    // Check, once its stripes are locked, that a cluster found by an
+    // unsynchronized scan of the given array is still bounded by empty
+    // buckets, and the array still backs the table.
+    private boolean isLockedCluster(long[] arr, int bucket, long cluster, long hash) {
+        if (this.table.arr != arr || this.table.findPreferredBucket(hash) != bucket) {
+            return false;
+        }
+        if (cluster == WHOLE_TABLE) {
+            return true;
+        }
+        return arr[(int) (cluster >>> 32)] == 0 && arr[(int) cluster] == 0;
+    }
+
+    // Find the cluster containing the given bucket, along with the empty
+    // buckets at either end, wrapping around the ends of the array (which is
+    // harmless for tables which don't wrap, since it only makes the cluster
+    // larger). Return its first and last buckets, packed into the high and
+    // low halves of a long, or WHOLE_TABLE if there are no empty buckets.
+    private static long findCluster(long[] arr, int bucket) {
+        int capacity = arr.length;
+        int start = bucket;
+        int steps = 0;
+        while (arr[start] != 0) {
+            if (++steps == capacity) {
+                return WHOLE_TABLE;
+            }
+            start = (start == 0) ? capacity - 1 : start - 1;
+        }
+        int end = bucket;
+        steps = 0;
+        while (arr[end] != 0) {
+            if (++steps == capacity) {
+                return WHOLE_TABLE;
+            }
+            end = (end == capacity - 1) ? 0 : end + 1;
+        }
+        return ((long) start << 32) | end;
+    }
+
+    // Return the first and last stripes spanning the given cluster, packed
+    // into the high and low halves of a long. If the first stripe is greater
+    // than the last, the stripes wrap around the end of the array.
+    private long stripesOf(long cluster, int capacity) {
+        if (cluster == WHOLE_TABLE) {
+            return allStripes();
+        }
+        int start = (int) (cluster >>> 32);
+        int end = (int) cluster;
+        int firstStripe = stripeOf(start, capacity);
+        int lastStripe = stripeOf(end, capacity);
+        if (start > end && lastStripe >= firstStripe) {
+            // the cluster wraps all the way around into its first stripe
+            return allStripes();
+        }
+        return ((long) firstStripe << 32) | lastStripe;
+    }
+
+    // Stripes are made of whole 64-bucket words, so that buckets which share a
+    // word of the table's occupancy bitmap (if it has one) share a lock, and
+    // unsynchronized updates of the word from different stripes can't race.
+    private int stripeOf(int bucket, int capacity) {
+        int words = (capacity + 63) >>> 6;
+        return (int) (((long) (bucket >>> 6) * this.locks.length) / words);
+    }
+
+    private long allStripes() {
+        return this.locks.length - 1;
+    }
+
+    // Stripes are always locked in ascending order, so threads can't deadlock.
+    private void lockStripes(long stripes, boolean exclusive) {
+        int firstStripe = (int) (stripes >>> 32);
+        int lastStripe = (int) stripes;
+        if (firstStripe > lastStripe) {
+            for (int stripe = 0; stripe <= lastStripe; ++stripe) {
+                lockStripe(stripe, exclusive);
+            }
+            lastStripe = this.locks.length - 1;
+        }
+        for (int stripe = firstStripe; stripe <= lastStripe; ++stripe) {
+            lockStripe(stripe, exclusive);
+        }
+    }
+
+    private void unlockStripes(long stripes, boolean exclusive) {
+        int firstStripe = (int) (stripes >>> 32);
+        int lastStripe = (int) stripes;
+        if (firstStripe > lastStripe) {
+            for (int stripe = 0; stripe <= lastStripe; ++stripe) {
+                unlockStripe(stripe, exclusive);
+            }
+            lastStripe = this.locks.length - 1;
+        }
+        for (int stripe = firstStripe; stripe <= lastStripe; ++stripe) {
+            unlockStripe(stripe, exclusive);
+        }
+    }
+
+    private void lockStripe(int stripe, boolean exclusive) {
+        if (exclusive) {
+            this.locks[stripe].writeLock();
+        } else {
+            this.locks[stripe].readLock();
+        }
+    }
+
+    private void unlockStripe(int stripe, boolean exclusive) {
+        if (exclusive) {
+            this.locks[stripe].tryUnlockWrite();
+        } else {
+            this.locks[stripe].tryUnlockRead();
+        }
+    }
+}
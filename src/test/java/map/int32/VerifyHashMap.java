@@ -0,0 +1,135 @@
+package map.int32;
+
+import hash.int32.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.runner.RunWith;
+
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.stream.IntStream;
+
+@RunWith(JUnitQuickcheck.class)
+public class VerifyHashMap {
+
+    private static final int SAMPLE_SIZE_LIMIT = 1 << 20;
+
+    private static final Class<?>[] classes = {
+        BLPIntIntHashMap.class,
+        LCFSIntIntHashMap.class,
+        LPIntIntHashMap.class,
+        RHIntIntHashMap.class,
+    };
+
+    private static final Class<?>[] intLongClasses = {
+        LPIntLongHashMap.class,
+    };
+
+    @Property
+    public void testSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IntIntMap map = (IntIntMap) constructor.newInstance(sampleSize, loadFactor);
+            int[] ints = IntStream.rangeClosed(1, sampleSize).toArray();
+            verifyMap(map, ints);
+        }
+    }
+
+    @Property
+    public void testRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IntIntMap map = (IntIntMap) constructor.newInstance(sampleSize, loadFactor);
+            // we want a random permutation, not an RNG, to avoid duplicate keys,
+            // and the Phi hash has quasi-uniform behavior on sequential integers
+            IntHasher hasher = new PhiIntHasher();
+            int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            verifyMap(map, ints);
+        }
+    }
+
+    @Property
+    public void testIntLongSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : intLongClasses) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IntLongMap map = (IntLongMap) constructor.newInstance(sampleSize, loadFactor);
+            int[] ints = IntStream.rangeClosed(1, sampleSize).toArray();
+            verifyIntLongMap(map, ints);
+        }
+    }
+
+    @Property
+    public void testIntLongRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : intLongClasses) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IntLongMap map = (IntLongMap) constructor.newInstance(sampleSize, loadFactor);
+            IntHasher hasher = new PhiIntHasher();
+            int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            verifyIntLongMap(map, ints);
+        }
+    }
+
+    private static void verifyMap(IntIntMap map, int[] keys) {
+        for (int k : keys) {
+            assertEquals(0, map.put(k, ~k));
+        }
+        assertEquals(keys.length, map.size());
+        for (int k : keys) {
+            assertTrue(map.containsKey(k));
+            assertEquals(~k, map.get(k));
+        }
+        // replacing values must not change the size
+        for (int k : keys) {
+            assertEquals(~k, map.put(k, k));
+            assertEquals(k, map.putIfAbsent(k, ~k));
+        }
+        assertEquals(keys.length, map.size());
+        for (int k : keys) {
+            assertEquals(k, map.remove(k));
+        }
+        assertEquals(0, map.size());
+        for (int k : keys) {
+            assertFalse(map.containsKey(k));
+            assertEquals(-1, map.getOrDefault(k, -1));
+        }
+    }
+
+    // the values use all 64 bits, so that truncation or sign extension bugs
+    // would show up as mismatches
+    private static long valueFor(int key) {
+        return ~(long) key * 0x9e3779b97f4a7c15L;
+    }
+
+    private static void verifyIntLongMap(IntLongMap map, int[] keys) {
+        for (int k : keys) {
+            assertEquals(0L, map.put(k, valueFor(k)));
+        }
+        assertEquals(keys.length, map.size());
+        for (int k : keys) {
+            assertTrue(map.containsKey(k));
+            assertEquals(valueFor(k), map.get(k));
+            assertEquals(valueFor(k), map.putIfAbsent(k, 0L));
+        }
+        assertEquals(keys.length, map.size());
+        for (int k : keys) {
+            assertEquals(valueFor(k), map.remove(k));
+        }
+        assertEquals(0, map.size());
+        for (int k : keys) {
+            assertFalse(map.containsKey(k));
+            assertEquals(0L, map.get(k));
+        }
+    }
+}
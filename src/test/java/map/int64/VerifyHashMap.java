@@ -0,0 +1,132 @@
+package map.int64;
+
+import hash.int64.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.runner.RunWith;
+
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.stream.LongStream;
+
+@RunWith(JUnitQuickcheck.class)
+public class VerifyHashMap {
+
+    private static final int SAMPLE_SIZE_LIMIT = 1 << 20;
+
+    private static final Class<?>[] classes = {
+        BLPLongLongHashMap.class,
+    };
+
+    private static final Class<?>[] longIntClasses = {
+        LPLongIntHashMap.class,
+    };
+
+    @Property
+    public void testSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LongLongMap map = (LongLongMap) constructor.newInstance(sampleSize, loadFactor);
+            long[] longs = LongStream.rangeClosed(1, sampleSize).toArray();
+            verifyMap(map, longs);
+        }
+    }
+
+    @Property
+    public void testRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LongLongMap map = (LongLongMap) constructor.newInstance(sampleSize, loadFactor);
+            // we want a random permutation, not an RNG, to avoid duplicate keys,
+            // and the Phi hash has quasi-uniform behavior on sequential integers
+            LongHasher hasher = new PhiLongHasher();
+            long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            verifyMap(map, longs);
+        }
+    }
+
+    @Property
+    public void testLongIntSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : longIntClasses) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LongIntMap map = (LongIntMap) constructor.newInstance(sampleSize, loadFactor);
+            long[] longs = LongStream.rangeClosed(1, sampleSize).toArray();
+            verifyLongIntMap(map, longs);
+        }
+    }
+
+    @Property
+    public void testLongIntRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : longIntClasses) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LongIntMap map = (LongIntMap) constructor.newInstance(sampleSize, loadFactor);
+            LongHasher hasher = new PhiLongHasher();
+            long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            verifyLongIntMap(map, longs);
+        }
+    }
+
+    private static void verifyMap(LongLongMap map, long[] keys) {
+        for (long k : keys) {
+            assertEquals(0L, map.put(k, ~k));
+        }
+        assertEquals(keys.length, map.size());
+        for (long k : keys) {
+            assertTrue(map.containsKey(k));
+            assertEquals(~k, map.get(k));
+        }
+        // replacing values must not change the size
+        for (long k : keys) {
+            assertEquals(~k, map.put(k, k));
+            assertEquals(k, map.putIfAbsent(k, ~k));
+        }
+        assertEquals(keys.length, map.size());
+        for (long k : keys) {
+            assertEquals(k, map.remove(k));
+        }
+        assertEquals(0, map.size());
+        for (long k : keys) {
+            assertFalse(map.containsKey(k));
+            assertEquals(-1L, map.getOrDefault(k, -1L));
+        }
+    }
+
+    // the values depend on all 64 bits of the keys, so that truncation bugs
+    // would show up as mismatches
+    private static int valueFor(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private static void verifyLongIntMap(LongIntMap map, long[] keys) {
+        for (long k : keys) {
+            assertEquals(0, map.put(k, valueFor(k)));
+        }
+        assertEquals(keys.length, map.size());
+        for (long k : keys) {
+            assertTrue(map.containsKey(k));
+            assertEquals(valueFor(k), map.get(k));
+            assertEquals(valueFor(k), map.putIfAbsent(k, 0));
+        }
+        assertEquals(keys.length, map.size());
+        for (long k : keys) {
+            assertEquals(valueFor(k), map.remove(k));
+        }
+        assertEquals(0, map.size());
+        for (long k : keys) {
+            assertFalse(map.containsKey(k));
+            assertEquals(0, map.get(k));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package map.object;
+
+import hash.int64.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.runner.RunWith;
+
+import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
+import com.pholser.junit.quickcheck.Property;
+import com.pholser.junit.quickcheck.generator.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+@RunWith(JUnitQuickcheck.class)
+public class VerifyHashMap {
+
+    private static final int SAMPLE_SIZE_LIMIT = 1 << 20;
+
+    @Property
+    public void testSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        Map<Long, Long> map = new BLPObjectHashMap<>(sampleSize, loadFactor);
+        List<Long> keys = new ArrayList<>();
+        LongStream.rangeClosed(1, sampleSize).forEach(keys::add);
+        verifyMap(map, keys);
+    }
+
+    @Property
+    public void testRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        Map<Long, Long> map = new BLPObjectHashMap<>(sampleSize, loadFactor);
+        // we want a random permutation, not an RNG, to avoid duplicate keys,
+        // and the Phi hash has quasi-uniform behavior on sequential integers
+        LongHasher hasher = new PhiLongHasher();
+        List<Long> keys = new ArrayList<>();
+        LongStream.rangeClosed(1, sampleSize).map(hasher::hash).forEach(keys::add);
+        verifyMap(map, keys);
+    }
+
+    @Property
+    public void testCollidingKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        // distinct keys with equal hash codes must share runs in the index
+        Map<CollidingKey, Long> map = new BLPObjectHashMap<>(sampleSize, loadFactor);
+        List<CollidingKey> keys = new ArrayList<>();
+        LongStream.rangeClosed(1, sampleSize).mapToObj(CollidingKey::new).forEach(keys::add);
+        verifyMap(map, keys);
+    }
+
+    @Property
+    public void testGrowthAndCompaction(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        // start from the smallest possible table, and interleave removals with
+        // insertions, so that both growing and compacting the entry arrays are
+        // exercised, and compare contents and iteration order with LinkedHashMap
+        BLPObjectHashMap<CollidingKey, Long> map = new BLPObjectHashMap<>(1, loadFactor);
+        Map<CollidingKey, Long> expected = new LinkedHashMap<>();
+        Random rnd = new Random(sampleSize);
+        for (int i = 0; i < sampleSize; ++i) {
+            CollidingKey key = new CollidingKey(rnd.nextInt(sampleSize / 2 + 1));
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertIterableEquals(expected.entrySet(), map.entrySet());
+        map.compact();
+        assertIterableEquals(expected.entrySet(), map.entrySet());
+        // remove every other entry through the iterator
+        Iterator<Map.Entry<CollidingKey, Long>> iter = map.entrySet().iterator();
+        Iterator<Map.Entry<CollidingKey, Long>> expectedIter = expected.entrySet().iterator();
+        boolean removeNext = true;
+        while (iter.hasNext()) {
+            assertEquals(expectedIter.next(), iter.next());
+            if (removeNext) {
+                iter.remove();
+                expectedIter.remove();
+            }
+            removeNext = !removeNext;
+        }
+        assertEquals(expected, map);
+        for (CollidingKey key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    private static <K> void verifyMap(Map<K, Long> map, List<K> keys) {
+        for (int i = 0; i < keys.size(); ++i) {
+            assertNull(map.put(keys.get(i), (long) i));
+        }
+        assertEquals(keys.size(), map.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            assertTrue(map.containsKey(keys.get(i)));
+            assertEquals((Long) (long) i, map.get(keys.get(i)));
+        }
+        // entries are iterated in insertion order
+        assertIterableEquals(keys, map.keySet());
+        // replacing values must not change the size
+        for (int i = 0; i < keys.size(); ++i) {
+            assertEquals((Long) (long) i, map.put(keys.get(i), (long) ~i));
+        }
+        assertEquals(keys.size(), map.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            assertEquals((Long) (long) ~i, map.remove(keys.get(i)));
+        }
+        assertEquals(0, map.size());
+        for (K k : keys) {
+            assertFalse(map.containsKey(k));
+            assertNull(map.get(k));
+        }
+    }
+
+    // a key whose hash code is shared by 15 other keys
+    private static final class CollidingKey {
+        private final long id;
+
+        CollidingKey(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof CollidingKey) && ((CollidingKey) o).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (this.id >>> 4);
+        }
+
+        @Override
+        public String toString() {
+            return "CollidingKey(" + this.id + ")";
+        }
+    }
+}
@@ -11,6 +11,12 @@ import com.pholser.junit.quickcheck.generator.*;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 @RunWith(JUnitQuickcheck.class)
@@ -20,11 +26,24 @@ public class VerifyHashSet {
 
     private static final Class<?>[] classes = {
         BLPIntHashSet.class,
+        BucketizedBLPIntHashSet.class,
+        GraveyardIntHashSet.class,
+        HopscotchIntHashSet.class,
         LCFSIntHashSet.class,
         LPIntHashSet.class,
+        OrderedLPIntHashSet.class,
         RHIntHashSet.class,
     };
 
+    // tables whose deletions leave gaps (tombstones, empty buckets within a
+    // neighbourhood, or room for stashed elements) which later lookups must
+    // see past and reinsertions fill
+    private static final Class<?>[] refillClasses = {
+        CuckooIntHashSet.class,
+        HopscotchIntHashSet.class,
+        SwissIntHashSet.class,
+    };
+
     @Property
     public void testSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
             @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
@@ -77,4 +96,470 @@ public class VerifyHashSet {
             }
         }
     }
+
+    @Property
+    public void testIncrementalResizing(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            if (cls == HopscotchIntHashSet.class) {
+                // the wrapper rejects these, which is checked below
+                continue;
+            }
+            // start from the smallest possible table, so that it grows many times
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IncrementalIntHashSet set = new IncrementalIntHashSet((LPIntHashSet) constructor.newInstance(1, loadFactor));
+            IntHasher hasher = new PhiIntHasher();
+            int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            for (int i = 0; i < ints.length; ++i) {
+                assertTrue(set.add(ints[i]));
+                assertFalse(set.add(ints[i]));
+                // elements added earlier must stay visible while they are being migrated
+                assertTrue(set.contains(ints[i / 2]));
+            }
+            assertEquals(sampleSize, set.size());
+            for (int i : ints) {
+                assertTrue(set.contains(i));
+            }
+            for (int i : ints) {
+                assertTrue(set.remove(i));
+                assertFalse(set.remove(i));
+            }
+            assertEquals(0, set.size());
+            for (int i : ints) {
+                assertFalse(set.contains(i));
+            }
+        }
+        // inserting into a hopscotch table may need to double it, which the migration can't do
+        assertThrows(IllegalArgumentException.class,
+                () -> new IncrementalIntHashSet(new HopscotchIntHashSet(1, loadFactor)));
+    }
+
+    @Property
+    public void testIncrementalGraveyardChurn(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        // deletions from the old table leave tombstones, which the migration must skip
+        IncrementalIntHashSet set = new IncrementalIntHashSet(new GraveyardIntHashSet(1, loadFactor));
+        IntHasher hasher = new PhiIntHasher();
+        int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < ints.length; ++i) {
+            assertTrue(set.add(ints[i]));
+            if (i % 2 == 1) {
+                // each element in the first half is removed once, while later elements are added
+                assertTrue(set.remove(ints[i / 2]));
+                assertFalse(set.contains(ints[i / 2]));
+            }
+        }
+        assertEquals(sampleSize - sampleSize / 2, set.size());
+        for (int i = 0; i < ints.length; ++i) {
+            assertEquals(i >= sampleSize / 2, set.contains(ints[i]));
+        }
+    }
+
+    @Property
+    public void testAutomaticResizing(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            // start from the smallest possible table, so that it grows many times
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LPIntHashSet set = (LPIntHashSet) constructor.newInstance(1, loadFactor);
+            int initialCapacity = set.capacity();
+            IntHasher hasher = new PhiIntHasher();
+            int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            for (int i : ints) {
+                assertTrue(set.add(i));
+            }
+            assertEquals(sampleSize, set.size());
+            for (int i : ints) {
+                assertTrue(set.contains(i));
+            }
+            // remove the elements in the order they were added, checking that
+            // the remaining elements survive every shrink
+            for (int i = 0; i < ints.length; ++i) {
+                assertTrue(set.remove(ints[i]));
+                if (i + 1 < ints.length) {
+                    assertTrue(set.contains(ints[(i + 1 + ints.length) / 2]));
+                }
+            }
+            assertEquals(0, set.size());
+            assertEquals(initialCapacity, set.capacity());
+            for (int i : ints) {
+                assertFalse(set.contains(i));
+            }
+        }
+    }
+
+    @Property
+    public void testProbeKernels(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        IntHasher hasher = new PhiIntHasher();
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LPIntHashSet set = (LPIntHashSet) constructor.newInstance(Math.max(sampleSize, 1), loadFactor);
+            set.setProbeKernel(ProbeKernel.BLOCKED);
+            // insert the first half of the keys, so the second half are absent
+            for (int i = 0; i < sampleSize; ++i) {
+                assertTrue(set.add(ints[i]));
+            }
+            assertEquals(sampleSize, set.size());
+            // both kernels must find the same bucket, whether or not the key is present
+            for (int key : ints) {
+                int hash = set.hash(key);
+                set.setProbeKernel(ProbeKernel.SCALAR);
+                int bucket = set.lookupByHash(hash);
+                set.setProbeKernel(ProbeKernel.BLOCKED);
+                assertEquals(bucket, set.lookupByHash(hash));
+            }
+            for (int i = 0; i < ints.length; ++i) {
+                assertEquals(i < sampleSize, set.contains(ints[i]));
+            }
+            // removing every other key leaves gaps in the clusters
+            for (int i = 0; i < sampleSize; i += 2) {
+                assertTrue(set.remove(ints[i]));
+            }
+            for (int i = 0; i < ints.length; ++i) {
+                assertEquals(i < sampleSize && i % 2 == 1, set.contains(ints[i]));
+            }
+            assertEquals(ProbeKernel.BLOCKED, set.newEmptySet(1).probeKernel());
+        }
+    }
+
+    @Property
+    public void testBatchContains(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        List<IntSet> sets = new ArrayList<>();
+        for (Class<?> cls : classes) {
+            sets.add((IntSet) cls.getConstructor(int.class, double.class).newInstance(sampleSize, loadFactor));
+        }
+        sets.add(new SwissIntHashSet(sampleSize, loadFactor));
+        sets.add(new CuckooIntHashSet(sampleSize, loadFactor));
+        IntHasher hasher = new PhiIntHasher();
+        // the second half of the elements are never added
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (IntSet set : sets) {
+            for (int i = 0; i < sampleSize; ++i) {
+                assertTrue(set.add(ints[i]));
+            }
+        }
+        sets.add(((BLPIntHashSet) sets.get(0)).freeze());
+        for (IntSet set : sets) {
+            // query a range which doesn't start at the beginning of the array
+            int from = sampleSize / 3;
+            int to = ints.length;
+            long[] resultBits = new long[(to - from + 63) / 64];
+            // the bits past the end of the range must be left alone
+            Arrays.fill(resultBits, -1L);
+            int found = set.contains(ints, from, to, resultBits);
+            assertEquals(sampleSize - from, found);
+            for (int i = from; i < to; ++i) {
+                int bit = i - from;
+                assertEquals(i < sampleSize, (resultBits[bit >>> 6] & (1L << bit)) != 0);
+            }
+            for (int bit = to - from; bit < 64 * resultBits.length; ++bit) {
+                assertTrue((resultBits[bit >>> 6] & (1L << bit)) != 0);
+            }
+            if (set instanceof AutoCloseable) {
+                ((AutoCloseable) set).close();
+            }
+        }
+    }
+
+    @Property
+    public void testBulkLoad(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        IntHasher hasher = new PhiIntHasher();
+        // the second half of the elements are never added
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        // every element is loaded twice
+        int[] keys = new int[2 * sampleSize];
+        for (int i = 0; i < sampleSize; ++i) {
+            keys[2 * i] = ints[i];
+            keys[2 * i + 1] = ints[sampleSize - 1 - i];
+        }
+        BLPIntHashSet loaded = BLPIntHashSet.bulkLoad(keys, loadFactor);
+        BLPIntHashSet added = new BLPIntHashSet(Math.max(sampleSize, 1), loadFactor);
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(added.add(ints[i]));
+        }
+        assertEquals(sampleSize, loaded.size());
+        assertEquals(added.capacity(), loaded.capacity());
+        // both tables hold the same hash codes in the same (sorted) order
+        assertArrayEquals(Arrays.stream(added.arr).filter(h -> h != 0).toArray(),
+                Arrays.stream(loaded.arr).filter(h -> h != 0).toArray());
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertEquals(i < sampleSize, loaded.contains(ints[i]));
+        }
+        // the table behaves normally afterward, including growing and shrinking
+        for (int i = sampleSize; i < 2 * sampleSize; ++i) {
+            assertTrue(loaded.add(ints[i]));
+        }
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertTrue(loaded.remove(ints[i]));
+        }
+        assertEquals(0, loaded.size());
+    }
+
+    @Property
+    public void testParallelBulkLoad(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        IntHasher hasher = new PhiIntHasher();
+        // the second half of the elements are never added
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        // every element is loaded twice
+        int[] keys = new int[2 * sampleSize];
+        for (int i = 0; i < sampleSize; ++i) {
+            keys[2 * i] = ints[i];
+            keys[2 * i + 1] = ints[sampleSize - 1 - i];
+        }
+        // use an odd number of threads, so partitions don't line up with anything
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BLPIntHashSet blp = ParallelBulkLoader.loadBLP(keys, loadFactor, new Murmur3IntHasher(), pool);
+            // the layout is the same as the sequential bulk loader's
+            assertArrayEquals(BLPIntHashSet.bulkLoad(keys, loadFactor).arr, blp.arr);
+            IntSet[] sets = {
+                ParallelBulkLoader.loadLP(keys, loadFactor, new Murmur3IntHasher(), pool),
+                ParallelBulkLoader.loadRH(keys, loadFactor, new Murmur3IntHasher(), pool),
+                blp,
+            };
+            for (IntSet set : sets) {
+                assertEquals(sampleSize, set.size());
+                for (int i = 0; i < 2 * sampleSize; ++i) {
+                    assertEquals(i < sampleSize, set.contains(ints[i]));
+                }
+                // the table behaves normally afterward, including growing and shrinking
+                for (int i = sampleSize; i < 2 * sampleSize; ++i) {
+                    assertTrue(set.add(ints[i]));
+                }
+                for (int i = 0; i < 2 * sampleSize; ++i) {
+                    assertTrue(set.remove(ints[i]));
+                }
+                assertEquals(0, set.size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Property
+    public void testSetAlgebra(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        IntHasher hasher = new PhiIntHasher();
+        int[] ints = IntStream.rangeClosed(1, 3 * sampleSize).map(hasher::hash).toArray();
+        // the tables overlap in the middle third of the elements, and have
+        // different capacities
+        // (the results take their probe kernel from left)
+        BLPIntHashSet left = new BLPIntHashSet(Math.max(2 * sampleSize, 1), loadFactor);
+        left.setProbeKernel(ProbeKernel.BLOCKED);
+        BLPIntHashSet right = new BLPIntHashSet(Math.max(sampleSize, 1), loadFactor / 2);
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertTrue(left.add(ints[i]));
+            assertTrue(right.add(ints[sampleSize + i]));
+        }
+        BLPIntHashSet union = left.union(right);
+        BLPIntHashSet intersection = left.intersect(right);
+        BLPIntHashSet difference = left.subtract(right);
+        assertEquals(3 * sampleSize, union.size());
+        assertEquals(sampleSize, intersection.size());
+        assertEquals(sampleSize, difference.size());
+        assertEquals(sampleSize, left.intersectionSize(right));
+        assertEquals(sampleSize, right.intersectionSize(left));
+        for (BLPIntHashSet result : new BLPIntHashSet[] {union, intersection, difference}) {
+            assertEquals(ProbeKernel.BLOCKED, result.probeKernel);
+        }
+        for (int i = 0; i < 3 * sampleSize; ++i) {
+            assertTrue(union.contains(ints[i]));
+            assertEquals(i >= sampleSize && i < 2 * sampleSize, intersection.contains(ints[i]));
+            assertEquals(i < sampleSize, difference.contains(ints[i]));
+        }
+        // the results behave normally afterward, including growing and shrinking
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(intersection.add(ints[i]));
+            assertTrue(difference.remove(ints[i]));
+        }
+        assertEquals(0, difference.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> left.union(new BLPIntHashSet(1, loadFactor, new IdentityIntHasher())));
+    }
+
+    @Property
+    public void testFreeze(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        BLPIntHashSet set = new BLPIntHashSet(sampleSize, loadFactor);
+        IntHasher hasher = new PhiIntHasher();
+        // the second half of the elements are never added
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.add(ints[i]));
+        }
+        for (double frozenLoadFactor : new double[] {FrozenIntSet.DEFAULT_LOAD_FACTOR, 1.0}) {
+            FrozenIntSet frozen = set.freeze(frozenLoadFactor);
+            assertEquals(sampleSize, frozen.size());
+            assertTrue(frozen.capacity() <= Math.ceil(sampleSize / frozenLoadFactor));
+            for (int i = 0; i < 2 * sampleSize; ++i) {
+                assertEquals(i < sampleSize, frozen.contains(ints[i]));
+            }
+            assertThrows(UnsupportedOperationException.class, () -> frozen.add(ints[0]));
+            assertThrows(UnsupportedOperationException.class, () -> frozen.remove(ints[0]));
+        }
+        // the snapshot is unaffected by later changes to the table
+        FrozenIntSet frozen = set.freeze();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.remove(ints[i]));
+        }
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(frozen.contains(ints[i]));
+        }
+    }
+
+    @Property
+    public void testRefillRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        IntHasher hasher = new PhiIntHasher();
+        int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (Class<?> cls : refillClasses) {
+            // start from the smallest possible table, so that it grows many times
+            IntSet set = (IntSet) cls.getConstructor(int.class, double.class).newInstance(1, loadFactor);
+            Method capacity = cls.getMethod("capacity");
+            int initialCapacity = (int) capacity.invoke(set);
+            for (int i : ints) {
+                assertTrue(set.add(i));
+            }
+            assertEquals(sampleSize, set.size());
+            for (int i : ints) {
+                assertTrue(set.contains(i));
+                assertFalse(set.add(i));
+            }
+            // removing every other element leaves gaps, which lookups must see
+            // past and the reinserted elements fill
+            for (int i = 0; i < ints.length; i += 2) {
+                assertTrue(set.remove(ints[i]));
+            }
+            for (int i = 0; i < ints.length; ++i) {
+                assertEquals(i % 2 == 1, set.contains(ints[i]));
+            }
+            IntSet clone = set.cloneSet();
+            for (int i = 0; i < ints.length; i += 2) {
+                assertTrue(set.add(ints[i]));
+            }
+            assertEquals(sampleSize, set.size());
+            assertEquals(sampleSize / 2, clone.size());
+            for (int i = 0; i < ints.length; ++i) {
+                assertTrue(set.contains(ints[i]));
+                assertEquals(i % 2 == 1, clone.contains(ints[i]));
+            }
+            for (int i : ints) {
+                assertTrue(set.remove(i));
+                assertFalse(set.remove(i));
+            }
+            assertEquals(0, set.size());
+            assertEquals(initialCapacity, (int) capacity.invoke(set));
+            for (int i : ints) {
+                assertFalse(set.contains(i));
+            }
+        }
+    }
+
+    @Property
+    public void testGraveyardRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws CloneNotSupportedException {
+        // start from the smallest possible table, so that it grows many times
+        GraveyardIntHashSet set = new GraveyardIntHashSet(1, loadFactor);
+        int initialCapacity = set.capacity();
+        IntHasher hasher = new PhiIntHasher();
+        // the second half of the elements are only added while churning
+        int[] ints = IntStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.add(ints[i]));
+        }
+        assertEquals(sampleSize, set.size());
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.contains(ints[i]));
+            assertFalse(set.add(ints[i]));
+        }
+        IntSet clone = set.cloneSet();
+        // replace each element with a new one, so that insertions reuse the
+        // tombstones left by deletions, and the table is rebuilt many times
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.remove(ints[i]));
+            assertFalse(set.contains(ints[i]));
+            assertTrue(set.add(ints[sampleSize + i]));
+        }
+        assertEquals(sampleSize, set.size());
+        assertEquals(sampleSize, clone.size());
+        for (int i = 0; i < ints.length; ++i) {
+            assertEquals(i >= sampleSize, set.contains(ints[i]));
+            assertEquals(i < sampleSize, clone.contains(ints[i]));
+        }
+        for (int i = sampleSize; i < ints.length; ++i) {
+            assertTrue(set.remove(ints[i]));
+            assertFalse(set.remove(ints[i]));
+        }
+        assertEquals(0, set.size());
+        assertEquals(initialCapacity, set.capacity());
+        for (int i : ints) {
+            assertFalse(set.contains(i));
+        }
+    }
+
+    @Property
+    public void testConcurrentRandomKeys(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws InterruptedException {
+        final int writerCount = 4;
+        ConcurrentBLPIntHashSet set = new ConcurrentBLPIntHashSet(sampleSize, loadFactor);
+        IntHasher hasher = new PhiIntHasher();
+        int[] ints = IntStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        // The even-indexed elements are added first and never removed, so a
+        // concurrent reader must always find them, while the writers add and
+        // remove the odd-indexed elements around them.
+        for (int i = 0; i < sampleSize; i += 2) {
+            assertTrue(set.add(ints[i]));
+        }
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            do {
+                for (int i = 0; i < sampleSize; i += 2) {
+                    if (!set.contains(ints[i])) {
+                        failed.set(true);
+                    }
+                }
+            } while (!done.get());
+        });
+        Thread[] writers = new Thread[writerCount];
+        for (int w = 0; w < writerCount; ++w) {
+            final int writer = w;
+            writers[w] = new Thread(() -> {
+                for (int round = 0; round < 2; ++round) {
+                    for (int i = 2 * writer + 1; i < sampleSize; i += 2 * writerCount) {
+                        if (!set.add(ints[i]) || !set.contains(ints[i])) {
+                            failed.set(true);
+                        }
+                    }
+                    for (int i = 2 * writer + 1; i < sampleSize; i += 2 * writerCount) {
+                        if (!set.remove(ints[i]) || set.contains(ints[i])) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        reader.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+        assertFalse(failed.get());
+        assertEquals((sampleSize + 1) / 2, set.size());
+        for (int i = 0; i < sampleSize; ++i) {
+            assertEquals(i % 2 == 0, set.contains(ints[i]));
+        }
+    }
 }
@@ -9,8 +9,22 @@ import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
 import com.pholser.junit.quickcheck.Property;
 import com.pholser.junit.quickcheck.generator.*;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.LongStream;
 
 @RunWith(JUnitQuickcheck.class)
@@ -20,11 +34,30 @@ public class VerifyHashSet {
 
     private static final Class<?>[] classes = {
         BLPLongHashSet.class,
+        BucketizedBLPLongHashSet.class,
+        GraveyardLongHashSet.class,
+        HopscotchLongHashSet.class,
         LCFSLongHashSet.class,
         LPLongHashSet.class,
+        OrderedLPLongHashSet.class,
         RHLongHashSet.class,
     };
 
+    // tables whose deletions leave gaps (tombstones, empty buckets within a
+    // neighbourhood, or room for stashed elements) which later lookups must
+    // see past and reinsertions fill
+    private static final Class<?>[] refillClasses = {
+        CuckooLongHashSet.class,
+        HopscotchLongHashSet.class,
+        SwissLongHashSet.class,
+    };
+
+    private static final Class<?>[] offHeapClasses = {
+        OffHeapBLPLongHashSet.class,
+        OffHeapLPLongHashSet.class,
+        OffHeapRHLongHashSet.class,
+    };
+
     @Property
     public void testSequentialKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
             @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
@@ -77,4 +110,792 @@ public class VerifyHashSet {
             }
         }
     }
+
+    @Property
+    public void testIncrementalResizing(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            if (cls == HopscotchLongHashSet.class) {
+                // the wrapper rejects these, which is checked below
+                continue;
+            }
+            // start from the smallest possible table, so that it grows many times
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            IncrementalLongHashSet set = new IncrementalLongHashSet((LPLongHashSet) constructor.newInstance(1, loadFactor));
+            LongHasher hasher = new PhiLongHasher();
+            long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            for (int i = 0; i < longs.length; ++i) {
+                assertTrue(set.add(longs[i]));
+                assertFalse(set.add(longs[i]));
+                // elements added earlier must stay visible while they are being migrated
+                assertTrue(set.contains(longs[i / 2]));
+            }
+            assertEquals(sampleSize, set.size());
+            for (long i : longs) {
+                assertTrue(set.contains(i));
+            }
+            for (long i : longs) {
+                assertTrue(set.remove(i));
+                assertFalse(set.remove(i));
+            }
+            assertEquals(0, set.size());
+            for (long i : longs) {
+                assertFalse(set.contains(i));
+            }
+        }
+        // inserting into a hopscotch table may need to double it, which the migration can't do
+        assertThrows(IllegalArgumentException.class,
+                () -> new IncrementalLongHashSet(new HopscotchLongHashSet(1, loadFactor)));
+    }
+
+    @Property
+    public void testIncrementalGraveyardChurn(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        // deletions from the old table leave tombstones, which the migration must skip
+        IncrementalLongHashSet set = new IncrementalLongHashSet(new GraveyardLongHashSet(1, loadFactor));
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < longs.length; ++i) {
+            assertTrue(set.add(longs[i]));
+            if (i % 2 == 1) {
+                // each element in the first half is removed once, while later elements are added
+                assertTrue(set.remove(longs[i / 2]));
+                assertFalse(set.contains(longs[i / 2]));
+            }
+        }
+        assertEquals(sampleSize - sampleSize / 2, set.size());
+        for (int i = 0; i < longs.length; ++i) {
+            assertEquals(i >= sampleSize / 2, set.contains(longs[i]));
+        }
+    }
+
+    @Property
+    public void testAutomaticResizing(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : classes) {
+            // start from the smallest possible table, so that it grows many times
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LPLongHashSet set = (LPLongHashSet) constructor.newInstance(1, loadFactor);
+            int initialCapacity = set.capacity();
+            LongHasher hasher = new PhiLongHasher();
+            long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            for (long i : longs) {
+                assertTrue(set.add(i));
+            }
+            assertEquals(sampleSize, set.size());
+            for (long i : longs) {
+                assertTrue(set.contains(i));
+            }
+            // remove the elements in the order they were added, checking that
+            // the remaining elements survive every shrink
+            for (int i = 0; i < longs.length; ++i) {
+                assertTrue(set.remove(longs[i]));
+                if (i + 1 < longs.length) {
+                    assertTrue(set.contains(longs[(i + 1 + longs.length) / 2]));
+                }
+            }
+            assertEquals(0, set.size());
+            assertEquals(initialCapacity, set.capacity());
+            for (long i : longs) {
+                assertFalse(set.contains(i));
+            }
+        }
+    }
+
+    @Property
+    public void testProbeKernels(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (Class<?> cls : classes) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            LPLongHashSet set = (LPLongHashSet) constructor.newInstance(Math.max(sampleSize, 1), loadFactor);
+            set.setProbeKernel(ProbeKernel.BLOCKED);
+            // insert the first half of the keys, so the second half are absent
+            for (int i = 0; i < sampleSize; ++i) {
+                assertTrue(set.add(longs[i]));
+            }
+            assertEquals(sampleSize, set.size());
+            // both kernels must find the same bucket, whether or not the key is present
+            for (long key : longs) {
+                long hash = set.hash(key);
+                set.setProbeKernel(ProbeKernel.SCALAR);
+                int bucket = set.lookupByHash(hash);
+                set.setProbeKernel(ProbeKernel.BLOCKED);
+                assertEquals(bucket, set.lookupByHash(hash));
+            }
+            for (int i = 0; i < longs.length; ++i) {
+                assertEquals(i < sampleSize, set.contains(longs[i]));
+            }
+            // removing every other key leaves gaps in the clusters
+            for (int i = 0; i < sampleSize; i += 2) {
+                assertTrue(set.remove(longs[i]));
+            }
+            for (int i = 0; i < longs.length; ++i) {
+                assertEquals(i < sampleSize && i % 2 == 1, set.contains(longs[i]));
+            }
+            assertEquals(ProbeKernel.BLOCKED, set.newEmptySet(1).probeKernel());
+        }
+    }
+
+    @Property
+    public void testOccupancyBitmap(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        long[] expected = longs.clone();
+        Arrays.sort(expected);
+        for (Class<?> cls : classes) {
+            if (cls == GraveyardLongHashSet.class) {
+                // its tombstone bitmap takes the place of an occupancy bitmap
+                continue;
+            }
+            // start from the smallest possible table, so that it grows and shrinks many times
+            LPLongHashSet set = (LPLongHashSet) cls.getConstructor(int.class, double.class, LongHasher.class, boolean.class)
+                .newInstance(1, loadFactor, new Murmur3LongHasher(), true);
+            // the bitmap must not change the layout of the table
+            LPLongHashSet plainSet = (LPLongHashSet) cls.getConstructor(int.class, double.class).newInstance(1, loadFactor);
+            assertTrue(set.hasOccupancyBitmap());
+            assertFalse(plainSet.hasOccupancyBitmap());
+            for (long i : longs) {
+                assertTrue(set.add(i));
+                assertTrue(plainSet.add(i));
+            }
+            assertArrayEquals(plainSet.arr, set.arr);
+            verifyOccupancyBitmap(set);
+            assertArrayEquals(expected, set.stream().sorted().toArray());
+            assertArrayEquals(expected, set.parallelStream().sorted().toArray());
+            long[] visited = new long[sampleSize];
+            int[] count = new int[1];
+            set.forEach(x -> visited[count[0]++] = x);
+            Arrays.sort(visited);
+            assertArrayEquals(expected, visited);
+            LongSet clone = set.cloneSet();
+            for (int i = 0; i < longs.length; i += 2) {
+                assertTrue(set.remove(longs[i]));
+                assertTrue(plainSet.remove(longs[i]));
+            }
+            assertArrayEquals(plainSet.arr, set.arr);
+            verifyOccupancyBitmap(set);
+            assertEquals(sampleSize / 2, set.stream().count());
+            set.clear();
+            assertEquals(0, set.size());
+            assertTrue(Arrays.stream(set.arr).allMatch(h -> h == 0));
+            verifyOccupancyBitmap(set);
+            // the clone is unaffected, and keeps its own bitmap
+            verifyOccupancyBitmap((LPLongHashSet) clone);
+            assertEquals(sampleSize, clone.stream().count());
+            for (long i : longs) {
+                assertTrue(set.add(i));
+            }
+            verifyOccupancyBitmap(set);
+        }
+    }
+
+    private static void verifyOccupancyBitmap(LPLongHashSet set) {
+        assertEquals((set.arr.length + 63) / 64, set.occupied.length);
+        for (int i = 0; i < 64 * set.occupied.length; ++i) {
+            boolean occupied = (set.occupied[i >>> 6] & (1L << i)) != 0;
+            assertEquals(i < set.arr.length && set.arr[i] != 0, occupied);
+        }
+    }
+
+    @Property
+    public void testBatchContains(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        List<LongSet> sets = new ArrayList<>();
+        for (Class<?> cls : classes) {
+            sets.add((LongSet) cls.getConstructor(int.class, double.class).newInstance(sampleSize, loadFactor));
+        }
+        for (Class<?> cls : offHeapClasses) {
+            sets.add((LongSet) cls.getConstructor(int.class, double.class).newInstance(sampleSize, loadFactor));
+        }
+        sets.add(new QuotientedBLPLongHashSet(sampleSize, loadFactor));
+        sets.add(new SwissLongHashSet(sampleSize, loadFactor));
+        sets.add(new CuckooLongHashSet(sampleSize, loadFactor));
+        sets.add(new StripedLongSet(new LPLongHashSet(sampleSize, loadFactor)));
+        LongHasher hasher = new PhiLongHasher();
+        // the second half of the elements are never added
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (LongSet set : sets) {
+            for (int i = 0; i < sampleSize; ++i) {
+                assertTrue(set.add(longs[i]));
+            }
+        }
+        sets.add(((BLPLongHashSet) sets.get(0)).freeze());
+        for (LongSet set : sets) {
+            // query a range which doesn't start at the beginning of the array
+            int from = sampleSize / 3;
+            int to = longs.length;
+            long[] resultBits = new long[(to - from + 63) / 64];
+            // the bits past the end of the range must be left alone
+            Arrays.fill(resultBits, -1L);
+            int found = set.contains(longs, from, to, resultBits);
+            assertEquals(sampleSize - from, found);
+            for (int i = from; i < to; ++i) {
+                int bit = i - from;
+                assertEquals(i < sampleSize, (resultBits[bit >>> 6] & (1L << bit)) != 0);
+            }
+            for (int bit = to - from; bit < 64 * resultBits.length; ++bit) {
+                assertTrue((resultBits[bit >>> 6] & (1L << bit)) != 0);
+            }
+            if (set instanceof AutoCloseable) {
+                ((AutoCloseable) set).close();
+            }
+        }
+    }
+
+    @Property
+    public void testIteration(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        List<LongSet> sets = new ArrayList<>();
+        for (Class<?> cls : classes) {
+            sets.add((LongSet) cls.getConstructor(int.class, double.class).newInstance(sampleSize, loadFactor));
+        }
+        for (Class<?> cls : offHeapClasses) {
+            sets.add((LongSet) cls.getConstructor(int.class, double.class).newInstance(sampleSize, loadFactor));
+        }
+        sets.add(new QuotientedBLPLongHashSet(sampleSize, loadFactor));
+        sets.add(new SwissLongHashSet(sampleSize, loadFactor));
+        sets.add(new CuckooLongHashSet(sampleSize, loadFactor));
+        sets.add(new StripedLongSet(new LPLongHashSet(sampleSize, loadFactor)));
+        sets.add(new ConcurrentBLPLongHashSet(sampleSize, loadFactor));
+        // sized so that a migration is in progress once all the elements are added
+        sets.add(new IncrementalLongHashSet(new LPLongHashSet(Math.max(sampleSize / 2, 1), loadFactor)));
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (LongSet set : sets) {
+            for (int i = 0; i < sampleSize; ++i) {
+                assertTrue(set.add(longs[i]));
+            }
+        }
+        sets.add(((BLPLongHashSet) sets.get(0)).freeze());
+        long[] expected = longs.clone();
+        Arrays.sort(expected);
+        for (LongSet set : sets) {
+            long[] visited = new long[sampleSize];
+            int[] count = new int[1];
+            set.forEach(x -> visited[count[0]++] = x);
+            assertEquals(sampleSize, count[0]);
+            Arrays.sort(visited);
+            assertArrayEquals(expected, visited);
+
+            LongCursor cursor = set.cursor();
+            count[0] = 0;
+            while (cursor.advance()) {
+                visited[count[0]++] = cursor.key();
+            }
+            assertFalse(cursor.advance());
+            assertEquals(sampleSize, count[0]);
+            Arrays.sort(visited);
+            assertArrayEquals(expected, visited);
+
+            assertArrayEquals(expected, set.stream().sorted().toArray());
+            assertArrayEquals(expected, set.parallelStream().sorted().toArray());
+            assertEquals(sampleSize, set.parallelStream().count());
+            // split as far as possible, and check that the parts cover the table exactly once
+            List<Spliterator.OfLong> parts = new ArrayList<>();
+            parts.add(set.spliterator());
+            for (int i = 0; i < parts.size(); ++i) {
+                Spliterator.OfLong part;
+                while ((part = parts.get(i).trySplit()) != null) {
+                    parts.add(part);
+                }
+            }
+            count[0] = 0;
+            for (Spliterator.OfLong part : parts) {
+                part.forEachRemaining((long x) -> visited[count[0]++] = x);
+            }
+            assertEquals(sampleSize, count[0]);
+            Arrays.sort(visited);
+            assertArrayEquals(expected, visited);
+            if (set instanceof AutoCloseable) {
+                ((AutoCloseable) set).close();
+            }
+        }
+    }
+
+    @Property
+    public void testBulkLoad(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        LongHasher hasher = new PhiLongHasher();
+        // the second half of the elements are never added
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        // every element is loaded twice
+        long[] keys = new long[2 * sampleSize];
+        for (int i = 0; i < sampleSize; ++i) {
+            keys[2 * i] = longs[i];
+            keys[2 * i + 1] = longs[sampleSize - 1 - i];
+        }
+        BLPLongHashSet loaded = BLPLongHashSet.bulkLoad(keys, loadFactor);
+        BLPLongHashSet added = new BLPLongHashSet(Math.max(sampleSize, 1), loadFactor);
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(added.add(longs[i]));
+        }
+        assertEquals(sampleSize, loaded.size());
+        assertEquals(added.capacity(), loaded.capacity());
+        // both tables hold the same hash codes in the same (sorted) order
+        assertArrayEquals(Arrays.stream(added.arr).filter(h -> h != 0).toArray(),
+                Arrays.stream(loaded.arr).filter(h -> h != 0).toArray());
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertEquals(i < sampleSize, loaded.contains(longs[i]));
+        }
+        // the table behaves normally afterward, including growing and shrinking
+        for (int i = sampleSize; i < 2 * sampleSize; ++i) {
+            assertTrue(loaded.add(longs[i]));
+        }
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertTrue(loaded.remove(longs[i]));
+        }
+        assertEquals(0, loaded.size());
+    }
+
+    @Property
+    public void testParallelBulkLoad(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        LongHasher hasher = new PhiLongHasher();
+        // the second half of the elements are never added
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        // every element is loaded twice
+        long[] keys = new long[2 * sampleSize];
+        for (int i = 0; i < sampleSize; ++i) {
+            keys[2 * i] = longs[i];
+            keys[2 * i + 1] = longs[sampleSize - 1 - i];
+        }
+        // use an odd number of threads, so partitions don't line up with anything
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BLPLongHashSet blp = ParallelBulkLoader.loadBLP(keys, loadFactor, new Murmur3LongHasher(), pool);
+            // the layout is the same as the sequential bulk loader's
+            assertArrayEquals(BLPLongHashSet.bulkLoad(keys, loadFactor).arr, blp.arr);
+            LongSet[] sets = {
+                ParallelBulkLoader.loadLP(keys, loadFactor, new Murmur3LongHasher(), pool),
+                ParallelBulkLoader.loadRH(keys, loadFactor, new Murmur3LongHasher(), pool),
+                blp,
+            };
+            for (LongSet set : sets) {
+                assertEquals(sampleSize, set.size());
+                for (int i = 0; i < 2 * sampleSize; ++i) {
+                    assertEquals(i < sampleSize, set.contains(longs[i]));
+                }
+                // the table behaves normally afterward, including growing and shrinking
+                for (int i = sampleSize; i < 2 * sampleSize; ++i) {
+                    assertTrue(set.add(longs[i]));
+                }
+                for (int i = 0; i < 2 * sampleSize; ++i) {
+                    assertTrue(set.remove(longs[i]));
+                }
+                assertEquals(0, set.size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Property
+    public void testSetAlgebra(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, 3 * sampleSize).map(hasher::hash).toArray();
+        // the tables overlap in the middle third of the elements, and have
+        // different capacities
+        // (the results take their occupancy bitmap and probe kernel from left)
+        BLPLongHashSet left = new BLPLongHashSet(Math.max(2 * sampleSize, 1), loadFactor, new Murmur3LongHasher(),
+                true);
+        left.setProbeKernel(ProbeKernel.BLOCKED);
+        BLPLongHashSet right = new BLPLongHashSet(Math.max(sampleSize, 1), loadFactor / 2);
+        for (int i = 0; i < 2 * sampleSize; ++i) {
+            assertTrue(left.add(longs[i]));
+            assertTrue(right.add(longs[sampleSize + i]));
+        }
+        BLPLongHashSet union = left.union(right);
+        BLPLongHashSet intersection = left.intersect(right);
+        BLPLongHashSet difference = left.subtract(right);
+        assertEquals(3 * sampleSize, union.size());
+        assertEquals(sampleSize, intersection.size());
+        assertEquals(sampleSize, difference.size());
+        assertEquals(sampleSize, left.intersectionSize(right));
+        assertEquals(sampleSize, right.intersectionSize(left));
+        for (BLPLongHashSet result : new BLPLongHashSet[] {union, intersection, difference}) {
+            verifyOccupancyBitmap(result);
+            assertEquals(ProbeKernel.BLOCKED, result.probeKernel);
+        }
+        for (int i = 0; i < 3 * sampleSize; ++i) {
+            assertTrue(union.contains(longs[i]));
+            assertEquals(i >= sampleSize && i < 2 * sampleSize, intersection.contains(longs[i]));
+            assertEquals(i < sampleSize, difference.contains(longs[i]));
+        }
+        // the results behave normally afterward, including growing and shrinking
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(intersection.add(longs[i]));
+            assertTrue(difference.remove(longs[i]));
+        }
+        assertEquals(0, difference.size());
+        verifyOccupancyBitmap(intersection);
+        assertThrows(IllegalArgumentException.class,
+                () -> left.union(new BLPLongHashSet(1, loadFactor, new IdentityLongHasher())));
+    }
+
+    @Property
+    public void testFreeze(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        BLPLongHashSet set = new BLPLongHashSet(sampleSize, loadFactor);
+        LongHasher hasher = new PhiLongHasher();
+        // the second half of the elements are never added
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.add(longs[i]));
+        }
+        for (double frozenLoadFactor : new double[] {FrozenLongSet.DEFAULT_LOAD_FACTOR, 1.0}) {
+            FrozenLongSet frozen = set.freeze(frozenLoadFactor);
+            assertEquals(sampleSize, frozen.size());
+            assertTrue(frozen.capacity() <= Math.ceil(sampleSize / frozenLoadFactor));
+            for (int i = 0; i < 2 * sampleSize; ++i) {
+                assertEquals(i < sampleSize, frozen.contains(longs[i]));
+            }
+            assertThrows(UnsupportedOperationException.class, () -> frozen.add(longs[0]));
+            assertThrows(UnsupportedOperationException.class, () -> frozen.remove(longs[0]));
+        }
+        // the snapshot is unaffected by later changes to the table
+        FrozenLongSet frozen = set.freeze();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.remove(longs[i]));
+        }
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(frozen.contains(longs[i]));
+        }
+    }
+
+    @Property
+    public void testQuotientedRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) {
+        // start from the smallest possible table, so that it grows many times
+        QuotientedBLPLongHashSet set = new QuotientedBLPLongHashSet(1, loadFactor);
+        int initialCapacity = set.capacity();
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (long i : longs) {
+            assertTrue(set.add(i));
+        }
+        assertEquals(sampleSize, set.size());
+        for (long i : longs) {
+            assertTrue(set.contains(i));
+        }
+        for (int i = 0; i < longs.length; ++i) {
+            assertTrue(set.remove(longs[i]));
+            if (i + 1 < longs.length) {
+                assertTrue(set.contains(longs[(i + 1 + longs.length) / 2]));
+            }
+        }
+        assertEquals(0, set.size());
+        assertEquals(initialCapacity, set.capacity());
+        for (long i : longs) {
+            assertFalse(set.contains(i));
+        }
+    }
+
+    @Property
+    public void testQuotientedOverflow(@InRange(minInt = 1, maxInt = 2048) int sampleSize) {
+        // with the identity hash, these keys all have the same preferred bucket,
+        // so most of them are displaced too far to encode in their slots
+        QuotientedBLPLongHashSet set = new QuotientedBLPLongHashSet(sampleSize, 1.0, new IdentityLongHasher());
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(i -> (0x12345678L << 32) | i).toArray();
+        for (long i : longs) {
+            assertTrue(set.add(i));
+        }
+        assertEquals(sampleSize, set.size());
+        for (long i : longs) {
+            assertTrue(set.contains(i));
+            assertFalse(set.contains(i + (1L << 32)));
+        }
+        for (int i = 0; i < longs.length; i += 2) {
+            assertTrue(set.remove(longs[i]));
+        }
+        for (int i = 0; i < longs.length; ++i) {
+            assertEquals(i % 2 == 1, set.contains(longs[i]));
+        }
+    }
+
+    @Property
+    public void testOffHeapRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
+        for (Class<?> cls : offHeapClasses) {
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            OffHeapLPLongHashSet closed;
+            try (OffHeapLPLongHashSet set = (OffHeapLPLongHashSet) constructor.newInstance(sampleSize, loadFactor)) {
+                LongHasher hasher = new PhiLongHasher();
+                long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+                for (long i : longs) {
+                    assertTrue(set.add(i));
+                }
+                assertEquals(sampleSize, set.size());
+                for (long i : longs) {
+                    assertTrue(set.contains(i));
+                }
+                for (long i : longs) {
+                    assertTrue(set.remove(i));
+                }
+                assertEquals(0, set.size());
+                for (long i : longs) {
+                    assertFalse(set.contains(i));
+                }
+                closed = set;
+            }
+            // the buffer is released when the set is closed
+            assertThrows(IllegalStateException.class, () -> closed.contains(1));
+        }
+    }
+
+    @Property
+    public void testMappedRandomKeys(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws IOException {
+        Path path = Files.createTempFile("blp", ".set");
+        try {
+            LongHasher hasher = new PhiLongHasher();
+            long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+            try (MappedBLPLongHashSet set = MappedBLPLongHashSet.create(path, sampleSize, loadFactor)) {
+                for (long i : longs) {
+                    assertTrue(set.add(i));
+                }
+                assertEquals(sampleSize, set.size());
+            }
+            // reopen and remove the first half of the elements
+            int half = sampleSize / 2;
+            try (MappedBLPLongHashSet set = MappedBLPLongHashSet.open(path)) {
+                assertEquals(sampleSize, set.size());
+                for (long i : longs) {
+                    assertTrue(set.contains(i));
+                }
+                for (int i = 0; i < half; ++i) {
+                    assertTrue(set.remove(longs[i]));
+                }
+                set.force();
+            }
+            MappedBLPLongHashSet closed;
+            try (MappedBLPLongHashSet set = MappedBLPLongHashSet.open(path)) {
+                assertEquals(sampleSize - half, set.size());
+                for (int i = 0; i < sampleSize; ++i) {
+                    assertEquals(i >= half, set.contains(longs[i]));
+                }
+                closed = set;
+            }
+            // the mapping is released when the set is closed
+            assertThrows(IllegalStateException.class, () -> closed.contains(1));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Property
+    public void testRefillRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws Exception {
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (Class<?> cls : refillClasses) {
+            // start from the smallest possible table, so that it grows many times
+            LongSet set = (LongSet) cls.getConstructor(int.class, double.class).newInstance(1, loadFactor);
+            Method capacity = cls.getMethod("capacity");
+            int initialCapacity = (int) capacity.invoke(set);
+            for (long i : longs) {
+                assertTrue(set.add(i));
+            }
+            assertEquals(sampleSize, set.size());
+            for (long i : longs) {
+                assertTrue(set.contains(i));
+                assertFalse(set.add(i));
+            }
+            // removing every other element leaves gaps, which lookups must see
+            // past and the reinserted elements fill
+            for (int i = 0; i < longs.length; i += 2) {
+                assertTrue(set.remove(longs[i]));
+            }
+            for (int i = 0; i < longs.length; ++i) {
+                assertEquals(i % 2 == 1, set.contains(longs[i]));
+            }
+            LongSet clone = set.cloneSet();
+            for (int i = 0; i < longs.length; i += 2) {
+                assertTrue(set.add(longs[i]));
+            }
+            assertEquals(sampleSize, set.size());
+            assertEquals(sampleSize / 2, clone.size());
+            for (int i = 0; i < longs.length; ++i) {
+                assertTrue(set.contains(longs[i]));
+                assertEquals(i % 2 == 1, clone.contains(longs[i]));
+            }
+            for (long i : longs) {
+                assertTrue(set.remove(i));
+                assertFalse(set.remove(i));
+            }
+            assertEquals(0, set.size());
+            assertEquals(initialCapacity, (int) capacity.invoke(set));
+            for (long i : longs) {
+                assertFalse(set.contains(i));
+            }
+        }
+    }
+
+    @Property
+    public void testGraveyardRandomKeys(@InRange(minInt = 0, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws CloneNotSupportedException {
+        // start from the smallest possible table, so that it grows many times
+        GraveyardLongHashSet set = new GraveyardLongHashSet(1, loadFactor);
+        int initialCapacity = set.capacity();
+        LongHasher hasher = new PhiLongHasher();
+        // the second half of the elements are only added while churning
+        long[] longs = LongStream.rangeClosed(1, 2 * sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.add(longs[i]));
+        }
+        assertEquals(sampleSize, set.size());
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.contains(longs[i]));
+            assertFalse(set.add(longs[i]));
+        }
+        LongSet clone = set.cloneSet();
+        // replace each element with a new one, so that insertions reuse the
+        // tombstones left by deletions, and the table is rebuilt many times
+        for (int i = 0; i < sampleSize; ++i) {
+            assertTrue(set.remove(longs[i]));
+            assertFalse(set.contains(longs[i]));
+            assertTrue(set.add(longs[sampleSize + i]));
+        }
+        assertEquals(sampleSize, set.size());
+        assertEquals(sampleSize, clone.size());
+        for (int i = 0; i < longs.length; ++i) {
+            assertEquals(i >= sampleSize, set.contains(longs[i]));
+            assertEquals(i < sampleSize, clone.contains(longs[i]));
+        }
+        // iteration skips the tombstones
+        long[] expected = Arrays.copyOfRange(longs, sampleSize, longs.length);
+        Arrays.sort(expected);
+        long[] actual = set.stream().toArray();
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+        for (int i = sampleSize; i < longs.length; ++i) {
+            assertTrue(set.remove(longs[i]));
+            assertFalse(set.remove(longs[i]));
+        }
+        assertEquals(0, set.size());
+        assertEquals(initialCapacity, set.capacity());
+        for (long i : longs) {
+            assertFalse(set.contains(i));
+        }
+    }
+
+    @Property
+    public void testConcurrentRandomKeys(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor) throws InterruptedException {
+        verifyConcurrentUpdates(new ConcurrentBLPLongHashSet(sampleSize, loadFactor), sampleSize);
+    }
+
+    @Property
+    public void testStripedRandomKeys(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int sampleSize,
+            @InRange(minDouble = 0.0, maxDouble = 1.0) double loadFactor)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException,
+            InterruptedException {
+        for (Class<?> cls : classes) {
+            if (cls == GraveyardLongHashSet.class || cls == HopscotchLongHashSet.class) {
+                // neither can be wrapped (see their class docs)
+                continue;
+            }
+            Constructor<?> constructor = cls.getConstructor(int.class, double.class);
+            // start small, so the table is resized while the writers are running
+            LPLongHashSet table = (LPLongHashSet) constructor.newInstance(1, loadFactor);
+            verifyConcurrentUpdates(new StripedLongSet(table, 8), sampleSize);
+            // stripes sharing a word of the occupancy bitmap would lose updates to it
+            LPLongHashSet bitmapTable = (LPLongHashSet) cls
+                .getConstructor(int.class, double.class, LongHasher.class, boolean.class)
+                .newInstance(1, loadFactor, new Murmur3LongHasher(), true);
+            verifyConcurrentUpdates(new StripedLongSet(bitmapTable, 8), sampleSize);
+            verifyOccupancyBitmap(bitmapTable);
+        }
+        // a hopscotch element may lie outside the cluster the wrapper locks
+        assertThrows(IllegalArgumentException.class,
+                () -> new StripedLongSet(new HopscotchLongHashSet(1, loadFactor), 8));
+        // a graveyard rebuild rewrites every stripe
+        assertThrows(IllegalArgumentException.class,
+                () -> new StripedLongSet(new GraveyardLongHashSet(1, loadFactor), 8));
+    }
+
+    @Property
+    public void testStripedSparseRemove(@InRange(minInt = 1, maxInt = SAMPLE_SIZE_LIMIT) int key)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final int stripeCount = 8;
+        // a table at its minimum size, which removals leave less than a quarter full
+        LPLongHashSet table = new LPLongHashSet(1 << 12, 0.5);
+        StripedLongSet set = new StripedLongSet(table, stripeCount);
+        assertTrue(set.add(key));
+        // hold a stripe far from the key's cluster, which the removal only
+        // has to wait for if it locks the whole table to try to shrink it
+        int bucket = table.findPreferredBucket(table.hash(key));
+        int stripe = (bucket * stripeCount / table.capacity() + stripeCount / 2) % stripeCount;
+        long stamp = set.locks[stripe].readLock();
+        try {
+            CompletableFuture<Boolean> removed = CompletableFuture.supplyAsync(() -> set.remove(key));
+            assertTrue(removed.get(10, TimeUnit.SECONDS));
+        } finally {
+            set.locks[stripe].unlockRead(stamp);
+        }
+        assertEquals(0, set.size());
+        assertFalse(set.contains(key));
+    }
+
+    // The even-indexed elements are added first and never removed, so a
+    // concurrent reader must always find them, while several writers add and
+    // remove the odd-indexed elements around them.
+    private static void verifyConcurrentUpdates(LongSet set, int sampleSize) throws InterruptedException {
+        final int writerCount = 4;
+        LongHasher hasher = new PhiLongHasher();
+        long[] longs = LongStream.rangeClosed(1, sampleSize).map(hasher::hash).toArray();
+        for (int i = 0; i < sampleSize; i += 2) {
+            assertTrue(set.add(longs[i]));
+        }
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Thread reader = new Thread(() -> {
+            do {
+                for (int i = 0; i < sampleSize; i += 2) {
+                    if (!set.contains(longs[i])) {
+                        failed.set(true);
+                    }
+                }
+            } while (!done.get());
+        });
+        Thread[] writers = new Thread[writerCount];
+        for (int w = 0; w < writerCount; ++w) {
+            final int writer = w;
+            writers[w] = new Thread(() -> {
+                for (int round = 0; round < 2; ++round) {
+                    for (int i = 2 * writer + 1; i < sampleSize; i += 2 * writerCount) {
+                        if (!set.add(longs[i]) || !set.contains(longs[i])) {
+                            failed.set(true);
+                        }
+                    }
+                    for (int i = 2 * writer + 1; i < sampleSize; i += 2 * writerCount) {
+                        if (!set.remove(longs[i]) || set.contains(longs[i])) {
+                            failed.set(true);
+                        }
+                    }
+                }
+            });
+        }
+        reader.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+        assertFalse(failed.get());
+        assertEquals((sampleSize + 1) / 2, set.size());
+        for (int i = 0; i < sampleSize; ++i) {
+            assertEquals(i % 2 == 0, set.contains(longs[i]));
+        }
+    }
 }